@@ -17,14 +17,25 @@
 package pl.otros.vfs.browser;
 
 /**
+ * Task which aggregates progress of other tasks. Values are summed on read from volatile fields of children,
+ * no locking is required. Change of any child is propagated to listeners of composite.
  */
 public class CompositeTaskContext extends TaskContext {
 
-  private TaskContext[] taskContext;
+  private final TaskContext[] taskContext;
 
   public CompositeTaskContext(String name, TaskContext[] taskContext) {
     super(name, 0);
-    this.taskContext = taskContext;
+    this.taskContext = taskContext.clone();
+    TaskContextListener childListener = new TaskContextListener() {
+      @Override
+      public void taskChanged(TaskContext child) {
+        fireTaskChanged();
+      }
+    };
+    for (TaskContext context : this.taskContext) {
+      context.addListener(childListener);
+    }
   }
 
   @Override
@@ -34,6 +45,26 @@ public class CompositeTaskContext extends TaskContext {
     }
   }
 
+  @Override
+  public boolean isStop() {
+    for (TaskContext context : taskContext) {
+      if (!context.isStop()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isIndeterminate() {
+    for (TaskContext context : taskContext) {
+      if (context.isIndeterminate()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public int getMax() {
     int max = 0;
@@ -47,7 +78,7 @@ public class CompositeTaskContext extends TaskContext {
   public int getCurrentProgress() {
     int progress = 0;
     for (TaskContext context : taskContext) {
-      progress += context.getMax();
+      progress += context.getCurrentProgress();
     }
     return progress;
   }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listener which coalesces task changes and handles them on EDT at most once per frame,
+ * regardless how often progress is changed. Every task changed during the frame is handled once.
+ */
+public abstract class EdtTaskContextListener implements TaskContextListener {
+
+  private static final int FRAME_DURATION = 16;
+
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+  private final Set<TaskContext> pending = Collections.newSetFromMap(new ConcurrentHashMap<TaskContext, Boolean>());
+  private final Timer timer;
+
+  public EdtTaskContextListener() {
+    timer = new Timer(FRAME_DURATION, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        scheduled.set(false);
+        for (Iterator<TaskContext> iterator = pending.iterator(); iterator.hasNext(); ) {
+          TaskContext taskContext = iterator.next();
+          iterator.remove();
+          taskChangedInEdt(taskContext);
+        }
+      }
+    });
+    timer.setRepeats(false);
+    timer.setCoalesce(true);
+  }
+
+  @Override
+  public final void taskChanged(TaskContext taskContext) {
+    pending.add(taskContext);
+    if (scheduled.compareAndSet(false, true)) {
+      timer.start();
+    }
+  }
+
+  /**
+   * Called on EDT with latest state of task.
+   */
+  protected abstract void taskChangedInEdt(TaskContext taskContext);
+}
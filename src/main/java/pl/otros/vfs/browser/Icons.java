@@ -32,6 +32,8 @@ public class Icons {
   private final Icon starPlus;
   private final Icon arrowCircleDouble;
   private final Icon arrowTurn90;
+  private final Icon navigationBack;
+  private final Icon navigationForward;
   private final Icon shortCut;
   private final Icon networkStatusAway;
   private final Icon networkStatusOnline;
@@ -40,12 +42,15 @@ public class Icons {
   private final Icon folderZipper;
   private final Icon jarIcon;
   private final ImageIcon editSignature;
+  private final Icon search;
 
   private Icons() {
     computer = new ImageIcon(this.getClass().getClassLoader().getResource("computer.png"));
     minusButton = new ImageIcon(this.getClass().getClassLoader().getResource("minus-button.png"));
     star = new ImageIcon(this.getClass().getClassLoader().getResource("star.png"));
     arrowTurn90 = new ImageIcon(this.getClass().getClassLoader().getResource("arrow-turn-090.png"));
+    navigationBack = new ImageIcon(this.getClass().getClassLoader().getResource("navigation-180-button.png"));
+    navigationForward = new ImageIcon(this.getClass().getClassLoader().getResource("navigation-000-button.png"));
     arrowCircleDouble = new ImageIcon(this.getClass().getClassLoader().getResource("arrow-circle-double.png"));
     starPlus = new ImageIcon(this.getClass().getClassLoader().getResource("star--plus.png"));
     folderOpen = new ImageIcon(this.getClass().getClassLoader().getResource("folder-open.png"));
@@ -60,6 +65,7 @@ public class Icons {
     networkStatusOffline = new ImageIcon(this.getClass().getClassLoader().getResource("network-status-offline.png"));
     jarIcon = new ImageIcon(this.getClass().getClassLoader().getResource("jar.png"));
     editSignature = new ImageIcon(this.getClass().getClassLoader().getResource("edit-signature.png"));
+    search = new ImageIcon(this.getClass().getClassLoader().getResource("selection-select-input.png"));
   }
 
   public ImageIcon getEditSignature() {
@@ -137,6 +143,14 @@ public class Icons {
     return arrowTurn90;
   }
 
+  public Icon getNavigationBack() {
+    return navigationBack;
+  }
+
+  public Icon getNavigationForward() {
+    return navigationForward;
+  }
+
   public Icon getFolderZipper() {
     return folderZipper;
   }
@@ -144,4 +158,8 @@ public class Icons {
   public Icon getJarIcon() {
     return jarIcon;
   }
+
+  public Icon getSearch() {
+    return search;
+  }
 }
@@ -20,10 +20,32 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
 
+/**
+ * Symbolic link. Type of link is {@link FileType#IMAGINARY}, type of file which link points to is available as
+ * {@link #getTargetType()}.
+ */
 public class LinkFileObject extends FileObjectWrapper {
 
+  private final FileType targetType;
+
   public LinkFileObject(FileObject parent) {
+    this(parent, null);
+  }
+
+  /**
+   * @param parent     link
+   * @param targetType type of file which link points to, {@link FileType#IMAGINARY} for broken link, null if unknown
+   */
+  public LinkFileObject(FileObject parent, FileType targetType) {
     super(parent);
+    this.targetType = targetType;
+  }
+
+  /**
+   * @return type of file which link points to, {@link FileType#IMAGINARY} for broken link, null if unknown
+   */
+  public FileType getTargetType() {
+    return targetType;
   }
 
   @Override
@@ -16,23 +16,44 @@
 
 package pl.otros.vfs.browser;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
+ * Progress of long running task. Changes are pushed to registered {@link TaskContextListener}s from thread
+ * which made change, use {@link EdtTaskContextListener} to update UI.
  */
 public class TaskContext {
-  private int max;
+  private volatile int max;
   private volatile int currentProgress;
   private volatile boolean stop;
   private String name;
 
-  private boolean indeterminate;
+  private volatile boolean indeterminate;
+  private final List<TaskContextListener> listeners = new CopyOnWriteArrayList<TaskContextListener>();
 
   public TaskContext(String name, int max) {
     this.max = max;
     this.name = name;
   }
 
+  public void addListener(TaskContextListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(TaskContextListener listener) {
+    listeners.remove(listener);
+  }
+
+  protected void fireTaskChanged() {
+    for (TaskContextListener listener : listeners) {
+      listener.taskChanged(this);
+    }
+  }
+
   public void setIndeterminate(boolean indeterminate) {
     this.indeterminate = indeterminate;
+    fireTaskChanged();
   }
 
   public boolean isIndeterminate() {
@@ -49,6 +70,7 @@ public class TaskContext {
 
   public void setStop(boolean stop) {
     this.stop = stop;
+    fireTaskChanged();
   }
 
   public int getCurrentProgress() {
@@ -57,6 +79,7 @@ public class TaskContext {
 
   public void setCurrentProgress(int currentProgress) {
     this.currentProgress = currentProgress;
+    fireTaskChanged();
   }
 
   public int getMax() {
@@ -65,5 +88,6 @@ public class TaskContext {
 
   public void setMax(int max) {
     this.max = max;
+    fireTaskChanged();
   }
 }
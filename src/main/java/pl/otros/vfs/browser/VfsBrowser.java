@@ -27,8 +27,13 @@ import org.jdesktop.swingx.prompt.PromptSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.otros.vfs.browser.actions.*;
+import pl.otros.vfs.browser.cache.CachedListing;
+import pl.otros.vfs.browser.cache.ListingCache;
 import pl.otros.vfs.browser.favorit.Favorite;
+import pl.otros.vfs.browser.favorit.FavoritesPrewarmer;
 import pl.otros.vfs.browser.favorit.FavoritesUtils;
+import pl.otros.vfs.browser.history.HistoryEntry;
+import pl.otros.vfs.browser.history.NavigationHistory;
 import pl.otros.vfs.browser.i18n.Messages;
 import pl.otros.vfs.browser.list.MutableListDragListener;
 import pl.otros.vfs.browser.list.MutableListDropHandler;
@@ -36,20 +41,28 @@ import pl.otros.vfs.browser.list.MutableListModel;
 import pl.otros.vfs.browser.list.SelectFirstElementFocusAdapter;
 import pl.otros.vfs.browser.preview.PreviewComponent;
 import pl.otros.vfs.browser.preview.PreviewListener;
+import pl.otros.vfs.browser.search.RecursiveSearch;
 import pl.otros.vfs.browser.table.*;
+import pl.otros.vfs.browser.util.FolderPoller;
+import pl.otros.vfs.browser.util.FolderSizeCalculator;
 import pl.otros.vfs.browser.util.GuiUtils;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.LazyAttributeLoader;
+import pl.otros.vfs.browser.util.LinkChecker;
+import pl.otros.vfs.browser.util.LocalFolderLister;
+import pl.otros.vfs.browser.util.LocalFolderWatcher;
 import pl.otros.vfs.browser.util.SwingUtils;
 import pl.otros.vfs.browser.util.VFSUtils;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.event.*;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.Arrays;
-import java.util.Date;
+import java.util.*;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class VfsBrowser extends JPanel {
 
@@ -59,6 +72,8 @@ public class VfsBrowser extends JPanel {
   private static final Logger LOGGER = LoggerFactory.getLogger(VfsBrowser.class);
   private static final Icon COMPUTER_ICON = Icons.getInstance().getComputer();
   private static final String ACTION_GO_UP = "GO_UP";
+  private static final String ACTION_GO_BACK = "GO_BACK";
+  private static final String ACTION_GO_FORWARD = "GO_FORWARD";
   private static final String ACTION_OPEN = "OPEN";
   private static final Object ACTION_ADD_CURRENT_LOCATION_TO_FAVORITES = "ADD CURRENT LOCATION TO FAVORITES";
   private static final String ACTION_DELETE = "DELETE";
@@ -70,8 +85,15 @@ public class VfsBrowser extends JPanel {
   private static final String ACTION_SWITCH_SHOW_HIDDEN = "SWITCH SHOW HIDDEN";
   private static final String ACTION_FOCUS_ON_PATH = "FOCUS ON PATH";
   private static final String ACTION_REFRESH = "REFRESH";
+  private static final String ACTION_SEARCH = "SEARCH";
   private static final String TABLE = "TABLE";
   private static final String LOADING = "LOADING";
+  /**
+   * Delay in milliseconds after last keystroke in filter field before name filter is applied
+   */
+  private static final int NAME_FILTER_DELAY = 150;
+  public static final String CONFIG_STREAMING_LISTING = "listing.streaming";
+  public static final String CONFIG_HISTORY_REVALIDATE = "history.revalidate";
   protected JTextField pathField;
   protected JTable tableFiles;
   protected JScrollPane tableScrollPane;
@@ -94,13 +116,107 @@ public class VfsBrowser extends JPanel {
   private DataConfiguration configuration;
   private JProgressBar loadingProgressBar;
   private JLabel loadingIconLabel;
-  private TaskContext taskContext;
+  private volatile TaskContext taskContext;
   private JToggleButton skipCheckingLinksButton;
   private JTextField filterField;
-  private TableRowSorter<VfsTableModel> sorter;
+  private Timer nameFilterTimer;
+  private ListingRowSorter sorter;
+  private FileNameIndexer fileNameIndexer;
   private boolean showHidden = false;
   private AbstractAction actionFocusOnTable;
   private boolean targetFileSelected;
+  private StreamingTableUpdater streamingTableUpdater;
+  private ListingCache listingCache;
+  private LinkChecker linkChecker;
+  private LocalFolderLister localFolderLister;
+  private LocalFolderWatcher localFolderWatcher;
+  private FolderPoller folderPoller;
+  private LazyAttributeLoader lazyAttributeLoader;
+  private RecursiveSearch recursiveSearch;
+  private FolderSizeCalculator folderSizeCalculator;
+  private volatile TaskContext folderSizeTaskContext;
+  private JCheckBox folderSizeCheckBox;
+  private FavoritesPrewarmer favoritesPrewarmer;
+  private boolean attributesRequestScheduled = false;
+  private JCheckBox autoRefreshCheckBox;
+  private NavigationHistory navigationHistory;
+  /**
+   * Location which content is shown in table, used only in EDT
+   */
+  private FileObject displayedLocation;
+  private Action goBackAction;
+  private Action goForwardAction;
+  private final AtomicLong navigationGeneration = new AtomicLong();
+  private final AtomicLong lastNavigateAction = new AtomicLong();
+  private final AtomicReference<NavigationToken> currentNavigation = new AtomicReference<NavigationToken>();
+  private final TaskContextListener taskProgressListener = new EdtTaskContextListener() {
+    private int icon = 0;
+    private final Icon[] icons = new Icon[]{Icons.getInstance().getNetworkStatusOnline(), Icons.getInstance().getNetworkStatusAway(), Icons.getInstance().getNetworkStatusOffline()};
+
+    @Override
+    protected void taskChangedInEdt(TaskContext context) {
+      if (context != taskContext) {
+        return;
+      }
+      loadingProgressBar.setIndeterminate(context.isIndeterminate());
+      loadingProgressBar.setMaximum(context.getMax());
+      loadingProgressBar.setValue(context.getCurrentProgress());
+      loadingProgressBar.setString(String.format("%s [%d of %d]", context.getName(), context.getCurrentProgress(), context.getMax()));
+      loadingIconLabel.setIcon(icons[++icon % icons.length]);
+      updateStatusText();
+    }
+  };
+
+  private final LocalFolderWatcher.Listener folderWatchListener = new LocalFolderWatcher.Listener() {
+    @Override
+    public void folderChanged(final FileObject folder, final ListingSnapshot changedFiles, final Set<String> removedNames) {
+      SwingUtils.runInEdt(new Runnable() {
+        @Override
+        public void run() {
+          if (folder.equals(displayedLocation)) {
+            applyFolderChanges(changedFiles, removedNames);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void folderInvalidated(FileObject folder) {
+      revalidateListing(folder, ListingCache.key(folder));
+    }
+  };
+
+  private final LazyAttributeLoader.Listener lazyAttributesListener = new LazyAttributeLoader.Listener() {
+    @Override
+    public void attributesLoaded(FileObject folder, int[] rows, ListingSnapshot values) {
+      if (!folder.equals(displayedLocation)) {
+        return;
+      }
+      //rows should not jump while user is looking at them, table is sorted again when user changes sorting
+      sorter.setSortsOnUpdates(false);
+      try {
+        vfsTableModel.putAttributes(rows, values);
+      } finally {
+        sorter.setSortsOnUpdates(true);
+      }
+    }
+  };
+
+  private final TaskContextListener folderSizeProgressListener = new EdtTaskContextListener() {
+    @Override
+    protected void taskChangedInEdt(TaskContext context) {
+      if (context == folderSizeTaskContext) {
+        updateStatusText();
+      }
+    }
+  };
+
+  private final FolderPoller.Task folderPollTask = new FolderPoller.Task() {
+    @Override
+    public boolean poll(FileObject folder) throws Exception {
+      return pollFolder(folder);
+    }
+  };
 
   public VfsBrowser() {
     this(new BaseConfiguration());
@@ -113,21 +229,77 @@ public class VfsBrowser extends JPanel {
   public VfsBrowser(Configuration configuration, final String initialPath) {
     super();
     this.configuration = new DataConfiguration(configuration);
+    VFSUtils.initIoScheduler(configuration);
+    listingCache = ListingCache.fromConfiguration(configuration);
+    linkChecker = LinkChecker.fromConfiguration(configuration);
+    localFolderLister = LocalFolderLister.fromConfiguration(configuration);
+    localFolderWatcher = LocalFolderWatcher.fromConfiguration(configuration, localFolderLister);
+    folderPoller = FolderPoller.fromConfiguration(configuration);
+    lazyAttributeLoader = LazyAttributeLoader.fromConfiguration(configuration, localFolderLister);
+    navigationHistory = NavigationHistory.fromConfiguration(configuration);
+    recursiveSearch = RecursiveSearch.fromConfiguration(configuration);
+    folderSizeCalculator = FolderSizeCalculator.fromConfiguration(configuration);
+    VFSUtils.initConnectionPool(configuration);
+    VFSUtils.initFilesCache(configuration);
+    favoritesPrewarmer = FavoritesPrewarmer.fromConfiguration(configuration);
     initGui(initialPath);
     VFSUtils.loadAuthStore();
+    prewarmFavorites();
+  }
+
+  /**
+   * Connects to remote user favorites in background if {@link FavoritesPrewarmer#CONFIG_ENABLED} is set. Content
+   * of favorite folders is listed into listing cache if {@link FavoritesPrewarmer#CONFIG_LIST} is set.
+   */
+  private void prewarmFavorites() {
+    favoritesPrewarmer.start(favoritesUserListModel.getList(), new FavoritesPrewarmer.Listener() {
+      @Override
+      public void resolved(Favorite favorite, FileObject fileObject) {
+        if (!favoritesPrewarmer.isListContent()) {
+          return;
+        }
+        String cacheKey = ListingCache.key(fileObject);
+        try {
+          if (fileObject.getType().hasChildren() && listingCache.get(cacheKey) == null) {
+            listingCache.put(cacheKey, listFolder(fileObject));
+          }
+        } catch (FileSystemException e) {
+          LOGGER.info("Can't list favorite {}: {}", fileObject.getName().getFriendlyURI(), e.getMessage());
+        }
+      }
+    });
   }
 
   public void goToUrl(String url) {
     LOGGER.info("Going to URL: " + url);
+    //navigation starts before URL is resolved, so resolving which finishes after newer navigation is dropped
+    NavigationToken token = startNavigation();
     try {
+      FileObject prewarmed = favoritesPrewarmer.getResolved(url);
+      if (prewarmed != null) {
+        //connection of prewarmed location could be closed in meantime
+        if (goToUrl(prewarmed, false, false, token)) {
+          return;
+        }
+        LOGGER.info("Prewarmed location {} can't be used, resolving it again", prewarmed.getName().getFriendlyURI());
+        favoritesPrewarmer.remove(url);
+      }
       FileObject resolveFile = VFSUtils.resolveFileObject(url);
+      if (!token.isCurrent()) {
+        LOGGER.info("Dropping resolved URL {}, navigation was superseded", url);
+        return;
+      }
       String type = "?";
       if (resolveFile != null) {
         type = resolveFile.getType().toString();
       }
       LOGGER.info("URL: " + url + " is resolved " + type);
-      goToUrl(resolveFile);
+      goToUrl(resolveFile, false, true, token);
     } catch (FileSystemException e) {
+      if (!token.isCurrent()) {
+        LOGGER.info("Navigation to {} was cancelled: {}", url, e.getMessage());
+        return;
+      }
       LOGGER.error("Can't go to URL " + url, e);
       final String message = ExceptionsUtils.getRootCause(e).getClass().getName() + ": " + ExceptionsUtils.getRootCause(e).getLocalizedMessage();
 
@@ -139,76 +311,113 @@ public class VfsBrowser extends JPanel {
         }
       };
       SwingUtils.runInEdt(runnable);
+    } finally {
+      token.finish();
     }
   }
 
   public void goToUrl(final FileObject fileObject) {
+    goToUrl(fileObject, false);
+  }
 
+  /**
+   * Shows content of folder.
+   *
+   * @param fileObject  folder to show
+   * @param bypassCache if true, folder is listed again and links are checked again even if cached results are available
+   */
+  private void goToUrl(final FileObject fileObject, boolean bypassCache) {
+    goToUrl(fileObject, bypassCache, true);
+  }
+
+  /**
+   * @param showError if false, error is not shown to user
+   * @return false if folder could not be shown, true if it was shown or navigation was superseded
+   */
+  private boolean goToUrl(final FileObject fileObject, boolean bypassCache, boolean showError) {
+    NavigationToken token = startNavigation();
+    try {
+      return goToUrl(fileObject, bypassCache, showError, token);
+    } finally {
+      token.finish();
+    }
+  }
+
+  /**
+   * @param token navigation started by caller, caller finishes it
+   */
+  private boolean goToUrl(final FileObject fileObject, boolean bypassCache, boolean showError,
+                          final NavigationToken token) {
+    if (!token.isCurrent()) {
+      return true;
+    }
     if (taskContext != null) {
       taskContext.setStop(true);
     }
+    if (streamingTableUpdater != null) {
+      streamingTableUpdater.cancel();
+    }
 
     try {
+      final String cacheKey = ListingCache.key(fileObject);
+      CachedListing cachedListing = bypassCache ? null : listingCache.get(cacheKey);
+      if (cachedListing != null) {
+        showCachedListing(fileObject, cacheKey, cachedListing, token);
+        return true;
+      }
+      if (localFolderLister.canList(fileObject)) {
+        if (isStreamingListing()) {
+          streamLocalListing(fileObject, cacheKey, token);
+          return true;
+        }
+        ListingSnapshot snapshot = listLocalFolder(fileObject);
+        if (!token.isCurrent()) {
+          LOGGER.info("Dropping listing of {}, navigation was superseded", fileObject.getName().getFriendlyURI());
+          return true;
+        }
+        LOGGER.info("Have {} files in {}", snapshot.size(), fileObject.getName().getFriendlyURI());
+        this.currentLocation = fileObject;
+        listingCache.put(cacheKey, snapshot);
+        showListing(fileObject, snapshot, token);
+        return true;
+      }
       final FileObject[] files = VFSUtils.getFiles(fileObject);
+      if (!token.isCurrent()) {
+        LOGGER.info("Dropping listing of {}, navigation was superseded", fileObject.getName().getFriendlyURI());
+        return true;
+      }
       LOGGER.info("Have {} files in {}", files.length, fileObject.getName().getFriendlyURI());
       this.currentLocation = fileObject;
 
       taskContext = new TaskContext(Messages.getMessage("browser.checkingSFtpLinksTask"), files.length);
       taskContext.setIndeterminate(false);
-      SwingWorker<Void, Void> refreshWorker = new SwingWorker<Void, Void>() {
-        int icon = 0;
-        Icon[] icons = new Icon[]{Icons.getInstance().getNetworkStatusOnline(), Icons.getInstance().getNetworkStatusAway(), Icons.getInstance().getNetworkStatusOffline()};
-
-        @Override
-        protected void process(List<Void> chunks) {
-          loadingProgressBar.setIndeterminate(taskContext.isIndeterminate());
-          loadingProgressBar.setMaximum(taskContext.getMax());
-          loadingProgressBar.setValue(taskContext.getCurrentProgress());
-          loadingProgressBar.setString(String.format("%s [%d of %d]", taskContext.getName(), taskContext.getCurrentProgress(), taskContext.getMax()));
-          loadingIconLabel.setIcon(icons[++icon % icons.length]);
-        }
-
-        @Override
-        protected Void doInBackground() throws Exception {
-          try {
-            while (!taskContext.isStop()) {
-              publish();
-              Thread.sleep(300);
-            }
-          } catch (InterruptedException ignore) {
-            //ignore
-          }
-          return null;
-        }
-      };
-      new Thread(refreshWorker).start();
+      taskContext.addListener(taskProgressListener);
 
+      if (isStreamingListing()) {
+        streamListing(fileObject, cacheKey, files, token, bypassCache);
+        return true;
+      }
       if (!skipCheckingLinksButton.isSelected()) {
-        VFSUtils.checkForSftpLinks(files, taskContext);
+        linkChecker.check(files, 0, files.length, taskContext, null, !bypassCache);
       }
+      boolean linksChecked = !taskContext.isStop();
       taskContext.setStop(true);
 
-      final FileObject[] fileObjectsWithParent = addParentToFiles(files);
-      Runnable r = new
-
-          Runnable() {
-
-            @Override
-            public void run() {
-              vfsTableModel.setContent(fileObjectsWithParent);
-              try {
-                pathField.setText(fileObject.getURL().toString());
-              } catch (FileSystemException e) {
-                LOGGER.error("Can't get URL", e);
-              }
-              if (tableFiles.getRowCount() > 0) {
-                tableFiles.getSelectionModel().setSelectionInterval(0, 0);
-              }
-              updateStatusText();
-            }
-          };
-      SwingUtils.runInEdt(r);
+      final ListingSnapshot snapshot = ListingSnapshot.create(addParentToFiles(files)).sortedByName();
+      if (linksChecked) {
+        listingCache.put(cacheKey, snapshot);
+      }
+      showListing(fileObject, snapshot, token);
+      return true;
     } catch (Exception e) {
+      if (!token.isCurrent()) {
+        LOGGER.info("Navigation to {} was cancelled: {}", fileObject.getName().getFriendlyURI(), e.getMessage());
+        return true;
+      }
+      if (!showError) {
+        LOGGER.info("Can't go to URL for {}: {}", fileObject, e.getMessage());
+        return false;
+      }
       LOGGER.error("Can't go to URL for " + fileObject, e);
       final String message = ExceptionsUtils.getRootCause(e).getClass().getName() + ": " + ExceptionsUtils.getRootCause(e).getLocalizedMessage();
 
@@ -220,9 +429,480 @@ public class VfsBrowser extends JPanel {
         }
       };
       SwingUtils.runInEdt(runnable);
+      return false;
+    }
+  }
+
+  private void showListing(final FileObject fileObject, final ListingSnapshot snapshot, final NavigationToken token) {
+    Runnable r = new
+
+        Runnable() {
+
+          @Override
+          public void run() {
+            if (!token.isCurrent()) {
+              return;
+            }
+            setDisplayedLocation(fileObject);
+            vfsTableModel.setContent(snapshot);
+            try {
+              pathField.setText(fileObject.getURL().toString());
+            } catch (FileSystemException e) {
+              LOGGER.error("Can't get URL", e);
+            }
+            if (tableFiles.getRowCount() > 0) {
+              tableFiles.getSelectionModel().setSelectionInterval(0, 0);
+            }
+            updateStatusText();
+            calculateFolderSizes();
+          }
+        };
+    SwingUtils.runInEdt(r);
+  }
+
+  /**
+   * Lists local folder without creating file objects for entries, links are detected while listing.
+   */
+  private ListingSnapshot listLocalFolder(FileObject fileObject) throws FileSystemException {
+    ListingSnapshot parent = ListingSnapshot.create(addParentToFiles(fileObject, new FileObject[0]));
+    return parent.append(localFolderLister.list(fileObject)).sortedByName();
+  }
+
+  /**
+   * Starts new navigation, previous navigation is cancelled. If it is still running, its thread is interrupted
+   * to abort blocking I/O.
+   */
+  private NavigationToken startNavigation() {
+    NavigationToken token = new NavigationToken(navigationGeneration.incrementAndGet());
+    NavigationToken previous = currentNavigation.getAndSet(token);
+    if (previous != null) {
+      previous.cancel();
+    }
+    return token;
+  }
+
+  /**
+   * Shows content of local folder while directory is read. Entries are added to table in batches as soon as their
+   * attributes are read (links are detected from attributes), so first rows are visible before whole folder is read.
+   */
+  private void streamLocalListing(final FileObject fileObject, String cacheKey, final NavigationToken token)
+      throws FileSystemException {
+    this.currentLocation = fileObject;
+    final StreamingTableUpdater updater = startStreaming(fileObject, token);
+    ListingSnapshot listing;
+    try {
+      listing = localFolderLister.list(fileObject, new LocalFolderLister.Listener() {
+        @Override
+        public void listed(ListingSnapshot entries) {
+          updater.add(entries);
+        }
+      });
+    } catch (FileSystemException e) {
+      updater.cancel();
+      throw e;
+    }
+    if (!token.isCurrent()) {
+      LOGGER.info("Dropping listing of {}, navigation was superseded", fileObject.getName().getFriendlyURI());
+      updater.cancel();
+      return;
+    }
+    LOGGER.info("Have {} files in {}", listing.size(), fileObject.getName().getFriendlyURI());
+    ListingSnapshot parent = ListingSnapshot.create(addParentToFiles(fileObject, new FileObject[0]));
+    listingCache.put(cacheKey, parent.append(listing).sortedByName());
+    finishStreaming(updater, fileObject);
+  }
+
+  /**
+   * Shows folder content while it is still processed. All rows are added to table as soon as listing is read,
+   * links are checked in background and detected links replace rows as soon as they are found, so user can browse
+   * and filter entries while checking continues.
+   * <p/>
+   * Remote listing itself is not streamed: {@link VFSUtils#getFiles(FileObject)} returns only when provider has read
+   * whole folder (VFS and JSch have no API for partial listing), so first row is not shown sooner than full listing.
+   * Local folders are streamed by {@link #streamLocalListing(FileObject, String, NavigationToken)}.
+   *
+   * @param bypassCache if true, cached results of link checking are not used
+   */
+  private void streamListing(final FileObject fileObject, String cacheKey, FileObject[] files, final NavigationToken token,
+                             boolean bypassCache) {
+    final TaskContext context = taskContext;
+    final StreamingTableUpdater updater = startStreaming(fileObject, token);
+    updater.add(ListingSnapshot.create(files).sortedByName());
+    if (!skipCheckingLinksButton.isSelected() && !updater.isCancelled()) {
+      linkChecker.check(files, 0, files.length, context, new LinkChecker.LinkListener() {
+        @Override
+        public void linkDetected(FileObject file, FileObject link) {
+          //attributes of link are read in link check worker, EDT only swaps row
+          updater.replace(file, ListingSnapshot.create(link));
+        }
+      }, !bypassCache);
+    }
+    if (!updater.isCancelled() && !context.isStop()) {
+      listingCache.put(cacheKey, ListingSnapshot.create(addParentToFiles(fileObject, files)).sortedByName());
+    }
+    context.setStop(true);
+    finishStreaming(updater, fileObject);
+  }
+
+  /**
+   * Shows empty folder (only parent row) and starts adding streamed rows to table.
+   */
+  private StreamingTableUpdater startStreaming(final FileObject fileObject, final NavigationToken token) {
+    final ListingSnapshot parent = ListingSnapshot.create(addParentToFiles(fileObject, new FileObject[0]));
+    final StreamingTableUpdater updater = new StreamingTableUpdater(vfsTableModel, new Runnable() {
+      @Override
+      public void run() {
+        if (tableFiles.getSelectedRow() < 0 && tableFiles.getRowCount() > 0) {
+          tableFiles.getSelectionModel().setSelectionInterval(0, 0);
+        }
+        showTable();
+      }
+    });
+    streamingTableUpdater = updater;
+    SwingUtils.runInEdt(new Runnable() {
+      @Override
+      public void run() {
+        if (updater.isCancelled() || !token.isCurrent()) {
+          return;
+        }
+        setDisplayedLocation(fileObject);
+        vfsTableModel.setContent(parent);
+        try {
+          pathField.setText(fileObject.getURL().toString());
+        } catch (FileSystemException e) {
+          LOGGER.error("Can't get URL", e);
+        }
+        updater.start();
+      }
+    });
+    return updater;
+  }
+
+  private void finishStreaming(final StreamingTableUpdater updater, final FileObject fileObject) {
+    updater.finish(new Runnable() {
+      @Override
+      public void run() {
+        if (tableFiles.getSelectedRow() < 0 && tableFiles.getRowCount() > 0) {
+          tableFiles.getSelectionModel().setSelectionInterval(0, 0);
+        }
+        updateStatusText();
+        if (!updater.isCancelled() && fileObject.equals(displayedLocation)) {
+          calculateFolderSizes();
+        }
+      }
+    });
+  }
+
+  /**
+   * Shows cached listing immediately. Stale listing is revalidated in background.
+   */
+  private void showCachedListing(final FileObject fileObject, String cacheKey, CachedListing cachedListing, final NavigationToken token) {
+    LOGGER.info("Using cached listing of {}", fileObject.getName().getFriendlyURI());
+    this.currentLocation = fileObject;
+    final ListingSnapshot snapshot = cachedListing.getSnapshot();
+    SwingUtils.runInEdt(new Runnable() {
+      @Override
+      public void run() {
+        if (!token.isCurrent()) {
+          return;
+        }
+        setDisplayedLocation(fileObject);
+        vfsTableModel.setContent(snapshot);
+        try {
+          pathField.setText(fileObject.getURL().toString());
+        } catch (FileSystemException e) {
+          LOGGER.error("Can't get URL", e);
+        }
+        if (tableFiles.getRowCount() > 0) {
+          tableFiles.getSelectionModel().setSelectionInterval(0, 0);
+        }
+        updateStatusText();
+        calculateFolderSizes();
+      }
+    });
+    if (listingCache.isStale(cachedListing)) {
+      revalidateListing(fileObject, cacheKey);
+    }
+  }
+
+  private void revalidateListing(final FileObject fileObject, final String cacheKey) {
+    if (!listingCache.startRevalidation(cacheKey)) {
+      return;
+    }
+    LOGGER.debug("Revalidating listing of {}", cacheKey);
+    VFSUtils.getIoScheduler().submit(fileObject, IoScheduler.Priority.PREFETCH, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          fileObject.refresh();
+          final ListingSnapshot snapshot = listFolder(fileObject);
+          listingCache.put(cacheKey, snapshot);
+          SwingUtils.runInEdt(new Runnable() {
+            @Override
+            public void run() {
+              if (currentLocation != null && cacheKey.equals(ListingCache.key(currentLocation))) {
+                applyListing(snapshot);
+              }
+            }
+          });
+        } catch (FileSystemException e) {
+          LOGGER.warn("Can't revalidate listing of " + cacheKey, e);
+          listingCache.invalidate(cacheKey);
+        } finally {
+          listingCache.finishRevalidation(cacheKey);
+        }
+      }
+    });
+  }
+
+  /**
+   * Lists folder with links checked, parent is included.
+   */
+  private ListingSnapshot listFolder(FileObject fileObject) throws FileSystemException {
+    if (localFolderLister.canList(fileObject)) {
+      return listLocalFolder(fileObject);
+    }
+    FileObject[] files = VFSUtils.getFiles(fileObject);
+    TaskContext context = new TaskContext(Messages.getMessage("browser.checkingSFtpLinksTask"), files.length);
+    linkChecker.check(files, 0, files.length, context, null);
+    return ListingSnapshot.create(addParentToFiles(fileObject, files)).sortedByName();
+  }
+
+  /**
+   * Shows new listing of shown folder. Only changed rows are updated in table. Must be called in EDT.
+   */
+  private void applyListing(ListingSnapshot snapshot) {
+    ListingDiff diff = ListingDiff.compute(vfsTableModel.getSnapshot(), snapshot);
+    if (!diff.isEmpty()) {
+      applyFolderChanges(diff.getChangedRows(), diff.getRemovedNames());
+    }
+  }
+
+  /**
+   * Lists polled remote folder and applies changes. Folder is not polled while it is loaded. Called from I/O thread,
+   * shown listing is captured in EDT.
+   */
+  private boolean pollFolder(final FileObject folder) throws Exception {
+    final AtomicReference<ListingSnapshot> shownListing = new AtomicReference<ListingSnapshot>();
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        TaskContext context = taskContext;
+        StreamingTableUpdater updater = streamingTableUpdater;
+        boolean loading = context != null && !context.isStop() || updater != null && !updater.isFinished();
+        if (!loading && folder.equals(displayedLocation)) {
+          shownListing.set(vfsTableModel.getSnapshot());
+        }
+      }
+    });
+    final ListingSnapshot shown = shownListing.get();
+    if (shown == null) {
+      return false;
+    }
+    folder.refresh();
+    final ListingSnapshot snapshot = listFolder(folder);
+    final ListingDiff diff = ListingDiff.compute(shown, snapshot);
+    if (diff.isEmpty()) {
+      return false;
+    }
+    LOGGER.debug("{} files changed and {} removed in {}", new Object[]{diff.getChangedRows().size(), diff.getRemovedNames().size(), folder.getName().getFriendlyURI()});
+    SwingUtils.runInEdt(new Runnable() {
+      @Override
+      public void run() {
+        if (!folder.equals(displayedLocation)) {
+          return;
+        }
+        if (vfsTableModel.getSnapshot() == shown) {
+          applyFolderChanges(diff.getChangedRows(), diff.getRemovedNames());
+        } else {
+          applyListing(snapshot);
+        }
+      }
+    });
+    return true;
+  }
+
+  private Set<String> getSelectedNames() {
+    Set<String> selectedNames = new HashSet<String>();
+    for (int row : getSelectedModelRows()) {
+      selectedNames.add(vfsTableModel.getSnapshot().getName(row));
+    }
+    return selectedNames;
+  }
+
+  /**
+   * Selects files of shown folder with given names and scrolls to first of them. Must be called in EDT.
+   *
+   * @param names base names of selected files
+   */
+  public void selectFiles(Set<String> names) {
+    tableFiles.clearSelection();
+    selectByNames(names);
+    int row = tableFiles.getSelectedRow();
+    if (row >= 0) {
+      tableFiles.scrollRectToVisible(tableFiles.getCellRect(row, 0, true));
+    }
+  }
+
+  private void selectByNames(Set<String> names) {
+    ListSelectionModel selectionModel = tableFiles.getSelectionModel();
+    ListingSnapshot snapshot = vfsTableModel.getSnapshot();
+    for (int row = 0; row < tableFiles.getRowCount(); row++) {
+      if (names.contains(snapshot.getName(tableFiles.convertRowIndexToModel(row)))) {
+        selectionModel.addSelectionInterval(row, row);
+      }
+    }
+  }
+
+  /**
+   * Adds currently shown location to back history if other location is going to be shown and starts watching
+   * changes of new location. Must be called in EDT before content of new location is set.
+   */
+  private void setDisplayedLocation(FileObject newLocation) {
+    HistoryEntry current = captureHistoryEntry();
+    if (current != null && !ListingCache.key(current.getLocation()).equals(ListingCache.key(newLocation))) {
+      navigationHistory.visit(current);
+      lazyAttributeLoader.cancel();
+    }
+    displayedLocation = newLocation;
+    cancelFolderSizes();
+    updateHistoryActions();
+    localFolderWatcher.watch(newLocation, folderWatchListener);
+    folderPoller.poll(newLocation, folderPollTask);
+  }
+
+  /**
+   * Applies changes of shown folder to table without losing selection and scroll position. Must be called in EDT.
+   */
+  private void applyFolderChanges(ListingSnapshot changedFiles, Set<String> removedNames) {
+    Set<String> selectedNames = getSelectedNames();
+    int scrollPosition = tableScrollPane.getVerticalScrollBar().getValue();
+    boolean rowsUpdated = vfsTableModel.update(changedFiles, removedNames);
+    if (!rowsUpdated) {
+      selectByNames(selectedNames);
+      tableScrollPane.getVerticalScrollBar().setValue(scrollPosition);
+    }
+    listingCache.putUnsorted(ListingCache.key(displayedLocation), vfsTableModel.getSnapshot());
+    if (!rowsUpdated) {
+      //all folder sizes were dropped with content, sizes of unchanged folders are taken from cache
+      cancelFolderSizes();
+      calculateFolderSizes();
+    } else if (folderSizeCalculator.isEnabled()) {
+      startFolderSizeCalculation(changedFiles);
+    }
+  }
+
+  /**
+   * Starts calculating sizes of subfolders of shown folder if it is enabled. Must be called in EDT after content
+   * of folder is shown.
+   */
+  private void calculateFolderSizes() {
+    if (folderSizeCalculator.isEnabled() && displayedLocation != null) {
+      startFolderSizeCalculation(vfsTableModel.getSnapshotWithAttributes());
+    }
+  }
+
+  private void startFolderSizeCalculation(ListingSnapshot listing) {
+    final FileObject folder = displayedLocation;
+    TaskContext context = folderSizeCalculator.calculate(listing, new FolderSizeCalculator.Listener() {
+      @Override
+      public void sizeCalculated(final int row, final String name, final FileSize size) {
+        SwingUtils.runInEdt(new Runnable() {
+          @Override
+          public void run() {
+            if (!folder.equals(displayedLocation)) {
+              return;
+            }
+            //rows should not jump while sizes are growing
+            sorter.setSortsOnUpdates(false);
+            try {
+              vfsTableModel.putFolderSize(row, name, size);
+            } finally {
+              sorter.setSortsOnUpdates(true);
+            }
+          }
+        });
+      }
+    });
+    if (!context.isStop()) {
+      context.addListener(folderSizeProgressListener);
+      folderSizeTaskContext = context;
+    }
+    updateStatusText();
+  }
+
+  /**
+   * Cancels calculation of folder sizes. Must be called in EDT.
+   */
+  private void cancelFolderSizes() {
+    folderSizeCalculator.cancel();
+    folderSizeTaskContext = null;
+  }
+
+  private HistoryEntry captureHistoryEntry() {
+    if (displayedLocation == null) {
+      return null;
+    }
+    return new HistoryEntry(displayedLocation, vfsTableModel.getSnapshot(),
+        tableScrollPane.getVerticalScrollBar().getValue(), getSelectedNames());
+  }
+
+  /**
+   * Shows location from history with listing, selection and scroll position it had. Listing is revalidated
+   * in background if {@link #CONFIG_HISTORY_REVALIDATE} is enabled. Must be called in EDT.
+   *
+   * @param back true to go back, false to go forward
+   */
+  private void goToHistoryEntry(boolean back) {
+    HistoryEntry current = captureHistoryEntry();
+    HistoryEntry entry = back ? navigationHistory.back(current) : navigationHistory.forward(current);
+    updateHistoryActions();
+    if (entry == null) {
+      return;
+    }
+    FileObject location = entry.getLocation();
+    LOGGER.info("Going {} to {}", back ? "back" : "forward", location.getName().getFriendlyURI());
+    currentLocation = location;
+    displayedLocation = location;
+    localFolderWatcher.watch(location, folderWatchListener);
+    folderPoller.poll(location, folderPollTask);
+    vfsTableModel.setContent(entry.getSnapshot());
+    cancelFolderSizes();
+    calculateFolderSizes();
+    try {
+      pathField.setText(location.getURL().toString());
+    } catch (FileSystemException e) {
+      LOGGER.error("Can't get URL", e);
+    }
+    selectByNames(entry.getSelectedNames());
+    if (tableFiles.getSelectedRow() < 0 && tableFiles.getRowCount() > 0) {
+      tableFiles.getSelectionModel().setSelectionInterval(0, 0);
+    }
+    final int scrollPosition = entry.getScrollPosition();
+    //table is shown (and scrolled to top) after action, scroll position is restored later
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (displayedLocation == currentLocation) {
+          tableScrollPane.getVerticalScrollBar().setValue(scrollPosition);
+        }
+      }
+    });
+    updateStatusText();
+    if (configuration.getBoolean(CONFIG_HISTORY_REVALIDATE, true)) {
+      revalidateListing(location, ListingCache.key(location));
     }
   }
 
+  private void updateHistoryActions() {
+    goBackAction.setEnabled(navigationHistory.canGoBack());
+    goForwardAction.setEnabled(navigationHistory.canGoForward());
+  }
+
+  private boolean isStreamingListing() {
+    return configuration.getBoolean(CONFIG_STREAMING_LISTING, true);
+  }
+
   /**
    * Caller responsible for ensuring called from EDT.
    * We purposefully do not update UI other than indirectly reflecting
@@ -230,17 +910,20 @@ public class VfsBrowser extends JPanel {
    * Current use case is that we are finished with the browser window.
    */
   private void loadAndSelSingleFile(FileObject fileObject)  throws FileSystemException {
-    vfsTableModel.setContent(new FileObject[]{
+    vfsTableModel.setContent(ListingSnapshot.create(
         new ParentFileObject(fileObject.getParent()),
-        fileObject,
-    });
+        fileObject));
     tableFiles.getSelectionModel().setSelectionInterval(1, 1);
   }
 
   private FileObject[] addParentToFiles(FileObject[] files) {
+    return addParentToFiles(currentLocation, files);
+  }
+
+  private FileObject[] addParentToFiles(FileObject location, FileObject[] files) {
     FileObject[] newFiles = new FileObject[files.length + 1];
     try {
-      FileObject parent = currentLocation.getParent();
+      FileObject parent = location.getParent();
       if (parent != null) {
         newFiles[0] = new ParentFileObject(parent);
         System.arraycopy(files, 0, newFiles, 1, files.length);
@@ -291,6 +974,11 @@ public class VfsBrowser extends JPanel {
         goToUrl(pathField.getText().trim());
       }
 
+      @Override
+      protected String getLane() {
+        return IoScheduler.lane(pathField.getText().trim());
+      }
+
       @Override
       protected boolean canGoUrl() {
         return true;
@@ -321,10 +1009,16 @@ public class VfsBrowser extends JPanel {
     BaseNavigateActionRefresh refreshAction = new BaseNavigateActionRefresh(this);
     JButton refreshButton = new JButton(refreshAction);
 
+    goBackAction = new NavigateHistoryAction(true);
+    goForwardAction = new NavigateHistoryAction(false);
+    updateHistoryActions();
+
     JToolBar upperPanel = new JToolBar(Messages.getMessage("nav.ToolBarName"));
     upperPanel.setRollover(true);
     upperPanel.add(pathLabel);
     upperPanel.add(pathField, "growx");
+    upperPanel.add(new JButton(goBackAction));
+    upperPanel.add(new JButton(goForwardAction));
     upperPanel.add(goUpButton);
     upperPanel.add(refreshButton);
 
@@ -333,9 +1027,22 @@ public class VfsBrowser extends JPanel {
     addCurrentLocationToFavoriteButton.setText("");
     upperPanel.add(addCurrentLocationToFavoriteButton);
 
+    SearchAction searchAction = new SearchAction(this, recursiveSearch);
+    JButton searchButton = new JButton(searchAction);
+    searchButton.setText("");
+    upperPanel.add(searchButton);
+
     previewComponent = new PreviewComponent();
 
-    vfsTableModel = new VfsTableModel();
+    vfsTableModel = new VfsTableModel(configuration.getInt(LazyAttributeLoader.CONFIG_MAX_RESIDENT, LazyAttributeLoader.DEFAULT_MAX_RESIDENT));
+    vfsTableModel.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        if (e.getLastRow() == Integer.MAX_VALUE) {
+          scheduleAttributesRequest();
+        }
+      }
+    });
 
     tableFiles = new JTable(vfsTableModel);
     tableFiles.setFillsViewportHeight(true);
@@ -346,23 +1053,22 @@ public class VfsBrowser extends JPanel {
     tableFiles.getColumnModel().getColumn(3).setMinWidth(120);
 
 
-    sorter = new TableRowSorter<VfsTableModel>(vfsTableModel);
-    final FileNameWithTypeComparator fileNameWithTypeComparator = new FileNameWithTypeComparator();
+    sorter = ListingRowSorter.fromConfiguration(vfsTableModel, configuration);
+    fileNameIndexer = FileNameIndexer.fromConfiguration(vfsTableModel, configuration);
+    sorter.setNameIndexer(fileNameIndexer);
     sorter.addRowSorterListener(new RowSorterListener() {
       @Override
       public void sorterChanged(RowSorterEvent e) {
-        RowSorterEvent.Type type = e.getType();
-        if (type.equals(RowSorterEvent.Type.SORT_ORDER_CHANGED)) {
-          List<? extends RowSorter.SortKey> sortKeys = e.getSource().getSortKeys();
-          for (RowSorter.SortKey sortKey : sortKeys) {
-            if (sortKey.getColumn() == VfsTableModel.COLUMN_NAME) {
-              fileNameWithTypeComparator.setSortOrder(sortKey.getSortOrder());
-            }
-          }
+        scheduleAttributesRequest();
+        //sort keys are set before status label is created
+        if (e.getType() == RowSorterEvent.Type.SORTED && statusLabel != null) {
+          updateStatusText();
         }
       }
     });
-    sorter.setComparator(VfsTableModel.COLUMN_NAME, fileNameWithTypeComparator);
+    //Keep rows sorted by name when they are changed in watched folder
+    sorter.setSortsOnUpdates(true);
+    sorter.setSortKeys(Arrays.asList(new RowSorter.SortKey(VfsTableModel.COLUMN_NAME, SortOrder.ASCENDING)));
 
     tableFiles.setRowSorter(sorter);
     tableFiles.setShowGrid(false);
@@ -547,6 +1253,38 @@ public class VfsBrowser extends JPanel {
       }
     });
 
+    autoRefreshCheckBox = new JCheckBox(Messages.getMessage("browser.autoRefresh.label"), folderPoller.isEnabled());
+    autoRefreshCheckBox.setToolTipText(Messages.getMessage("browser.autoRefresh.tooltip"));
+    autoRefreshCheckBox.setFont(tmpFont.deriveFont(tmpFont.getSize() * 0.9f));
+    autoRefreshCheckBox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        boolean enabled = autoRefreshCheckBox.isSelected();
+        configuration.setProperty(FolderPoller.CONFIG_ENABLED, enabled);
+        folderPoller.setEnabled(enabled);
+        if (enabled && displayedLocation != null) {
+          folderPoller.poll(displayedLocation, folderPollTask);
+        }
+      }
+    });
+
+    folderSizeCheckBox = new JCheckBox(Messages.getMessage("browser.folderSizes.label"), folderSizeCalculator.isEnabled());
+    folderSizeCheckBox.setToolTipText(Messages.getMessage("browser.folderSizes.tooltip"));
+    folderSizeCheckBox.setFont(tmpFont.deriveFont(tmpFont.getSize() * 0.9f));
+    folderSizeCheckBox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        boolean enabled = folderSizeCheckBox.isSelected();
+        configuration.setProperty(FolderSizeCalculator.CONFIG_ENABLED, enabled);
+        folderSizeCalculator.setEnabled(enabled);
+        cancelFolderSizes();
+        if (enabled) {
+          calculateFolderSizes();
+        } else {
+          vfsTableModel.clearFolderSizes();
+          updateStatusText();
+        }
+      }
+    });
+
     final String defaultFilterText = Messages.getMessage("browser.nameFilter.defaultText");
     filterField = new JTextField("", 16);
     filterField.setForeground(filterField.getDisabledTextColor());
@@ -559,9 +1297,8 @@ public class VfsBrowser extends JPanel {
       }
 
       void documentChanged() {
-        if (filterField.getText().length() == 0) {
-          updateUiFilters();
-        }
+        //filter is applied when user stops typing
+        nameFilterTimer.restart();
       }
 
       @Override
@@ -574,6 +1311,13 @@ public class VfsBrowser extends JPanel {
         documentChanged();
       }
     });
+    nameFilterTimer = new Timer(NAME_FILTER_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        updateNameFilter();
+      }
+    });
+    nameFilterTimer.setRepeats(false);
     filterField.addFocusListener(new FocusAdapter() {
       @Override
       public void focusLost(FocusEvent e) {
@@ -626,7 +1370,10 @@ public class VfsBrowser extends JPanel {
     browserActionMap.put(ACTION_SWITCH_SHOW_HIDDEN, new ClickOnJComponentAction(showHidCheckBox));
     browserActionMap.put(ACTION_REFRESH, refreshAction);
     browserActionMap.put(ACTION_ADD_CURRENT_LOCATION_TO_FAVORITES, addCurrentLocationToFavoriteAction);
+    browserActionMap.put(ACTION_SEARCH, searchAction);
     browserActionMap.put(ACTION_GO_UP, goUpAction);
+    browserActionMap.put(ACTION_GO_BACK, goBackAction);
+    browserActionMap.put(ACTION_GO_FORWARD, goForwardAction);
     browserActionMap.put(ACTION_FOCUS_ON_TABLE, new SetFocusOnAction(tableFiles));
 
     InputMap browserInputMap = this.getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
@@ -637,12 +1384,21 @@ public class VfsBrowser extends JPanel {
     browserInputMap.put(KeyStroke.getKeyStroke("control R"), ACTION_REFRESH);
     browserInputMap.put(KeyStroke.getKeyStroke("F5"), ACTION_REFRESH);
     browserInputMap.put(KeyStroke.getKeyStroke("control D"), ACTION_ADD_CURRENT_LOCATION_TO_FAVORITES);
+    browserInputMap.put(KeyStroke.getKeyStroke("control shift F"), ACTION_SEARCH);
     browserInputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, KeyEvent.ALT_DOWN_MASK), ACTION_GO_UP);
+    browserInputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, KeyEvent.ALT_DOWN_MASK), ACTION_GO_BACK);
+    browserInputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, KeyEvent.ALT_DOWN_MASK), ACTION_GO_FORWARD);
     browserInputMap.put(KeyStroke.getKeyStroke("control T"), ACTION_FOCUS_ON_TABLE);
 
     //DO layout
     // create the layer for the panel using our custom layerUI
     tableScrollPane = new JScrollPane(tableFiles);
+    tableScrollPane.getViewport().addChangeListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent e) {
+        scheduleAttributesRequest();
+      }
+    });
 
     JPanel tableScrollPaneWithFilter = new JPanel(new BorderLayout());
     tableScrollPaneWithFilter.add(tableScrollPane);
@@ -653,6 +1409,8 @@ public class VfsBrowser extends JPanel {
     filtersToolbar.add(nameFilterLabel);
     filtersToolbar.add(filterField);
     filtersToolbar.add(showHidCheckBox);
+    filtersToolbar.add(autoRefreshCheckBox);
+    filtersToolbar.add(folderSizeCheckBox);
     JSplitPane tableWithPreviewPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, true, tableScrollPaneWithFilter, previewComponent);
     tableWithPreviewPane.setOneTouchExpandable(true);
 
@@ -715,21 +1473,37 @@ public class VfsBrowser extends JPanel {
   private void updateStatusText() {
     int tableFilesRowCount = tableFiles.getRowCount() - 1;
     int modelCount = vfsTableModel.getRowCount() - 1;
-    statusLabel.setText(Messages.getMessage("browser.folderContainsXElementsShowingY", modelCount, tableFilesRowCount));
+    String statusText = Messages.getMessage("browser.folderContainsXElementsShowingY", modelCount, tableFilesRowCount);
+    TaskContext context = taskContext;
+    if (context == null || context.isStop()) {
+      context = folderSizeTaskContext;
+    }
+    if (context != null && !context.isStop() && context.getMax() > 0) {
+      statusText = Messages.getMessage("browser.statusWithTaskProgress", statusText, context.getName(), context.getCurrentProgress(), context.getMax());
+    }
+    statusLabel.setText(statusText);
   }
 
   private void updateUiFilters() {
     showHidden = showHidCheckBox.isSelected();
+    nameFilterTimer.stop();
+    sorter.setNameFilter(FileNameFilter.compile(filterField.getText()));
     sorter.setRowFilter(createFilter());
     updateStatusText();
   }
 
+  private void updateNameFilter() {
+    sorter.setNameFilter(FileNameFilter.compile(filterField.getText()));
+    updateStatusText();
+  }
+
+  /**
+   * Creates filter of hidden files, names are filtered by {@link ListingRowSorter#setNameFilter(FileNameFilter)}.
+   */
   private RowFilter<VfsTableModel, Integer> createFilter() {
-    RowFilter<VfsTableModel, Integer> regexFilter = new VfsTableModelFileNameRowFilter(filterField);
     RowFilter<VfsTableModel, Integer> hiddenFilter = new VfsTableModelHiddenFileRowFilter(showHidden);
     RowFilter<VfsTableModel, Integer> alwaysShowParent = new VfsTableModelShowParentRowFilter();
-    @SuppressWarnings("unchecked") RowFilter<VfsTableModel, Integer> filters = RowFilter.andFilter(Arrays.asList(regexFilter, hiddenFilter));
-    filters = RowFilter.orFilter(Arrays.asList(filters, alwaysShowParent));
+    @SuppressWarnings("unchecked") RowFilter<VfsTableModel, Integer> filters = RowFilter.orFilter(Arrays.asList(hiddenFilter, alwaysShowParent));
     return filters;
   }
 
@@ -781,8 +1555,8 @@ public class VfsBrowser extends JPanel {
       boolean filesSelected = false;
       boolean folderSelected = false;
 
-      for (FileObject fo : getSelectedFiles()) {
-        FileType fileType = fo.getType();
+      for (int row : getSelectedModelRows()) {
+        FileType fileType = getResolvedType(row);
         if (fileType == FileType.FILE) {
           filesSelected = true;
         } else if (fileType == FileType.FOLDER) {
@@ -797,8 +1571,8 @@ public class VfsBrowser extends JPanel {
         acceptEnabled = true;
       }
     } else {
-      FileObject selectedFileObject = getSelectedFileObject();
-      FileType type = selectedFileObject.getType();
+      int selectedRow = tableFiles.convertRowIndexToModel(tableFiles.getSelectedRow());
+      FileType type = getResolvedType(selectedRow);
       if (selectionMode == SelectionMode.FILES_ONLY && type == FileType.FILE ||
           selectionMode == SelectionMode.DIRS_ONLY && type == FileType.FOLDER) {
         acceptEnabled = true;
@@ -813,10 +1587,87 @@ public class VfsBrowser extends JPanel {
     actionApproveButton.setEnabled(acceptEnabled);
   }
 
+  /**
+   * @return type of file in model row or type of file which link points to. Type of file which attributes were
+   * not loaded yet is read from file object.
+   */
+  private FileType getResolvedType(int modelRow) throws FileSystemException {
+    FileType type = vfsTableModel.getResolvedType(modelRow);
+    if (type == null && vfsTableModel.needsAttributes(modelRow)) {
+      type = vfsTableModel.get(modelRow).getType();
+    }
+    return type;
+  }
+
+  /**
+   * Requests attributes of visible rows listed without attributes after pending table events are processed.
+   */
+  private void scheduleAttributesRequest() {
+    if (attributesRequestScheduled || !vfsTableModel.isLazy()) {
+      return;
+    }
+    attributesRequestScheduled = true;
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        attributesRequestScheduled = false;
+        requestVisibleAttributes();
+      }
+    });
+  }
+
+  /**
+   * Starts loading attributes of visible rows first, then rows below and above them (prefetch margin).
+   */
+  private void requestVisibleAttributes() {
+    int rowCount = tableFiles.getRowCount();
+    if (!vfsTableModel.isLazy() || displayedLocation == null || rowCount == 0) {
+      return;
+    }
+    Rectangle visible = tableFiles.getVisibleRect();
+    int first = tableFiles.rowAtPoint(visible.getLocation());
+    int last = tableFiles.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+    first = first < 0 ? 0 : first;
+    last = last < 0 ? rowCount - 1 : last;
+    int prefetch = lazyAttributeLoader.getPrefetch();
+    int to = Math.min(rowCount - 1, last + prefetch);
+    int from = Math.max(0, first - prefetch);
+    List<Integer> rows = new ArrayList<Integer>(to - from + 1);
+    for (int viewRow = first; viewRow <= to; viewRow++) {
+      rows.add(tableFiles.convertRowIndexToModel(viewRow));
+    }
+    for (int viewRow = first - 1; viewRow >= from; viewRow--) {
+      rows.add(tableFiles.convertRowIndexToModel(viewRow));
+    }
+    List<Integer> missingRows = new ArrayList<Integer>(rows.size());
+    for (Integer row : rows) {
+      if (vfsTableModel.needsAttributes(row)) {
+        missingRows.add(row);
+      }
+    }
+    if (missingRows.isEmpty()) {
+      return;
+    }
+    int[] modelRows = new int[missingRows.size()];
+    String[] names = new String[modelRows.length];
+    for (int i = 0; i < modelRows.length; i++) {
+      modelRows[i] = missingRows.get(i);
+      names[i] = vfsTableModel.getSnapshot().getName(modelRows[i]);
+    }
+    lazyAttributeLoader.load(displayedLocation, modelRows, names, lazyAttributesListener);
+  }
+
   public FileObject getCurrentLocation() {
     return currentLocation;
   }
 
+  /**
+   * @return id of last navigate action started in this browser, actions of other browsers do not change it
+   */
+  public AtomicLong getLastNavigateAction() {
+    return lastNavigateAction;
+  }
+
   public MutableListModel getFavoritesUserListModel() {
     return favoritesUserListModel;
   }
@@ -911,6 +1762,15 @@ public class VfsBrowser extends JPanel {
     return null;
   }
 
+  private int[] getSelectedModelRows() {
+    int[] selectedRows = tableFiles.getSelectedRows();
+    int[] modelRows = new int[selectedRows.length];
+    for (int i = 0; i < selectedRows.length; i++) {
+      modelRows[i] = tableFiles.convertRowIndexToModel(selectedRows[i]);
+    }
+    return modelRows;
+  }
+
   public FileObject[] getSelectedFiles() {
     int[] selectedRows = tableFiles.getSelectedRows();
     FileObject[] fileObjects = new FileObject[selectedRows.length];
@@ -922,26 +1782,45 @@ public class VfsBrowser extends JPanel {
 
   public void selectNextFileStarting(String string) {
     LOGGER.debug("Looking for file starting with {}", string);
+    int rowCount = tableFiles.getRowCount();
+    if (rowCount == 0) {
+      return;
+    }
     int selectedRow = tableFiles.getSelectedRow();
     selectedRow = selectedRow < 0 ? 0 : selectedRow;
-    LOGGER.debug("Starting search with row {}", selectedRow);
-    boolean fullLoop;
-    int started = selectedRow;
-    do {
-      LOGGER.debug("Checking table row {}", selectedRow);
-      int convertRowIndexToModel = tableFiles.convertRowIndexToModel(selectedRow);
-      LOGGER.debug("Table row {} is row {} from model", selectedRow, convertRowIndexToModel);
-      FileObject fileObject = vfsTableModel.get(convertRowIndexToModel);
-      LOGGER.debug("Checking {} if begins with {}", fileObject.getName().getBaseName(), string);
-      if (fileObject.getName().getBaseName().toLowerCase().startsWith(string.toLowerCase())) {
-        tableFiles.getSelectionModel().setSelectionInterval(selectedRow, selectedRow);
-        tableFiles.scrollRectToVisible(new Rectangle(tableFiles.getCellRect(selectedRow, 0, true)));
-        break;
-      }
-      selectedRow++;
-      selectedRow = selectedRow >= tableFiles.getRowCount() ? 0 : selectedRow;
-      fullLoop = selectedRow == started;
-    } while (!fullLoop);
+    int foundRow = -1;
+    FileNameIndex index = fileNameIndexer.getIndex();
+    if (index != null && index.size() == vfsTableModel.getRowCount()) {
+      //first matching row at or after selected row, otherwise first matching row
+      int firstRow = -1;
+      for (int modelRow : index.findPrefix(string)) {
+        int viewRow = tableFiles.convertRowIndexToView(modelRow);
+        if (viewRow < 0) {
+          continue;
+        }
+        if (viewRow >= selectedRow && (foundRow < 0 || viewRow < foundRow)) {
+          foundRow = viewRow;
+        }
+        if (firstRow < 0 || viewRow < firstRow) {
+          firstRow = viewRow;
+        }
+      }
+      foundRow = foundRow >= 0 ? foundRow : firstRow;
+    } else {
+      String prefix = string.toLowerCase();
+      ListingSnapshot snapshot = vfsTableModel.getSnapshot();
+      for (int i = 0; i < rowCount && foundRow < 0; i++) {
+        int row = (selectedRow + i) % rowCount;
+        String baseName = snapshot.getName(tableFiles.convertRowIndexToModel(row));
+        if (baseName.regionMatches(true, 0, prefix, 0, prefix.length())) {
+          foundRow = row;
+        }
+      }
+    }
+    if (foundRow >= 0) {
+      tableFiles.getSelectionModel().setSelectionInterval(foundRow, foundRow);
+      tableFiles.scrollRectToVisible(new Rectangle(tableFiles.getCellRect(foundRow, 0, true)));
+    }
   }
 
   private final class QuickSearchKeyAdapter extends KeyAdapter {
@@ -973,6 +1852,41 @@ public class VfsBrowser extends JPanel {
     }
   }
 
+  /**
+   * Identifies single navigation. Only results of latest navigation are shown, results of superseded
+   * navigation are dropped.
+   */
+  private final class NavigationToken {
+    private final long generation;
+    private final Thread thread;
+    private boolean finished = false;
+
+    private NavigationToken(long generation) {
+      this.generation = generation;
+      this.thread = Thread.currentThread();
+    }
+
+    public boolean isCurrent() {
+      return generation == navigationGeneration.get();
+    }
+
+    /**
+     * Interrupts thread of navigation if navigation is still running, it aborts pending I/O of SFTP channel.
+     */
+    public synchronized void cancel() {
+      if (!finished && thread != Thread.currentThread()) {
+        LOGGER.debug("Interrupting superseded navigation {}", generation);
+        thread.interrupt();
+      }
+    }
+
+    public synchronized void finish() {
+      finished = true;
+      //clear interruption, thread is reused by executor
+      Thread.interrupted();
+    }
+  }
+
   private final class BaseNavigateActionGoUp extends BaseNavigateAction {
     private BaseNavigateActionGoUp(VfsBrowser browser) {
       super(browser);
@@ -993,8 +1907,8 @@ public class VfsBrowser extends JPanel {
     @Override
     protected boolean canGoUrl() {
       try {
-        FileObject parent = currentLocation.getParent();
-        return parent != null && VFSUtils.canGoUrl(parent);
+        //parent of listed folder is folder, type is not checked to not contact server on EDT
+        return currentLocation.getParent() != null;
       } catch (FileSystemException e) {
         LOGGER.error("Can't get parent of current location", e);
       }
@@ -1007,6 +1921,38 @@ public class VfsBrowser extends JPanel {
     }
   }
 
+  /**
+   * Goes back or forward in history. Listing is restored from snapshot kept by history without I/O, so action
+   * runs directly in EDT instead of waiting in lane of current host. Listing is revalidated in lane of target.
+   */
+  private final class NavigateHistoryAction extends AbstractAction {
+    private final boolean back;
+
+    private NavigateHistoryAction(boolean back) {
+      this.back = back;
+      putValue(SMALL_ICON, back ? Icons.getInstance().getNavigationBack() : Icons.getInstance().getNavigationForward());
+      putValue(SHORT_DESCRIPTION, Messages.getMessage(back ? "nav.back" : "nav.forward"));
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      if (back ? !navigationHistory.canGoBack() : !navigationHistory.canGoForward()) {
+        return;
+      }
+      //listing from history is shown instead of result of running navigation
+      lastNavigateAction.incrementAndGet();
+      startNavigation().finish();
+      if (taskContext != null) {
+        taskContext.setStop(true);
+      }
+      if (streamingTableUpdater != null) {
+        streamingTableUpdater.cancel();
+      }
+      goToHistoryEntry(back);
+      showTable();
+    }
+  }
+
   private final class BaseNavigateActionOpen extends BaseNavigateAction {
     private BaseNavigateActionOpen(VfsBrowser browser) {
       super(browser);
@@ -1023,12 +1969,20 @@ public class VfsBrowser extends JPanel {
       }
     }
 
+    @Override
+    protected String getLane() {
+      int selectedRow = tableFiles.getSelectedRow();
+      if (selectedRow > -1) {
+        return IoScheduler.lane(vfsTableModel.get(tableFiles.convertRowIndexToModel(selectedRow)));
+      }
+      return super.getLane();
+    }
+
     @Override
     protected boolean canGoUrl() {
       int selectedRow = tableFiles.getSelectedRow();
       if (selectedRow > -1) {
-        FileObject fileObject = vfsTableModel.get(tableFiles.convertRowIndexToModel(selectedRow));
-        return VFSUtils.canGoUrl(fileObject);
+        return VFSUtils.canGoUrl(vfsTableModel.getSnapshot(), tableFiles.convertRowIndexToModel(selectedRow));
       }
       return false;
 
@@ -1039,11 +1993,11 @@ public class VfsBrowser extends JPanel {
       int selectedRow = tableFiles.getSelectedRow();
       if (SelectionMode.FILES_ONLY.equals(selectionMode) || SelectionMode.DIRS_AND_FILES.equals(selectionMode)) {
         if (selectedRow > -1) {
-          FileObject fileObject = vfsTableModel.get(tableFiles.convertRowIndexToModel(selectedRow));
           try {
-            return FileType.FILE.equals(fileObject.getType()) || FileType.FILE_OR_FOLDER.equals(fileObject.getType());
+            FileType type = getResolvedType(tableFiles.convertRowIndexToModel(selectedRow));
+            return FileType.FILE.equals(type) || FileType.FILE_OR_FOLDER.equals(type);
           } catch (FileSystemException e) {
-            LOGGER.warn("Cant' get file type", e);
+            LOGGER.warn("Can't get type of selected file", e);
           }
         }
       }
@@ -1065,7 +2019,7 @@ public class VfsBrowser extends JPanel {
       } catch (FileSystemException e) {
         LOGGER.error("Can't refresh location", e);
       }
-      goToUrl(currentLocation);
+      goToUrl(currentLocation, true);
     }
 
     @Override
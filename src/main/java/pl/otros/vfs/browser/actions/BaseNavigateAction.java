@@ -17,14 +17,16 @@
 package pl.otros.vfs.browser.actions;
 
 import pl.otros.vfs.browser.VfsBrowser;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.VFSUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.awt.event.ActionListener;
 
 public abstract class BaseNavigateAction extends AbstractAction {
 
@@ -34,8 +36,7 @@ public abstract class BaseNavigateAction extends AbstractAction {
 			.getLogger(BaseNavigateAction.class);
 
 	public VfsBrowser browser;
-	private static Executor executor = Executors.newSingleThreadExecutor();
-	private volatile SwingWorker<Void, Void> showLoadingAfterDelayWorker;
+	private volatile Timer showLoadingAfterDelayTimer;
 	private Component focusOwner;
 
 	public BaseNavigateAction(VfsBrowser browser) {
@@ -61,12 +62,14 @@ public abstract class BaseNavigateAction extends AbstractAction {
 		if (CheckBeforeActionResult.CANT_GO.equals(checkBeforeActionResult)){
 			return;
 		}
+		final long actionId = browser.getLastNavigateAction().incrementAndGet();
+		showLoadingAfterDelay(actionId);
 
 		SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
 
 			@Override
 			protected void done() {
-				doInUiThreadAfter();
+				doInUiThreadAfter(actionId);
 			}
 
 			@Override
@@ -79,16 +82,36 @@ public abstract class BaseNavigateAction extends AbstractAction {
 				return null;
 			}
 		};
-		executor.execute(worker);
+		/*
+		 * Navigation runs in lane of target host with the highest priority, so it is not queued behind
+		 * previews, link checks or hung server of other location. Previous navigation is cancelled by browser
+		 * and its late result is dropped.
+		 */
+		VFSUtils.getIoScheduler().submit(getLane(), IoScheduler.Priority.NAVIGATION, worker);
 
 	}
 
-	protected final void doInUiThreadAfter() {
-		LOGGER.debug("ShowLoadingStringWorker is "
-				+ showLoadingAfterDelayWorker);
-		if (showLoadingAfterDelayWorker != null) {
-			LOGGER.debug("Canceling showLoadingAfterDelayWorker");
-			showLoadingAfterDelayWorker.cancel(false);
+	/**
+	 * Returns lane of I/O scheduler in which navigation runs, called in EDT before navigation is started.
+	 * Default lane is host of current location, actions which navigate to other hosts should return
+	 * lane of target.
+	 *
+	 * @return lane of host of target location
+	 */
+	protected String getLane() {
+		return IoScheduler.lane(browser.getCurrentLocation());
+	}
+
+	protected final void doInUiThreadAfter(long actionId) {
+		if (actionId != browser.getLastNavigateAction().get()) {
+			LOGGER.debug("Newer action is running, not updating UI");
+			return;
+		}
+		LOGGER.debug("ShowLoadingAfterDelayTimer is "
+				+ showLoadingAfterDelayTimer);
+		if (showLoadingAfterDelayTimer != null) {
+			LOGGER.debug("Stopping showLoadingAfterDelayTimer");
+			showLoadingAfterDelayTimer.stop();
 		}
 		updateGuiAfter();
 		LOGGER.debug("Updating UI after base action");
@@ -120,26 +143,21 @@ public abstract class BaseNavigateAction extends AbstractAction {
 		
 		focusOwner = KeyboardFocusManager.getCurrentKeyboardFocusManager()
 				.getFocusOwner();
-		showLoadingAfterDelayWorker = new SwingWorker<Void, Void>() {
+		return result;
+	}
+
+	private void showLoadingAfterDelay(final long actionId) {
+		showLoadingAfterDelayTimer = new Timer(SWITCH_TO_LOADING_TIME, new ActionListener() {
 
 			@Override
-			protected void done() {
-				boolean cancelled = isCancelled();
-				LOGGER.debug("showLoadingAfterDelayWorker is cancelled={}",
-						cancelled);
-				if (!cancelled) {
+			public void actionPerformed(ActionEvent e) {
+				if (actionId == browser.getLastNavigateAction().get()) {
 					browser.showLoading();
 				}
 			}
-
-			@Override
-			protected Void doInBackground() throws Exception {
-				Thread.sleep(SWITCH_TO_LOADING_TIME);
-				return null;
-			}
-		};
-		executor.execute(showLoadingAfterDelayWorker);
-		return result;
+		});
+		showLoadingAfterDelayTimer.setRepeats(false);
+		showLoadingAfterDelayTimer.start();
 	}
 
 	protected abstract boolean canExecuteDefaultAction();
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.actions;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.Icons;
+import pl.otros.vfs.browser.VfsBrowser;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.search.SearchResultTableModel;
+import pl.otros.vfs.browser.util.IoScheduler;
+
+import javax.swing.*;
+import java.util.Collections;
+
+/**
+ * Shows folder containing selected search result in browser and selects the result.
+ */
+public class OpenSearchResult extends BaseNavigateAction {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpenSearchResult.class);
+
+  private final JTable resultTable;
+  private final SearchResultTableModel resultTableModel;
+  private volatile FileObject openedFile;
+
+  public OpenSearchResult(VfsBrowser vfsBrowser, JTable resultTable, SearchResultTableModel resultTableModel) {
+    super(vfsBrowser, Messages.getMessage("general.openButtonText"), Icons.getInstance().getFolderOpen());
+    this.resultTable = resultTable;
+    this.resultTableModel = resultTableModel;
+  }
+
+  @Override
+  protected void performLongOperation(CheckBeforeActionResult checkBeforeActionResult) {
+    int row = resultTable.getSelectedRow();
+    if (row < 0) {
+      return;
+    }
+    FileObject file = resultTableModel.getFileObject(resultTable.convertRowIndexToModel(row));
+    try {
+      FileObject parent = file.getParent();
+      openedFile = file;
+      browser.goToUrl(parent != null ? parent : file);
+    } catch (FileSystemException e) {
+      LOGGER.error("Can't open folder of " + file.getName().getFriendlyURI(), e);
+    }
+  }
+
+  @Override
+  protected String getLane() {
+    int row = resultTable.getSelectedRow();
+    return row >= 0
+        ? IoScheduler.lane(resultTableModel.getFileObject(resultTable.convertRowIndexToModel(row)))
+        : super.getLane();
+  }
+
+  @Override
+  protected void updateGuiAfter() {
+    FileObject file = openedFile;
+    openedFile = null;
+    if (file != null) {
+      browser.selectFiles(Collections.singleton(file.getName().getBaseName()));
+    }
+  }
+
+  @Override
+  protected boolean canGoUrl() {
+    return resultTable.getSelectedRow() >= 0;
+  }
+
+  @Override
+  protected boolean canExecuteDefaultAction() {
+    return false;
+  }
+}
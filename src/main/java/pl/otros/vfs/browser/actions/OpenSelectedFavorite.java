@@ -20,6 +20,7 @@ import pl.otros.vfs.browser.Icons;
 import pl.otros.vfs.browser.VfsBrowser;
 import pl.otros.vfs.browser.favorit.Favorite;
 import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.util.IoScheduler;
 
 import javax.swing.*;
 
@@ -42,6 +43,12 @@ public class OpenSelectedFavorite extends BaseNavigateAction {
     }
   }
 
+  @Override
+  protected String getLane() {
+    Object selected = favoriteList.getSelectedValue();
+    return selected instanceof Favorite ? IoScheduler.lane(((Favorite) selected).getUrl()) : super.getLane();
+  }
+
   @Override
   protected boolean canGoUrl() {
 	  return favoriteList.getSelectedValue() != null && favoriteList.getSelectedValue() instanceof Favorite;
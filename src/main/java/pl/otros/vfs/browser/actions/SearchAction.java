@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.actions;
+
+import org.apache.commons.vfs2.FileObject;
+import pl.otros.vfs.browser.Icons;
+import pl.otros.vfs.browser.VfsBrowser;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.search.RecursiveSearch;
+import pl.otros.vfs.browser.search.SearchPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+/**
+ * Opens window with recursive search below current location of browser. Search is cancelled when window is closed.
+ */
+public class SearchAction extends AbstractAction {
+
+  private final VfsBrowser vfsBrowser;
+  private final RecursiveSearch recursiveSearch;
+
+  public SearchAction(VfsBrowser vfsBrowser, RecursiveSearch recursiveSearch) {
+    this.vfsBrowser = vfsBrowser;
+    this.recursiveSearch = recursiveSearch;
+    putValue(NAME, Messages.getMessage("search.actionName"));
+    putValue(SHORT_DESCRIPTION, Messages.getMessage("search.tooltip"));
+    putValue(SMALL_ICON, Icons.getInstance().getSearch());
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent e) {
+    FileObject currentLocation = vfsBrowser.getCurrentLocation();
+    if (currentLocation == null) {
+      return;
+    }
+    final SearchPanel searchPanel = new SearchPanel(vfsBrowser, currentLocation, recursiveSearch);
+    Window owner = SwingUtilities.getWindowAncestor(vfsBrowser);
+    JDialog dialog = new JDialog(owner, Messages.getMessage("search.title", currentLocation.getName().getFriendlyURI()));
+    dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+    dialog.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        searchPanel.cancel();
+      }
+    });
+    dialog.getContentPane().add(searchPanel);
+    dialog.setSize(800, 600);
+    dialog.setLocationRelativeTo(owner);
+    dialog.setVisible(true);
+    searchPanel.getNameField().requestFocusInWindow();
+  }
+}
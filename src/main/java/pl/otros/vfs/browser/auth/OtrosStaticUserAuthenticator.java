@@ -51,6 +51,13 @@ public class OtrosStaticUserAuthenticator implements OtrosUserAuthenticator {
     return userAuthenticationDataWrapper;
   }
 
+  /**
+   * @return credentials returned to file system
+   */
+  public UserAuthenticationData getUserAuthenticationData() {
+    return userAuthenticationData;
+  }
+
   @Override
   public boolean isPasswordSave() {
     return false;
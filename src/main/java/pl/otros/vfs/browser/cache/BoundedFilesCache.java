@@ -0,0 +1,302 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.cache.AbstractFilesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Files cache of file system manager with LRU eviction. Cache is bounded by number of entries and by estimated memory
+ * of cached file objects, least recently used file objects are dropped when any limit is exceeded. Dropped file
+ * objects are not closed and they are kept weakly: while some code (table, history, listener) still holds dropped
+ * file object, resolve returns the same object again, so there are never two file objects of one file and file
+ * system notifications reach every holder. New file object is created only after dropped one was collected.
+ * <p/>
+ * Memory of file object can't be measured, it is estimated from length of URI and fixed size of file object with
+ * attributes.
+ */
+public class BoundedFilesCache extends AbstractFilesCache {
+
+  public static final String CONFIG_MAX_ENTRIES = "filesCache.maxEntries";
+  public static final String CONFIG_MAX_BYTES = "filesCache.maxBytes";
+  public static final int DEFAULT_MAX_ENTRIES = 100000;
+  public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BoundedFilesCache.class);
+  /**
+   * Estimated size of file object, its file name and attributes without characters of URI
+   */
+  private static final int FILE_OBJECT_SIZE = 600;
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(1024, 0.75f, true);
+  /**
+   * Dropped file objects which may be still used
+   */
+  private final Map<Key, EvictedReference> evicted = new HashMap<Key, EvictedReference>();
+  private final ReferenceQueue<FileObject> collected = new ReferenceQueue<FileObject>();
+  private int maxEntries;
+  private long maxBytes;
+  private long estimatedBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  private static final class Key {
+    private final FileSystem fileSystem;
+    private final FileName name;
+
+    private Key(FileSystem fileSystem, FileName name) {
+      this.fileSystem = fileSystem;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return fileSystem == key.fileSystem && name.equals(key.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(fileSystem) + name.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    private final FileObject fileObject;
+    private final int weight;
+
+    private Entry(FileObject fileObject, int weight) {
+      this.fileObject = fileObject;
+      this.weight = weight;
+    }
+  }
+
+  private static final class EvictedReference extends WeakReference<FileObject> {
+    private final Key key;
+
+    private EvictedReference(Key key, FileObject fileObject, ReferenceQueue<FileObject> queue) {
+      super(fileObject, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * @param maxEntries maximum number of cached file objects, 0 for no limit
+   * @param maxBytes   maximum estimated memory of cached file objects in bytes, 0 for no limit
+   */
+  public BoundedFilesCache(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Changes limits of cache with keys {@link #CONFIG_MAX_ENTRIES} and {@link #CONFIG_MAX_BYTES}.
+   */
+  public void configure(Configuration configuration) {
+    setLimits(configuration.getInt(CONFIG_MAX_ENTRIES, DEFAULT_MAX_ENTRIES),
+        configuration.getLong(CONFIG_MAX_BYTES, DEFAULT_MAX_BYTES));
+  }
+
+  /**
+   * Changes limits of cache, file objects over new limits are dropped.
+   *
+   * @param maxEntries maximum number of cached file objects, 0 for no limit
+   * @param maxBytes   maximum estimated memory of cached file objects in bytes, 0 for no limit
+   */
+  public synchronized void setLimits(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  @Override
+  public synchronized void putFile(FileObject file) {
+    Key key = new Key(file.getFileSystem(), file.getName());
+    evicted.remove(key);
+    put(key, file);
+  }
+
+  @Override
+  public synchronized boolean putFileIfAbsent(FileObject file) {
+    Key key = new Key(file.getFileSystem(), file.getName());
+    if (entries.containsKey(key) || getEvicted(key) != null) {
+      return false;
+    }
+    putFile(file);
+    return true;
+  }
+
+  @Override
+  public synchronized FileObject getFile(FileSystem fileSystem, FileName name) {
+    Key key = new Key(fileSystem, name);
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      hits++;
+      return entry.fileObject;
+    }
+    FileObject fileObject = getEvicted(key);
+    if (fileObject == null) {
+      misses++;
+      return null;
+    }
+    //dropped file object is still used, it is cached again
+    hits++;
+    evicted.remove(key);
+    put(key, fileObject);
+    return fileObject;
+  }
+
+  @Override
+  public synchronized void clear(FileSystem fileSystem) {
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      if (entry.getKey().fileSystem == fileSystem) {
+        iterator.remove();
+        remove(entry.getValue());
+      }
+    }
+    Iterator<Key> evictedKeys = evicted.keySet().iterator();
+    while (evictedKeys.hasNext()) {
+      if (evictedKeys.next().fileSystem == fileSystem) {
+        evictedKeys.remove();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    entries.clear();
+    evicted.clear();
+    estimatedBytes = 0;
+  }
+
+  @Override
+  public synchronized void removeFile(FileSystem fileSystem, FileName name) {
+    Key key = new Key(fileSystem, name);
+    remove(entries.remove(key));
+    evicted.remove(key);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return number of dropped file objects which are kept weakly and were not collected yet
+   */
+  public synchronized int getEvictedSize() {
+    expungeCollected();
+    return evicted.size();
+  }
+
+  public synchronized long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of file objects dropped because limit was exceeded
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d files (~%d KB), %d hits, %d misses, %d evictions",
+        entries.size(), estimatedBytes / 1024, hits, misses, evictions);
+  }
+
+  private void put(Key key, FileObject file) {
+    Entry entry = new Entry(file, estimateSize(file.getName()));
+    remove(entries.put(key, entry));
+    estimatedBytes += entry.weight;
+    evict();
+  }
+
+  private FileObject getEvicted(Key key) {
+    expungeCollected();
+    EvictedReference reference = evicted.get(key);
+    return reference != null ? reference.get() : null;
+  }
+
+  private void remove(Entry entry) {
+    if (entry != null) {
+      estimatedBytes -= entry.weight;
+    }
+  }
+
+  private void evict() {
+    expungeCollected();
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    int dropped = 0;
+    while (iterator.hasNext() && isOverLimit()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      iterator.remove();
+      remove(entry.getValue());
+      evicted.put(entry.getKey(), new EvictedReference(entry.getKey(), entry.getValue().fileObject, collected));
+      dropped++;
+    }
+    if (dropped > 0) {
+      evictions += dropped;
+      LOGGER.trace("Dropped {} file objects from cache: {}", dropped, this);
+    }
+  }
+
+  /**
+   * Removes references of dropped file objects which were collected.
+   */
+  private void expungeCollected() {
+    EvictedReference reference;
+    while ((reference = (EvictedReference) collected.poll()) != null) {
+      if (evicted.get(reference.key) == reference) {
+        evicted.remove(reference.key);
+      }
+    }
+  }
+
+  private boolean isOverLimit() {
+    return maxEntries > 0 && entries.size() > maxEntries || maxBytes > 0 && estimatedBytes > maxBytes;
+  }
+
+  static int estimateSize(FileName name) {
+    return FILE_OBJECT_SIZE + 2 * name.getURI().length();
+  }
+}
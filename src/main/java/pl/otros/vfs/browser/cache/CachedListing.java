@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+public class CachedListing {
+
+  private ListingSnapshot snapshot;
+  private boolean sorted;
+  private final long timestamp;
+
+  public CachedListing(ListingSnapshot snapshot, long timestamp) {
+    this(snapshot, timestamp, true);
+  }
+
+  /**
+   * @param sorted false if snapshot is not sorted by name yet, it is sorted when it is read first time
+   */
+  public CachedListing(ListingSnapshot snapshot, long timestamp, boolean sorted) {
+    this.snapshot = snapshot;
+    this.timestamp = timestamp;
+    this.sorted = sorted;
+  }
+
+  /**
+   * @return listing sorted by name
+   */
+  public synchronized ListingSnapshot getSnapshot() {
+    if (!sorted) {
+      snapshot = snapshot.sortedByName();
+      sorted = true;
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return number of rows of listing
+   */
+  public synchronized int size() {
+    return snapshot.size();
+  }
+
+  /**
+   * @return time of listing in nanoseconds of cache ticker
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
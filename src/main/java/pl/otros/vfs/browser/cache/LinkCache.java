@@ -0,0 +1,248 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+import pl.otros.vfs.browser.util.VFSUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of link detection results. Result is valid as long as size and last modification time of file are the same,
+ * so unchanged files are not checked again when folder is visited. Type of link target can change without changing
+ * the link, cached type is used until folder is refreshed. Cache can be saved in {@link #CACHE_FILE} and loaded
+ * on next start, every browser has its own cache, so records saved by other browsers are merged before saving.
+ */
+public class LinkCache {
+
+  public static final String CONFIG_MAX_SIZE = "links.cache.maxSize";
+  public static final String CONFIG_PERSISTENT = "links.cache.persistent";
+  public static final File CACHE_FILE = new File(VFSUtils.CONFIG_DIRECTORY, "links.cache");
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LinkCache.class);
+  private static final int DEFAULT_MAX_SIZE = 10000;
+  private static final byte NOT_LINK = -1;
+  private static final String ENCODING = "UTF-8";
+  private static final Object SAVE_LOCK = new Object();
+
+  private final File file;
+  private final int maxSize;
+  private final Map<String, Record> entries;
+  private boolean dirty = false;
+
+  /**
+   * Result of link detection.
+   */
+  public static final class Verdict {
+    private final boolean link;
+    private final FileType targetType;
+
+    private Verdict(boolean link, FileType targetType) {
+      this.link = link;
+      this.targetType = targetType;
+    }
+
+    public boolean isLink() {
+      return link;
+    }
+
+    /**
+     * @return type of link target, null if file is not a link or type is unknown
+     */
+    public FileType getTargetType() {
+      return targetType;
+    }
+  }
+
+  private static final class Record {
+    private final long size;
+    private final long lastModified;
+    private final byte verdict;
+
+    private Record(long size, long lastModified, byte verdict) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.verdict = verdict;
+    }
+  }
+
+  /**
+   * @param maxSize maximum number of files, least recently used are evicted
+   * @param file    file used by {@link #load()} and {@link #save()}, null for cache kept only in memory
+   */
+  public LinkCache(int maxSize, File file) {
+    this.file = file;
+    this.maxSize = maxSize;
+    entries = newEntries(maxSize);
+  }
+
+  private static Map<String, Record> newEntries(final int maxSize) {
+    return new LinkedHashMap<String, Record>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Creates cache configured with keys {@link #CONFIG_MAX_SIZE} and {@link #CONFIG_PERSISTENT}.
+   * Persistent cache is loaded from {@link #CACHE_FILE}.
+   */
+  public static LinkCache fromConfiguration(Configuration configuration) {
+    boolean persistent = configuration.getBoolean(CONFIG_PERSISTENT, false);
+    LinkCache linkCache = new LinkCache(configuration.getInt(CONFIG_MAX_SIZE, DEFAULT_MAX_SIZE), persistent ? CACHE_FILE : null);
+    linkCache.load();
+    return linkCache;
+  }
+
+  public static LinkCache inMemory() {
+    return new LinkCache(DEFAULT_MAX_SIZE, null);
+  }
+
+  /**
+   * Returns result of link detection if file was not changed.
+   *
+   * @param uri          friendly URI of file
+   * @param size         size of file
+   * @param lastModified last modification time of file
+   * @return result or null if file was not checked or was changed
+   */
+  public synchronized Verdict get(String uri, long size, long lastModified) {
+    Record record = entries.get(uri);
+    if (record == null || record.size != size || record.lastModified != lastModified) {
+      return null;
+    }
+    return record.verdict == NOT_LINK ? new Verdict(false, null) : new Verdict(true, ListingSnapshot.fileType(record.verdict));
+  }
+
+  /**
+   * @param targetType type of link target, ignored if file is not a link
+   */
+  public synchronized void put(String uri, long size, long lastModified, boolean link, FileType targetType) {
+    byte verdict = link ? ListingSnapshot.typeCode(targetType) : NOT_LINK;
+    entries.put(uri, new Record(size, lastModified, verdict));
+    dirty = true;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    dirty = true;
+  }
+
+  public boolean isPersistent() {
+    return file != null;
+  }
+
+  /**
+   * Loads cache from file. Nothing is loaded if cache is not persistent or file does not exist.
+   */
+  public void load() {
+    if (file == null || !file.exists()) {
+      return;
+    }
+    synchronized (this) {
+      read(entries);
+      dirty = false;
+    }
+    LOGGER.info("Loaded {} link detection results from {}", size(), file);
+  }
+
+  /**
+   * Saves cache to file if it was changed since last load or save. Records saved in file by other caches are kept,
+   * records of this cache replace them. Nothing is saved if cache is not persistent.
+   */
+  public void save() {
+    if (file == null) {
+      return;
+    }
+    synchronized (SAVE_LOCK) {
+      Map<String, Record> merged = newEntries(maxSize);
+      if (file.exists()) {
+        read(merged);
+      }
+      synchronized (this) {
+        if (!dirty) {
+          return;
+        }
+        merged.putAll(entries);
+        dirty = false;
+      }
+      write(merged);
+    }
+  }
+
+  private void read(Map<String, Record> records) {
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 4);
+        if (fields.length == 4) {
+          records.put(fields[3], new Record(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Byte.parseByte(fields[2])));
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.error("Can't load link cache from " + file, e);
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  private void write(Map<String, Record> records) {
+    File tempFile = new File(file.getParentFile(), file.getName() + ".bak");
+    BufferedWriter writer = null;
+    try {
+      if (!file.getParentFile().exists()) {
+        file.getParentFile().mkdirs();
+      }
+      writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING));
+      for (Map.Entry<String, Record> entry : records.entrySet()) {
+        Record value = entry.getValue();
+        writer.write(value.size + "\t" + value.lastModified + "\t" + value.verdict + "\t" + entry.getKey());
+        writer.newLine();
+      }
+      writer.close();
+      FileUtils.copyFile(tempFile, file);
+      FileUtils.deleteQuietly(tempFile);
+    } catch (IOException e) {
+      LOGGER.error("Can't save link cache to " + file, e);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import com.google.common.base.Ticker;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of folder listing snapshots keyed by normalized URI. Least recently used listings are evicted when cache is full
+ * or when listings have more rows than maximum (rows hold file objects, which are not dropped from files cache while
+ * listing is cached).
+ * Listing younger than time to live is fresh. Older listing is stale, it can be still shown (for max stale time) but
+ * should be revalidated in background.
+ */
+public class ListingCache {
+
+  public static final String CONFIG_MAX_SIZE = "listing.cache.maxSize";
+  public static final String CONFIG_MAX_ROWS = "listing.cache.maxRows";
+  public static final String CONFIG_TIME_TO_LIVE = "listing.cache.timeToLive";
+  public static final String CONFIG_MAX_STALE = "listing.cache.maxStale";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ListingCache.class);
+  private static final int DEFAULT_MAX_SIZE = 32;
+  private static final int DEFAULT_MAX_ROWS = 200000;
+  private static final long DEFAULT_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+  private static final long DEFAULT_MAX_STALE = TimeUnit.MINUTES.toMillis(10);
+
+  private final int maxSize;
+  private final int maxRows;
+  private final long timeToLive;
+  private final long maxStale;
+  private final Ticker ticker;
+  private final Map<String, CachedListing> listings;
+  private final Set<String> revalidating = new HashSet<String>();
+  private long rows = 0;
+
+  public ListingCache(int maxSize, long timeToLive, long maxStale) {
+    this(maxSize, DEFAULT_MAX_ROWS, timeToLive, maxStale);
+  }
+
+  /**
+   * @param maxRows maximum number of rows of all cached listings, the most recent listing is kept even if it is larger
+   */
+  public ListingCache(int maxSize, int maxRows, long timeToLive, long maxStale) {
+    this(maxSize, maxRows, timeToLive, maxStale, Ticker.systemTicker());
+  }
+
+  ListingCache(int maxSize, long timeToLive, long maxStale, Ticker ticker) {
+    this(maxSize, DEFAULT_MAX_ROWS, timeToLive, maxStale, ticker);
+  }
+
+  ListingCache(int maxSize, int maxRows, long timeToLive, long maxStale, Ticker ticker) {
+    this.maxSize = maxSize;
+    this.maxRows = maxRows;
+    this.timeToLive = timeToLive;
+    this.maxStale = maxStale;
+    this.ticker = ticker;
+    listings = new LinkedHashMap<String, CachedListing>(16, 0.75f, true);
+  }
+
+  /**
+   * Creates cache configured with keys {@link #CONFIG_MAX_SIZE}, {@link #CONFIG_MAX_ROWS}, {@link #CONFIG_TIME_TO_LIVE}
+   * and {@link #CONFIG_MAX_STALE}. Times are in milliseconds, max size 0 disables cache.
+   */
+  public static ListingCache fromConfiguration(Configuration configuration) {
+    return new ListingCache(
+        configuration.getInt(CONFIG_MAX_SIZE, DEFAULT_MAX_SIZE),
+        configuration.getInt(CONFIG_MAX_ROWS, DEFAULT_MAX_ROWS),
+        configuration.getLong(CONFIG_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE),
+        configuration.getLong(CONFIG_MAX_STALE, DEFAULT_MAX_STALE));
+  }
+
+  public static String key(FileObject fileObject) {
+    return key(fileObject.getName());
+  }
+
+  /**
+   * Normalize URI of folder. Password is never part of key, trailing separator is removed.
+   */
+  public static String key(FileName fileName) {
+    String uri = fileName.getFriendlyURI();
+    if (uri.length() > 1 && uri.endsWith("/") && !uri.endsWith(":///") && !uri.endsWith("://")) {
+      uri = StringUtils.removeEnd(uri, "/");
+    }
+    int schemeEnd = uri.indexOf("://");
+    if (schemeEnd > 0) {
+      uri = uri.substring(0, schemeEnd).toLowerCase() + uri.substring(schemeEnd);
+    }
+    return uri;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Returns cached listing which can be displayed or null. Listing older than time to live and max stale is removed.
+   */
+  public synchronized CachedListing get(String key) {
+    CachedListing cachedListing = listings.get(key);
+    if (cachedListing != null && age(cachedListing) > timeToLive + maxStale) {
+      LOGGER.debug("Listing of {} is too old, removing", key);
+      remove(key);
+      cachedListing = null;
+    }
+    return cachedListing;
+  }
+
+  public synchronized void put(String key, ListingSnapshot snapshot) {
+    if (isEnabled()) {
+      put(key, new CachedListing(snapshot, ticker.read()));
+    }
+  }
+
+  /**
+   * Puts listing which is not sorted by name. Listing is sorted when it is read from cache, so caller (i.e. EDT
+   * applying changes of watched folder) does not sort listing which may be never read.
+   */
+  public synchronized void putUnsorted(String key, ListingSnapshot snapshot) {
+    if (isEnabled()) {
+      put(key, new CachedListing(snapshot, ticker.read(), false));
+    }
+  }
+
+  public synchronized void invalidate(String key) {
+    remove(key);
+  }
+
+  public synchronized void clear() {
+    listings.clear();
+    rows = 0;
+  }
+
+  public synchronized int size() {
+    return listings.size();
+  }
+
+  /**
+   * @return number of rows of all cached listings
+   */
+  public synchronized long getRows() {
+    return rows;
+  }
+
+  public boolean isStale(CachedListing cachedListing) {
+    return age(cachedListing) > timeToLive;
+  }
+
+  /**
+   * Marks start of background revalidation.
+   *
+   * @return false if listing is already revalidated
+   */
+  public synchronized boolean startRevalidation(String key) {
+    return revalidating.add(key);
+  }
+
+  public synchronized void finishRevalidation(String key) {
+    revalidating.remove(key);
+  }
+
+  private void put(String key, CachedListing cachedListing) {
+    remove(key);
+    listings.put(key, cachedListing);
+    rows += cachedListing.size();
+    Iterator<CachedListing> iterator = listings.values().iterator();
+    while (iterator.hasNext() && (listings.size() > maxSize || rows > maxRows && listings.size() > 1)) {
+      CachedListing eldest = iterator.next();
+      iterator.remove();
+      rows -= eldest.size();
+    }
+  }
+
+  private void remove(String key) {
+    CachedListing removed = listings.remove(key);
+    if (removed != null) {
+      rows -= removed.size();
+    }
+  }
+
+  private long age(CachedListing cachedListing) {
+    return TimeUnit.NANOSECONDS.toMillis(ticker.read() - cachedListing.getTimestamp());
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.favorit;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.VFSUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connects to remote user favorites in background, so first opening of favorite does not wait for DNS, TCP, SSH
+ * handshake and authentication. Favorites are resolved on {@link IoScheduler} with
+ * {@link IoScheduler.Priority#PREFETCH} priority in lanes of their hosts, with credentials stored in auth stores,
+ * favorites without stored credentials are skipped (user is never asked for password). Resolved locations are kept
+ * and used when favorite is opened.
+ */
+public class FavoritesPrewarmer {
+
+  public static final String CONFIG_ENABLED = "favorites.prewarm.enabled";
+  public static final String CONFIG_LIST = "favorites.prewarm.list";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FavoritesPrewarmer.class);
+  private static final Set<String> SCHEMES = new HashSet<String>(Arrays.asList("sftp", "ftp", "ftps", "smb"));
+
+  private final boolean enabled;
+  private final boolean listContent;
+  private final IoScheduler scheduler;
+  private final Resolver resolver;
+  private final ConcurrentHashMap<String, FileObject> resolved = new ConcurrentHashMap<String, FileObject>();
+
+  public interface Resolver {
+
+    /**
+     * @return resolved location or null if it can't be resolved without user interaction
+     */
+    FileObject resolve(String url) throws FileSystemException;
+  }
+
+  public interface Listener {
+
+    /**
+     * Called from background thread when favorite was resolved.
+     *
+     * @param favorite   favorite
+     * @param fileObject resolved location of favorite
+     */
+    void resolved(Favorite favorite, FileObject fileObject);
+  }
+
+  /**
+   * @param enabled     if false, {@link #start(List, Listener)} does nothing
+   * @param listContent true if content of resolved folders should be listed, see {@link #isListContent()}
+   * @param scheduler   scheduler which resolves favorites
+   * @param resolver    resolver of favorites
+   */
+  public FavoritesPrewarmer(boolean enabled, boolean listContent, IoScheduler scheduler, Resolver resolver) {
+    this.enabled = enabled;
+    this.listContent = listContent;
+    this.scheduler = scheduler;
+    this.resolver = resolver;
+  }
+
+  /**
+   * Creates prewarmer configured with keys {@link #CONFIG_ENABLED} and {@link #CONFIG_LIST}. Prewarming is disabled
+   * by default. Favorites are resolved with {@link VFSUtils#resolveFileObjectWithStoredCredentials(String)} on
+   * {@link VFSUtils#getIoScheduler()}.
+   */
+  public static FavoritesPrewarmer fromConfiguration(Configuration configuration) {
+    return new FavoritesPrewarmer(
+        configuration.getBoolean(CONFIG_ENABLED, false),
+        configuration.getBoolean(CONFIG_LIST, false),
+        VFSUtils.getIoScheduler(),
+        new Resolver() {
+          @Override
+          public FileObject resolve(String url) throws FileSystemException {
+            return VFSUtils.resolveFileObjectWithStoredCredentials(url);
+          }
+        });
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return true if listener should list content of resolved folders (i.e. into listing cache)
+   */
+  public boolean isListContent() {
+    return listContent;
+  }
+
+  public static boolean canPrewarm(Favorite favorite) {
+    String url = favorite.getUrl();
+    int schemeEnd = url != null ? url.indexOf("://") : -1;
+    return Favorite.Type.USER.equals(favorite.getType()) && schemeEnd > 0
+        && SCHEMES.contains(url.substring(0, schemeEnd).toLowerCase());
+  }
+
+  /**
+   * Starts resolving remote user favorites in background.
+   *
+   * @param favorites favorites, local and system favorites are skipped
+   * @param listener  listener notified about resolved favorites
+   */
+  public void start(List<Favorite> favorites, final Listener listener) {
+    if (!enabled) {
+      return;
+    }
+    for (final Favorite favorite : favorites) {
+      if (!canPrewarm(favorite)) {
+        continue;
+      }
+      scheduler.submit(IoScheduler.lane(favorite.getUrl()), IoScheduler.Priority.PREFETCH, new Runnable() {
+        @Override
+        public void run() {
+          prewarm(favorite, listener);
+        }
+      });
+    }
+  }
+
+  private void prewarm(Favorite favorite, Listener listener) {
+    String url = favorite.getUrl();
+    long ts = System.currentTimeMillis();
+    try {
+      FileObject fileObject = resolver.resolve(url);
+      if (fileObject == null) {
+        return;
+      }
+      resolved.put(url, fileObject);
+      LOGGER.info("Favorite {} was connected in {} ms", VFSUtils.getFriendlyName(url), System.currentTimeMillis() - ts);
+      listener.resolved(favorite, fileObject);
+    } catch (Exception e) {
+      LOGGER.info("Can't connect to favorite {}: {}", VFSUtils.getFriendlyName(url), e.getMessage());
+    }
+  }
+
+  /**
+   * @return location of favorite resolved in background or null if it was not resolved
+   */
+  public FileObject getResolved(String url) {
+    return resolved.get(url);
+  }
+
+  /**
+   * Forgets resolved location, i.e. when it can't be used.
+   */
+  public void remove(String url) {
+    resolved.remove(url);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.history;
+
+import org.apache.commons.vfs2.FileObject;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Visited location with state of view: listing shown, scroll position and names of selected files.
+ */
+public class HistoryEntry {
+
+  private final FileObject location;
+  private final ListingSnapshot snapshot;
+  private final int scrollPosition;
+  private final Set<String> selectedNames;
+
+  public HistoryEntry(FileObject location, ListingSnapshot snapshot, int scrollPosition, Set<String> selectedNames) {
+    this.location = location;
+    this.snapshot = snapshot;
+    this.scrollPosition = scrollPosition;
+    this.selectedNames = Collections.unmodifiableSet(selectedNames);
+  }
+
+  public FileObject getLocation() {
+    return location;
+  }
+
+  public ListingSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return value of vertical scroll bar of table
+   */
+  public int getScrollPosition() {
+    return scrollPosition;
+  }
+
+  public Set<String> getSelectedNames() {
+    return selectedNames;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.history;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Back and forward history of visited locations. Number of entries kept in each direction and total number of rows
+ * of listings kept by all entries are bounded, oldest entries are dropped. History is not thread safe, it should be
+ * used in EDT.
+ */
+public class NavigationHistory {
+
+  public static final String CONFIG_MAX_SIZE = "history.maxSize";
+  public static final String CONFIG_MAX_ROWS = "history.maxRows";
+  private static final int DEFAULT_MAX_SIZE = 50;
+  private static final int DEFAULT_MAX_ROWS = 100000;
+
+  private final int maxSize;
+  private final int maxRows;
+  private int rows = 0;
+  private final Deque<HistoryEntry> backEntries = new ArrayDeque<HistoryEntry>();
+  private final Deque<HistoryEntry> forwardEntries = new ArrayDeque<HistoryEntry>();
+
+  /**
+   * @param maxSize maximum number of entries kept in each direction
+   */
+  public NavigationHistory(int maxSize) {
+    this(maxSize, DEFAULT_MAX_ROWS);
+  }
+
+  /**
+   * @param maxSize maximum number of entries kept in each direction
+   * @param maxRows maximum number of rows of listings kept by all entries
+   */
+  public NavigationHistory(int maxSize, int maxRows) {
+    this.maxSize = maxSize;
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Creates history configured with keys {@link #CONFIG_MAX_SIZE} and {@link #CONFIG_MAX_ROWS}.
+   */
+  public static NavigationHistory fromConfiguration(Configuration configuration) {
+    return new NavigationHistory(configuration.getInt(CONFIG_MAX_SIZE, DEFAULT_MAX_SIZE),
+        configuration.getInt(CONFIG_MAX_ROWS, DEFAULT_MAX_ROWS));
+  }
+
+  /**
+   * Records that new location is visited. Forward history is cleared.
+   *
+   * @param left state of location which is left
+   */
+  public void visit(HistoryEntry left) {
+    for (HistoryEntry entry : forwardEntries) {
+      rows -= rows(entry);
+    }
+    forwardEntries.clear();
+    push(backEntries, left);
+  }
+
+  /**
+   * @param current state of current location, it is added to forward history
+   * @return previous location or null if there is nothing to go back to
+   */
+  public HistoryEntry back(HistoryEntry current) {
+    return move(backEntries, forwardEntries, current);
+  }
+
+  /**
+   * @param current state of current location, it is added to back history
+   * @return next location or null if there is nothing to go forward to
+   */
+  public HistoryEntry forward(HistoryEntry current) {
+    return move(forwardEntries, backEntries, current);
+  }
+
+  public boolean canGoBack() {
+    return !backEntries.isEmpty();
+  }
+
+  public boolean canGoForward() {
+    return !forwardEntries.isEmpty();
+  }
+
+  /**
+   * @return number of rows of listings kept by all entries
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  public void clear() {
+    backEntries.clear();
+    forwardEntries.clear();
+    rows = 0;
+  }
+
+  private HistoryEntry move(Deque<HistoryEntry> from, Deque<HistoryEntry> to, HistoryEntry current) {
+    if (from.isEmpty()) {
+      return null;
+    }
+    HistoryEntry entry = from.pop();
+    rows -= rows(entry);
+    if (current != null) {
+      push(to, current);
+    }
+    return entry;
+  }
+
+  private void push(Deque<HistoryEntry> entries, HistoryEntry entry) {
+    entries.push(entry);
+    rows += rows(entry);
+    while (entries.size() > maxSize) {
+      rows -= rows(entries.removeLast());
+    }
+    //the farthest entries are dropped first, back history is older than forward history
+    while (rows > maxRows && !backEntries.isEmpty()) {
+      rows -= rows(backEntries.removeLast());
+    }
+    while (rows > maxRows && !forwardEntries.isEmpty()) {
+      rows -= rows(forwardEntries.removeLast());
+    }
+  }
+
+  private static int rows(HistoryEntry entry) {
+    return entry.getSnapshot() != null ? entry.getSnapshot().size() : 0;
+  }
+}
@@ -20,6 +20,8 @@ package pl.otros.vfs.browser.preview;
 import org.apache.commons.io.IOUtils;
 import pl.otros.vfs.browser.VfsBrowser;
 import pl.otros.vfs.browser.preview.PreviewStatus.State;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.VFSUtils;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
@@ -31,8 +33,6 @@ import javax.swing.event.ListSelectionListener;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  */
@@ -43,18 +43,17 @@ public class PreviewListener implements ListSelectionListener {
 
   private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(PreviewListener.class);
 
-  private Executor executor;
-
   private VfsBrowser vfsBrowser;
 
   private PreviewComponent previewComponent;
 
   private SwingWorker<PreviewStatus, PreviewStatus> worker;
 
+  private IoScheduler.Task task;
+
   public PreviewListener(VfsBrowser vfsBrowser, PreviewComponent component) {
     this.vfsBrowser = vfsBrowser;
     this.previewComponent = component;
-    executor = Executors.newFixedThreadPool(2);
   }
 
   @Override
@@ -93,6 +92,9 @@ public class PreviewListener implements ListSelectionListener {
     if (worker != null) {
       worker.cancel(false);
     }
+    if (task != null) {
+      task.cancel();
+    }
     worker = new SwingWorker<PreviewStatus, PreviewStatus>() {
       private int previewLimit = 20 * 1024;
       private String name = fileObjectToPreview.getName().getBaseName();
@@ -153,7 +155,7 @@ public class PreviewListener implements ListSelectionListener {
         previewComponent.setPreviewStatus(previewStatus);
       }
     };
-    executor.execute(worker);
+    task = VFSUtils.getIoScheduler().submit(fileObjectToPreview, IoScheduler.Priority.PREVIEW, worker);
 
   }
 }
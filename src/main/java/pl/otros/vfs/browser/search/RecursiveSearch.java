@@ -0,0 +1,409 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.search;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.TaskContext;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+import pl.otros.vfs.browser.util.FolderLister;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.LocalFolderLister;
+import pl.otros.vfs.browser.util.SftpTreeLister;
+import pl.otros.vfs.browser.util.VFSUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches folder tree in parallel. Every folder is listed by separate task of {@link IoScheduler} which submits
+ * tasks of subfolders, tasks run with {@link IoScheduler.Priority#LINK_CHECK} priority in lane of folder's host.
+ * Number of folders listed at the same time on one host is bounded by lane, so remote server is not flooded with
+ * connections even if many searches are running, and navigation is not blocked by search.
+ * <p/>
+ * SFTP trees are listed with one <code>find</code> command over SSH exec channel (see {@link SftpTreeLister}) if host
+ * permits it, otherwise folder by folder.
+ * <p/>
+ * Hits are reported per folder as soon as folder is listed.
+ */
+public class RecursiveSearch {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RecursiveSearch.class);
+
+  private final FolderLister folderLister;
+  private final SftpTreeLister treeLister;
+  private final IoScheduler scheduler;
+
+  /**
+   * @param folderLister lister of single folder
+   * @param scheduler    scheduler which lists folders
+   */
+  public RecursiveSearch(FolderLister folderLister, IoScheduler scheduler) {
+    this(folderLister, new SftpTreeLister(false), scheduler);
+  }
+
+  /**
+   * @param folderLister lister of single folder
+   * @param treeLister   lister of whole SFTP trees
+   * @param scheduler    scheduler which lists folders
+   */
+  public RecursiveSearch(FolderLister folderLister, SftpTreeLister treeLister, IoScheduler scheduler) {
+    this.folderLister = folderLister;
+    this.treeLister = treeLister;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Creates search which lists folders on {@link VFSUtils#getIoScheduler()}. Local folders are listed with NIO if
+   * {@link LocalFolderLister#CONFIG_ENABLED} is set, SFTP trees are listed with <code>find</code> if
+   * {@link SftpTreeLister#CONFIG_ENABLED} is set.
+   */
+  public static RecursiveSearch fromConfiguration(Configuration configuration) {
+    //search runs in parallel itself, attributes of every folder are read by one thread
+    LocalFolderLister localFolderLister = new LocalFolderLister(
+        configuration.getBoolean(LocalFolderLister.CONFIG_ENABLED, true), 1, Integer.MAX_VALUE);
+    return new RecursiveSearch(new FolderLister(localFolderLister), SftpTreeLister.fromConfiguration(configuration),
+        VFSUtils.getIoScheduler());
+  }
+
+  /**
+   * Starts search in background.
+   *
+   * @param root     searched location
+   * @param criteria search criteria
+   * @param listener listener notified from search threads
+   * @return running search
+   */
+  public Search start(FileObject root, SearchCriteria criteria, Listener listener) {
+    Search search = new Search(root, criteria, listener);
+    search.start();
+    return search;
+  }
+
+  public interface Listener {
+
+    /**
+     * Called from search thread for every folder with hits.
+     *
+     * @param path path of folder relative to searched location, empty for searched location
+     * @param hits found entries of folder
+     */
+    void found(String path, ListingSnapshot hits);
+
+    /**
+     * Called once when all folders are searched or search is cancelled.
+     *
+     * @param search finished search
+     */
+    void finished(Search search);
+  }
+
+  /**
+   * Running search. Progress of search (number of searched folders) is reported with {@link #getTaskContext()}.
+   */
+  public final class Search {
+
+    private final FileObject root;
+    private final SearchCriteria criteria;
+    private final Listener listener;
+    private final TaskContext taskContext;
+    /**
+     * Submitted tasks which are not finished yet
+     */
+    private final Set<SearchTask> tasks = Collections.newSetFromMap(new ConcurrentHashMap<SearchTask, Boolean>());
+    /**
+     * Threads which list folders of this search, guarded by itself
+     */
+    private final Set<Thread> threads = new HashSet<Thread>();
+    private final AtomicInteger pendingFolders = new AtomicInteger();
+    private final AtomicInteger searchedFolders = new AtomicInteger();
+    private final AtomicInteger failedFolders = new AtomicInteger();
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean cancelled = false;
+    private final long startTime = System.currentTimeMillis();
+    private volatile long finishTime;
+
+    private Search(FileObject root, SearchCriteria criteria, Listener listener) {
+      this.root = root;
+      this.criteria = criteria;
+      this.listener = listener;
+      taskContext = new TaskContext(Messages.getMessage("search.task"), 1);
+      taskContext.setIndeterminate(true);
+    }
+
+    private void start() {
+      LOGGER.info("Searching {}", root.getName().getFriendlyURI());
+      if (treeLister.canList(root)) {
+        pendingFolders.incrementAndGet();
+        submit(root, new TreeTask());
+      } else {
+        submit(root, "", 0);
+      }
+    }
+
+    /**
+     * Stops search, queued folders are dropped and threads blocked on I/O are interrupted. Listener is notified
+     * immediately.
+     */
+    public void cancel() {
+      cancelled = true;
+      taskContext.setStop(true);
+      for (SearchTask task : tasks) {
+        task.cancel();
+      }
+      synchronized (threads) {
+        for (Thread thread : threads) {
+          thread.interrupt();
+        }
+      }
+      finish();
+    }
+
+    public boolean isCancelled() {
+      return cancelled || taskContext.isStop();
+    }
+
+    public boolean isFinished() {
+      return finished.get();
+    }
+
+    public FileObject getRoot() {
+      return root;
+    }
+
+    public SearchCriteria getCriteria() {
+      return criteria;
+    }
+
+    public TaskContext getTaskContext() {
+      return taskContext;
+    }
+
+    public int getSearchedFolders() {
+      return searchedFolders.get();
+    }
+
+    /**
+     * @return number of folders which could not be listed
+     */
+    public int getFailedFolders() {
+      return failedFolders.get();
+    }
+
+    /**
+     * @return duration of search in ms, time from start for running search
+     */
+    public long getDuration() {
+      return (finished.get() ? finishTime : System.currentTimeMillis()) - startTime;
+    }
+
+    public int getHitCount() {
+      return hitCount.get();
+    }
+
+    private void submit(FileObject folder, String path, int depth) {
+      if (isCancelled()) {
+        return;
+      }
+      pendingFolders.incrementAndGet();
+      submit(folder, new FolderTask(folder, path, depth));
+    }
+
+    private void submit(FileObject folder, SearchTask task) {
+      tasks.add(task);
+      task.queued = scheduler.submit(folder, IoScheduler.Priority.LINK_CHECK, task);
+    }
+
+    private void folderDone() {
+      if (pendingFolders.decrementAndGet() == 0) {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if (finished.compareAndSet(false, true)) {
+        finishTime = System.currentTimeMillis();
+        LOGGER.info("Search of {} {} after {} ms, searched {} folders, found {} entries", new Object[]{
+            root.getName().getFriendlyURI(), isCancelled() ? "cancelled" : "finished",
+            System.currentTimeMillis() - startTime, searchedFolders.get(), hitCount.get()});
+        listener.finished(this);
+      }
+    }
+
+    private void search(FileObject folder, String path, int depth) {
+      ListingSnapshot listing;
+      try {
+        listing = folderLister.list(folder);
+      } catch (Exception e) {
+        if (!isCancelled()) {
+          LOGGER.debug("Can't list " + folder.getName().getFriendlyURI() + ", folder is skipped", e);
+          failedFolders.incrementAndGet();
+        }
+        return;
+      }
+      int[] hits = new int[listing.size()];
+      int count = 0;
+      int childDepth = depth + 1;
+      for (int row = 0; row < listing.size() && !isCancelled(); row++) {
+        if (criteria.accept(listing, row, childDepth)) {
+          hits[count++] = row;
+        }
+        if (criteria.descend(listing, row, childDepth)) {
+          String name = listing.getName(row);
+          submit(listing.getFileObject(row), path.length() == 0 ? name : path + "/" + name, childDepth);
+        }
+      }
+      taskContext.setCurrentProgress(searchedFolders.incrementAndGet());
+      report(path, listing, hits, count);
+    }
+
+    /**
+     * Searches SFTP tree listed with one command, pruning and depth limit are applied by command.
+     *
+     * @return false if tree could not be listed and it should be searched folder by folder
+     */
+    private boolean searchTree() {
+      try {
+        return treeLister.list(root, criteria.getMaxDepth(), criteria.getPrunedNames(), !criteria.isIncludeHidden(),
+            new SftpTreeLister.Listener() {
+              private String lastPath;
+
+              @Override
+              public void listed(String path, ListingSnapshot entries) {
+                if (!path.equals(lastPath)) {
+                  lastPath = path;
+                  taskContext.setCurrentProgress(searchedFolders.incrementAndGet());
+                }
+                int depth = path.length() == 0 ? 1 : StringUtils.countMatches(path, "/") + 2;
+                int[] hits = new int[entries.size()];
+                int count = 0;
+                for (int row = 0; row < entries.size(); row++) {
+                  if (criteria.accept(entries, row, depth)) {
+                    hits[count++] = row;
+                  }
+                }
+                report(path, entries, hits, count);
+              }
+            });
+      } catch (FileSystemException e) {
+        if (!isCancelled()) {
+          LOGGER.warn("Can't list tree " + root.getName().getFriendlyURI(), e);
+          failedFolders.incrementAndGet();
+        }
+      }
+      return true;
+    }
+
+    private void report(String path, ListingSnapshot listing, int[] hits, int count) {
+      if (count > 0 && !isCancelled()) {
+        hitCount.addAndGet(count);
+        listener.found(path, listing.reorder(Arrays.copyOf(hits, count)));
+      }
+    }
+
+    /**
+     * Task of search, thread running it is interrupted when search is cancelled.
+     */
+    private abstract class SearchTask implements Runnable {
+
+      private volatile IoScheduler.Task queued;
+
+      @Override
+      public void run() {
+        Thread thread = Thread.currentThread();
+        synchronized (threads) {
+          threads.add(thread);
+        }
+        try {
+          execute();
+        } finally {
+          synchronized (threads) {
+            threads.remove(thread);
+          }
+          tasks.remove(this);
+        }
+      }
+
+      /**
+       * Removes task from queue of scheduler if it was not started yet.
+       */
+      private void cancel() {
+        IoScheduler.Task task = queued;
+        if (task != null) {
+          task.cancel();
+        }
+      }
+
+      protected abstract void execute();
+    }
+
+    private final class TreeTask extends SearchTask {
+
+      @Override
+      protected void execute() {
+        try {
+          if (!isCancelled() && !searchTree()) {
+            submit(root, "", 0);
+          }
+        } catch (RuntimeException e) {
+          LOGGER.warn("Search of " + root.getName().getFriendlyURI() + " failed", e);
+          failedFolders.incrementAndGet();
+        } finally {
+          folderDone();
+        }
+      }
+    }
+
+    private final class FolderTask extends SearchTask {
+
+      private final FileObject folder;
+      private final String path;
+      private final int depth;
+
+      private FolderTask(FileObject folder, String path, int depth) {
+        this.folder = folder;
+        this.path = path;
+        this.depth = depth;
+      }
+
+      @Override
+      protected void execute() {
+        try {
+          if (!isCancelled()) {
+            search(folder, path, depth);
+          }
+        } catch (RuntimeException e) {
+          LOGGER.warn("Search of " + folder.getName().getFriendlyURI() + " failed", e);
+          failedFolders.incrementAndGet();
+        } finally {
+          folderDone();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.search;
+
+import pl.otros.vfs.browser.table.FileNameFilter;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Conditions of recursive search: name filter (the same syntax as table name filter), size and modification time
+ * ranges, depth limit and names of folders which are not searched. Entries of searched location have depth 1.
+ * <p/>
+ * Instances are immutable and can be used from any thread, use {@link Builder} to create them.
+ */
+public final class SearchCriteria {
+
+  public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+  private final FileNameFilter nameFilter;
+  private final long minSize;
+  private final long maxSize;
+  private final long modifiedAfter;
+  private final long modifiedBefore;
+  private final int maxDepth;
+  private final boolean includeFolders;
+  private final boolean includeHidden;
+  private final Set<String> prunedNames;
+
+  private SearchCriteria(Builder builder) {
+    nameFilter = builder.nameFilter;
+    minSize = builder.minSize;
+    maxSize = builder.maxSize;
+    modifiedAfter = builder.modifiedAfter;
+    modifiedBefore = builder.modifiedBefore;
+    maxDepth = builder.maxDepth;
+    includeFolders = builder.includeFolders;
+    includeHidden = builder.includeHidden;
+    prunedNames = Collections.unmodifiableSet(new HashSet<String>(builder.prunedNames));
+  }
+
+  /**
+   * @param snapshot listing of folder
+   * @param row      row of listing
+   * @param depth    depth of row, entries of searched location have depth 1
+   * @return true if row is search hit
+   */
+  public boolean accept(ListingSnapshot snapshot, int row, int depth) {
+    if (depth > maxDepth || snapshot.isParent(row) || !includeHidden && snapshot.isHidden(row)) {
+      return false;
+    }
+    boolean folder = snapshot.isFolder(row);
+    if (folder && !includeFolders) {
+      return false;
+    }
+    if (!nameFilter.accept(snapshot.getName(row))) {
+      return false;
+    }
+    if (minSize > 0 || maxSize < Long.MAX_VALUE) {
+      long size = snapshot.getSize(row);
+      if (folder || size == ListingSnapshot.UNKNOWN || size < minSize || size > maxSize) {
+        return false;
+      }
+    }
+    if (modifiedAfter > Long.MIN_VALUE || modifiedBefore < Long.MAX_VALUE) {
+      long lastModified = snapshot.getLastModified(row);
+      if (lastModified == ListingSnapshot.UNKNOWN || lastModified < modifiedAfter || lastModified > modifiedBefore) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Folder is searched if it is not deeper than depth limit, it is not pruned and it is not a link.
+   *
+   * @param snapshot listing of folder
+   * @param row      row of listing
+   * @param depth    depth of row, entries of searched location have depth 1
+   * @return true if row is folder which should be searched
+   */
+  public boolean descend(ListingSnapshot snapshot, int row, int depth) {
+    return depth < maxDepth
+        && snapshot.isFolder(row)
+        && !snapshot.isParent(row)
+        && !snapshot.isLink(row)
+        && (includeHidden || !snapshot.isHidden(row))
+        && !prunedNames.contains(snapshot.getName(row).toLowerCase(Locale.ENGLISH));
+  }
+
+  public FileNameFilter getNameFilter() {
+    return nameFilter;
+  }
+
+  public long getMinSize() {
+    return minSize;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getModifiedAfter() {
+    return modifiedAfter;
+  }
+
+  public long getModifiedBefore() {
+    return modifiedBefore;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public boolean isIncludeFolders() {
+    return includeFolders;
+  }
+
+  public boolean isIncludeHidden() {
+    return includeHidden;
+  }
+
+  public Set<String> getPrunedNames() {
+    return prunedNames;
+  }
+
+  public static final class Builder {
+    private FileNameFilter nameFilter = FileNameFilter.ACCEPT_ALL;
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    private long modifiedAfter = Long.MIN_VALUE;
+    private long modifiedBefore = Long.MAX_VALUE;
+    private int maxDepth = UNLIMITED_DEPTH;
+    private boolean includeFolders = true;
+    private boolean includeHidden = false;
+    private final Set<String> prunedNames = new HashSet<String>();
+
+    /**
+     * @param text name filter text, see {@link FileNameFilter#compile(String)}
+     */
+    public Builder name(String text) {
+      nameFilter = FileNameFilter.compile(text);
+      return this;
+    }
+
+    /**
+     * Limits search to files with size in range, folders are not found when size is limited.
+     *
+     * @param minSize minimal size in bytes
+     * @param maxSize maximal size in bytes
+     */
+    public Builder size(long minSize, long maxSize) {
+      this.minSize = minSize;
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Limits search to files modified in time range.
+     *
+     * @param modifiedAfter  minimal last modification time in ms
+     * @param modifiedBefore maximal last modification time in ms
+     */
+    public Builder modified(long modifiedAfter, long modifiedBefore) {
+      this.modifiedAfter = modifiedAfter;
+      this.modifiedBefore = modifiedBefore;
+      return this;
+    }
+
+    /**
+     * @param maxDepth maximal depth of found entries, 1 searches only searched location
+     */
+    public Builder maxDepth(int maxDepth) {
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    public Builder includeFolders(boolean includeFolders) {
+      this.includeFolders = includeFolders;
+      return this;
+    }
+
+    public Builder includeHidden(boolean includeHidden) {
+      this.includeHidden = includeHidden;
+      return this;
+    }
+
+    /**
+     * @param names names of folders which are not searched, i.e. ".git" (case insensitive)
+     */
+    public Builder prune(Collection<String> names) {
+      for (String name : names) {
+        prunedNames.add(name.toLowerCase(Locale.ENGLISH));
+      }
+      return this;
+    }
+
+    public SearchCriteria build() {
+      return new SearchCriteria(this);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.search;
+
+import net.miginfocom.swing.MigLayout;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileObject;
+import pl.otros.vfs.browser.VfsBrowser;
+import pl.otros.vfs.browser.actions.OpenSearchResult;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.table.FileNameWithType;
+import pl.otros.vfs.browser.table.FileNameWithTypeTableCellRenderer;
+import pl.otros.vfs.browser.table.FileSize;
+import pl.otros.vfs.browser.table.FileSizeTableCellRenderer;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+import pl.otros.vfs.browser.table.MixedDateTableCellRenderer;
+import pl.otros.vfs.browser.util.SwingUtils;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Criteria form and results of recursive search below one location. Hits are collected from search threads and
+ * appended to result table on EDT a few times per second.
+ */
+public class SearchPanel extends JPanel {
+
+  private static final int FLUSH_INTERVAL = 100;
+  private static final String DATE_FORMAT = "yyyy-MM-dd";
+  private static final String DEFAULT_PRUNED_FOLDERS = ".git, .svn, .hg";
+  private static final Pattern SIZE_PATTERN = Pattern.compile("(\\d+(?:[.,]\\d+)?)\\s*([kKmMgGtT]?)[bB]?");
+
+  private final FileObject root;
+  private final RecursiveSearch recursiveSearch;
+  private final JTextField nameField;
+  private final JTextField minSizeField;
+  private final JTextField maxSizeField;
+  private final JTextField modifiedAfterField;
+  private final JTextField modifiedBeforeField;
+  private final JSpinner maxDepthSpinner;
+  private final JTextField pruneField;
+  private final JCheckBox includeHiddenCheckBox;
+  private final JCheckBox includeFoldersCheckBox;
+  private final JButton searchButton;
+  private final JButton stopButton;
+  private final JLabel statusLabel;
+  private final JTable resultTable;
+  private final SearchResultTableModel resultTableModel;
+  private final Queue<FolderHits> pendingHits = new ConcurrentLinkedQueue<FolderHits>();
+  private final Timer flushTimer;
+  private RecursiveSearch.Search search;
+
+  /**
+   * @param browser         browser which shows folder of opened result
+   * @param root            searched location
+   * @param recursiveSearch search engine
+   */
+  public SearchPanel(VfsBrowser browser, FileObject root, RecursiveSearch recursiveSearch) {
+    super(new MigLayout("fill", "[right][grow,fill][right][grow,fill]", "[][][][][][grow,fill][]"));
+    this.root = root;
+    this.recursiveSearch = recursiveSearch;
+
+    ActionListener startListener = new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        startSearch();
+      }
+    };
+    nameField = new JTextField(30);
+    nameField.setToolTipText(Messages.getMessage("search.name.tooltip"));
+    nameField.addActionListener(startListener);
+    minSizeField = createField(Messages.getMessage("search.size.tooltip"), startListener);
+    maxSizeField = createField(Messages.getMessage("search.size.tooltip"), startListener);
+    modifiedAfterField = createField(Messages.getMessage("search.date.tooltip"), startListener);
+    modifiedBeforeField = createField(Messages.getMessage("search.date.tooltip"), startListener);
+    maxDepthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1000, 1));
+    maxDepthSpinner.setToolTipText(Messages.getMessage("search.maxDepth.tooltip"));
+    pruneField = createField(Messages.getMessage("search.prune.tooltip"), startListener);
+    pruneField.setText(DEFAULT_PRUNED_FOLDERS);
+    includeHiddenCheckBox = new JCheckBox(Messages.getMessage("search.includeHidden"));
+    includeFoldersCheckBox = new JCheckBox(Messages.getMessage("search.includeFolders"), true);
+    searchButton = new JButton(Messages.getMessage("search.start"));
+    searchButton.addActionListener(startListener);
+    stopButton = new JButton(Messages.getMessage("search.stop"));
+    stopButton.setEnabled(false);
+    stopButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        cancel();
+      }
+    });
+    statusLabel = new JLabel(" ");
+
+    resultTableModel = new SearchResultTableModel();
+    resultTable = new JTable(resultTableModel);
+    resultTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    resultTable.setFillsViewportHeight(true);
+    resultTable.setDefaultRenderer(FileSize.class, new FileSizeTableCellRenderer());
+    resultTable.setDefaultRenderer(FileNameWithType.class, new FileNameWithTypeTableCellRenderer());
+    resultTable.setDefaultRenderer(Date.class, new MixedDateTableCellRenderer());
+    resultTable.getColumnModel().getColumn(SearchResultTableModel.COLUMN_NAME).setPreferredWidth(250);
+    resultTable.getColumnModel().getColumn(SearchResultTableModel.COLUMN_FOLDER).setPreferredWidth(250);
+    resultTable.getActionMap().put("OPEN", new OpenSearchResult(browser, resultTable, resultTableModel));
+    resultTable.getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke("ENTER"), "OPEN");
+    resultTable.addMouseListener(new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+          resultTable.getActionMap().get("OPEN").actionPerformed(null);
+        }
+      }
+    });
+
+    add(new JLabel(Messages.getMessage("search.name")));
+    add(nameField, "span 3, wrap");
+    add(new JLabel(Messages.getMessage("search.size")));
+    add(minSizeField);
+    add(new JLabel(Messages.getMessage("search.to")));
+    add(maxSizeField, "wrap");
+    add(new JLabel(Messages.getMessage("search.modified")));
+    add(modifiedAfterField);
+    add(new JLabel(Messages.getMessage("search.to")));
+    add(modifiedBeforeField, "wrap");
+    add(new JLabel(Messages.getMessage("search.maxDepth")));
+    add(maxDepthSpinner, "growx 0");
+    add(new JLabel(Messages.getMessage("search.prune")));
+    add(pruneField, "wrap");
+    add(includeHiddenCheckBox, "skip 1, span 3, split 4, left");
+    add(includeFoldersCheckBox);
+    add(searchButton, "gapleft push");
+    add(stopButton, "wrap");
+    add(new JScrollPane(resultTable), "span 4, wrap");
+    add(statusLabel, "span 4, left");
+
+    flushTimer = new Timer(FLUSH_INTERVAL, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        flush();
+      }
+    });
+  }
+
+  private JTextField createField(String tooltip, ActionListener actionListener) {
+    JTextField field = new JTextField(10);
+    field.setToolTipText(tooltip);
+    field.addActionListener(actionListener);
+    return field;
+  }
+
+  public JTextField getNameField() {
+    return nameField;
+  }
+
+  public JTable getResultTable() {
+    return resultTable;
+  }
+
+  public SearchResultTableModel getResultTableModel() {
+    return resultTableModel;
+  }
+
+  /**
+   * Cancels running search, must be called in EDT.
+   */
+  public void cancel() {
+    if (search != null) {
+      search.cancel();
+    }
+  }
+
+  private void startSearch() {
+    SearchCriteria criteria;
+    try {
+      criteria = createCriteria();
+    } catch (IllegalArgumentException e) {
+      JOptionPane.showMessageDialog(this, e.getMessage(), Messages.getMessage("search.invalidCriteria"), JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    cancel();
+    pendingHits.clear();
+    resultTableModel.clear();
+    searchButton.setEnabled(false);
+    stopButton.setEnabled(true);
+    search = recursiveSearch.start(root, criteria, new RecursiveSearch.Listener() {
+      @Override
+      public void found(String path, ListingSnapshot hits) {
+        pendingHits.add(new FolderHits(path, hits));
+      }
+
+      @Override
+      public void finished(final RecursiveSearch.Search finishedSearch) {
+        SwingUtils.runInEdt(new Runnable() {
+          @Override
+          public void run() {
+            searchFinished(finishedSearch);
+          }
+        });
+      }
+    });
+    flushTimer.start();
+  }
+
+  private SearchCriteria createCriteria() {
+    SearchCriteria.Builder builder = new SearchCriteria.Builder()
+        .name(nameField.getText().trim())
+        .size(parseSize(minSizeField.getText(), 0), parseSize(maxSizeField.getText(), Long.MAX_VALUE))
+        .modified(parseDate(modifiedAfterField.getText(), Long.MIN_VALUE, 0),
+            parseDate(modifiedBeforeField.getText(), Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1) - 1))
+        .includeHidden(includeHiddenCheckBox.isSelected())
+        .includeFolders(includeFoldersCheckBox.isSelected());
+    int maxDepth = (Integer) maxDepthSpinner.getValue();
+    if (maxDepth > 0) {
+      builder.maxDepth(maxDepth);
+    }
+    List<String> pruned = new ArrayList<String>();
+    for (String name : StringUtils.split(pruneField.getText(), ',')) {
+      if (StringUtils.isNotBlank(name)) {
+        pruned.add(name.trim());
+      }
+    }
+    return builder.prune(pruned).build();
+  }
+
+  /**
+   * @param text         size in bytes or with unit (k, M, G or T), i.e. "10M"
+   * @param defaultValue value returned for blank text
+   * @return size in bytes
+   * @throws IllegalArgumentException if text is not size
+   */
+  static long parseSize(String text, long defaultValue) {
+    if (StringUtils.isBlank(text)) {
+      return defaultValue;
+    }
+    Matcher matcher = SIZE_PATTERN.matcher(text.trim());
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(text.trim() + ": " + Messages.getMessage("search.size.tooltip"));
+    }
+    double count = Double.parseDouble(matcher.group(1).replace(',', '.'));
+    long multiplier = matcher.group(2).length() > 0 ? new FileSize(0).getMultiplier(matcher.group(2).charAt(0)) : 1;
+    return (long) (count * multiplier);
+  }
+
+  private static long parseDate(String text, long defaultValue, long offset) {
+    if (StringUtils.isBlank(text)) {
+      return defaultValue;
+    }
+    SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+    format.setLenient(false);
+    try {
+      return format.parse(text.trim()).getTime() + offset;
+    } catch (ParseException e) {
+      throw new IllegalArgumentException(text.trim() + ": " + Messages.getMessage("search.date.tooltip"));
+    }
+  }
+
+  private void flush() {
+    FolderHits folderHits;
+    while ((folderHits = pendingHits.poll()) != null) {
+      resultTableModel.add(folderHits.path, folderHits.hits);
+    }
+    if (search != null) {
+      statusLabel.setText(getStatusText(search, "search.status"));
+    }
+  }
+
+  private void searchFinished(RecursiveSearch.Search finishedSearch) {
+    if (finishedSearch != search) {
+      return;
+    }
+    flush();
+    flushTimer.stop();
+    searchButton.setEnabled(true);
+    stopButton.setEnabled(false);
+    statusLabel.setText(getStatusText(search, search.isCancelled() ? "search.statusCancelled" : "search.statusFinished"));
+  }
+
+  private String getStatusText(RecursiveSearch.Search search, String key) {
+    String text = Messages.getMessage(key, search.getSearchedFolders(), resultTableModel.getRowCount(),
+        search.getDuration() / 1000);
+    if (search.getFailedFolders() > 0) {
+      text += Messages.getMessage("search.statusFailedFolders", search.getFailedFolders());
+    }
+    return text;
+  }
+
+  private static final class FolderHits {
+    private final String path;
+    private final ListingSnapshot hits;
+
+    private FolderHits(String path, ListingSnapshot hits) {
+      this.path = path;
+      this.hits = hits;
+    }
+  }
+}
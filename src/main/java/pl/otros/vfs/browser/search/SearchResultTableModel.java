@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.search;
+
+import org.apache.commons.vfs2.FileObject;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.table.FileNameWithType;
+import pl.otros.vfs.browser.table.FileSize;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Results of recursive search in order they were found. Hits of one folder are appended with one insert event.
+ * Must be used in EDT.
+ */
+public class SearchResultTableModel extends AbstractTableModel {
+
+  public static final int COLUMN_NAME = 0;
+  public static final int COLUMN_FOLDER = 1;
+  public static final int COLUMN_SIZE = 2;
+  public static final int COLUMN_LAST_MOD_DATE = 3;
+  private static final String[] COLUMN_NAMES = new String[]{
+      Messages.getMessage("model.name"),
+      Messages.getMessage("search.folder"),
+      Messages.getMessage("model.size"),
+      Messages.getMessage("model.dateLastMod")
+  };
+
+  private final List<ListingSnapshot> snapshots = new ArrayList<ListingSnapshot>();
+  private final List<String> paths = new ArrayList<String>();
+  /**
+   * First row of every snapshot
+   */
+  private int[] offsets = new int[16];
+  private int rowCount = 0;
+
+  /**
+   * Appends hits of folder.
+   *
+   * @param path path of folder relative to searched location
+   * @param hits found entries
+   */
+  public void add(String path, ListingSnapshot hits) {
+    if (hits.size() == 0) {
+      return;
+    }
+    if (snapshots.size() == offsets.length) {
+      int[] newOffsets = new int[offsets.length * 2];
+      System.arraycopy(offsets, 0, newOffsets, 0, offsets.length);
+      offsets = newOffsets;
+    }
+    offsets[snapshots.size()] = rowCount;
+    snapshots.add(hits);
+    paths.add(path);
+    int firstRow = rowCount;
+    rowCount += hits.size();
+    fireTableRowsInserted(firstRow, rowCount - 1);
+  }
+
+  public void clear() {
+    snapshots.clear();
+    paths.clear();
+    rowCount = 0;
+    fireTableDataChanged();
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int columnIndex) {
+    if (columnIndex == COLUMN_NAME) {
+      return FileNameWithType.class;
+    } else if (columnIndex == COLUMN_SIZE) {
+      return FileSize.class;
+    } else if (columnIndex == COLUMN_LAST_MOD_DATE) {
+      return Date.class;
+    }
+    return String.class;
+  }
+
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    int index = snapshotIndex(rowIndex);
+    ListingSnapshot snapshot = snapshots.get(index);
+    int row = rowIndex - offsets[index];
+    if (columnIndex == COLUMN_NAME) {
+      return new FileNameWithType(snapshot.getFileName(row), snapshot.getType(row));
+    } else if (columnIndex == COLUMN_FOLDER) {
+      String path = paths.get(index);
+      return path.length() == 0 ? "." : path;
+    } else if (columnIndex == COLUMN_SIZE) {
+      return new FileSize(snapshot.isFile(row) ? snapshot.getSize(row) : -1);
+    } else if (columnIndex == COLUMN_LAST_MOD_DATE) {
+      long lastModified = snapshot.getLastModified(row);
+      return lastModified != ListingSnapshot.UNKNOWN ? new Date(lastModified) : null;
+    }
+    return "?";
+  }
+
+  /**
+   * @return found file, file object of local file is resolved on first call
+   */
+  public FileObject getFileObject(int rowIndex) {
+    int index = snapshotIndex(rowIndex);
+    return snapshots.get(index).getFileObject(rowIndex - offsets[index]);
+  }
+
+  /**
+   * @return path of folder containing found file relative to searched location
+   */
+  public String getFolderPath(int rowIndex) {
+    return paths.get(snapshotIndex(rowIndex));
+  }
+
+  private int snapshotIndex(int rowIndex) {
+    if (rowIndex < 0 || rowIndex >= rowCount) {
+      throw new IndexOutOfBoundsException("Row " + rowIndex + " of " + rowCount);
+    }
+    int low = 0;
+    int high = snapshots.size() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (offsets[middle] <= rowIndex) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Name filter compiled once from text typed in filter field. File is accepted if its name contains filter text
+ * (case insensitive) or if it matches the pattern: glob with <code>*</code>, <code>?</code> and <code>[...]</code>
+ * or regular expression if text starts with <code>/</code>. Text without wildcards is only searched as substring.
+ * Text starting with <code>~</code> is fuzzy filter: file is accepted if its name contains all characters
+ * of text in the same order.
+ * <p/>
+ * Substring and fuzzy filters can be evaluated with {@link FileNameIndex}.
+ * <p/>
+ * Instances are immutable and can be used from any thread.
+ */
+public final class FileNameFilter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileNameFilter.class);
+
+  public static final FileNameFilter ACCEPT_ALL = new FileNameFilter("", null, true, null);
+
+  private final String text;
+  private final Pattern pattern;
+  private final boolean acceptAll;
+  /**
+   * Lower case characters of fuzzy filter, null if filter is not fuzzy
+   */
+  private final String fuzzy;
+
+  private FileNameFilter(String text, Pattern pattern, boolean acceptAll, String fuzzy) {
+    this.text = text;
+    this.pattern = pattern;
+    this.acceptAll = acceptAll;
+    this.fuzzy = fuzzy;
+  }
+
+  /**
+   * @param text filter text, empty text accepts all files
+   * @return compiled filter, filter with invalid regular expression accepts all files
+   */
+  public static FileNameFilter compile(String text) {
+    if (text == null || text.length() == 0) {
+      return ACCEPT_ALL;
+    }
+    if (text.charAt(0) == '~') {
+      String fuzzy = text.substring(1).toLowerCase(Locale.ENGLISH);
+      return new FileNameFilter(text, null, fuzzy.length() == 0, fuzzy);
+    }
+    if (text.charAt(0) != '/' && StringUtils.containsNone(text, "*?[")) {
+      return new FileNameFilter(text, null, false, null);
+    }
+    try {
+      return new FileNameFilter(text, Pattern.compile(preparePatternString(text)), false, null);
+    } catch (PatternSyntaxException pse) {
+      LOGGER.debug("Invalid pattern: " + pse.getMessage());
+      return new FileNameFilter(text, null, true, null);
+    }
+  }
+
+  static String preparePatternString(String patternText) {
+    String patternString;
+    if (patternText.charAt(0) == '/') {
+      patternString = patternText.substring(1);
+    } else {
+      patternString = convertRegex(patternText);
+    }
+    return patternString;
+  }
+
+  static String convertRegex(String patternText) {
+    return "(?i)\\Q" + patternText
+        .replaceAll("\\[[^]]+\\]", "\\\\E$0\\\\Q")
+        .replaceAll("\\?", "\\\\E.\\\\Q")
+        .replaceAll("\\*", "\\\\E.*\\\\Q");
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public boolean isAcceptAll() {
+    return acceptAll;
+  }
+
+  public boolean accept(String baseName) {
+    if (acceptAll) {
+      return true;
+    } else if (fuzzy != null) {
+      return isSubsequenceIgnoreCase(fuzzy, baseName);
+    }
+    return StringUtils.containsIgnoreCase(baseName, text) || pattern != null && pattern.matcher(baseName).matches();
+  }
+
+  private static boolean isSubsequenceIgnoreCase(String lowerCaseQuery, String name) {
+    int position = 0;
+    for (int i = 0; i < lowerCaseQuery.length(); i++) {
+      char c = lowerCaseQuery.charAt(i);
+      while (position < name.length() && Character.toLowerCase(name.charAt(position)) != c) {
+        position++;
+      }
+      if (position == name.length()) {
+        return false;
+      }
+      position++;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if filter can be evaluated with {@link #accept(FileNameIndex)}
+   */
+  public boolean canUseIndex() {
+    return !acceptAll && pattern == null;
+  }
+
+  /**
+   * Evaluates substring or fuzzy filter with index, parent rows are always accepted.
+   *
+   * @param index index of listing
+   * @return accepted rows
+   * @see #canUseIndex()
+   */
+  public BitSet accept(FileNameIndex index) {
+    BitSet result = new BitSet(index.size());
+    for (int row : fuzzy != null ? index.findSubsequence(fuzzy) : index.findSubstring(text)) {
+      result.set(row);
+    }
+    for (int row : index.getParentRows()) {
+      result.set(row);
+    }
+    return result;
+  }
+
+  /**
+   * Evaluates filter for rows of snapshot, parent row is always accepted.
+   *
+   * @param snapshot listing
+   * @return accepted rows or null if evaluation was interrupted
+   */
+  public BitSet accept(ListingSnapshot snapshot) {
+    BitSet result = new BitSet(snapshot.size());
+    for (int row = 0; row < snapshot.size(); row++) {
+      if ((row & 0xfff) == 0 && Thread.currentThread().isInterrupted()) {
+        return null;
+      }
+      if (snapshot.isParent(row) || accept(snapshot.getName(row))) {
+        result.set(row);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FileNameFilter)) {
+      return false;
+    }
+    FileNameFilter that = (FileNameFilter) o;
+    return acceptAll == that.acceptAll && (acceptAll || text.equals(that.text));
+  }
+
+  @Override
+  public int hashCode() {
+    return acceptAll ? 0 : text.hashCode();
+  }
+}
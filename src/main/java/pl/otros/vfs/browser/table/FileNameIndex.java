@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory index of file names for quick search and name filter. Lower case names are indexed by trigrams
+ * (names are padded with two start markers, so prefixes of any length are trigram queries) and by single characters.
+ * Query collects candidates by intersecting posting lists and checks only candidates.
+ * <p/>
+ * Rows are added in order of model rows, so posting lists are sorted and results are sorted model rows.
+ * Index is not thread safe.
+ */
+public class FileNameIndex {
+
+  private static final char START = '\u0001';
+
+  private String[] names = new String[16];
+  private int size = 0;
+  private final Map<Long, IntList> trigrams = new HashMap<Long, IntList>();
+  private final Map<Character, IntList> characters = new HashMap<Character, IntList>();
+  private final IntList parentRows = new IntList();
+
+  /**
+   * Adds name of next row.
+   *
+   * @param name   file name
+   * @param parent true if row is parent row, parent row is not returned by queries
+   */
+  public void add(String name, boolean parent) {
+    int row = size;
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+    }
+    String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+    names[size++] = lowerCaseName;
+    if (parent) {
+      parentRows.add(row);
+      return;
+    }
+    String padded = "" + START + START + lowerCaseName;
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      postings(trigrams, trigram(padded, i)).add(row);
+    }
+    for (int i = 0; i < lowerCaseName.length(); i++) {
+      postings(characters, lowerCaseName.charAt(i)).add(row);
+    }
+  }
+
+  /**
+   * @return number of indexed rows
+   */
+  public int size() {
+    return size;
+  }
+
+  public int[] getParentRows() {
+    return parentRows.toArray();
+  }
+
+  /**
+   * @return rows which names start with prefix (case insensitive)
+   */
+  public int[] findPrefix(String prefix) {
+    String query = prefix.toLowerCase(Locale.ENGLISH);
+    String padded = "" + START + START + query;
+    List<IntList> lists = new ArrayList<IntList>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      IntList list = trigrams.get(trigram(padded, i));
+      if (list == null) {
+        return new int[0];
+      }
+      lists.add(list);
+    }
+    IntList result = new IntList();
+    for (int row : intersect(lists)) {
+      if (names[row].startsWith(query)) {
+        result.add(row);
+      }
+    }
+    return result.toArray();
+  }
+
+  /**
+   * @return rows which names contain text (case insensitive)
+   */
+  public int[] findSubstring(String text) {
+    String query = text.toLowerCase(Locale.ENGLISH);
+    List<IntList> lists = new ArrayList<IntList>();
+    if (query.length() < 3) {
+      for (int i = 0; i < query.length(); i++) {
+        IntList list = characters.get(query.charAt(i));
+        if (list == null) {
+          return new int[0];
+        }
+        lists.add(list);
+      }
+    } else {
+      for (int i = 0; i + 3 <= query.length(); i++) {
+        IntList list = trigrams.get(trigram(query, i));
+        if (list == null) {
+          return new int[0];
+        }
+        lists.add(list);
+      }
+    }
+    if (lists.isEmpty()) {
+      return allRows();
+    }
+    IntList result = new IntList();
+    for (int row : intersect(lists)) {
+      if (names[row].contains(query)) {
+        result.add(row);
+      }
+    }
+    return result.toArray();
+  }
+
+  /**
+   * Fuzzy search: name matches if it contains all characters of text in the same order, i.e. "vbr" matches
+   * "VfsBrowser.java".
+   *
+   * @return rows which names contain characters of text in given order (case insensitive)
+   */
+  public int[] findSubsequence(String text) {
+    String query = text.toLowerCase(Locale.ENGLISH);
+    List<IntList> lists = new ArrayList<IntList>();
+    for (int i = 0; i < query.length(); i++) {
+      IntList list = characters.get(query.charAt(i));
+      if (list == null) {
+        return new int[0];
+      }
+      if (!lists.contains(list)) {
+        lists.add(list);
+      }
+    }
+    if (lists.isEmpty()) {
+      return allRows();
+    }
+    IntList result = new IntList();
+    for (int row : intersect(lists)) {
+      if (isSubsequence(query, names[row])) {
+        result.add(row);
+      }
+    }
+    return result.toArray();
+  }
+
+  static boolean isSubsequence(String query, String name) {
+    int position = 0;
+    for (int i = 0; i < query.length(); i++) {
+      position = name.indexOf(query.charAt(i), position);
+      if (position < 0) {
+        return false;
+      }
+      position++;
+    }
+    return true;
+  }
+
+  private int[] allRows() {
+    IntList result = new IntList();
+    int[] parents = parentRows.toArray();
+    for (int row = 0; row < size; row++) {
+      if (Arrays.binarySearch(parents, row) < 0) {
+        result.add(row);
+      }
+    }
+    return result.toArray();
+  }
+
+  private static int[] intersect(List<IntList> lists) {
+    IntList smallest = lists.get(0);
+    for (IntList list : lists) {
+      if (list.size < smallest.size) {
+        smallest = list;
+      }
+    }
+    int[] result = Arrays.copyOf(smallest.values, smallest.size);
+    int count = result.length;
+    for (IntList list : lists) {
+      if (list == smallest) {
+        continue;
+      }
+      int newCount = 0;
+      int position = 0;
+      for (int i = 0; i < count; i++) {
+        int row = result[i];
+        while (position < list.size && list.values[position] < row) {
+          position++;
+        }
+        if (position < list.size && list.values[position] == row) {
+          result[newCount++] = row;
+        }
+      }
+      count = newCount;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static long trigram(String text, int index) {
+    return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+  }
+
+  private static <K> IntList postings(Map<K, IntList> map, K key) {
+    IntList list = map.get(key);
+    if (list == null) {
+      list = new IntList();
+      map.put(key, list);
+    }
+    return list;
+  }
+
+  /**
+   * Sorted list of rows, the same row is added once even if name contains the same trigram many times.
+   */
+  private static final class IntList {
+    private int[] values = new int[4];
+    private int size = 0;
+
+    private void add(int value) {
+      if (size > 0 && values[size - 1] == value) {
+        return;
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps {@link FileNameIndex} of {@link VfsTableModel} content. Index of new listing is built in background, rows
+ * streamed into model later are added to index as they come. Small listings are not indexed.
+ * <p/>
+ * All methods must be called in EDT.
+ */
+public class FileNameIndexer implements TableModelListener {
+
+  public static final String CONFIG_THRESHOLD = "listing.index.threshold";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileNameIndexer.class);
+  private static final int DEFAULT_THRESHOLD = 10000;
+  private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("name-index-%d").build());
+
+  private final VfsTableModel model;
+  private final int threshold;
+  private FileNameIndex index;
+  private long generation = 0;
+  private Future<?> buildFuture;
+
+  /**
+   * @param model     indexed model, indexer registers itself as model listener
+   * @param threshold minimal number of rows which are indexed
+   */
+  public FileNameIndexer(VfsTableModel model, int threshold) {
+    this.model = model;
+    this.threshold = threshold;
+    model.addTableModelListener(this);
+    rebuild();
+  }
+
+  /**
+   * Creates indexer configured with key {@link #CONFIG_THRESHOLD}.
+   */
+  public static FileNameIndexer fromConfiguration(VfsTableModel model, Configuration configuration) {
+    return new FileNameIndexer(model, configuration.getInt(CONFIG_THRESHOLD, DEFAULT_THRESHOLD));
+  }
+
+  /**
+   * @return index of all model rows or null if model is not indexed (yet)
+   */
+  public FileNameIndex getIndex() {
+    return index;
+  }
+
+  @Override
+  public void tableChanged(TableModelEvent e) {
+    if (e.getType() == TableModelEvent.UPDATE && e.getFirstRow() != TableModelEvent.HEADER_ROW
+        && e.getLastRow() != Integer.MAX_VALUE) {
+      //updated rows keep their names
+      return;
+    }
+    if (e.getType() == TableModelEvent.INSERT
+        && e.getFirstRow() == model.getRowCount() - (e.getLastRow() - e.getFirstRow() + 1)) {
+      if (index != null) {
+        addRows(index, e.getFirstRow(), e.getLastRow() + 1);
+        return;
+      } else if (buildFuture != null) {
+        //rows appended while index is built are added when it is finished
+        return;
+      }
+    }
+    rebuild();
+  }
+
+  private void rebuild() {
+    generation++;
+    index = null;
+    if (buildFuture != null) {
+      buildFuture.cancel(true);
+      buildFuture = null;
+    }
+    if (model.getRowCount() < threshold) {
+      return;
+    }
+    final ListingSnapshot snapshot = model.getSnapshot();
+    final long buildGeneration = generation;
+    buildFuture = EXECUTOR.submit(new Runnable() {
+      @Override
+      public void run() {
+        long ts = System.currentTimeMillis();
+        final FileNameIndex newIndex = new FileNameIndex();
+        for (int row = 0; row < snapshot.size(); row++) {
+          if ((row & 0xfff) == 0 && Thread.currentThread().isInterrupted()) {
+            return;
+          }
+          newIndex.add(snapshot.getName(row), snapshot.isParent(row));
+        }
+        LOGGER.debug("Indexing {} names took {} ms", snapshot.size(), System.currentTimeMillis() - ts);
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            buildFinished(buildGeneration, newIndex);
+          }
+        });
+      }
+    });
+  }
+
+  private void buildFinished(long buildGeneration, FileNameIndex newIndex) {
+    if (buildGeneration != generation) {
+      return;
+    }
+    buildFuture = null;
+    //only rows appended to model could be added while index was built
+    addRows(newIndex, newIndex.size(), model.getRowCount());
+    index = newIndex;
+  }
+
+  private void addRows(FileNameIndex target, int fromRow, int toRow) {
+    ListingSnapshot snapshot = model.getSnapshot();
+    for (int row = fromRow; row < toRow; row++) {
+      target.add(snapshot.getName(row), snapshot.isParent(row));
+    }
+  }
+}
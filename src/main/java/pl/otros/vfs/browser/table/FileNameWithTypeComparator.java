@@ -31,13 +31,13 @@ public class FileNameWithTypeComparator implements Comparator<FileNameWithType>
   }
 
   public int compareTo(FileNameWithType o1, FileNameWithType o2) {
-    if (o1 == null || o1.getFileType() == null || o1.getFileName() == null) {
+    if (o1 == null || o1.getFileName() == null) {
       return -1;
     }
-    if (o2 == null || o2.getFileType() == null || o2.getFileName() == null) {
+    if (o2 == null || o2.getFileName() == null) {
       return 1;
     }
-    //folders first first
+    //folders first first, file without known type (attributes not loaded yet) is not a folder
     boolean folder1 = FileType.FOLDER.equals(o1.getFileType());
     boolean folder2 = FileType.FOLDER.equals(o2.getFileType());
     int result = 0;
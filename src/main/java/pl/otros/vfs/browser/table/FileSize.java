@@ -30,6 +30,9 @@ public class FileSize implements Comparable<FileSize> {
   private static final long T = G * K;
 
   private long bytes;
+  private long files = -1;
+  private boolean partial;
+  private boolean incomplete;
 
   public FileSize(String string) {
     Pattern p = Pattern.compile("([\\d,.]+)\\s?([kKmMgGtT]{1})[Bb]{1}");
@@ -49,6 +52,32 @@ public class FileSize implements Comparable<FileSize> {
     this.bytes = bytes;
   }
 
+  /**
+   * Creates total size of folder.
+   *
+   * @param bytes   total size of files in folder tree
+   * @param files   number of files in folder tree
+   * @param partial true if folder tree is still being read and total will grow
+   */
+  public FileSize(long bytes, long files, boolean partial) {
+    this(bytes, files, partial, false);
+  }
+
+  /**
+   * Creates total size of folder.
+   *
+   * @param bytes      total size of files in folder tree
+   * @param files      number of files in folder tree
+   * @param partial    true if folder tree is still being read and total will grow
+   * @param incomplete true if some folders of tree could not be read and total is lower than real size
+   */
+  public FileSize(long bytes, long files, boolean partial, boolean incomplete) {
+    this(bytes);
+    this.files = files;
+    this.partial = partial;
+    this.incomplete = incomplete;
+  }
+
   public long getBytes() {
     return bytes;
   }
@@ -57,9 +86,30 @@ public class FileSize implements Comparable<FileSize> {
     this.bytes = bytes;
   }
 
+  /**
+   * @return number of files in folder tree, -1 if this is not size of folder
+   */
+  public long getFiles() {
+    return files;
+  }
+
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * @return true if some folders of folder tree could not be read
+   */
+  public boolean isIncomplete() {
+    return incomplete;
+  }
+
   @Override
   public String toString() {
-    return convertToStringRepresentation(bytes);
+    if (partial) {
+      return convertToStringRepresentation(bytes) + "\u2026";
+    }
+    return incomplete ? convertToStringRepresentation(bytes) + "+" : convertToStringRepresentation(bytes);
   }
 
   public long getMultiplier(char multiplierChar) {
@@ -16,6 +16,8 @@
 
 package pl.otros.vfs.browser.table;
 
+import pl.otros.vfs.browser.i18n.Messages;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
@@ -28,6 +30,17 @@ public class FileSizeTableCellRenderer extends DefaultTableCellRenderer {
     FileSize valueAt = (FileSize) table.getValueAt(row, column);
     label.setText(valueAt.toString() + " ");
     label.setHorizontalAlignment(SwingConstants.RIGHT);
+    if (valueAt.getFiles() >= 0) {
+      String key = "folderSize.files";
+      if (valueAt.isPartial()) {
+        key = "folderSize.filesPartial";
+      } else if (valueAt.isIncomplete()) {
+        key = "folderSize.filesIncomplete";
+      }
+      label.setToolTipText(Messages.getMessage(key, valueAt.getFiles(), valueAt.getBytes()));
+    } else {
+      label.setToolTipText(null);
+    }
 
     return label;
   }
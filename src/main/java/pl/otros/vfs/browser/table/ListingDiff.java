@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Difference between two listings of the same folder. Files are matched by name, file is changed if its type,
+ * size, last modification time or link flag is different. Parent row is ignored.
+ */
+public final class ListingDiff {
+
+  private final ListingSnapshot changedRows;
+  private final Set<String> removedNames;
+
+  private ListingDiff(ListingSnapshot changedRows, Set<String> removedNames) {
+    this.changedRows = changedRows;
+    this.removedNames = removedNames;
+  }
+
+  /**
+   * @param current listing which is shown
+   * @param fresh   new listing of folder
+   * @return changes which turn current listing into fresh listing
+   */
+  public static ListingDiff compute(ListingSnapshot current, ListingSnapshot fresh) {
+    Map<String, Integer> currentRows = new HashMap<String, Integer>(current.size() * 2);
+    for (int row = 0; row < current.size(); row++) {
+      if (!current.isParent(row)) {
+        currentRows.put(current.getName(row), row);
+      }
+    }
+    List<Integer> changed = new ArrayList<Integer>();
+    Set<String> removedNames = new HashSet<String>(currentRows.keySet());
+    for (int row = 0; row < fresh.size(); row++) {
+      if (fresh.isParent(row)) {
+        continue;
+      }
+      String name = fresh.getName(row);
+      removedNames.remove(name);
+      Integer currentRow = currentRows.get(name);
+      if (currentRow == null || !isSame(current, currentRow, fresh, row)) {
+        changed.add(row);
+      }
+    }
+    int[] changedIndexes = new int[changed.size()];
+    for (int i = 0; i < changedIndexes.length; i++) {
+      changedIndexes[i] = changed.get(i);
+    }
+    return new ListingDiff(fresh.reorder(changedIndexes), removedNames);
+  }
+
+  private static boolean isSame(ListingSnapshot current, int currentRow, ListingSnapshot fresh, int freshRow) {
+    return current.getTypeCode(currentRow) == fresh.getTypeCode(freshRow)
+        && current.getSize(currentRow) == fresh.getSize(freshRow)
+        && current.getLastModified(currentRow) == fresh.getLastModified(freshRow)
+        && current.isLink(currentRow) == fresh.isLink(freshRow)
+        && current.getResolvedType(currentRow) == fresh.getResolvedType(freshRow);
+  }
+
+  /**
+   * @return new and modified files
+   */
+  public ListingSnapshot getChangedRows() {
+    return changedRows;
+  }
+
+  public Set<String> getRemovedNames() {
+    return removedNames;
+  }
+
+  public boolean isEmpty() {
+    return changedRows.size() == 0 && removedNames.isEmpty();
+  }
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Row sorter of {@link VfsTableModel}. Unlike {@link javax.swing.table.TableRowSorter}, which compares values
+ * returned by table model, rows are compared by sort keys computed once per listing (see {@link ListingSortKeys}).
+ * Listings with at least {@link #CONFIG_ASYNC_THRESHOLD} rows are sorted in background thread, table shows previous
+ * order (new rows at the end) until sorted permutation of rows is ready.
+ * <p/>
+ * Rows are filtered by name filter (see {@link #setNameFilter(FileNameFilter)}) and row filter. Name filter of large
+ * listings is evaluated in background thread as well and accepted rows are published at once.
+ * <p/>
+ * All methods must be called in EDT.
+ */
+public class ListingRowSorter extends RowSorter<VfsTableModel> {
+
+  public static final String CONFIG_ASYNC_THRESHOLD = "table.sort.asyncThreshold";
+  public static final String CONFIG_PARALLEL_THRESHOLD = "table.sort.parallelThreshold";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ListingRowSorter.class);
+  private static final int DEFAULT_ASYNC_THRESHOLD = 10000;
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+  private static final int MAX_SORT_KEYS = 3;
+  private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-sorter-%d").build());
+  private static final ExecutorService FILTER_EXECUTOR = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-filter-%d").build());
+
+  private final VfsTableModel model;
+  private final int asyncThreshold;
+  private final int parallelThreshold;
+  private List<SortKey> sortKeys = Collections.emptyList();
+  private RowFilter<? super VfsTableModel, ? super Integer> rowFilter;
+  private FileNameFilter nameFilter = FileNameFilter.ACCEPT_ALL;
+  private FileNameIndexer nameIndexer;
+  private long filterGeneration = 0;
+  private Future<?> filterFuture;
+  private boolean sortsOnUpdates = false;
+  /**
+   * All model rows in current order
+   */
+  private int[] sorted = new int[0];
+  /**
+   * True if {@link #sorted} is sorted by current sort keys
+   */
+  private boolean sortedValid = true;
+  /**
+   * Result of name filter and row filter for every model row
+   */
+  private boolean[] included = new boolean[0];
+  private int[] viewToModel = new int[0];
+  private int[] modelToView = new int[0];
+  /**
+   * Incremented when indexes of existing model rows change, background sort started before change is discarded
+   */
+  private int structureVersion = 0;
+  private long sortGeneration = 0;
+  private boolean sortRunning = false;
+  private boolean sortPending = false;
+  private volatile ListingSortKeys lastKeys;
+  private final ModelEntry entry = new ModelEntry();
+
+  /**
+   * @param model             table model
+   * @param asyncThreshold    minimal number of rows which are sorted in background
+   * @param parallelThreshold minimal number of rows which are sorted in parallel
+   */
+  public ListingRowSorter(VfsTableModel model, int asyncThreshold, int parallelThreshold) {
+    this.model = model;
+    this.asyncThreshold = asyncThreshold;
+    this.parallelThreshold = parallelThreshold;
+    allRowsChanged();
+  }
+
+  /**
+   * Creates sorter configured with keys {@link #CONFIG_ASYNC_THRESHOLD} and {@link #CONFIG_PARALLEL_THRESHOLD}.
+   */
+  public static ListingRowSorter fromConfiguration(VfsTableModel model, Configuration configuration) {
+    return new ListingRowSorter(model,
+        configuration.getInt(CONFIG_ASYNC_THRESHOLD, DEFAULT_ASYNC_THRESHOLD),
+        configuration.getInt(CONFIG_PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD));
+  }
+
+  @Override
+  public VfsTableModel getModel() {
+    return model;
+  }
+
+  @Override
+  public void toggleSortOrder(int column) {
+    checkColumn(column);
+    List<SortKey> keys = new ArrayList<SortKey>(sortKeys);
+    int index = -1;
+    for (int i = 0; i < keys.size(); i++) {
+      if (keys.get(i).getColumn() == column) {
+        index = i;
+        break;
+      }
+    }
+    if (index == 0) {
+      SortOrder order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+      keys.set(0, new SortKey(column, order));
+    } else {
+      if (index > 0) {
+        keys.remove(index);
+      }
+      keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+    }
+    if (keys.size() > MAX_SORT_KEYS) {
+      keys = keys.subList(0, MAX_SORT_KEYS);
+    }
+    setSortKeys(keys);
+  }
+
+  @Override
+  public int convertRowIndexToModel(int index) {
+    if (index < 0 || index >= viewToModel.length) {
+      throw new IndexOutOfBoundsException("Invalid index " + index);
+    }
+    return viewToModel[index];
+  }
+
+  @Override
+  public int convertRowIndexToView(int index) {
+    if (index < 0 || index >= modelToView.length) {
+      throw new IndexOutOfBoundsException("Invalid index " + index);
+    }
+    return modelToView[index];
+  }
+
+  @Override
+  public void setSortKeys(List<? extends SortKey> keys) {
+    List<SortKey> newKeys = keys == null ? Collections.<SortKey>emptyList()
+        : Collections.unmodifiableList(new ArrayList<SortKey>(keys));
+    for (SortKey key : newKeys) {
+      checkColumn(key.getColumn());
+    }
+    if (newKeys.equals(sortKeys)) {
+      return;
+    }
+    sortKeys = newKeys;
+    fireSortOrderChanged();
+    sortedValid = false;
+    sort();
+  }
+
+  @Override
+  public List<? extends SortKey> getSortKeys() {
+    return sortKeys;
+  }
+
+  /**
+   * Sets filter of rows, filter is evaluated in EDT. Null filter includes all rows.
+   */
+  public void setRowFilter(RowFilter<? super VfsTableModel, ? super Integer> rowFilter) {
+    this.rowFilter = rowFilter;
+    int[] lastViewToModel = viewToModel;
+    included = filter(0, model.getRowCount());
+    updateView(lastViewToModel);
+  }
+
+  public RowFilter<? super VfsTableModel, ? super Integer> getRowFilter() {
+    return rowFilter;
+  }
+
+  /**
+   * Sets name filter. Name filter of small listing is evaluated immediately, name filter of large listing is
+   * evaluated in background and table shows rows accepted by previous filter until evaluation is finished.
+   */
+  public void setNameFilter(FileNameFilter filter) {
+    if (filter.equals(nameFilter)) {
+      return;
+    }
+    nameFilter = filter;
+    cancelBackgroundFilter();
+    FileNameIndex index = nameIndexer != null ? nameIndexer.getIndex() : null;
+    if (index != null && index.size() == model.getRowCount() && filter.canUseIndex()) {
+      applyNameFilter(index.size(), filter.accept(index));
+    } else if (model.getRowCount() < asyncThreshold) {
+      int[] lastViewToModel = viewToModel;
+      included = filter(0, model.getRowCount());
+      updateView(lastViewToModel);
+    } else {
+      startBackgroundFilter();
+    }
+  }
+
+  /**
+   * @param nameIndexer index used to evaluate substring and fuzzy name filters without checking all rows
+   */
+  public void setNameIndexer(FileNameIndexer nameIndexer) {
+    this.nameIndexer = nameIndexer;
+  }
+
+  public FileNameFilter getNameFilter() {
+    return nameFilter;
+  }
+
+  /**
+   * @return true if name filter is being evaluated in background
+   */
+  public boolean isFiltering() {
+    return filterFuture != null;
+  }
+
+  /**
+   * @param sortsOnUpdates true if rows are sorted again when they are updated
+   */
+  public void setSortsOnUpdates(boolean sortsOnUpdates) {
+    this.sortsOnUpdates = sortsOnUpdates;
+  }
+
+  public boolean getSortsOnUpdates() {
+    return sortsOnUpdates;
+  }
+
+  /**
+   * @return true if rows are sorted by current sort keys, false if rows are being sorted in background
+   */
+  public boolean isSorted() {
+    return sortedValid;
+  }
+
+  @Override
+  public int getViewRowCount() {
+    return viewToModel.length;
+  }
+
+  @Override
+  public int getModelRowCount() {
+    return model.getRowCount();
+  }
+
+  @Override
+  public void modelStructureChanged() {
+    allRowsChanged();
+  }
+
+  @Override
+  public void allRowsChanged() {
+    int[] lastViewToModel = viewToModel;
+    int count = model.getRowCount();
+    structureVersion++;
+    //all rows are filtered by current name filter below
+    cancelBackgroundFilter();
+    sorted = identity(0, count);
+    sortedValid = sortKeys.isEmpty();
+    included = filter(0, count);
+    if (sortedValid || !sortInEdt()) {
+      updateView(lastViewToModel);
+      sort();
+    }
+  }
+
+  @Override
+  public void rowsInserted(int firstRow, int endRow) {
+    checkRange(firstRow, endRow, model.getRowCount());
+    int[] lastViewToModel = viewToModel;
+    int count = endRow - firstRow + 1;
+    if (firstRow < sorted.length) {
+      structureVersion++;
+      for (int i = 0; i < sorted.length; i++) {
+        if (sorted[i] >= firstRow) {
+          sorted[i] += count;
+        }
+      }
+    }
+    int[] newSorted = Arrays.copyOf(sorted, sorted.length + count);
+    System.arraycopy(identity(firstRow, endRow + 1), 0, newSorted, sorted.length, count);
+    sorted = newSorted;
+    boolean[] newIncluded = new boolean[included.length + count];
+    System.arraycopy(included, 0, newIncluded, 0, firstRow);
+    System.arraycopy(filter(firstRow, endRow + 1), 0, newIncluded, firstRow, count);
+    System.arraycopy(included, firstRow, newIncluded, endRow + 1, included.length - firstRow);
+    included = newIncluded;
+    sortedValid = sortKeys.isEmpty();
+    if (sortedValid || !sortInEdt()) {
+      updateView(lastViewToModel);
+      sort();
+    }
+  }
+
+  @Override
+  public void rowsDeleted(int firstRow, int endRow) {
+    checkRange(firstRow, endRow, sorted.length);
+    int[] lastViewToModel = viewToModel;
+    int count = endRow - firstRow + 1;
+    structureVersion++;
+    int[] newSorted = new int[sorted.length - count];
+    int index = 0;
+    for (int row : sorted) {
+      if (row < firstRow) {
+        newSorted[index++] = row;
+      } else if (row > endRow) {
+        newSorted[index++] = row - count;
+      }
+    }
+    sorted = newSorted;
+    boolean[] newIncluded = new boolean[included.length - count];
+    System.arraycopy(included, 0, newIncluded, 0, firstRow);
+    System.arraycopy(included, endRow + 1, newIncluded, firstRow, included.length - endRow - 1);
+    included = newIncluded;
+    updateView(lastViewToModel);
+  }
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow) {
+    checkRange(firstRow, endRow, model.getRowCount());
+    int[] lastViewToModel = viewToModel;
+    System.arraycopy(filter(firstRow, endRow + 1), 0, included, firstRow, endRow - firstRow + 1);
+    if (sortsOnUpdates && !sortKeys.isEmpty()) {
+      sortedValid = false;
+      if (sortInEdt()) {
+        return;
+      }
+      sort();
+    }
+    updateView(lastViewToModel);
+  }
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow, int column) {
+    rowsUpdated(firstRow, endRow);
+  }
+
+  /**
+   * Sorts rows if they are not sorted. Small listings are sorted immediately, large listings in background.
+   */
+  private void sort() {
+    if (sortedValid) {
+      return;
+    }
+    if (!sortInEdt()) {
+      sortPending = true;
+      if (!sortRunning) {
+        startBackgroundSort();
+      }
+    }
+  }
+
+  /**
+   * Sorts rows in EDT if listing is small.
+   *
+   * @return true if rows were sorted and view was updated
+   */
+  private boolean sortInEdt() {
+    if (model.getRowCount() >= asyncThreshold) {
+      return false;
+    }
+    int[] lastViewToModel = viewToModel;
+    sorted = sortRows(model.getSnapshotWithAttributes(), model.getFolderSizes(), sortKeys);
+    sortedValid = true;
+    updateView(lastViewToModel);
+    return true;
+  }
+
+  private void cancelBackgroundFilter() {
+    filterGeneration++;
+    if (filterFuture != null) {
+      filterFuture.cancel(true);
+      filterFuture = null;
+    }
+  }
+
+  private void startBackgroundFilter() {
+    final ListingSnapshot snapshot = model.getSnapshot();
+    final FileNameFilter filter = nameFilter;
+    final int version = structureVersion;
+    final long generation = filterGeneration;
+    filterFuture = FILTER_EXECUTOR.submit(new Runnable() {
+      @Override
+      public void run() {
+        long ts = System.currentTimeMillis();
+        final BitSet accepted = filter.accept(snapshot);
+        if (accepted == null) {
+          return;
+        }
+        LOGGER.debug("Filtering {} rows took {} ms", snapshot.size(), System.currentTimeMillis() - ts);
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            backgroundFilterFinished(generation, version, snapshot.size(), accepted);
+          }
+        });
+      }
+    });
+  }
+
+  private void backgroundFilterFinished(long generation, int version, int rowCount, BitSet accepted) {
+    if (generation != filterGeneration) {
+      return;
+    }
+    filterFuture = null;
+    if (version != structureVersion || rowCount > included.length) {
+      startBackgroundFilter();
+      return;
+    }
+    //rows appended while filtering were already filtered by current name filter
+    applyNameFilter(rowCount, accepted);
+  }
+
+  private void applyNameFilter(int rowCount, BitSet accepted) {
+    int[] lastViewToModel = viewToModel;
+    boolean[] newIncluded = included.clone();
+    for (int row = 0; row < rowCount; row++) {
+      newIncluded[row] = accepted.get(row) && includedByRowFilter(row);
+    }
+    included = newIncluded;
+    updateView(lastViewToModel);
+  }
+
+  private void startBackgroundSort() {
+    sortRunning = true;
+    sortPending = false;
+    final ListingSnapshot snapshot = model.getSnapshotWithAttributes();
+    final Map<String, FileSize> folderSizes = model.getFolderSizes();
+    final List<SortKey> keys = sortKeys;
+    final int version = structureVersion;
+    final long generation = ++sortGeneration;
+    EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        int[] order = null;
+        try {
+          long ts = System.currentTimeMillis();
+          order = sortRows(snapshot, folderSizes, keys);
+          LOGGER.debug("Sorting {} rows took {} ms", order.length, System.currentTimeMillis() - ts);
+        } catch (RuntimeException e) {
+          LOGGER.error("Can't sort rows", e);
+        }
+        final int[] result = order;
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            backgroundSortFinished(generation, version, keys, result);
+          }
+        });
+      }
+    });
+  }
+
+  private void backgroundSortFinished(long generation, int version, List<SortKey> keys, int[] order) {
+    sortRunning = false;
+    if (order != null && generation == sortGeneration && version == structureVersion && keys.equals(sortKeys)
+        && order.length <= model.getRowCount()) {
+      int[] lastViewToModel = viewToModel;
+      //rows appended while sorting stay at the end until next sort
+      int[] newSorted = Arrays.copyOf(order, sorted.length);
+      System.arraycopy(identity(order.length, sorted.length), 0, newSorted, order.length, sorted.length - order.length);
+      sorted = newSorted;
+      sortedValid = order.length == sorted.length;
+      updateView(lastViewToModel);
+    }
+    //failed sort is not repeated until rows or sort keys change
+    if (sortPending || !sortedValid && order != null) {
+      sort();
+    }
+  }
+
+  private int[] sortRows(ListingSnapshot snapshot, Map<String, FileSize> folderSizes, List<SortKey> keys) {
+    if (keys.isEmpty()) {
+      return identity(0, snapshot.size());
+    }
+    ListingSortKeys sortKeysOfListing = lastKeys;
+    if (sortKeysOfListing == null || sortKeysOfListing.getSnapshot() != snapshot
+        || !sortKeysOfListing.getFolderSizes().equals(folderSizes)) {
+      sortKeysOfListing = ListingSortKeys.of(snapshot, folderSizes);
+      lastKeys = sortKeysOfListing;
+    }
+    return sortKeysOfListing.sort(keys, snapshot.size() >= parallelThreshold);
+  }
+
+  private void updateView(int[] lastViewToModel) {
+    int viewCount = 0;
+    for (int row : sorted) {
+      if (included[row]) {
+        viewCount++;
+      }
+    }
+    int[] newViewToModel = new int[viewCount];
+    int[] newModelToView = new int[sorted.length];
+    Arrays.fill(newModelToView, -1);
+    int index = 0;
+    for (int row : sorted) {
+      if (included[row]) {
+        newModelToView[row] = index;
+        newViewToModel[index++] = row;
+      }
+    }
+    viewToModel = newViewToModel;
+    modelToView = newModelToView;
+    fireRowSorterChanged(lastViewToModel);
+  }
+
+  private boolean[] filter(int fromRow, int toRow) {
+    boolean[] result = new boolean[toRow - fromRow];
+    ListingSnapshot snapshot = model.getSnapshot();
+    for (int row = fromRow; row < toRow; row++) {
+      boolean accepted = nameFilter.isAcceptAll() || snapshot.isParent(row) || nameFilter.accept(snapshot.getName(row));
+      result[row - fromRow] = accepted && includedByRowFilter(row);
+    }
+    return result;
+  }
+
+  private boolean includedByRowFilter(int row) {
+    if (rowFilter == null) {
+      return true;
+    }
+    entry.row = row;
+    return rowFilter.include(entry);
+  }
+
+  private static int[] identity(int from, int to) {
+    int[] result = new int[Math.max(0, to - from)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = from + i;
+    }
+    return result;
+  }
+
+  private void checkColumn(int column) {
+    if (column < 0 || column >= model.getColumnCount()) {
+      throw new IndexOutOfBoundsException("Invalid column " + column);
+    }
+  }
+
+  private static void checkRange(int firstRow, int endRow, int rowCount) {
+    if (firstRow < 0 || endRow < firstRow || endRow >= rowCount) {
+      throw new IndexOutOfBoundsException("Invalid range " + firstRow + "-" + endRow);
+    }
+  }
+
+  private final class ModelEntry extends RowFilter.Entry<VfsTableModel, Integer> {
+    private int row;
+
+    @Override
+    public VfsTableModel getModel() {
+      return model;
+    }
+
+    @Override
+    public int getValueCount() {
+      return model.getColumnCount();
+    }
+
+    @Override
+    public Object getValue(int index) {
+      return model.getValueAt(row, index);
+    }
+
+    @Override
+    public Integer getIdentifier() {
+      return row;
+    }
+  }
+}
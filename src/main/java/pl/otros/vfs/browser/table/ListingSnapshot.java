@@ -0,0 +1,485 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.UriParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.LinkFileObject;
+import pl.otros.vfs.browser.ParentFileObject;
+import pl.otros.vfs.browser.util.VFSUtils;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, column oriented view of folder content. All attributes are read once when snapshot is created
+ * (usually outside of EDT), so table model, renderers and filters never call {@link FileObject} methods
+ * which can cause network round trip.
+ * <p/>
+ * Snapshot can be created without file objects (see {@link Builder}), file object of row is created when
+ * it is requested for the first time.
+ */
+public final class ListingSnapshot {
+
+  public static final byte TYPE_UNKNOWN = 0;
+  public static final byte TYPE_FILE = 1;
+  public static final byte TYPE_FOLDER = 2;
+  public static final byte TYPE_FILE_OR_FOLDER = 3;
+  public static final byte TYPE_IMAGINARY = 4;
+
+  public static final long UNKNOWN = -1;
+
+  private static final List<RowSorter.SortKey> SORT_BY_NAME =
+      Collections.singletonList(new RowSorter.SortKey(VfsTableModel.COLUMN_NAME, SortOrder.ASCENDING));
+
+  public static final ListingSnapshot EMPTY = new ListingSnapshot(null, new FileObject[0], new String[0], new byte[0], new long[0], new long[0], new byte[0]);
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ListingSnapshot.class);
+  private static final FileType[] FILE_TYPES = new FileType[]{null, FileType.FILE, FileType.FOLDER, FileType.FILE_OR_FOLDER, FileType.IMAGINARY};
+  private static final byte FLAG_HIDDEN = 1;
+  private static final byte FLAG_PARENT = 2;
+  private static final byte FLAG_LINK = 4;
+  //type of link target is stored in flags above link flag
+  private static final int TARGET_TYPE_SHIFT = 3;
+
+  /**
+   * Folder of rows without file objects, null if all file objects are known
+   */
+  private final FileObject folder;
+  private final FileObject[] fileObjects;
+  private final String[] names;
+  private final byte[] types;
+  private final long[] sizes;
+  private final long[] lastModified;
+  private final byte[] flags;
+
+  ListingSnapshot(FileObject folder, FileObject[] fileObjects, String[] names, byte[] types, long[] sizes, long[] lastModified, byte[] flags) {
+    this.folder = folder;
+    this.fileObjects = fileObjects;
+    this.names = names;
+    this.types = types;
+    this.sizes = sizes;
+    this.lastModified = lastModified;
+    this.flags = flags;
+  }
+
+  /**
+   * Creates snapshot reading attributes of files. This can be slow for remote file systems, do not call it on EDT.
+   */
+  public static ListingSnapshot create(FileObject... fileObjects) {
+    int count = fileObjects.length;
+    FileObject[] files = Arrays.copyOf(fileObjects, count);
+    String[] names = new String[count];
+    byte[] types = new byte[count];
+    long[] sizes = new long[count];
+    long[] lastModified = new long[count];
+    byte[] flags = new byte[count];
+    for (int i = 0; i < count; i++) {
+      FileObject fileObject = files[i];
+      names[i] = fileObject.getName().getBaseName();
+      FileType fileType = null;
+      try {
+        fileType = fileObject.getType();
+      } catch (FileSystemException e) {
+        LOGGER.warn("Can't get file type " + names[i], e);
+      }
+      types[i] = typeCode(fileType);
+      sizes[i] = UNKNOWN;
+      if (FileType.FILE.equals(fileType)) {
+        try {
+          sizes[i] = fileObject.getContent().getSize();
+        } catch (FileSystemException e) {
+          LOGGER.warn("Can't get size " + names[i], e);
+        }
+      }
+      lastModified[i] = UNKNOWN;
+      try {
+        lastModified[i] = VFSUtils.isHttpProtocol(fileObject) ? 0 : fileObject.getContent().getLastModifiedTime();
+      } catch (FileSystemException e) {
+        LOGGER.warn("Can't get last mod date " + names[i], e);
+      }
+      if (ParentFileObject.PARENT_NAME.equals(names[i])) {
+        flags[i] |= FLAG_PARENT;
+      }
+      if (isHidden(fileObject)) {
+        flags[i] |= FLAG_HIDDEN;
+      }
+      if (fileObject instanceof LinkFileObject) {
+        flags[i] |= FLAG_LINK | typeCode(((LinkFileObject) fileObject).getTargetType()) << TARGET_TYPE_SHIFT;
+      }
+    }
+    return new ListingSnapshot(null, files, names, types, sizes, lastModified, flags);
+  }
+
+  private static boolean isHidden(FileObject fileObject) {
+    try {
+      return fileObject.getName().getBaseName().startsWith(".") || fileObject.isHidden();
+    } catch (FileSystemException e) {
+      return false;
+    }
+  }
+
+  public static byte typeCode(FileType fileType) {
+    for (byte i = 1; i < FILE_TYPES.length; i++) {
+      if (FILE_TYPES[i].equals(fileType)) {
+        return i;
+      }
+    }
+    return TYPE_UNKNOWN;
+  }
+
+  public static FileType fileType(byte typeCode) {
+    return FILE_TYPES[typeCode];
+  }
+
+  public int size() {
+    return fileObjects.length;
+  }
+
+  /**
+   * Returns file object of row. File object of row added by {@link Builder} is resolved on first call.
+   */
+  public FileObject getFileObject(int row) {
+    FileObject fileObject = fileObjects[row];
+    if (fileObject == null) {
+      fileObject = resolveFileObject(row);
+      //resolved file object is cached, it is the same for every thread
+      fileObjects[row] = fileObject;
+    }
+    return fileObject;
+  }
+
+  /**
+   * @return file object of row or null if it was not resolved yet
+   */
+  FileObject getResolvedFileObject(int row) {
+    return fileObjects[row];
+  }
+
+  public FileObject[] getFileObjects() {
+    FileObject[] result = new FileObject[fileObjects.length];
+    for (int row = 0; row < result.length; row++) {
+      result[row] = getFileObject(row);
+    }
+    return result;
+  }
+
+  /**
+   * Returns name of file without resolving file object.
+   */
+  public FileName getFileName(int row) {
+    FileObject fileObject = fileObjects[row];
+    if (fileObject != null) {
+      return fileObject.getName();
+    }
+    try {
+      return resolveFileName(row);
+    } catch (FileSystemException e) {
+      throw new IllegalStateException("Can't resolve name of " + names[row], e);
+    }
+  }
+
+  private FileName resolveFileName(int row) throws FileSystemException {
+    return folder.getFileSystem().getFileSystemManager().resolveName(folder.getName(), UriParser.encode(names[row]), NameScope.CHILD);
+  }
+
+  private FileObject resolveFileObject(int row) {
+    try {
+      FileObject fileObject = folder.getFileSystem().resolveFile(resolveFileName(row));
+      return isLink(row) ? new LinkFileObject(fileObject, getResolvedType(row)) : fileObject;
+    } catch (FileSystemException e) {
+      throw new IllegalStateException("Can't resolve file " + names[row], e);
+    }
+  }
+
+  public String getName(int row) {
+    return names[row];
+  }
+
+  public byte getTypeCode(int row) {
+    return types[row];
+  }
+
+  /**
+   * @return file type or null if type is unknown
+   */
+  public FileType getType(int row) {
+    return fileType(types[row]);
+  }
+
+  /**
+   * @return type of file or type of file which link points to, null if type is unknown
+   */
+  public FileType getResolvedType(int row) {
+    return isLink(row) ? fileType((byte) (flags[row] >> TARGET_TYPE_SHIFT)) : getType(row);
+  }
+
+  public boolean isFile(int row) {
+    return types[row] == TYPE_FILE;
+  }
+
+  public boolean isFolder(int row) {
+    return types[row] == TYPE_FOLDER;
+  }
+
+  /**
+   * @return size in bytes, {@link #UNKNOWN} for folders or if size can't be read
+   */
+  public long getSize(int row) {
+    return sizes[row];
+  }
+
+  /**
+   * @return last modification time, {@link #UNKNOWN} if can't be read
+   */
+  public long getLastModified(int row) {
+    return lastModified[row];
+  }
+
+  public boolean isHidden(int row) {
+    return (flags[row] & FLAG_HIDDEN) != 0;
+  }
+
+  public boolean isParent(int row) {
+    return (flags[row] & FLAG_PARENT) != 0;
+  }
+
+  public boolean isLink(int row) {
+    return (flags[row] & FLAG_LINK) != 0;
+  }
+
+  public ListingSnapshot append(ListingSnapshot other) {
+    if (other.size() == 0) {
+      return this;
+    } else if (size() == 0) {
+      return other;
+    }
+    return concat(Arrays.asList(this, other));
+  }
+
+  public static ListingSnapshot concat(List<ListingSnapshot> snapshots) {
+    int count = 0;
+    for (ListingSnapshot snapshot : snapshots) {
+      count += snapshot.size();
+    }
+    FileObject[] newFileObjects = new FileObject[count];
+    String[] newNames = new String[count];
+    byte[] newTypes = new byte[count];
+    long[] newSizes = new long[count];
+    long[] newLastModified = new long[count];
+    byte[] newFlags = new byte[count];
+    FileObject folder = null;
+    for (ListingSnapshot snapshot : snapshots) {
+      if (snapshot.folder != null && snapshot.size() > 0) {
+        if (folder != null && !folder.equals(snapshot.folder)) {
+          //rows without file objects can't be resolved relative to different folders
+          folder = null;
+          break;
+        }
+        folder = snapshot.folder;
+      }
+    }
+    int offset = 0;
+    for (ListingSnapshot snapshot : snapshots) {
+      int size = snapshot.size();
+      if (snapshot.folder != null && !snapshot.folder.equals(folder)) {
+        for (int row = 0; row < size; row++) {
+          snapshot.getFileObject(row);
+        }
+      }
+      System.arraycopy(snapshot.fileObjects, 0, newFileObjects, offset, size);
+      System.arraycopy(snapshot.names, 0, newNames, offset, size);
+      System.arraycopy(snapshot.types, 0, newTypes, offset, size);
+      System.arraycopy(snapshot.sizes, 0, newSizes, offset, size);
+      System.arraycopy(snapshot.lastModified, 0, newLastModified, offset, size);
+      System.arraycopy(snapshot.flags, 0, newFlags, offset, size);
+      offset += size;
+    }
+    return new ListingSnapshot(folder, newFileObjects, newNames, newTypes, newSizes, newLastModified, newFlags);
+  }
+
+  /**
+   * Returns snapshot with some file objects replaced (i.e. files detected as links). Attributes of replacements
+   * have to be read before (off EDT), rows are only copied.
+   *
+   * @param originals    replaced file objects, compared by identity
+   * @param replacements rows of replacements, row <code>i</code> replaces row of <code>originals[i]</code>
+   */
+  public ListingSnapshot replace(FileObject[] originals, ListingSnapshot replacements) {
+    if (originals.length == 0) {
+      return this;
+    }
+    Map<FileObject, Integer> replacementRows = new IdentityHashMap<FileObject, Integer>(originals.length * 2);
+    for (int i = 0; i < originals.length; i++) {
+      replacementRows.put(originals[i], i);
+    }
+    int[] rows = new int[originals.length];
+    int[] values = new int[originals.length];
+    int count = 0;
+    for (int row = 0; row < size() && count < originals.length; row++) {
+      Integer value = replacementRows.get(fileObjects[row]);
+      if (value != null) {
+        rows[count] = row;
+        values[count++] = value;
+      }
+    }
+    if (count == 0) {
+      return this;
+    }
+    return update(Arrays.copyOf(rows, count), replacements.reorder(Arrays.copyOf(values, count)));
+  }
+
+  /**
+   * Returns snapshot with some rows replaced with rows of other snapshot.
+   *
+   * @param rows   indexes of rows of this snapshot which are replaced
+   * @param values new rows, row <code>i</code> replaces row <code>rows[i]</code>
+   */
+  public ListingSnapshot update(int[] rows, ListingSnapshot values) {
+    if (rows.length == 0) {
+      return this;
+    }
+    FileObject newFolder = folder != null ? folder : values.folder;
+    if (values.folder != null && !values.folder.equals(newFolder)) {
+      for (int i = 0; i < values.size(); i++) {
+        values.getFileObject(i);
+      }
+    }
+    ListingSnapshot result = new ListingSnapshot(newFolder, fileObjects.clone(), names.clone(), types.clone(), sizes.clone(), lastModified.clone(), flags.clone());
+    for (int i = 0; i < rows.length; i++) {
+      int row = rows[i];
+      result.fileObjects[row] = values.fileObjects[i];
+      result.names[row] = values.names[i];
+      result.types[row] = values.types[i];
+      result.sizes[row] = values.sizes[i];
+      result.lastModified[row] = values.lastModified[i];
+      result.flags[row] = values.flags[i];
+    }
+    return result;
+  }
+
+  /**
+   * Returns snapshot with rows in given order.
+   *
+   * @param order indexes of rows of this snapshot
+   */
+  public ListingSnapshot reorder(int[] order) {
+    int count = order.length;
+    FileObject[] newFileObjects = new FileObject[count];
+    String[] newNames = new String[count];
+    byte[] newTypes = new byte[count];
+    long[] newSizes = new long[count];
+    long[] newLastModified = new long[count];
+    byte[] newFlags = new byte[count];
+    for (int i = 0; i < count; i++) {
+      int row = order[i];
+      newFileObjects[i] = fileObjects[row];
+      newNames[i] = names[row];
+      newTypes[i] = types[row];
+      newSizes[i] = sizes[row];
+      newLastModified[i] = lastModified[row];
+      newFlags[i] = flags[row];
+    }
+    return new ListingSnapshot(folder, newFileObjects, newNames, newTypes, newSizes, newLastModified, newFlags);
+  }
+
+  /**
+   * Returns snapshot sorted like in table: parent first, then folders and files by name.
+   */
+  public ListingSnapshot sortedByName() {
+    return reorder(ListingSortKeys.of(this).sort(SORT_BY_NAME, false));
+  }
+
+  /**
+   * Creates snapshot from attributes read without file objects, i.e. by {@link java.nio.file.Files}. File objects
+   * of rows are resolved only when they are requested.
+   */
+  public static final class Builder {
+    private final FileObject folder;
+    private String[] names;
+    private byte[] types;
+    private long[] sizes;
+    private long[] lastModified;
+    private byte[] flags;
+    private int count = 0;
+
+    /**
+     * @param folder   folder which contains files
+     * @param capacity expected number of files
+     */
+    public Builder(FileObject folder, int capacity) {
+      this.folder = folder;
+      int initialCapacity = Math.max(capacity, 16);
+      names = new String[initialCapacity];
+      types = new byte[initialCapacity];
+      sizes = new long[initialCapacity];
+      lastModified = new long[initialCapacity];
+      flags = new byte[initialCapacity];
+    }
+
+    /**
+     * @param name         base name of file
+     * @param fileType     type of file, null if type is not known yet
+     * @param size         size of file or {@link #UNKNOWN}
+     * @param lastModified last modification time or {@link #UNKNOWN}
+     * @param hidden       true if file is hidden
+     * @param linkTarget   type of file which link points to, null if file is not a link
+     * @return this builder
+     */
+    public Builder add(String name, FileType fileType, long size, long lastModified, boolean hidden, FileType linkTarget) {
+      if (count == names.length) {
+        int newCapacity = count * 2;
+        names = Arrays.copyOf(names, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        this.lastModified = Arrays.copyOf(this.lastModified, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+      }
+      names[count] = name;
+      types[count] = typeCode(fileType);
+      sizes[count] = size;
+      this.lastModified[count] = lastModified;
+      byte flag = hidden ? FLAG_HIDDEN : 0;
+      if (linkTarget != null) {
+        flag |= FLAG_LINK | typeCode(linkTarget) << TARGET_TYPE_SHIFT;
+      }
+      flags[count] = flag;
+      count++;
+      return this;
+    }
+
+    public int size() {
+      return count;
+    }
+
+    public ListingSnapshot build() {
+      return new ListingSnapshot(folder, new FileObject[count], Arrays.copyOf(names, count), Arrays.copyOf(types, count),
+          Arrays.copyOf(sizes, count), Arrays.copyOf(lastModified, count), Arrays.copyOf(flags, count));
+    }
+  }
+}
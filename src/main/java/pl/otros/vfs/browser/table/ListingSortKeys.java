@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sort keys of all rows of listing computed once, so rows are compared without allocating objects or calling
+ * {@link org.apache.commons.vfs2.FileObject#getType()}. Rows are sorted like in table: parent row first, then
+ * (for name column) folders, then rows by value of column. Rows with equal values are sorted by name. Folders are
+ * sorted by size if their size was calculated. Row indexes are sorted with merge sort on <code>int</code> arrays,
+ * so rows are not boxed.
+ * <p/>
+ * Instances are immutable and can be used from any thread.
+ */
+final class ListingSortKeys {
+
+  private static final byte GROUP_PARENT = 0;
+  private static final byte GROUP_FOLDER = 1;
+  private static final byte GROUP_FILE = 2;
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+  private static final int PARALLEL_SORT_GRANULARITY = 8192;
+
+  private final ListingSnapshot snapshot;
+  private final Map<String, FileSize> folderSizes;
+  private final byte[] groups;
+  private final String[] lowerCaseNames;
+  private final String[] names;
+  private final String[] typeNames;
+  private final long[] sizes;
+  private final long[] lastModified;
+
+  private ListingSortKeys(ListingSnapshot snapshot, Map<String, FileSize> folderSizes) {
+    this.snapshot = snapshot;
+    this.folderSizes = folderSizes;
+    int count = snapshot.size();
+    groups = new byte[count];
+    lowerCaseNames = new String[count];
+    names = new String[count];
+    typeNames = new String[count];
+    sizes = new long[count];
+    lastModified = new long[count];
+    for (int row = 0; row < count; row++) {
+      FileType type = snapshot.getType(row);
+      if (snapshot.isParent(row)) {
+        groups[row] = GROUP_PARENT;
+      } else {
+        groups[row] = FileType.FOLDER.equals(type) ? GROUP_FOLDER : GROUP_FILE;
+      }
+      names[row] = snapshot.getName(row);
+      lowerCaseNames[row] = names[row].toLowerCase(Locale.ENGLISH);
+      typeNames[row] = type != null ? type.getName() : "?";
+      sizes[row] = FileType.FILE.equals(type) ? snapshot.getSize(row) : -1;
+      if (groups[row] == GROUP_FOLDER && !folderSizes.isEmpty()) {
+        FileSize folderSize = folderSizes.get(names[row]);
+        sizes[row] = folderSize != null ? folderSize.getBytes() : -1;
+      }
+      lastModified[row] = snapshot.getLastModified(row);
+    }
+  }
+
+  static ListingSortKeys of(ListingSnapshot snapshot) {
+    return of(snapshot, Collections.<String, FileSize>emptyMap());
+  }
+
+  /**
+   * @param folderSizes calculated sizes of folders keyed by folder name, see {@link VfsTableModel#getFolderSizes()}
+   */
+  static ListingSortKeys of(ListingSnapshot snapshot, Map<String, FileSize> folderSizes) {
+    return new ListingSortKeys(snapshot, folderSizes);
+  }
+
+  ListingSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  Map<String, FileSize> getFolderSizes() {
+    return folderSizes;
+  }
+
+  int size() {
+    return groups.length;
+  }
+
+  /**
+   * @param sortKeys sort keys of table columns
+   * @param parallel true if halves of rows should be sorted in parallel in {@link ForkJoinPool#commonPool()}
+   * @return model indexes of all rows in sorted order
+   */
+  int[] sort(List<? extends RowSorter.SortKey> sortKeys, boolean parallel) {
+    RowSorter.SortKey[] keys = sortKeys.toArray(new RowSorter.SortKey[sortKeys.size()]);
+    int[] rows = new int[size()];
+    for (int row = 0; row < rows.length; row++) {
+      rows[row] = row;
+    }
+    int[] buffer = rows.clone();
+    if (parallel) {
+      ForkJoinPool.commonPool().invoke(new SortTask(buffer, rows, 0, rows.length, keys));
+    } else {
+      mergeSort(buffer, rows, 0, rows.length, keys);
+    }
+    return rows;
+  }
+
+  /**
+   * Sorts range of <code>dst</code>. Range of <code>src</code> must contain the same rows, it is used as buffer.
+   */
+  private void mergeSort(int[] src, int[] dst, int from, int to, RowSorter.SortKey[] keys) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(dst, from, to, keys);
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(dst, src, from, middle, keys);
+    mergeSort(dst, src, middle, to, keys);
+    merge(src, dst, from, middle, to, keys);
+  }
+
+  private void insertionSort(int[] rows, int from, int to, RowSorter.SortKey[] keys) {
+    for (int i = from + 1; i < to; i++) {
+      int row = rows[i];
+      int j = i - 1;
+      while (j >= from && compareRows(rows[j], row, keys) > 0) {
+        rows[j + 1] = rows[j];
+        j--;
+      }
+      rows[j + 1] = row;
+    }
+  }
+
+  /**
+   * Merges sorted ranges <code>[from, middle)</code> and <code>[middle, to)</code> of <code>src</code> into
+   * <code>dst</code>.
+   */
+  private void merge(int[] src, int[] dst, int from, int middle, int to, RowSorter.SortKey[] keys) {
+    if (compareRows(src[middle - 1], src[middle], keys) <= 0) {
+      System.arraycopy(src, from, dst, from, to - from);
+      return;
+    }
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || left < middle && compareRows(src[left], src[right], keys) <= 0) {
+        dst[i] = src[left++];
+      } else {
+        dst[i] = src[right++];
+      }
+    }
+  }
+
+  private final class SortTask extends RecursiveAction {
+    private final int[] src;
+    private final int[] dst;
+    private final int from;
+    private final int to;
+    private final RowSorter.SortKey[] keys;
+
+    private SortTask(int[] src, int[] dst, int from, int to, RowSorter.SortKey[] keys) {
+      this.src = src;
+      this.dst = dst;
+      this.from = from;
+      this.to = to;
+      this.keys = keys;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_SORT_GRANULARITY) {
+        mergeSort(src, dst, from, to, keys);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new SortTask(dst, src, from, middle, keys), new SortTask(dst, src, middle, to, keys));
+      merge(src, dst, from, middle, to, keys);
+    }
+  }
+
+  int compareRows(int row1, int row2, RowSorter.SortKey[] keys) {
+    boolean parent1 = groups[row1] == GROUP_PARENT;
+    if (parent1 != (groups[row2] == GROUP_PARENT)) {
+      return parent1 ? -1 : 1;
+    }
+    for (RowSorter.SortKey key : keys) {
+      if (key.getSortOrder() == SortOrder.UNSORTED) {
+        continue;
+      }
+      int result;
+      int column = key.getColumn();
+      if (column == VfsTableModel.COLUMN_NAME) {
+        //folders are first in both orders
+        result = groups[row1] - groups[row2];
+        if (result == 0) {
+          result = compareNames(row1, row2);
+          result = key.getSortOrder() == SortOrder.DESCENDING ? -result : result;
+        }
+      } else {
+        result = compareColumn(column, row1, row2);
+        result = key.getSortOrder() == SortOrder.DESCENDING ? -result : result;
+      }
+      if (result != 0) {
+        return result;
+      }
+    }
+    int result = compareNames(row1, row2);
+    return result != 0 ? result : row1 - row2;
+  }
+
+  private int compareColumn(int column, int row1, int row2) {
+    if (column == VfsTableModel.COLUMN_SIZE) {
+      return compare(sizes[row1], sizes[row2]);
+    } else if (column == VfsTableModel.COLUMN_TYPE) {
+      return typeNames[row1].compareTo(typeNames[row2]);
+    } else if (column == VfsTableModel.COLUMN_LAST_MOD_DATE) {
+      return compare(lastModified[row1], lastModified[row2]);
+    }
+    return 0;
+  }
+
+  private int compareNames(int row1, int row2) {
+    int result = lowerCaseNames[row1].compareTo(lowerCaseNames[row2]);
+    return result != 0 ? result : names[row1].compareTo(names[row2]);
+  }
+
+  private static int compare(long value1, long value2) {
+    return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pushes directory entries into {@link VfsTableModel} while the folder is still processed (i.e. links are checked).
+ * Snapshots of entries can be added from any thread, they are appended to model on EDT at most once per frame,
+ * so table receives one {@code fireTableRowsInserted} for every batch collected during the frame. Rows can be also
+ * replaced while streaming (i.e. when link is detected), rows of replacements are read by caller and EDT only swaps
+ * them in the same per frame flush.
+ */
+public class StreamingTableUpdater {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingTableUpdater.class);
+  private static final int FRAME_DURATION = 16;
+
+  private final VfsTableModel vfsTableModel;
+  private final Runnable afterFirstBatch;
+  private final Queue<ListingSnapshot> pending = new ConcurrentLinkedQueue<ListingSnapshot>();
+  private final Queue<Replacement> pendingReplacements = new ConcurrentLinkedQueue<Replacement>();
+  private final Timer timer;
+  private volatile boolean finished = false;
+  private volatile boolean cancelled = false;
+  private volatile boolean flushed = false;
+  private volatile Runnable afterFinish;
+  private boolean firstBatchAdded = false;
+  private int rowsAdded = 0;
+
+  public StreamingTableUpdater(VfsTableModel vfsTableModel, Runnable afterFirstBatch) {
+    this.vfsTableModel = vfsTableModel;
+    this.afterFirstBatch = afterFirstBatch;
+    timer = new Timer(FRAME_DURATION, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        flush();
+      }
+    });
+    timer.setCoalesce(true);
+  }
+
+  public void start() {
+    timer.start();
+  }
+
+  public void add(ListingSnapshot snapshot) {
+    if (!cancelled) {
+      pending.add(snapshot);
+    }
+  }
+
+  /**
+   * Replaces already added file object (i.e. when it is detected as link). Replacement is applied with next frame.
+   *
+   * @param fileObject  replaced file object
+   * @param replacement row of replacement, created with {@link ListingSnapshot#create(FileObject...)} by caller,
+   *                    so attributes are not read on EDT
+   */
+  public void replace(FileObject fileObject, ListingSnapshot replacement) {
+    if (!cancelled) {
+      pendingReplacements.add(new Replacement(fileObject, replacement));
+    }
+  }
+
+  /**
+   * Marks end of listing. Remaining entries are flushed with next frame and then <code>afterFinish</code> is invoked on EDT.
+   *
+   * @param afterFinish action executed on EDT when all entries are in model, can be null
+   */
+  public void finish(Runnable afterFinish) {
+    this.afterFinish = afterFinish;
+    finished = true;
+  }
+
+  public void cancel() {
+    cancelled = true;
+    pending.clear();
+    pendingReplacements.clear();
+    timer.stop();
+  }
+
+  /**
+   * @return true if all rows were added to model or updater was cancelled
+   */
+  public boolean isFinished() {
+    return cancelled || flushed;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  private void flush() {
+    if (cancelled) {
+      timer.stop();
+      return;
+    }
+    List<ListingSnapshot> snapshots = new ArrayList<ListingSnapshot>();
+    ListingSnapshot snapshot;
+    while ((snapshot = pending.poll()) != null) {
+      snapshots.add(snapshot);
+    }
+    ListingSnapshot batch = ListingSnapshot.concat(snapshots);
+    if (batch.size() > 0) {
+      vfsTableModel.addContent(batch);
+      rowsAdded += batch.size();
+      if (!firstBatchAdded) {
+        firstBatchAdded = true;
+        if (afterFirstBatch != null) {
+          afterFirstBatch.run();
+        }
+      }
+    }
+    List<FileObject> originals = new ArrayList<FileObject>();
+    List<ListingSnapshot> replacements = new ArrayList<ListingSnapshot>();
+    Replacement replacement;
+    while ((replacement = pendingReplacements.poll()) != null) {
+      originals.add(replacement.original);
+      replacements.add(replacement.row);
+    }
+    if (!originals.isEmpty()) {
+      vfsTableModel.replace(originals.toArray(new FileObject[originals.size()]), ListingSnapshot.concat(replacements));
+    }
+    if (finished && pending.isEmpty() && pendingReplacements.isEmpty()) {
+      timer.stop();
+      flushed = true;
+      LOGGER.debug("Streaming of {} rows finished", rowsAdded);
+      if (afterFinish != null) {
+        afterFinish.run();
+      }
+    }
+  }
+
+  private static final class Replacement {
+    private final FileObject original;
+    private final ListingSnapshot row;
+
+    private Replacement(FileObject original, ListingSnapshot row) {
+      this.original = original;
+      this.row = row;
+    }
+  }
+}
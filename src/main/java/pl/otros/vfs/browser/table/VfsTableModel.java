@@ -16,17 +16,21 @@
 
 package pl.otros.vfs.browser.table;
 
-import pl.otros.vfs.browser.util.VFSUtils;
 import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.util.LazyAttributeLoader;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class VfsTableModel extends AbstractTableModel {
 
@@ -40,11 +44,62 @@ public class VfsTableModel extends AbstractTableModel {
       Messages.getMessage("model.type"),
       Messages.getMessage("model.dateLastMod")
   };
-  private static final Logger LOGGER = LoggerFactory.getLogger(VfsTableModel.class);
 
+  /**
+   * Maximum number of deleted rows which are fired as row delete events, see {@link #update(ListingSnapshot, Collection)}
+   */
+  private static final int MAX_DELETE_EVENTS = 256;
 
-  private FileObject[] fileObjects = new FileObject[0];
-  private FileObjectComparator fileObjectComparator = new FileObjectComparator();
+  private ListingSnapshot snapshot = ListingSnapshot.EMPTY;
+  /**
+   * Attributes loaded lazily for rows of snapshot without attributes, keyed by file name
+   */
+  private final Map<String, LoadedAttributes> loadedAttributes;
+  private boolean lazy = false;
+  /**
+   * Calculated sizes of folders, keyed by folder name
+   */
+  private final Map<String, FileSize> folderSizes = new HashMap<String, FileSize>();
+
+  /**
+   * Attributes of one row, copied from batch of loaded attributes, so batch is not kept in memory
+   */
+  private static final class LoadedAttributes {
+    private final byte type;
+    private final byte resolvedType;
+    private final boolean hidden;
+    private final boolean link;
+    private final long size;
+    private final long lastModified;
+    private final int modelRow;
+
+    private LoadedAttributes(ListingSnapshot values, int row, int modelRow) {
+      this.type = values.getTypeCode(row);
+      this.resolvedType = ListingSnapshot.typeCode(values.getResolvedType(row));
+      this.hidden = values.isHidden(row);
+      this.link = values.isLink(row);
+      this.size = values.getSize(row);
+      this.lastModified = values.getLastModified(row);
+      this.modelRow = modelRow;
+    }
+  }
+
+  public VfsTableModel() {
+    this(LazyAttributeLoader.DEFAULT_MAX_RESIDENT);
+  }
+
+  /**
+   * @param maxResidentAttributes maximum number of rows which lazily loaded attributes are kept, attributes
+   *                              of least recently used rows are dropped
+   */
+  public VfsTableModel(final int maxResidentAttributes) {
+    loadedAttributes = new LinkedHashMap<String, LoadedAttributes>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, LoadedAttributes> eldest) {
+        return size() > maxResidentAttributes;
+      }
+    };
+  }
 
   @Override
   public int getColumnCount() {
@@ -53,54 +108,28 @@ public class VfsTableModel extends AbstractTableModel {
 
   @Override
   public int getRowCount() {
-    return fileObjects.length;
+    return snapshot.size();
   }
 
   @Override
   public Object getValueAt(int rowIndex, int columnIndex) {
-    FileObject fileObject = fileObjects[rowIndex];
-    boolean isFile = false;
-    try {
-      isFile = FileType.FILE.equals(fileObject.getType());
-    } catch (FileSystemException e1) {
-      LOGGER.warn("Can't check file type " + fileObject.getName().getBaseName(), e1);
-    }
     if (columnIndex == COLUMN_NAME) {
-      try {
-        return new FileNameWithType(fileObject.getName(), fileObject.getType());
-      } catch (FileSystemException e) {
-        return new FileNameWithType(fileObject.getName(), null);
-      }
+      return new FileNameWithType(snapshot.getFileName(rowIndex), getType(rowIndex));
     } else if (columnIndex == COLUMN_TYPE) {
-      try {
-        return fileObject.getType().getName();
-      } catch (FileSystemException e) {
-        LOGGER.warn("Can't get file type " + fileObject.getName().getBaseName(), e);
-        return "?";
-      }
+      FileType type = getType(rowIndex);
+      return type != null ? type.getName() : "?";
     } else if (columnIndex == COLUMN_SIZE) {
-      try {
-        long size = -1;
-        if (isFile) {
-          size = fileObject.getContent().getSize();
+      FileType type = getType(rowIndex);
+      if (FileType.FOLDER.equals(type) && !folderSizes.isEmpty() && !snapshot.isParent(rowIndex)) {
+        FileSize folderSize = folderSizes.get(snapshot.getName(rowIndex));
+        if (folderSize != null) {
+          return folderSize;
         }
-        return new FileSize(size);
-      } catch (FileSystemException e) {
-        LOGGER.warn("Can't get size " + fileObject.getName().getBaseName(), e);
-        return new FileSize(-1);
       }
+      return new FileSize(FileType.FILE.equals(type) ? getSize(rowIndex) : -1);
     } else if (columnIndex == COLUMN_LAST_MOD_DATE) {
-      try {
-
-        long lastModifiedTime = 0;
-        if (!VFSUtils.isHttpProtocol(fileObject)) {
-          lastModifiedTime = fileObject.getContent().getLastModifiedTime();
-        }
-        return new Date(lastModifiedTime);
-      } catch (FileSystemException e) {
-        LOGGER.warn("Can't get last mod date " + fileObject.getName().getBaseName(), e);
-        return null;
-      }
+      long lastModified = getLastModified(rowIndex);
+      return lastModified != ListingSnapshot.UNKNOWN ? new Date(lastModified) : null;
     }
     return "?";
   }
@@ -124,14 +153,285 @@ public class VfsTableModel extends AbstractTableModel {
     return COLUMN_NAMES[column];
   }
 
-  public void setContent(FileObject... fileObjects) {
-    this.fileObjects = fileObjects;
-    Arrays.sort(fileObjects, fileObjectComparator);
+  /**
+   * Replaces content of model. Snapshot should be already sorted, see {@link ListingSnapshot#sortedByName()}.
+   */
+  public void setContent(ListingSnapshot snapshot) {
+    this.snapshot = snapshot;
+    loadedAttributes.clear();
+    folderSizes.clear();
+    lazy = false;
+    for (int row = 0; row < snapshot.size() && !lazy; row++) {
+      lazy = snapshot.getTypeCode(row) == ListingSnapshot.TYPE_UNKNOWN && !snapshot.isParent(row);
+    }
     fireTableDataChanged();
   }
 
+  public void addContent(ListingSnapshot newRows) {
+    if (newRows.size() == 0) {
+      return;
+    }
+    int firstRow = snapshot.size();
+    snapshot = snapshot.append(newRows);
+    //streamed local folder gets rows without attributes after lazy threshold
+    for (int row = 0; row < newRows.size() && !lazy; row++) {
+      lazy = newRows.getTypeCode(row) == ListingSnapshot.TYPE_UNKNOWN && !newRows.isParent(row);
+    }
+    fireTableRowsInserted(firstRow, snapshot.size() - 1);
+  }
+
+  /**
+   * Replaces file objects in model, rows keep their positions.
+   *
+   * @param originals    replaced file objects, compared by identity
+   * @param replacements rows of replacements read off EDT, row <code>i</code> replaces row of <code>originals[i]</code>
+   */
+  public void replace(FileObject[] originals, ListingSnapshot replacements) {
+    ListingSnapshot oldSnapshot = snapshot;
+    snapshot = snapshot.replace(originals, replacements);
+    int firstRow = -1;
+    int lastRow = -1;
+    for (int row = 0; row < snapshot.size() && snapshot != oldSnapshot; row++) {
+      if (snapshot.getResolvedFileObject(row) != oldSnapshot.getResolvedFileObject(row)) {
+        firstRow = firstRow < 0 ? row : firstRow;
+        lastRow = row;
+      }
+    }
+    if (firstRow >= 0) {
+      fireTableRowsUpdated(firstRow, lastRow);
+    }
+  }
+
+  /**
+   * Applies changes of folder content. Changes are fired as row insert, delete and update events, so table keeps
+   * selection and scroll position. If changes are scattered over many rows, model fires data changed event instead.
+   *
+   * @param changedRows  new or modified files, rows with the same names are updated, other rows are added
+   * @param removedNames names of removed files
+   * @return false if data changed event was fired instead of row events (selection is cleared)
+   */
+  public boolean update(ListingSnapshot changedRows, Collection<String> removedNames) {
+    Map<String, Integer> rowsByName = new HashMap<String, Integer>(snapshot.size() * 2);
+    for (int row = 0; row < snapshot.size(); row++) {
+      if (!snapshot.isParent(row)) {
+        rowsByName.put(snapshot.getName(row), row);
+      }
+    }
+    List<Integer> updatedRows = new ArrayList<Integer>();
+    List<Integer> updatedValues = new ArrayList<Integer>();
+    List<Integer> addedValues = new ArrayList<Integer>();
+    for (int i = 0; i < changedRows.size(); i++) {
+      Integer row = rowsByName.get(changedRows.getName(i));
+      if (row != null) {
+        updatedRows.add(row);
+        updatedValues.add(i);
+      } else {
+        addedValues.add(i);
+      }
+    }
+    boolean[] removed = new boolean[snapshot.size()];
+    int removedCount = 0;
+    for (String name : removedNames) {
+      Integer row = rowsByName.get(name);
+      if (row != null && !removed[row]) {
+        removed[row] = true;
+        removedCount++;
+      }
+    }
+    if (removedCount > MAX_DELETE_EVENTS) {
+      ListingSnapshot result = snapshot.update(toArray(updatedRows), changedRows.reorder(toArray(updatedValues)));
+      result = result.reorder(keptRows(removed, removedCount)).append(changedRows.reorder(toArray(addedValues)));
+      setContent(result);
+      return false;
+    }
+    for (int i = 0; i < changedRows.size(); i++) {
+      loadedAttributes.remove(changedRows.getName(i));
+      folderSizes.remove(changedRows.getName(i));
+    }
+    folderSizes.keySet().removeAll(removedNames);
+    if (!updatedRows.isEmpty()) {
+      snapshot = snapshot.update(toArray(updatedRows), changedRows.reorder(toArray(updatedValues)));
+      fireTableRowsUpdated(Collections.min(updatedRows), Collections.max(updatedRows));
+    }
+    //every delete event has to match content of model, ranges are removed from the last one
+    for (int last = removed.length - 1; last >= 0; last--) {
+      if (!removed[last]) {
+        continue;
+      }
+      int first = last;
+      while (first > 0 && removed[first - 1]) {
+        first--;
+      }
+      int[] kept = new int[snapshot.size() - (last - first + 1)];
+      for (int row = 0, i = 0; row < snapshot.size(); row++) {
+        if (row < first || row > last) {
+          kept[i++] = row;
+        }
+      }
+      snapshot = snapshot.reorder(kept);
+      fireTableRowsDeleted(first, last);
+      last = first;
+    }
+    addContent(changedRows.reorder(toArray(addedValues)));
+    return true;
+  }
+
+  private static int[] keptRows(boolean[] removed, int removedCount) {
+    int[] kept = new int[removed.length - removedCount];
+    for (int row = 0, i = 0; row < removed.length; row++) {
+      if (!removed[row]) {
+        kept[i++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * @return true if some rows of content were listed without attributes, see {@link #putAttributes(int[], ListingSnapshot)}
+   */
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * @return true if row was listed without attributes and attributes were not loaded yet
+   */
+  public boolean needsAttributes(int row) {
+    return snapshot.getTypeCode(row) == ListingSnapshot.TYPE_UNKNOWN && !snapshot.isParent(row)
+        && !loadedAttributes.containsKey(snapshot.getName(row));
+  }
+
+  /**
+   * Sets lazily loaded attributes of rows listed without attributes. Rows which were changed in meantime
+   * (name is different) are skipped.
+   *
+   * @param rows   rows of model
+   * @param values attributes, row <code>i</code> contains attributes of row <code>rows[i]</code>
+   */
+  public void putAttributes(int[] rows, ListingSnapshot values) {
+    int firstRow = Integer.MAX_VALUE;
+    int lastRow = -1;
+    for (int i = 0; i < rows.length; i++) {
+      int row = rows[i];
+      if (row < snapshot.size() && snapshot.getName(row).equals(values.getName(i))) {
+        loadedAttributes.put(values.getName(i), new LoadedAttributes(values, i, row));
+        firstRow = Math.min(firstRow, row);
+        lastRow = Math.max(lastRow, row);
+      }
+    }
+    if (lastRow >= 0) {
+      fireTableRowsUpdated(firstRow, lastRow);
+    }
+  }
+
+  /**
+   * Sets calculated size of folder. Size is shown until folder is changed or content of model is replaced.
+   *
+   * @param row  expected row of folder, if folder is not in this row, it is searched by name
+   * @param name name of folder
+   * @param size total size of folder
+   */
+  public void putFolderSize(int row, String name, FileSize size) {
+    if (row < 0 || row >= snapshot.size() || !snapshot.getName(row).equals(name)) {
+      row = -1;
+      for (int i = 0; i < snapshot.size() && row < 0; i++) {
+        if (!snapshot.isParent(i) && snapshot.getName(i).equals(name)) {
+          row = i;
+        }
+      }
+    }
+    if (row >= 0 && !snapshot.isParent(row)) {
+      folderSizes.put(name, size);
+      fireTableRowsUpdated(row, row);
+    }
+  }
+
+  /**
+   * @return copy of calculated sizes of folders keyed by folder name
+   */
+  public Map<String, FileSize> getFolderSizes() {
+    return folderSizes.isEmpty() ? Collections.<String, FileSize>emptyMap() : new HashMap<String, FileSize>(folderSizes);
+  }
+
+  /**
+   * Removes all calculated sizes of folders.
+   */
+  public void clearFolderSizes() {
+    if (!folderSizes.isEmpty()) {
+      folderSizes.clear();
+      fireTableRowsUpdated(0, snapshot.size() - 1);
+    }
+  }
+
+  /**
+   * @return type of file or null if type is unknown
+   */
+  public FileType getType(int row) {
+    LoadedAttributes attributes = getLoadedAttributes(row);
+    return attributes != null ? ListingSnapshot.fileType(attributes.type) : snapshot.getType(row);
+  }
+
+  /**
+   * @return type of file or type of file which link points to, null if type is unknown
+   */
+  public FileType getResolvedType(int row) {
+    LoadedAttributes attributes = getLoadedAttributes(row);
+    return attributes != null ? ListingSnapshot.fileType(attributes.resolvedType) : snapshot.getResolvedType(row);
+  }
+
+  public long getSize(int row) {
+    LoadedAttributes attributes = getLoadedAttributes(row);
+    return attributes != null ? attributes.size : snapshot.getSize(row);
+  }
+
+  public long getLastModified(int row) {
+    LoadedAttributes attributes = getLoadedAttributes(row);
+    return attributes != null ? attributes.lastModified : snapshot.getLastModified(row);
+  }
+
+  /**
+   * @return content of model with lazily loaded attributes
+   */
+  public ListingSnapshot getSnapshotWithAttributes() {
+    if (loadedAttributes.isEmpty()) {
+      return snapshot;
+    }
+    int[] rows = new int[loadedAttributes.size()];
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(null, rows.length);
+    for (Map.Entry<String, LoadedAttributes> entry : loadedAttributes.entrySet()) {
+      LoadedAttributes attributes = entry.getValue();
+      //row index is stored when attributes are loaded, rows could be removed in meantime
+      if (attributes.modelRow < snapshot.size() && snapshot.getName(attributes.modelRow).equals(entry.getKey())) {
+        rows[builder.size()] = attributes.modelRow;
+        builder.add(entry.getKey(), ListingSnapshot.fileType(attributes.type), attributes.size,
+            attributes.lastModified, attributes.hidden,
+            attributes.link ? ListingSnapshot.fileType(attributes.resolvedType) : null);
+      }
+    }
+    return snapshot.update(Arrays.copyOf(rows, builder.size()), builder.build());
+  }
+
+  private LoadedAttributes getLoadedAttributes(int row) {
+    if (!lazy || snapshot.getTypeCode(row) != ListingSnapshot.TYPE_UNKNOWN) {
+      return null;
+    }
+    return loadedAttributes.get(snapshot.getName(row));
+  }
+
+  public ListingSnapshot getSnapshot() {
+    return snapshot;
+  }
+
   public FileObject get(int row) {
-    return fileObjects[row];
+    return snapshot.getFileObject(row);
   }
 
 }
@@ -31,8 +31,7 @@ public class VfsTableModelHiddenFileRowFilter extends RowFilter<VfsTableModel, I
   @Override
   public boolean include(Entry<? extends VfsTableModel, ? extends Integer> entry) {
     Integer identifier = entry.getIdentifier();
-    FileObject fileObject = entry.getModel().get(identifier);
-    return checkIfInclude(fileObject);
+    return showHidden || !entry.getModel().getSnapshot().isHidden(identifier);
   }
 
   protected boolean checkIfInclude(FileObject fileObject) {
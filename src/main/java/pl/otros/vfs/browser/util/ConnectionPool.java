@@ -0,0 +1,317 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.provider.AbstractFileSystem;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages connections of remote file systems (SFTP, FTP, SMB), one session per scheme, host, port and user.
+ * Sessions are registered when they are used (see {@link #touch(FileObject)}), used sessions are kept alive
+ * with periodic pings and sessions which were not used for idle timeout are closed. If more sessions than maximum
+ * are open, least recently used session is closed.
+ * <p/>
+ * Closing session closes communication link of file system, file system stays registered in file system manager,
+ * so file objects held by caches and history are still valid and reconnect when they are used again. Sessions with
+ * open streams are not closed.
+ * <p/>
+ * Timer only decides which sessions should be pinged or closed, blocking pings and closes run in lane of host in
+ * {@link IoScheduler} with {@link IoScheduler.Priority#PREFETCH} priority. Session has at most one ping or close
+ * queued, so hung host does not fill the queue.
+ */
+public class ConnectionPool {
+
+  public static final String CONFIG_KEEP_ALIVE_INTERVAL = "connection.keepAliveInterval";
+  public static final String CONFIG_IDLE_TIMEOUT = "connection.idleTimeout";
+  public static final String CONFIG_MAX_SESSIONS = "connection.maxSessions";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+  private static final long DEFAULT_KEEP_ALIVE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+  private static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+  private static final int DEFAULT_MAX_SESSIONS = 16;
+  private static final long MIN_IDLE_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+  private static final Set<String> SCHEMES = new HashSet<String>(Arrays.asList("sftp", "ftp", "ftps", "smb"));
+  private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("connection-pool-%d").build());
+
+  private final IoScheduler scheduler;
+  private final long keepAliveInterval;
+  private final long idleTimeout;
+  private final int maxSessions;
+  /**
+   * Sessions in order of use, least recently used first
+   */
+  private final Map<String, Session> sessions = new LinkedHashMap<String, Session>(16, 0.75f, true);
+
+  private static final class Session {
+    private final String key;
+    private final FileSystem fileSystem;
+    private volatile long lastUsed;
+    private volatile boolean open = true;
+    /**
+     * Close was queued and it was not finished yet, guarded by sessions
+     */
+    private boolean closing = false;
+    /**
+     * Last queued ping or close, guarded by sessions
+     */
+    private IoScheduler.Task task;
+
+    private Session(String key, FileSystem fileSystem) {
+      this.key = key;
+      this.fileSystem = fileSystem;
+    }
+  }
+
+  /**
+   * @param scheduler         scheduler which runs pings and closes
+   * @param keepAliveInterval interval of keep alive pings in milliseconds, 0 to disable pings
+   * @param idleTimeout       time in milliseconds after which unused session is closed, 0 to keep sessions open
+   * @param maxSessions       maximum number of open sessions
+   */
+  public ConnectionPool(IoScheduler scheduler, long keepAliveInterval, long idleTimeout, int maxSessions) {
+    this.scheduler = scheduler;
+    this.keepAliveInterval = keepAliveInterval;
+    this.idleTimeout = idleTimeout;
+    this.maxSessions = Math.max(1, maxSessions);
+  }
+
+  /**
+   * Creates pool configured with keys {@link #CONFIG_KEEP_ALIVE_INTERVAL}, {@link #CONFIG_IDLE_TIMEOUT} and
+   * {@link #CONFIG_MAX_SESSIONS}. Times are in milliseconds. Pool is started.
+   */
+  public static ConnectionPool fromConfiguration(Configuration configuration) {
+    ConnectionPool pool = new ConnectionPool(
+        VFSUtils.getIoScheduler(),
+        configuration.getLong(CONFIG_KEEP_ALIVE_INTERVAL, DEFAULT_KEEP_ALIVE_INTERVAL),
+        configuration.getLong(CONFIG_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT),
+        configuration.getInt(CONFIG_MAX_SESSIONS, DEFAULT_MAX_SESSIONS));
+    pool.start();
+    return pool;
+  }
+
+  /**
+   * Creates started pool with default settings.
+   */
+  public static ConnectionPool withDefaults() {
+    ConnectionPool pool = new ConnectionPool(VFSUtils.getIoScheduler(), DEFAULT_KEEP_ALIVE_INTERVAL, DEFAULT_IDLE_TIMEOUT,
+        DEFAULT_MAX_SESSIONS);
+    pool.start();
+    return pool;
+  }
+
+  /**
+   * Schedules keep alive pings and closing of idle sessions.
+   */
+  public void start() {
+    if (keepAliveInterval > 0) {
+      EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          keepAlive(System.currentTimeMillis());
+        }
+      }, keepAliveInterval, keepAliveInterval, TimeUnit.MILLISECONDS);
+    }
+    if (idleTimeout > 0) {
+      long checkInterval = Math.max(MIN_IDLE_CHECK_INTERVAL, idleTimeout / 10);
+      EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          closeIdle(System.currentTimeMillis());
+        }
+      }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static boolean canPool(FileObject fileObject) {
+    return fileObject != null && SCHEMES.contains(fileObject.getName().getScheme().toLowerCase());
+  }
+
+  /**
+   * @return key of session: scheme, user, host and port of file
+   */
+  public static String key(FileName name) {
+    if (name instanceof GenericFileName) {
+      GenericFileName genericName = (GenericFileName) name;
+      return genericName.getScheme() + "://" + (genericName.getUserName() != null ? genericName.getUserName() + "@" : "")
+          + genericName.getHostName() + ":" + genericName.getPort();
+    }
+    return name.getRootURI();
+  }
+
+  /**
+   * Marks session of remote file as used. Session is registered if it is used first time.
+   */
+  public void touch(FileObject fileObject) {
+    if (canPool(fileObject)) {
+      touch(key(fileObject.getName()), fileObject.getFileSystem(), System.currentTimeMillis());
+    }
+  }
+
+  void touch(String key, FileSystem fileSystem, long now) {
+    synchronized (sessions) {
+      Session session = sessions.get(key);
+      if (session == null || session.fileSystem != fileSystem) {
+        if (session != null) {
+          //the same server is accessed with other options, previous connection is not needed anymore
+          closeLater(session);
+        }
+        session = new Session(key, fileSystem);
+        sessions.put(key, session);
+      }
+      if (session.closing && session.task.cancel()) {
+        //session is used again before queued close was started
+        session.closing = false;
+      }
+      session.lastUsed = now;
+      session.open = true;
+      int open = 0;
+      for (Session s : sessions.values()) {
+        open += s.open && !s.closing ? 1 : 0;
+      }
+      for (Session s : sessions.values()) {
+        if (open <= maxSessions) {
+          break;
+        }
+        //session with open streams can't be closed, it is not counted as evicted
+        if (s.open && !s.closing && s != session && !hasOpenStreams(s)) {
+          LOGGER.info("Closing session {}, maximum of {} sessions is reached", s.key, maxSessions);
+          closeLater(s);
+          open--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues keep alive ping of every open session. Session which has ping or close queued is skipped.
+   */
+  void keepAlive(long now) {
+    synchronized (sessions) {
+      for (final Session session : sessions.values()) {
+        if (session.open && !session.closing && now - session.lastUsed >= keepAliveInterval
+            && (session.task == null || session.task.isDone())) {
+          session.task = scheduler.submit(IoScheduler.lane(session.key), IoScheduler.Priority.PREFETCH, new Runnable() {
+            @Override
+            public void run() {
+              try {
+                ping(session.fileSystem);
+              } catch (Exception e) {
+                LOGGER.info("Keep alive of session {} failed, session is closed: {}", session.key, e.getMessage());
+                close(session);
+              }
+            }
+          });
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues closing of sessions which were not used for idle timeout.
+   */
+  void closeIdle(long now) {
+    synchronized (sessions) {
+      for (Session session : sessions.values()) {
+        if (session.open && !session.closing && now - session.lastUsed > idleTimeout) {
+          LOGGER.info("Closing session {}, it was idle for {} s", session.key, (now - session.lastUsed) / 1000);
+          closeLater(session);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return number of open sessions
+   */
+  public int getOpenSessions() {
+    int open = 0;
+    for (Session session : getSessions()) {
+      open += session.open ? 1 : 0;
+    }
+    return open;
+  }
+
+  private List<Session> getSessions() {
+    synchronized (sessions) {
+      return new ArrayList<Session>(sessions.values());
+    }
+  }
+
+  private void ping(FileSystem fileSystem) throws Exception {
+    FileObject root = fileSystem.getRoot();
+    if (root instanceof SftpFileObject) {
+      SftpUtils.getSession((SftpFileObject) root).sendKeepAliveMsg();
+    } else {
+      root.refresh();
+      root.exists();
+    }
+  }
+
+  /**
+   * Queues closing of session. Must be called with sessions lock held.
+   */
+  private void closeLater(final Session session) {
+    session.closing = true;
+    session.task = scheduler.submit(IoScheduler.lane(session.key), IoScheduler.Priority.PREFETCH, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          close(session);
+        } finally {
+          synchronized (sessions) {
+            session.closing = false;
+          }
+        }
+      }
+    });
+  }
+
+  private static boolean hasOpenStreams(Session session) {
+    return session.fileSystem instanceof AbstractFileSystem && ((AbstractFileSystem) session.fileSystem).isOpen();
+  }
+
+  private void close(Session session) {
+    if (hasOpenStreams(session)) {
+      //file is read or written, session is closed when it is idle next time
+      return;
+    }
+    if (session.fileSystem instanceof AbstractFileSystem) {
+      ((AbstractFileSystem) session.fileSystem).closeCommunicationLink();
+    }
+    session.open = false;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+/**
+ * Lists one folder during recursive traversal. Default lister reads local folders with {@link LocalFolderLister}
+ * and other folders with {@link VFSUtils#getChildren(FileObject)}.
+ */
+public class FolderLister {
+
+  private final LocalFolderLister localFolderLister;
+
+  /**
+   * @param localFolderLister lister of local folders, it should not skip attributes of large folders
+   */
+  public FolderLister(LocalFolderLister localFolderLister) {
+    this.localFolderLister = localFolderLister;
+  }
+
+  /**
+   * Lists folder, links are not resolved. Listing of local folder is aborted when thread is interrupted.
+   *
+   * @param folder listed folder
+   * @return unsorted snapshot of folder content without parent row
+   * @throws FileSystemException if folder can't be listed
+   */
+  public ListingSnapshot list(FileObject folder) throws FileSystemException {
+    if (localFolderLister.canList(folder)) {
+      return localFolderLister.list(folder);
+    }
+    return ListingSnapshot.create(VFSUtils.getChildren(folder));
+  }
+}
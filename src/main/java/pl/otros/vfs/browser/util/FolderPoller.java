@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls one remote folder (SFTP, FTP, SMB) for changes. Polling interval starts with minimal interval and is doubled
+ * every time nothing has changed (or polling failed) up to maximal interval. When change is detected, interval
+ * goes back to minimal. Timer thread only schedules polls, folder is listed on {@link IoScheduler} with
+ * {@link IoScheduler.Priority#PREFETCH} priority in lane of folder's host.
+ */
+public class FolderPoller {
+
+  public static final String CONFIG_ENABLED = "listing.remote.autoRefresh";
+  public static final String CONFIG_MIN_INTERVAL = "listing.remote.autoRefresh.minInterval";
+  public static final String CONFIG_MAX_INTERVAL = "listing.remote.autoRefresh.maxInterval";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FolderPoller.class);
+  private static final long DEFAULT_MIN_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+  private static final long DEFAULT_MAX_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+  private static final Set<String> SCHEMES = new HashSet<String>(Arrays.asList("sftp", "ftp", "ftps", "smb"));
+  private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("folder-poller-%d").build());
+
+  private final IoScheduler scheduler;
+  private final long minInterval;
+  private final long maxInterval;
+  private volatile boolean enabled;
+  private Poll currentPoll;
+
+  public interface Task {
+
+    /**
+     * Lists folder and applies changes. Called from I/O thread.
+     *
+     * @param folder polled folder
+     * @return true if content of folder was changed
+     * @throws Exception if folder can't be listed, next poll is delayed
+     */
+    boolean poll(FileObject folder) throws Exception;
+  }
+
+  /**
+   * @param scheduler   scheduler which runs polls
+   * @param enabled     true if folders are polled
+   * @param minInterval minimal (and initial) polling interval in milliseconds
+   * @param maxInterval maximal polling interval in milliseconds
+   */
+  public FolderPoller(IoScheduler scheduler, boolean enabled, long minInterval, long maxInterval) {
+    this.scheduler = scheduler;
+    this.enabled = enabled;
+    this.minInterval = Math.max(1, minInterval);
+    this.maxInterval = Math.max(this.minInterval, maxInterval);
+  }
+
+  /**
+   * Creates poller configured with keys {@link #CONFIG_ENABLED}, {@link #CONFIG_MIN_INTERVAL} and
+   * {@link #CONFIG_MAX_INTERVAL}. Intervals are in milliseconds. Polls run on {@link VFSUtils#getIoScheduler()}.
+   */
+  public static FolderPoller fromConfiguration(Configuration configuration) {
+    return new FolderPoller(
+        VFSUtils.getIoScheduler(),
+        configuration.getBoolean(CONFIG_ENABLED, false),
+        configuration.getLong(CONFIG_MIN_INTERVAL, DEFAULT_MIN_INTERVAL),
+        configuration.getLong(CONFIG_MAX_INTERVAL, DEFAULT_MAX_INTERVAL));
+  }
+
+  public static boolean canPoll(FileObject folder) {
+    return folder != null && SCHEMES.contains(folder.getName().getScheme().toLowerCase());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables polling. Disabling stops current polling, enabled poller polls folder passed
+   * to next {@link #poll(FileObject, Task)} call.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      stop();
+    }
+  }
+
+  /**
+   * Starts polling folder, previous folder is not polled anymore. Nothing is polled if poller is disabled or folder
+   * is not remote folder.
+   */
+  public synchronized void poll(FileObject folder, Task task) {
+    if (currentPoll != null && currentPoll.folder.equals(folder) && currentPoll.task == task) {
+      return;
+    }
+    stop();
+    if (enabled && canPoll(folder)) {
+      LOGGER.debug("Polling {}", folder.getName().getFriendlyURI());
+      currentPoll = new Poll(folder, task);
+      currentPoll.schedule(minInterval);
+    }
+  }
+
+  public synchronized void stop() {
+    if (currentPoll != null) {
+      currentPoll.cancel();
+      currentPoll = null;
+    }
+  }
+
+  /**
+   * @return current polling interval in milliseconds or -1 if nothing is polled
+   */
+  public synchronized long getCurrentInterval() {
+    return currentPoll != null ? currentPoll.interval : -1;
+  }
+
+  long nextInterval(long interval, boolean changed) {
+    return changed ? minInterval : Math.min(maxInterval, interval * 2);
+  }
+
+  private final class Poll implements Runnable {
+    private final FileObject folder;
+    private final Task task;
+    private volatile long interval;
+    private volatile boolean cancelled = false;
+    private ScheduledFuture<?> future;
+    private volatile IoScheduler.Task ioTask;
+
+    private Poll(FileObject folder, Task task) {
+      this.folder = folder;
+      this.task = task;
+    }
+
+    /**
+     * Called by timer, blocking listing is submitted to I/O scheduler.
+     */
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+      ioTask = scheduler.submit(folder, IoScheduler.Priority.PREFETCH, new Runnable() {
+        @Override
+        public void run() {
+          pollNow();
+        }
+      });
+    }
+
+    private void pollNow() {
+      if (cancelled) {
+        return;
+      }
+      boolean changed = false;
+      try {
+        changed = task.poll(folder);
+      } catch (Exception e) {
+        LOGGER.warn("Can't poll " + folder.getName().getFriendlyURI() + ": " + e.getMessage());
+      }
+      long next = nextInterval(interval, changed);
+      LOGGER.debug("Polled {}, changed: {}, next poll in {} ms", new Object[]{folder.getName().getFriendlyURI(), changed, next});
+      synchronized (FolderPoller.this) {
+        if (!cancelled) {
+          schedule(next);
+        }
+      }
+    }
+
+    private void schedule(long delay) {
+      interval = delay;
+      future = EXECUTOR.schedule(this, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancel() {
+      cancelled = true;
+      if (future != null) {
+        future.cancel(false);
+      }
+      IoScheduler.Task queued = ioTask;
+      if (queued != null) {
+        queued.cancel();
+      }
+    }
+  }
+}
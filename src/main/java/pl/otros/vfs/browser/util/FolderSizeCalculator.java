@@ -0,0 +1,373 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.TaskContext;
+import pl.otros.vfs.browser.i18n.Messages;
+import pl.otros.vfs.browser.table.FileSize;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates total size and number of files of folder trees (like <code>du</code>) in {@link IoScheduler} with
+ * {@link IoScheduler.Priority#PREFETCH} priority. Every folder of tree is listed by its own task (or whole SFTP tree
+ * by one command, see {@link SftpTreeLister}), partial totals are reported while tree is read. Links are not
+ * followed.
+ * <p/>
+ * Final totals are cached by URI and modification time of folder, so sizes of folders which were calculated
+ * before are reported immediately. Note that modification time of folder changes only when its own entries change,
+ * changes deeper in tree are not detected.
+ */
+public class FolderSizeCalculator {
+
+  public static final String CONFIG_ENABLED = "folderSize.enabled";
+  public static final String CONFIG_CACHE_SIZE = "folderSize.cacheSize";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FolderSizeCalculator.class);
+  private static final int DEFAULT_CACHE_SIZE = 1024;
+  private static final long PUBLISH_INTERVAL = 250;
+
+  private final IoScheduler scheduler;
+  private final FolderLister folderLister;
+  private final SftpTreeLister treeLister;
+  private volatile boolean enabled;
+  private final Map<String, FileSize> cache;
+  private final List<Calculation> calculations = new ArrayList<Calculation>();
+
+  public interface Listener {
+
+    /**
+     * Called when size of folder was calculated or partial total was updated. Cached sizes are reported from thread
+     * which started calculation, other sizes from background thread.
+     *
+     * @param row  row of folder in calculated listing
+     * @param name name of folder
+     * @param size total size, see {@link FileSize#isPartial()}, {@link FileSize#isIncomplete()} and
+     *             {@link FileSize#getFiles()}
+     */
+    void sizeCalculated(int row, String name, FileSize size);
+  }
+
+  /**
+   * @param scheduler    scheduler which runs calculations
+   * @param folderLister lister of folders
+   * @param treeLister   lister of whole SFTP trees, trees which can't be listed with it are listed folder by folder
+   * @param enabled      initial state, see {@link #isEnabled()}
+   * @param cacheSize    maximum number of cached folder sizes
+   */
+  public FolderSizeCalculator(IoScheduler scheduler, FolderLister folderLister, SftpTreeLister treeLister,
+                              boolean enabled, final int cacheSize) {
+    this.scheduler = scheduler;
+    this.folderLister = folderLister;
+    this.treeLister = treeLister;
+    this.enabled = enabled;
+    cache = Collections.synchronizedMap(new LinkedHashMap<String, FileSize>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, FileSize> eldest) {
+        return size() > cacheSize;
+      }
+    });
+  }
+
+  /**
+   * Creates calculator configured with keys {@link #CONFIG_ENABLED} and {@link #CONFIG_CACHE_SIZE}. Calculation is disabled by default.
+   */
+  public static FolderSizeCalculator fromConfiguration(Configuration configuration) {
+    LocalFolderLister localFolderLister = new LocalFolderLister(
+        configuration.getBoolean(LocalFolderLister.CONFIG_ENABLED, true), 1, Integer.MAX_VALUE);
+    return new FolderSizeCalculator(VFSUtils.getIoScheduler(), new FolderLister(localFolderLister),
+        SftpTreeLister.fromConfiguration(configuration),
+        configuration.getBoolean(CONFIG_ENABLED, false),
+        configuration.getInt(CONFIG_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+  }
+
+  /**
+   * @return true if sizes of folders should be calculated when folder is shown
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Starts calculating sizes of folders in listing. Parent row and links are skipped.
+   *
+   * @param listing  listing of folder
+   * @param listener listener of calculated sizes
+   * @return progress of calculation, maximum is number of folders which were not cached
+   */
+  public TaskContext calculate(ListingSnapshot listing, Listener listener) {
+    List<Integer> rows = new ArrayList<Integer>();
+    for (int row = 0; row < listing.size(); row++) {
+      if (!listing.isFolder(row) || listing.isParent(row) || listing.isLink(row)) {
+        continue;
+      }
+      FileSize cached = cache.get(key(listing, row));
+      if (cached != null) {
+        listener.sizeCalculated(row, listing.getName(row), cached);
+      } else {
+        rows.add(row);
+      }
+    }
+    Calculation calculation = new Calculation(rows.size());
+    if (rows.isEmpty()) {
+      calculation.context.setStop(true);
+      return calculation.context;
+    }
+    synchronized (calculations) {
+      calculations.add(calculation);
+    }
+    for (Integer row : rows) {
+      new FolderSize(calculation, listing, row, listener).start();
+    }
+    return calculation.context;
+  }
+
+  /**
+   * Cancels all running calculations. Queued folders are removed from scheduler, threads of running folders are
+   * interrupted to abort blocking I/O.
+   */
+  public void cancel() {
+    List<Calculation> cancelled;
+    synchronized (calculations) {
+      cancelled = new ArrayList<Calculation>(calculations);
+      calculations.clear();
+    }
+    for (Calculation calculation : cancelled) {
+      calculation.cancel();
+    }
+  }
+
+  private static String key(ListingSnapshot listing, int row) {
+    long lastModified = listing.getLastModified(row);
+    if (lastModified == ListingSnapshot.UNKNOWN) {
+      //size can't be validated, it is not cached
+      return null;
+    }
+    return listing.getFileName(row).getURI() + "@" + lastModified;
+  }
+
+  private void finished(Calculation calculation) {
+    if (calculation.done.incrementAndGet() < calculation.context.getMax()) {
+      calculation.context.setCurrentProgress(calculation.done.get());
+      return;
+    }
+    calculation.context.setCurrentProgress(calculation.done.get());
+    calculation.context.setStop(true);
+    synchronized (calculations) {
+      calculations.remove(calculation);
+    }
+  }
+
+  private final class Calculation {
+    private final TaskContext context;
+    /**
+     * Submitted tasks which are not finished yet
+     */
+    private final Set<CalculationTask> tasks =
+        Collections.newSetFromMap(new ConcurrentHashMap<CalculationTask, Boolean>());
+    private final AtomicInteger done = new AtomicInteger();
+
+    private Calculation(int folders) {
+      context = new TaskContext(Messages.getMessage("folderSize.task"), folders);
+      context.setIndeterminate(false);
+    }
+
+    private void submit(FileObject folder, CalculationTask task) {
+      tasks.add(task);
+      task.queued = scheduler.submit(folder, IoScheduler.Priority.PREFETCH, task);
+    }
+
+    private void cancel() {
+      context.setStop(true);
+      for (CalculationTask task : tasks) {
+        task.cancel();
+      }
+    }
+  }
+
+  /**
+   * Task of calculation, thread running it is interrupted when calculation is cancelled.
+   */
+  private abstract static class CalculationTask implements Runnable {
+
+    private final Calculation calculation;
+    private volatile IoScheduler.Task queued;
+
+    private CalculationTask(Calculation calculation) {
+      this.calculation = calculation;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (!calculation.context.isStop()) {
+          execute();
+        }
+      } finally {
+        calculation.tasks.remove(this);
+      }
+    }
+
+    private void cancel() {
+      IoScheduler.Task task = queued;
+      if (task != null) {
+        task.cancel(true);
+      }
+    }
+
+    protected abstract void execute();
+  }
+
+  /**
+   * Size of one folder of listing. Tree is read with one command of tree lister if possible, otherwise every folder
+   * of tree is listed by its own task, so lane of host is not held by one folder for whole tree.
+   */
+  private final class FolderSize implements SftpTreeLister.Listener {
+
+    private final Calculation calculation;
+    private final ListingSnapshot listing;
+    private final int row;
+    private final Listener listener;
+    private final AtomicInteger pendingFolders = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+    private long bytes = 0;
+    private long files = 0;
+    private long lastPublished = startTime;
+    private volatile boolean failed = false;
+
+    private FolderSize(Calculation calculation, ListingSnapshot listing, int row, Listener listener) {
+      this.calculation = calculation;
+      this.listing = listing;
+      this.row = row;
+      this.listener = listener;
+    }
+
+    private void start() {
+      final FileObject folder = listing.getFileObject(row);
+      if (!treeLister.canList(folder)) {
+        submit(folder);
+        return;
+      }
+      pendingFolders.incrementAndGet();
+      calculation.submit(folder, new CalculationTask(calculation) {
+        @Override
+        protected void execute() {
+          try {
+            if (!treeLister.list(folder, Integer.MAX_VALUE, Collections.<String>emptyList(), false, FolderSize.this)) {
+              submit(folder);
+            }
+          } catch (Exception e) {
+            if (!calculation.context.isStop()) {
+              LOGGER.warn("Can't calculate size of " + folder.getName().getFriendlyURI() + ": " + e.getMessage());
+              failed = true;
+            }
+          }
+          folderDone();
+        }
+      });
+    }
+
+    private void submit(final FileObject folder) {
+      pendingFolders.incrementAndGet();
+      calculation.submit(folder, new CalculationTask(calculation) {
+        @Override
+        protected void execute() {
+          try {
+            ListingSnapshot entries = folderLister.list(folder);
+            count(entries);
+            for (int i = 0; i < entries.size() && !calculation.context.isStop(); i++) {
+              if (entries.isFolder(i) && !entries.isParent(i) && !entries.isLink(i)) {
+                submit(entries.getFileObject(i));
+              }
+            }
+          } catch (FileSystemException e) {
+            LOGGER.debug("Can't list {}: {}", folder.getName().getFriendlyURI(), e.getMessage());
+            failed = true;
+          }
+          folderDone();
+        }
+      });
+    }
+
+    private void folderDone() {
+      if (pendingFolders.decrementAndGet() == 0) {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if (calculation.context.isStop()) {
+        return;
+      }
+      //total without unreadable folders is lower bound, it is not cached
+      FileSize size;
+      synchronized (this) {
+        size = new FileSize(bytes, files, false, failed);
+      }
+      if (!failed) {
+        String key = key(listing, row);
+        if (key != null) {
+          cache.put(key, size);
+        }
+      }
+      LOGGER.debug("Size of {} is {} in {} files, calculated in {} ms", new Object[]{
+          listing.getFileName(row).getFriendlyURI(), size.getBytes(), size.getFiles(),
+          System.currentTimeMillis() - startTime});
+      listener.sizeCalculated(row, listing.getName(row), size);
+      finished(calculation);
+    }
+
+    @Override
+    public void listed(String path, ListingSnapshot entries) {
+      count(entries);
+    }
+
+    private void count(ListingSnapshot entries) {
+      synchronized (this) {
+        for (int i = 0; i < entries.size(); i++) {
+          if (entries.isFile(i) && !entries.isLink(i)) {
+            files++;
+            bytes += Math.max(0, entries.getSize(i));
+          }
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastPublished >= PUBLISH_INTERVAL && !calculation.context.isStop()) {
+          lastPublished = now;
+          //published in lock, so older partial total can't be published after newer one
+          listener.sizeCalculated(row, listing.getName(row), new FileSize(bytes, files, true));
+        }
+      }
+    }
+  }
+}
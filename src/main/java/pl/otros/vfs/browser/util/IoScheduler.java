@@ -0,0 +1,584 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs blocking I/O of all browsers. Tasks are queued in lanes, one lane for every host, and number of tasks running
+ * at the same time for one host is limited, so hung server can block only its own lane. Queued tasks are started by
+ * priority (navigation first, prefetch last) and in order of submission within the same priority. Last free thread
+ * and last free slot of every lane are reserved for navigation, so long background tasks can't delay navigation.
+ * <p/>
+ * Threads are started when needed up to configured limit and stopped after they are idle for a while. With
+ * {@link #CONFIG_VIRTUAL_THREADS} set on Java 21+, every task runs on new virtual thread, number of threads is not
+ * limited and only lanes limit concurrency for each host. Platform threads are used on older JVMs.
+ */
+public class IoScheduler {
+
+  public static final String CONFIG_THREADS = "io.threads";
+  public static final String CONFIG_MAX_PER_HOST = "io.maxPerHost";
+  public static final String CONFIG_VIRTUAL_THREADS = "io.virtualThreads";
+  public static final String LOCAL_LANE = "file://";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IoScheduler.class);
+  private static final int DEFAULT_THREADS = 16;
+  private static final int DEFAULT_MAX_PER_HOST = 4;
+  private static final long KEEP_ALIVE = TimeUnit.SECONDS.toNanos(60);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final Map<String, Lane> lanes = new HashMap<String, Lane>();
+  private final int[] queuedByPriority = new int[Priority.values().length];
+  private final ThreadFactory threadFactory;
+  private final long keepAlive;
+  private final boolean virtual;
+  private int threads;
+  private int maxPerHost;
+  private int workers = 0;
+  private int running = 0;
+  private int queued = 0;
+  private long sequence = 0;
+
+  /**
+   * Priority classes of tasks, declared from the most important.
+   */
+  public enum Priority {
+    NAVIGATION, PREVIEW, LINK_CHECK, PREFETCH
+  }
+
+  private enum State {
+    QUEUED, RUNNING, DONE, CANCELLED
+  }
+
+  private static final class Lane {
+    private final String name;
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+    private int running = 0;
+
+    private Lane(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Handle of submitted task.
+   */
+  public final class Task implements Comparable<Task> {
+    private final String lane;
+    private final Priority priority;
+    private final long order;
+    private final Runnable runnable;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private State state = State.QUEUED;
+    private Thread thread;
+
+    private Task(String lane, Priority priority, long order, Runnable runnable) {
+      this.lane = lane;
+      this.priority = priority;
+      this.order = order;
+      this.runnable = runnable;
+    }
+
+    public String getLane() {
+      return lane;
+    }
+
+    public Priority getPriority() {
+      return priority;
+    }
+
+    /**
+     * Removes task from queue if it was not started yet. Running task is not interrupted.
+     *
+     * @return true if task was removed from queue and it will not run
+     */
+    public boolean cancel() {
+      return cancel(false);
+    }
+
+    /**
+     * Removes task from queue if it was not started yet.
+     *
+     * @param interrupt interrupt thread of scheduler which runs task, task run by {@link #runNow()} is not interrupted
+     * @return true if task was removed from queue and it will not run
+     */
+    public boolean cancel(boolean interrupt) {
+      lock.lock();
+      try {
+        if (state != State.QUEUED) {
+          if (interrupt && state == State.RUNNING && thread != null) {
+            thread.interrupt();
+          }
+          return false;
+        }
+        removeIfUnused(dequeue(this));
+        state = State.CANCELLED;
+      } finally {
+        lock.unlock();
+      }
+      finished.countDown();
+      return true;
+    }
+
+    /**
+     * Runs task in calling thread if it was not started yet, i.e. when caller waits for task which is stuck in queue.
+     * Task is counted as running in its lane. Limit of lane is not checked, caller which waits for task would block
+     * otherwise.
+     *
+     * @return true if task was run by calling thread
+     */
+    public boolean runNow() {
+      Lane taskLane;
+      lock.lock();
+      try {
+        if (state != State.QUEUED) {
+          return false;
+        }
+        taskLane = dequeue(this);
+        state = State.RUNNING;
+        taskLane.running++;
+        running++;
+      } finally {
+        lock.unlock();
+      }
+      try {
+        execute(this);
+      } finally {
+        lock.lock();
+        try {
+          taskLane.running--;
+          running--;
+          removeIfUnused(taskLane);
+          available.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+      return true;
+    }
+
+    public boolean isCancelled() {
+      lock.lock();
+      try {
+        return state == State.CANCELLED;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * @return true if task was finished or cancelled
+     */
+    public boolean isDone() {
+      return finished.getCount() == 0;
+    }
+
+    /**
+     * Waits until task is finished or cancelled.
+     *
+     * @return true if task is done, false if waiting time elapsed
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+      return finished.await(timeout, unit);
+    }
+
+    @Override
+    public int compareTo(Task o) {
+      int result = priority.compareTo(o.priority);
+      return result != 0 ? result : (order < o.order ? -1 : (order == o.order ? 0 : 1));
+    }
+  }
+
+  /**
+   * @param threads    maximum number of threads
+   * @param maxPerHost maximum number of tasks running at the same time in one lane
+   */
+  public IoScheduler(int threads, int maxPerHost) {
+    this(threads, maxPerHost, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("io-%d").build());
+  }
+
+  /**
+   * @param threads       maximum number of threads
+   * @param maxPerHost    maximum number of tasks running at the same time in one lane
+   * @param threadFactory factory of worker threads
+   */
+  public IoScheduler(int threads, int maxPerHost, ThreadFactory threadFactory) {
+    this(threads, maxPerHost, threadFactory, KEEP_ALIVE, false);
+  }
+
+  private IoScheduler(int threads, int maxPerHost, ThreadFactory threadFactory, long keepAlive, boolean virtual) {
+    this.threads = Math.max(1, threads);
+    this.maxPerHost = Math.max(1, maxPerHost);
+    this.threadFactory = threadFactory;
+    this.keepAlive = keepAlive;
+    this.virtual = virtual;
+  }
+
+  /**
+   * Creates scheduler which runs every task on new virtual thread. Virtual thread ends when there is no task which
+   * can be started, it is not kept idle.
+   *
+   * @param maxPerHost maximum number of tasks running at the same time in one lane
+   * @return scheduler or null if virtual threads are not available, see {@link VirtualThreads#isAvailable()}
+   */
+  public static IoScheduler withVirtualThreads(int maxPerHost) {
+    ThreadFactory threadFactory = VirtualThreads.newThreadFactory("io-virtual-");
+    return threadFactory != null ? new IoScheduler(Integer.MAX_VALUE, maxPerHost, threadFactory, 0, true) : null;
+  }
+
+  /**
+   * Creates scheduler configured with keys {@link #CONFIG_THREADS}, {@link #CONFIG_MAX_PER_HOST} and
+   * {@link #CONFIG_VIRTUAL_THREADS}. Virtual threads are disabled by default.
+   */
+  public static IoScheduler fromConfiguration(Configuration configuration) {
+    int maxPerHost = configuration.getInt(CONFIG_MAX_PER_HOST, DEFAULT_MAX_PER_HOST);
+    if (configuration.getBoolean(CONFIG_VIRTUAL_THREADS, false)) {
+      IoScheduler scheduler = withVirtualThreads(maxPerHost);
+      if (scheduler != null) {
+        LOGGER.info("Blocking I/O runs on virtual threads");
+        return scheduler;
+      }
+      LOGGER.info("Virtual threads are not available in Java {}, blocking I/O runs on platform threads",
+          System.getProperty("java.version"));
+    }
+    return new IoScheduler(configuration.getInt(CONFIG_THREADS, DEFAULT_THREADS), maxPerHost);
+  }
+
+  public static IoScheduler withDefaults() {
+    return new IoScheduler(DEFAULT_THREADS, DEFAULT_MAX_PER_HOST);
+  }
+
+  /**
+   * @return lane of host of file, {@link #LOCAL_LANE} for local files
+   */
+  public static String lane(FileObject fileObject) {
+    return fileObject != null ? lane(fileObject.getName()) : LOCAL_LANE;
+  }
+
+  public static String lane(FileName fileName) {
+    if (fileName instanceof GenericFileName) {
+      GenericFileName name = (GenericFileName) fileName;
+      return (name.getScheme() + "://" + name.getHostName()).toLowerCase();
+    }
+    return LOCAL_LANE;
+  }
+
+  /**
+   * Returns lane of URL without resolving it. User info, port and path are not part of lane.
+   *
+   * @return lane of host of URL, {@link #LOCAL_LANE} for local paths
+   */
+  public static String lane(String url) {
+    int schemeEnd = url != null ? url.indexOf("://") : -1;
+    if (schemeEnd <= 0 || url.regionMatches(true, 0, "file", 0, schemeEnd)) {
+      return LOCAL_LANE;
+    }
+    int hostStart = schemeEnd + 3;
+    int hostEnd = hostStart;
+    while (hostEnd < url.length() && "/?#".indexOf(url.charAt(hostEnd)) < 0) {
+      hostEnd++;
+    }
+    String authority = url.substring(hostStart, hostEnd);
+    String host = authority.substring(authority.lastIndexOf('@') + 1);
+    int portStart = host.lastIndexOf(':');
+    if (portStart >= 0 && host.indexOf(']') < portStart) {
+      host = host.substring(0, portStart);
+    }
+    return (url.substring(0, schemeEnd) + "://" + host).toLowerCase();
+  }
+
+  /**
+   * Queues task in lane of file.
+   */
+  public Task submit(FileObject fileObject, Priority priority, Runnable runnable) {
+    return submit(lane(fileObject), priority, runnable);
+  }
+
+  /**
+   * Queues task.
+   *
+   * @param lane     lane of task, see {@link #lane(FileObject)} and {@link #lane(String)}
+   * @param priority priority of task
+   * @param runnable task
+   * @return handle of task
+   */
+  public Task submit(String lane, Priority priority, Runnable runnable) {
+    lock.lock();
+    try {
+      Task task = new Task(lane, priority, sequence++, runnable);
+      Lane taskLane = lanes.get(lane);
+      if (taskLane == null) {
+        taskLane = new Lane(lane);
+        lanes.put(lane, taskLane);
+      }
+      taskLane.queue.add(task);
+      queued++;
+      queuedByPriority[priority.ordinal()]++;
+      //task in full lane is started by thread which finishes task of the same lane
+      if (workers - running < queued && workers < threads && canStart(taskLane, priority)) {
+        startWorker();
+      }
+      available.signal();
+      return task;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Changes limits, running tasks are not affected.
+   *
+   * @param threads    maximum number of threads, ignored when scheduler uses virtual threads
+   * @param maxPerHost maximum number of tasks running at the same time in one lane
+   */
+  public void setLimits(int threads, int maxPerHost) {
+    lock.lock();
+    try {
+      this.threads = virtual ? this.threads : Math.max(1, threads);
+      this.maxPerHost = Math.max(1, maxPerHost);
+      while (workers - running < queued && workers < this.threads) {
+        startWorker();
+      }
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Changes limits with keys {@link #CONFIG_THREADS} and {@link #CONFIG_MAX_PER_HOST}.
+   */
+  public void configure(Configuration configuration) {
+    setLimits(configuration.getInt(CONFIG_THREADS, DEFAULT_THREADS),
+        configuration.getInt(CONFIG_MAX_PER_HOST, DEFAULT_MAX_PER_HOST));
+  }
+
+  /**
+   * @return true if tasks run on virtual threads
+   */
+  public boolean isVirtual() {
+    return virtual;
+  }
+
+  /**
+   * @return number of tasks waiting in all lanes
+   */
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueueDepth(Priority priority) {
+    lock.lock();
+    try {
+      return queuedByPriority[priority.ordinal()];
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueueDepth(String lane) {
+    lock.lock();
+    try {
+      Lane taskLane = lanes.get(lane);
+      return taskLane != null ? taskLane.queue.size() : 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of running tasks, including tasks run by {@link Task#runNow()}
+   */
+  public int getRunning() {
+    lock.lock();
+    try {
+      return running;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getRunning(String lane) {
+    lock.lock();
+    try {
+      Lane taskLane = lanes.get(lane);
+      return taskLane != null ? taskLane.running : 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of started threads
+   */
+  public int getThreads() {
+    lock.lock();
+    try {
+      return workers;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      StringBuilder sb = new StringBuilder();
+      sb.append(running).append(" running, ").append(queued).append(" queued");
+      for (Priority priority : Priority.values()) {
+        sb.append(", ").append(priority).append('=').append(queuedByPriority[priority.ordinal()]);
+      }
+      return sb.append(", ").append(workers).append(virtual ? " virtual threads" : " threads").toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void startWorker() {
+    Thread thread = threadFactory.newThread(new Worker());
+    thread.start();
+    workers++;
+  }
+
+  private Lane dequeue(Task task) {
+    Lane taskLane = lanes.get(task.lane);
+    taskLane.queue.remove(task);
+    queued--;
+    queuedByPriority[task.priority.ordinal()]--;
+    return taskLane;
+  }
+
+  private void removeIfUnused(Lane taskLane) {
+    if (taskLane.queue.isEmpty() && taskLane.running == 0) {
+      lanes.remove(taskLane.name);
+    }
+  }
+
+  /**
+   * Finds most important task which can be started. Must be called with lock held.
+   */
+  private Task next() {
+    boolean navigationOnly = threads > 1 && running >= threads - 1;
+    Task best = null;
+    for (Lane taskLane : lanes.values()) {
+      Task head = taskLane.queue.peek();
+      head = head != null && canStart(taskLane, head.priority) ? head : null;
+      if (head != null && (best == null || head.compareTo(best) < 0)
+          && (!navigationOnly || head.priority == Priority.NAVIGATION)) {
+        best = head;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Checks limit of lane, last slot of lane is reserved for navigation. Must be called with lock held.
+   */
+  private boolean canStart(Lane taskLane, Priority priority) {
+    int limit = priority == Priority.NAVIGATION || maxPerHost == 1 ? maxPerHost : maxPerHost - 1;
+    return taskLane.running < limit;
+  }
+
+  private void execute(Task task) {
+    try {
+      task.runnable.run();
+    } catch (Throwable e) {
+      LOGGER.error("Task in lane " + task.lane + " failed", e);
+    } finally {
+      lock.lock();
+      try {
+        task.state = State.DONE;
+        task.thread = null;
+      } finally {
+        lock.unlock();
+      }
+      task.finished.countDown();
+    }
+  }
+
+  private class Worker implements Runnable {
+
+    @Override
+    public void run() {
+      lock.lock();
+      try {
+        long idleSince = System.nanoTime();
+        while (workers <= threads) {
+          Task task = next();
+          if (task == null) {
+            long remaining = keepAlive - (System.nanoTime() - idleSince);
+            if (remaining <= 0) {
+              break;
+            }
+            available.awaitNanos(remaining);
+            continue;
+          }
+          Lane taskLane = lanes.get(task.lane);
+          taskLane.queue.poll();
+          queued--;
+          queuedByPriority[task.priority.ordinal()]--;
+          task.state = State.RUNNING;
+          task.thread = Thread.currentThread();
+          taskLane.running++;
+          running++;
+          lock.unlock();
+          try {
+            execute(task);
+          } finally {
+            Thread.interrupted();
+            lock.lock();
+            taskLane.running--;
+            running--;
+            removeIfUnused(taskLane);
+            available.signalAll();
+            idleSince = System.nanoTime();
+          }
+        }
+      } catch (InterruptedException e) {
+        LOGGER.debug("I/O thread was interrupted while idle");
+      } finally {
+        workers--;
+        if (workers < threads && next() != null) {
+          startWorker();
+        }
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads attributes of rows listed without attributes (see {@link LocalFolderLister#CONFIG_LAZY_THRESHOLD}) in
+ * background. Attributes are read in small batches and every batch is passed to listener as soon as it is read,
+ * so rows are repainted progressively. New request supersedes previous one: batches of previous request which were
+ * not read yet are skipped. Requests run in {@link IoScheduler} with {@link IoScheduler.Priority#LINK_CHECK}
+ * priority, behind navigation and preview.
+ */
+public class LazyAttributeLoader {
+
+  public static final String CONFIG_PREFETCH = "listing.lazy.prefetch";
+  public static final String CONFIG_MAX_RESIDENT = "listing.lazy.maxResident";
+  public static final int DEFAULT_MAX_RESIDENT = 50000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyAttributeLoader.class);
+  private static final int DEFAULT_PREFETCH = 200;
+  private static final int BATCH_SIZE = 256;
+
+  private final IoScheduler scheduler;
+  private final LocalFolderLister lister;
+  private final int prefetch;
+  private final AtomicLong generation = new AtomicLong();
+  private volatile IoScheduler.Task task;
+
+  public interface Listener {
+
+    /**
+     * Called in EDT when attributes of some rows were read.
+     *
+     * @param folder folder which contains files
+     * @param rows   rows which attributes were read, files which do not exist anymore are skipped
+     * @param values attributes, row <code>i</code> contains attributes of row <code>rows[i]</code>
+     */
+    void attributesLoaded(FileObject folder, int[] rows, ListingSnapshot values);
+  }
+
+  /**
+   * @param scheduler scheduler which runs requests
+   * @param lister    lister used to read attributes
+   * @param prefetch  number of rows above and below visible rows which attributes are loaded with visible rows
+   */
+  public LazyAttributeLoader(IoScheduler scheduler, LocalFolderLister lister, int prefetch) {
+    this.scheduler = scheduler;
+    this.lister = lister;
+    this.prefetch = Math.max(0, prefetch);
+  }
+
+  /**
+   * Creates loader configured with key {@link #CONFIG_PREFETCH}.
+   */
+  public static LazyAttributeLoader fromConfiguration(Configuration configuration, LocalFolderLister lister) {
+    return new LazyAttributeLoader(VFSUtils.getIoScheduler(), lister, configuration.getInt(CONFIG_PREFETCH, DEFAULT_PREFETCH));
+  }
+
+  public int getPrefetch() {
+    return prefetch;
+  }
+
+  /**
+   * Starts loading attributes of files, previous request is cancelled. Rows are loaded in given order.
+   *
+   * @param folder   local folder
+   * @param rows     rows of files
+   * @param names    names of files, <code>names[i]</code> is name of file in row <code>rows[i]</code>
+   * @param listener listener notified about loaded attributes
+   */
+  public void load(final FileObject folder, final int[] rows, final String[] names, final Listener listener) {
+    final long requestGeneration = generation.incrementAndGet();
+    cancelQueued();
+    task = scheduler.submit(folder, IoScheduler.Priority.LINK_CHECK, new Runnable() {
+      @Override
+      public void run() {
+        for (int from = 0; from < rows.length && generation.get() == requestGeneration; from += BATCH_SIZE) {
+          int to = Math.min(rows.length, from + BATCH_SIZE);
+          try {
+            loadBatch(folder, Arrays.copyOfRange(rows, from, to), Arrays.asList(names).subList(from, to), listener);
+          } catch (Exception e) {
+            LOGGER.warn("Can't read attributes of files in " + folder.getName().getFriendlyURI() + ": " + e.getMessage());
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Cancels current request.
+   */
+  public void cancel() {
+    generation.incrementAndGet();
+    cancelQueued();
+  }
+
+  private void cancelQueued() {
+    IoScheduler.Task previous = task;
+    if (previous != null) {
+      previous.cancel();
+    }
+  }
+
+  private void loadBatch(final FileObject folder, int[] rows, List<String> names, final Listener listener) throws Exception {
+    final ListingSnapshot values = lister.readNamedEntries(folder, names);
+    //files which do not exist are skipped, remaining files are in the same order as names
+    final int[] loadedRows = new int[values.size()];
+    int loaded = 0;
+    for (int i = 0; i < names.size() && loaded < loadedRows.length; i++) {
+      if (names.get(i).equals(values.getName(loaded))) {
+        loadedRows[loaded++] = rows[i];
+      }
+    }
+    LOGGER.debug("Attributes of {} files in {} were read", loaded, folder.getName().getFriendlyURI());
+    SwingUtils.runInEdt(new Runnable() {
+      @Override
+      public void run() {
+        listener.attributesLoaded(folder, loadedRows, values);
+      }
+    });
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.jcraft.jsch.SftpATTRS;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.LinkFileObject;
+import pl.otros.vfs.browser.TaskContext;
+import pl.otros.vfs.browser.cache.LinkCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects symbolic links (SFTP and local) and resolves types of their targets in parallel. Links are found
+ * using attributes of listing, only targets of links need additional round trip. Types of targets of SFTP links
+ * which were not changed since last check are taken from {@link LinkCache} without any round trip. Checks run on {@link IoScheduler}
+ * with {@link IoScheduler.Priority#LINK_CHECK} priority, number of concurrent checks for one host is limited,
+ * so single folder does not open dozens of channels to the same server. Checking is stopped when
+ * {@link TaskContext#isStop()} returns true.
+ */
+public class LinkChecker {
+
+  public static final String CONFIG_MAX_PER_HOST = "links.check.maxPerHost";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LinkChecker.class);
+  private static final int DEFAULT_MAX_PER_HOST = 4;
+  private static final long PERMIT_WAIT = 100;
+
+  private final IoScheduler scheduler;
+  private final int maxPerHost;
+  private final LinkCache linkCache;
+  private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+  public interface LinkListener {
+
+    /**
+     * Called from checking thread when link is detected, links of unchanged files are taken from cache.
+     *
+     * @param fileObject checked file
+     * @param link       link which replaced file in array
+     */
+    void linkDetected(FileObject fileObject, FileObject link);
+  }
+
+  /**
+   * @param scheduler  scheduler which runs checks
+   * @param maxPerHost maximum number of concurrent checks for one host
+   * @param linkCache  cache of results
+   */
+  public LinkChecker(IoScheduler scheduler, int maxPerHost, LinkCache linkCache) {
+    this.scheduler = scheduler;
+    this.maxPerHost = Math.max(1, maxPerHost);
+    this.linkCache = linkCache;
+  }
+
+  /**
+   * Creates checker configured with key {@link #CONFIG_MAX_PER_HOST}, results are cached in {@link LinkCache}
+   * configured by the same configuration. Checks run on {@link VFSUtils#getIoScheduler()}.
+   */
+  public static LinkChecker fromConfiguration(Configuration configuration) {
+    return new LinkChecker(
+        VFSUtils.getIoScheduler(),
+        configuration.getInt(CONFIG_MAX_PER_HOST, DEFAULT_MAX_PER_HOST),
+        LinkCache.fromConfiguration(configuration));
+  }
+
+  public static LinkChecker withDefaults() {
+    return new LinkChecker(VFSUtils.getIoScheduler(), DEFAULT_MAX_PER_HOST, LinkCache.inMemory());
+  }
+
+  /**
+   * Checks for links in range of files and waits until checking is finished or stopped. Cached results of
+   * unchanged files are used without contacting server.
+   *
+   * @see #check(FileObject[], int, int, TaskContext, LinkListener, boolean)
+   */
+  public void check(FileObject[] files, int from, int to, TaskContext taskContext, LinkListener listener) {
+    check(files, from, to, taskContext, listener, true);
+  }
+
+  /**
+   * Checks for links in range of files and waits until checking is finished or stopped.
+   * Progress is reported as number of processed files in whole array.
+   *
+   * @param files       files to check, detected links are replaced with {@link LinkFileObject}
+   * @param from        index of first file to check, inclusive
+   * @param to          index of last file to check, exclusive
+   * @param taskContext task context
+   * @param listener    notified about every detected link as soon as it is detected, can be null
+   * @param useCache    if false, all candidates are checked again (i.e. on refresh) and cache is updated
+   */
+  public void check(FileObject[] files, int from, int to, TaskContext taskContext, LinkListener listener,
+                    boolean useCache) {
+    LOGGER.debug("Checking for links");
+    long ts = System.currentTimeMillis();
+    AtomicInteger processed = new AtomicInteger(from);
+    Map<String, Queue<Integer>> candidatesByHost = new LinkedHashMap<String, Queue<Integer>>();
+    int fromCache = 0;
+    for (int i = from; i < to; i++) {
+      boolean candidate = isCandidate(files[i]);
+      LinkCache.Verdict verdict = candidate && useCache ? cachedVerdict(files[i]) : null;
+      if (verdict != null) {
+        //link itself was not changed, target type is trusted until folder is refreshed
+        fromCache++;
+        if (verdict.isLink()) {
+          FileObject fileObject = files[i];
+          files[i] = new LinkFileObject(fileObject, verdict.getTargetType());
+          if (listener != null) {
+            listener.linkDetected(fileObject, files[i]);
+          }
+        }
+        taskContext.setCurrentProgress(processed.incrementAndGet());
+      } else if (candidate) {
+        String host = IoScheduler.lane(files[i]);
+        if (!candidatesByHost.containsKey(host)) {
+          candidatesByHost.put(host, new ConcurrentLinkedQueue<Integer>());
+        }
+        candidatesByHost.get(host).add(i);
+      } else {
+        taskContext.setCurrentProgress(processed.incrementAndGet());
+      }
+    }
+
+    List<IoScheduler.Task> workers = new ArrayList<IoScheduler.Task>();
+    for (Map.Entry<String, Queue<Integer>> entry : candidatesByHost.entrySet()) {
+      Queue<Integer> candidates = entry.getValue();
+      Semaphore permits = permitsFor(entry.getKey());
+      for (int i = Math.min(maxPerHost, candidates.size()); i > 0; i--) {
+        workers.add(scheduler.submit(entry.getKey(), IoScheduler.Priority.LINK_CHECK,
+            new CheckWorker(files, candidates, permits, taskContext, processed, listener, linkCache)));
+      }
+    }
+    awaitWorkers(workers, taskContext);
+    linkCache.save();
+    long checkDuration = System.currentTimeMillis() - ts;
+    LOGGER.info("Checking links took {} ms [{}ms/file], {} results taken from cache",
+        new Object[]{checkDuration, (float) checkDuration / Math.max(1, to - from), fromCache});
+  }
+
+  /**
+   * Waits until workers are finished. Worker which is still queued after short wait is run by calling thread,
+   * so checking can't wait for free slot in lane which is taken by caller itself. Queued workers are cancelled
+   * when task is stopped.
+   */
+  private static void awaitWorkers(List<IoScheduler.Task> workers, TaskContext taskContext) {
+    try {
+      for (IoScheduler.Task worker : workers) {
+        while (!worker.await(PERMIT_WAIT, TimeUnit.MILLISECONDS)) {
+          if (taskContext.isStop()) {
+            cancel(workers);
+          } else {
+            worker.runNow();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      cancel(workers);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void cancel(List<IoScheduler.Task> workers) {
+    for (IoScheduler.Task worker : workers) {
+      worker.cancel();
+    }
+  }
+
+  private LinkCache.Verdict cachedVerdict(FileObject fileObject) {
+    long[] attributes = cacheAttributes(fileObject);
+    return attributes != null ? linkCache.get(fileObject.getName().getFriendlyURI(), attributes[0], attributes[1]) : null;
+  }
+
+  /**
+   * Returns size and last modification time used to validate cached result. Only SFTP results are cached,
+   * attributes are taken from listing without contacting server.
+   *
+   * @return size and last modification time or null if file should not be cached
+   */
+  private static long[] cacheAttributes(FileObject fileObject) {
+    if (fileObject instanceof SftpFileObject) {
+      SftpATTRS attrs = SftpUtils.getAttributes((SftpFileObject) fileObject);
+      if (attrs != null) {
+        return new long[]{attrs.getSize(), attrs.getMTime()};
+      }
+    }
+    return null;
+  }
+
+  private Semaphore permitsFor(String host) {
+    Semaphore permits = hostPermits.get(host);
+    if (permits == null) {
+      Semaphore newPermits = new Semaphore(maxPerHost);
+      permits = hostPermits.putIfAbsent(host, newPermits);
+      if (permits == null) {
+        permits = newPermits;
+      }
+    }
+    return permits;
+  }
+
+  /**
+   * Selects files which need checking without contacting server. SFTP files are candidates if attributes
+   * from listing flag them as links (or attributes are not known), local files if they are symbolic links.
+   */
+  private static boolean isCandidate(FileObject fileObject) {
+    if (fileObject instanceof LinkFileObject) {
+      return false;
+    } else if (fileObject instanceof SftpFileObject) {
+      SftpATTRS attrs = SftpUtils.getAttributes((SftpFileObject) fileObject);
+      return attrs == null || attrs.isLink();
+    }
+    try {
+      return VFSUtils.isLink(fileObject);
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static class CheckWorker implements Runnable {
+
+    private final FileObject[] files;
+    private final Queue<Integer> candidates;
+    private final Semaphore permits;
+    private final TaskContext taskContext;
+    private final AtomicInteger processed;
+    private final LinkListener listener;
+    private final LinkCache linkCache;
+
+    CheckWorker(FileObject[] files, Queue<Integer> candidates, Semaphore permits, TaskContext taskContext,
+                AtomicInteger processed, LinkListener listener, LinkCache linkCache) {
+      this.files = files;
+      this.candidates = candidates;
+      this.permits = permits;
+      this.taskContext = taskContext;
+      this.processed = processed;
+      this.listener = listener;
+      this.linkCache = linkCache;
+    }
+
+    @Override
+    public void run() {
+      try {
+        Integer index;
+        while (!taskContext.isStop() && (index = candidates.poll()) != null) {
+          if (!acquire()) {
+            break;
+          }
+          try {
+            checkFile(index);
+          } finally {
+            permits.release();
+            taskContext.setCurrentProgress(processed.incrementAndGet());
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Waits for permit of host, periodically checking if task was stopped.
+     */
+    private boolean acquire() throws InterruptedException {
+      while (!taskContext.isStop()) {
+        if (permits.tryAcquire(PERMIT_WAIT, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void checkFile(int index) {
+      FileObject fileObject = files[index];
+      try {
+        boolean isLink = VFSUtils.isLink(fileObject);
+        FileType targetType = null;
+        if (isLink) {
+          LinkFileObject link = VFSUtils.resolveLink(fileObject);
+          targetType = link.getTargetType();
+          files[index] = link;
+          if (listener != null) {
+            listener.linkDetected(fileObject, link);
+          }
+        }
+        long[] attributes = cacheAttributes(fileObject);
+        if (attributes != null) {
+          linkCache.put(fileObject.getName().getFriendlyURI(), attributes[0], attributes[1], isLink, targetType);
+        }
+      } catch (Exception e) {
+        //ignore
+      }
+    }
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists local folders with {@link Files#newDirectoryStream(Path)} and reads attributes of all entries with
+ * {@link Files#readAttributes(Path, Class, LinkOption...)}, without creating {@link FileObject} for every entry.
+ * Returned snapshot resolves file object of row only when it is requested (selected or opened). Symbolic links
+ * are detected from attributes, so listing does not need separate link checking.
+ * <p/>
+ * Attributes of large folders are read in parallel: chunks of entries are queued in {@link IoScheduler} with
+ * {@link IoScheduler.Priority#LINK_CHECK} priority and listing thread reads chunks which were not started yet itself.
+ * Attributes of very large folders (see {@link #CONFIG_LAZY_THRESHOLD})
+ * are not read at all, snapshot contains only names and attributes of visible rows are read later with
+ * {@link #readEntries(FileObject, List)}.
+ */
+public class LocalFolderLister {
+
+  public static final String CONFIG_ENABLED = "listing.local.nio";
+  public static final String CONFIG_THREADS = "listing.local.threads";
+  public static final String CONFIG_PARALLEL_THRESHOLD = "listing.local.parallelThreshold";
+  public static final String CONFIG_LAZY_THRESHOLD = "listing.lazy.threshold";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalFolderLister.class);
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+  private static final int DEFAULT_LAZY_THRESHOLD = 100000;
+  private static final int STREAM_BATCH_SIZE = 256;
+
+  private final IoScheduler scheduler;
+  private final boolean enabled;
+  private final int threads;
+  private final int parallelThreshold;
+  private final int lazyThreshold;
+
+  public interface Listener {
+
+    /**
+     * Called from listing thread for every batch of entries as soon as it is read.
+     *
+     * @param entries unsorted entries of batch
+     */
+    void listed(ListingSnapshot entries);
+  }
+
+  /**
+   * @param enabled           if false, {@link #canList(FileObject)} returns false for all folders
+   * @param threads           number of threads reading attributes
+   * @param parallelThreshold minimal number of entries which attributes are read in parallel
+   */
+  public LocalFolderLister(boolean enabled, int threads, int parallelThreshold) {
+    this(enabled, threads, parallelThreshold, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param enabled           if false, {@link #canList(FileObject)} returns false for all folders
+   * @param threads           number of threads reading attributes
+   * @param parallelThreshold minimal number of entries which attributes are read in parallel
+   * @param lazyThreshold     minimal number of entries which attributes are not read during listing
+   */
+  public LocalFolderLister(boolean enabled, int threads, int parallelThreshold, int lazyThreshold) {
+    this(VFSUtils.getIoScheduler(), enabled, threads, parallelThreshold, lazyThreshold);
+  }
+
+  /**
+   * @param scheduler         scheduler which reads attributes in parallel
+   * @param enabled           if false, {@link #canList(FileObject)} returns false for all folders
+   * @param threads           number of threads reading attributes
+   * @param parallelThreshold minimal number of entries which attributes are read in parallel
+   * @param lazyThreshold     minimal number of entries which attributes are not read during listing
+   */
+  public LocalFolderLister(IoScheduler scheduler, boolean enabled, int threads, int parallelThreshold,
+                           int lazyThreshold) {
+    this.scheduler = scheduler;
+    this.enabled = enabled;
+    this.threads = Math.max(1, threads);
+    this.parallelThreshold = parallelThreshold;
+    this.lazyThreshold = lazyThreshold;
+  }
+
+  /**
+   * Creates lister configured with keys {@link #CONFIG_ENABLED}, {@link #CONFIG_THREADS},
+   * {@link #CONFIG_PARALLEL_THRESHOLD} and {@link #CONFIG_LAZY_THRESHOLD}.
+   */
+  public static LocalFolderLister fromConfiguration(Configuration configuration) {
+    return new LocalFolderLister(
+        VFSUtils.getIoScheduler(),
+        configuration.getBoolean(CONFIG_ENABLED, true),
+        configuration.getInt(CONFIG_THREADS, Runtime.getRuntime().availableProcessors()),
+        configuration.getInt(CONFIG_PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD),
+        configuration.getInt(CONFIG_LAZY_THRESHOLD, DEFAULT_LAZY_THRESHOLD));
+  }
+
+  /**
+   * @return true if folder is local folder (not archive) and lister is enabled
+   */
+  public boolean canList(FileObject folder) {
+    return enabled && VFSUtils.isLocalFileSystem(folder) && !VFSUtils.isArchive(folder) && VFSUtils.toPath(folder) != null;
+  }
+
+  /**
+   * Lists local folder. Listing is aborted when thread is interrupted.
+   *
+   * @param folder local folder, see {@link #canList(FileObject)}
+   * @return unsorted snapshot of folder content, rows of folders with at least lazy threshold entries have
+   * unknown type, size and modification time
+   * @throws FileSystemException if folder can't be listed or listing was interrupted
+   */
+  public ListingSnapshot list(FileObject folder) throws FileSystemException {
+    return list(folder, null);
+  }
+
+  /**
+   * Lists local folder and passes entries to listener in batches while directory is read. Attributes of streamed
+   * entries are read batch by batch in listing thread, entries after lazy threshold are streamed without attributes.
+   * Listing is aborted when thread is interrupted.
+   *
+   * @param folder   local folder, see {@link #canList(FileObject)}
+   * @param listener listener of batches, null to read whole folder first (attributes of large folders are read
+   *                 in parallel then)
+   * @return unsorted snapshot of folder content
+   * @throws FileSystemException if folder can't be listed or listing was interrupted
+   */
+  public ListingSnapshot list(FileObject folder, Listener listener) throws FileSystemException {
+    long ts = System.currentTimeMillis();
+    Path directory = VFSUtils.toPath(folder);
+    if (directory == null) {
+      throw new FileSystemException("Can't convert " + folder.getName().getFriendlyURI() + " to local path");
+    }
+    boolean dos = isDos(directory);
+    List<Path> paths = new ArrayList<Path>();
+    List<ListingSnapshot> batches = new ArrayList<ListingSnapshot>();
+    int streamed = 0;
+    DirectoryStream<Path> stream = null;
+    try {
+      stream = Files.newDirectoryStream(directory);
+      for (Path path : stream) {
+        checkInterrupted();
+        paths.add(path);
+        if (listener != null && paths.size() - streamed == STREAM_BATCH_SIZE) {
+          batches.add(streamBatch(folder, paths.subList(streamed, paths.size()), streamed, dos, listener));
+          streamed = paths.size();
+        }
+      }
+    } catch (IOException e) {
+      throw new FileSystemException(e);
+    } finally {
+      closeQuietly(stream);
+    }
+    ListingSnapshot snapshot;
+    if (listener != null) {
+      batches.add(streamBatch(folder, paths.subList(streamed, paths.size()), streamed, dos, listener));
+      snapshot = ListingSnapshot.concat(batches);
+    } else if (paths.size() >= lazyThreshold) {
+      snapshot = readNames(folder, paths);
+    } else if (paths.size() < parallelThreshold || threads == 1) {
+      snapshot = readAttributes(folder, paths, dos);
+    } else {
+      snapshot = readAttributesInParallel(folder, paths, dos);
+    }
+    LOGGER.debug("Listing {} entries of {} with NIO took {} ms", new Object[]{snapshot.size(), directory, System.currentTimeMillis() - ts});
+    return snapshot;
+  }
+
+  /**
+   * Reads attributes of some files of local folder. Files which do not exist are skipped.
+   *
+   * @param folder local folder
+   * @param paths  paths of files in folder
+   * @return unsorted snapshot of existing files
+   * @throws FileSystemException if reading was interrupted
+   */
+  public ListingSnapshot readEntries(FileObject folder, List<Path> paths) throws FileSystemException {
+    return paths.isEmpty() ? ListingSnapshot.EMPTY : readAttributes(folder, paths, isDos(paths.get(0)));
+  }
+
+  /**
+   * Reads attributes of files of local folder with given names. Files which do not exist are skipped.
+   *
+   * @param folder local folder
+   * @param names  base names of files in folder
+   * @return snapshot of existing files in order of names
+   * @throws FileSystemException if folder is not local folder or reading was interrupted
+   */
+  public ListingSnapshot readNamedEntries(FileObject folder, List<String> names) throws FileSystemException {
+    Path directory = VFSUtils.toPath(folder);
+    if (directory == null) {
+      throw new FileSystemException("Can't convert " + folder.getName().getFriendlyURI() + " to local path");
+    }
+    List<Path> paths = new ArrayList<Path>(names.size());
+    for (String name : names) {
+      paths.add(directory.resolve(name));
+    }
+    return readEntries(folder, paths);
+  }
+
+  private ListingSnapshot streamBatch(FileObject folder, List<Path> batch, int streamed, boolean dos, Listener listener)
+      throws FileSystemException {
+    //size of folder is not known while it is streamed, attributes are not read after lazy threshold is reached
+    ListingSnapshot snapshot = streamed >= lazyThreshold ? readNames(folder, batch) : readAttributes(folder, batch, dos);
+    if (snapshot.size() > 0) {
+      listener.listed(snapshot);
+    }
+    return snapshot;
+  }
+
+  private static boolean isDos(Path path) {
+    //hidden flag is read from DOS attributes only on Windows, Linux emulates them with extended attributes
+    Set<String> views = path.getFileSystem().supportedFileAttributeViews();
+    return views.contains("dos") && !views.contains("posix");
+  }
+
+  private ListingSnapshot readAttributesInParallel(final FileObject folder, List<Path> paths, final boolean dos) throws FileSystemException {
+    int chunkSize = (paths.size() + threads - 1) / threads;
+    final int chunks = (paths.size() + chunkSize - 1) / chunkSize;
+    final ListingSnapshot[] snapshots = new ListingSnapshot[chunks];
+    final FileSystemException[] errors = new FileSystemException[chunks];
+    List<IoScheduler.Task> tasks = new ArrayList<IoScheduler.Task>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      final int chunk = i;
+      final List<Path> chunkPaths = paths.subList(i * chunkSize, Math.min(paths.size(), (i + 1) * chunkSize));
+      tasks.add(scheduler.submit(folder, IoScheduler.Priority.LINK_CHECK, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            snapshots[chunk] = readAttributes(folder, chunkPaths, dos);
+          } catch (FileSystemException e) {
+            errors[chunk] = e;
+          }
+        }
+      }));
+    }
+    try {
+      //chunks are taken from the end, scheduler starts them from the beginning
+      for (int i = chunks - 1; i >= 0; i--) {
+        IoScheduler.Task task = tasks.get(i);
+        if (!task.runNow()) {
+          task.await(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FileSystemException(new InterruptedIOException("Listing interrupted"));
+    } finally {
+      for (IoScheduler.Task task : tasks) {
+        task.cancel(true);
+      }
+    }
+    for (int i = 0; i < chunks; i++) {
+      if (errors[i] != null) {
+        throw errors[i];
+      }
+    }
+    return ListingSnapshot.concat(Arrays.asList(snapshots));
+  }
+
+  private ListingSnapshot readNames(FileObject folder, List<Path> paths) {
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(folder, paths.size());
+    for (Path path : paths) {
+      String name = path.getFileName().toString();
+      builder.add(name, null, ListingSnapshot.UNKNOWN, ListingSnapshot.UNKNOWN, name.startsWith("."), null);
+    }
+    return builder.build();
+  }
+
+  private ListingSnapshot readAttributes(FileObject folder, List<Path> paths, boolean dos) throws FileSystemException {
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(folder, paths.size());
+    Class<? extends BasicFileAttributes> attributesClass = dos ? DosFileAttributes.class : BasicFileAttributes.class;
+    for (Path path : paths) {
+      checkInterrupted();
+      String name = path.getFileName().toString();
+      BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(path, attributesClass, LinkOption.NOFOLLOW_LINKS);
+      } catch (IOException e) {
+        LOGGER.debug("Can't read attributes of " + path + ", file is skipped", e);
+        continue;
+      }
+      boolean hidden = name.startsWith(".") || dos && ((DosFileAttributes) attributes).isHidden();
+      if (attributes.isSymbolicLink()) {
+        //like links detected by link checker: link has own type, type of target is resolved
+        FileType targetType = FileType.IMAGINARY;
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        try {
+          BasicFileAttributes target = Files.readAttributes(path, BasicFileAttributes.class);
+          targetType = target.isDirectory() ? FileType.FOLDER : FileType.FILE;
+          lastModified = target.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+          LOGGER.debug("Can't read attributes of target of link " + path, e);
+        }
+        builder.add(name, FileType.IMAGINARY, ListingSnapshot.UNKNOWN, lastModified, hidden, targetType);
+      } else if (attributes.isDirectory()) {
+        builder.add(name, FileType.FOLDER, ListingSnapshot.UNKNOWN, attributes.lastModifiedTime().toMillis(), hidden, null);
+      } else {
+        builder.add(name, FileType.FILE, attributes.size(), attributes.lastModifiedTime().toMillis(), hidden, null);
+      }
+    }
+    return builder.build();
+  }
+
+  private static void checkInterrupted() throws FileSystemException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new FileSystemException(new InterruptedIOException("Listing interrupted"));
+    }
+  }
+
+  private static void closeQuietly(DirectoryStream<Path> stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        LOGGER.debug("Can't close directory stream", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one local folder with {@link WatchService} and reports created, deleted and modified files. Events
+ * coming in short time are reported together, so folder which receives many files is not refreshed for every
+ * single file.
+ */
+public class LocalFolderWatcher {
+
+  public static final String CONFIG_ENABLED = "listing.local.watch";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalFolderWatcher.class);
+  private static final long COALESCE_TIME = 200;
+
+  private final LocalFolderLister lister;
+  private final boolean enabled;
+  private final Object lock = new Object();
+  private WatchService watchService;
+  private WatchKey currentKey;
+  private FileObject currentFolder;
+  private Listener currentListener;
+
+  public interface Listener {
+
+    /**
+     * Called from watching thread when content of folder was changed.
+     *
+     * @param folder       watched folder
+     * @param changedFiles attributes of created and modified files
+     * @param removedNames names of deleted files
+     */
+    void folderChanged(FileObject folder, ListingSnapshot changedFiles, Set<String> removedNames);
+
+    /**
+     * Called from watching thread when events were lost or folder can't be watched anymore (i.e. it was deleted)
+     * and whole folder has to be listed again.
+     *
+     * @param folder watched folder
+     */
+    void folderInvalidated(FileObject folder);
+  }
+
+  public LocalFolderWatcher(LocalFolderLister lister, boolean enabled) {
+    this.lister = lister;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Creates watcher configured with key {@link #CONFIG_ENABLED}.
+   */
+  public static LocalFolderWatcher fromConfiguration(Configuration configuration, LocalFolderLister lister) {
+    return new LocalFolderWatcher(lister, configuration.getBoolean(CONFIG_ENABLED, true));
+  }
+
+  /**
+   * Starts watching folder, previously watched folder is not watched anymore. Folders which can't be listed
+   * by {@link LocalFolderLister} are not watched.
+   *
+   * @param folder   folder to watch
+   * @param listener listener notified about changes
+   */
+  public void watch(FileObject folder, Listener listener) {
+    synchronized (lock) {
+      if (currentFolder != null && currentFolder.equals(folder) && currentListener == listener) {
+        return;
+      }
+      stop();
+      if (!enabled || !lister.canList(folder)) {
+        return;
+      }
+      Path path = VFSUtils.toPath(folder);
+      try {
+        currentKey = path.register(getWatchService(), StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        currentFolder = folder;
+        currentListener = listener;
+        LOGGER.debug("Watching {}", path);
+      } catch (IOException e) {
+        LOGGER.warn("Can't watch " + path, e);
+      }
+    }
+  }
+
+  /**
+   * Stops watching current folder.
+   */
+  public void stop() {
+    synchronized (lock) {
+      if (currentKey != null) {
+        currentKey.cancel();
+      }
+      currentKey = null;
+      currentFolder = null;
+      currentListener = null;
+    }
+  }
+
+  private WatchService getWatchService() throws IOException {
+    if (watchService == null) {
+      watchService = FileSystems.getDefault().newWatchService();
+      Thread thread = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("local-folder-watcher-%d").build()
+          .newThread(new Runnable() {
+            @Override
+            public void run() {
+              processEvents();
+            }
+          });
+      thread.start();
+    }
+    return watchService;
+  }
+
+  private void processEvents() {
+    while (true) {
+      try {
+        WatchKey key = watchService.take();
+        Map<WatchKey, Changes> changesByKey = new LinkedHashMap<WatchKey, Changes>();
+        collect(key, changesByKey);
+        long deadline = System.currentTimeMillis() + COALESCE_TIME;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+          WatchKey nextKey = watchService.poll(remaining, TimeUnit.MILLISECONDS);
+          if (nextKey == null) {
+            break;
+          }
+          //other key can belong to folder which was started to be watched during coalescing
+          collect(nextKey, changesByKey);
+        }
+        for (Map.Entry<WatchKey, Changes> entry : changesByKey.entrySet()) {
+          dispatch(entry.getKey(), entry.getValue().names, entry.getValue().overflow);
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        LOGGER.error("Error processing events of watched folder", e);
+      }
+    }
+  }
+
+  private void collect(WatchKey key, Map<WatchKey, Changes> changesByKey) {
+    Changes changes = changesByKey.get(key);
+    if (changes == null) {
+      changes = new Changes();
+      changesByKey.put(key, changes);
+    }
+    changes.overflow |= pollEvents(key, changes.names);
+  }
+
+  /**
+   * @return true if events were lost or key is not valid anymore
+   */
+  private boolean pollEvents(WatchKey key, Set<String> names) {
+    boolean overflow = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+      } else {
+        names.add(event.context().toString());
+      }
+    }
+    return !key.reset() || overflow;
+  }
+
+  private void dispatch(WatchKey key, Set<String> names, boolean overflow) throws FileSystemException {
+    FileObject folder;
+    Listener listener;
+    synchronized (lock) {
+      if (key != currentKey) {
+        return;
+      }
+      folder = currentFolder;
+      listener = currentListener;
+      if (!key.isValid()) {
+        //folder was deleted or is not accessible, it is registered again when it is watched next time
+        currentKey = null;
+        currentFolder = null;
+        currentListener = null;
+      }
+    }
+    if (overflow) {
+      LOGGER.debug("Events of {} were lost or folder can't be watched anymore", key.watchable());
+      listener.folderInvalidated(folder);
+      return;
+    }
+    Path directory = (Path) key.watchable();
+    List<Path> paths = new ArrayList<Path>(names.size());
+    for (String name : names) {
+      paths.add(directory.resolve(name));
+    }
+    ListingSnapshot changedFiles = lister.readEntries(folder, paths);
+    Set<String> removedNames = new HashSet<String>(names);
+    for (int row = 0; row < changedFiles.size(); row++) {
+      removedNames.remove(changedFiles.getName(row));
+    }
+    LOGGER.debug("{} files changed and {} removed in {}", new Object[]{changedFiles.size(), removedNames.size(), directory});
+    listener.folderChanged(folder, changedFiles, removedNames);
+  }
+
+  private static class Changes {
+    private final Set<String> names = new LinkedHashSet<String>();
+    private boolean overflow;
+  }
+}
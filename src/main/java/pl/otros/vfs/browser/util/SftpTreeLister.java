@@ -0,0 +1,278 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.UriParser;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lists whole SFTP folder tree with one <code>find -printf</code> command executed over SSH exec channel opened on
+ * the session of SFTP file system. Output of command is parsed while it is read and entries are reported in chunks,
+ * so tree with thousands of folders is listed without round trip per folder.
+ * <p/>
+ * Command needs GNU find. If server does not permit exec channels or command fails without output (i.e. find
+ * without <code>-printf</code>), host is remembered and tree is not listed by this lister any more, caller should
+ * fall back to listing folder by folder.
+ */
+public class SftpTreeLister {
+
+  public static final String CONFIG_ENABLED = "sftp.exec.enabled";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SftpTreeLister.class);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int CHUNK_SIZE = 1000;
+  private static final String FORMAT = "'%y %Y %s %T@ %P\\0'";
+  private static final long EXIT_STATUS_TIMEOUT = 5000;
+
+  private final boolean enabled;
+  private final Set<String> hostsWithoutExec = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * @param enabled if false, {@link #canList(FileObject)} returns false for all folders
+   */
+  public SftpTreeLister(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Creates lister configured with key {@link #CONFIG_ENABLED}.
+   */
+  public static SftpTreeLister fromConfiguration(Configuration configuration) {
+    return new SftpTreeLister(configuration.getBoolean(CONFIG_ENABLED, true));
+  }
+
+  public interface Listener {
+
+    /**
+     * Called from listing thread with entries of folder. Entries of one folder can be reported in more chunks.
+     *
+     * @param path    path of folder relative to listed root, empty for root
+     * @param entries entries of folder
+     */
+    void listed(String path, ListingSnapshot entries);
+  }
+
+  /**
+   * @return true if folder is SFTP folder and its host did not refuse exec channel or fail command
+   */
+  public boolean canList(FileObject folder) {
+    return enabled && SftpUtils.isAvailable() && folder instanceof SftpFileObject
+        && !hostsWithoutExec.contains(folder.getName().getRootURI());
+  }
+
+  /**
+   * Lists tree below root. Links are not followed. Listing is aborted when thread is interrupted.
+   *
+   * @param root        SFTP folder, see {@link #canList(FileObject)}
+   * @param maxDepth    maximal depth of entries, entries of root have depth 1
+   * @param prunedNames names of folders which are reported, but not listed (case insensitive)
+   * @param pruneHidden if true, folders with name starting with dot are not listed
+   * @param listener    listener of listed entries
+   * @return true if tree was listed, false if command could not be executed and nothing was reported
+   * @throws FileSystemException if listing failed after some entries were reported or listing was interrupted
+   */
+  public boolean list(FileObject root, int maxDepth, Collection<String> prunedNames, boolean pruneHidden, Listener listener)
+      throws FileSystemException {
+    SftpFileObject sftpRoot = (SftpFileObject) root;
+    String host = root.getName().getRootURI();
+    String command = buildCommand(SftpUtils.getServerPath(sftpRoot), maxDepth, prunedNames, pruneHidden);
+    VFSUtils.getConnectionPool().touch(root);
+    Session session = SftpUtils.getSession(sftpRoot);
+    long ts = System.currentTimeMillis();
+    ChannelExec channel;
+    InputStream in;
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    try {
+      channel = (ChannelExec) session.openChannel("exec");
+      channel.setCommand(command);
+      channel.setErrStream(err, true);
+      in = channel.getInputStream();
+      channel.connect();
+    } catch (JSchException e) {
+      LOGGER.info("Can't execute command on {}, tree will be listed folder by folder: {}", host, e.getMessage());
+      hostsWithoutExec.add(host);
+      return false;
+    } catch (IOException e) {
+      throw new FileSystemException(e);
+    }
+    try {
+      int entries = parse(in, root, listener);
+      int exitStatus = waitForExitStatus(channel);
+      if (entries == 0 && exitStatus != 0) {
+        LOGGER.info("Command {} failed on {} with status {}, tree will be listed folder by folder: {}",
+            new Object[]{command, host, exitStatus, new String(err.toByteArray(), UTF8).trim()});
+        hostsWithoutExec.add(host);
+        return false;
+      }
+      LOGGER.debug("Listing {} entries of tree {} with find took {} ms", new Object[]{entries, root.getName().getFriendlyURI(), System.currentTimeMillis() - ts});
+      return true;
+    } catch (InterruptedIOException e) {
+      throw new FileSystemException(e);
+    } catch (IOException e) {
+      throw new FileSystemException(e);
+    } finally {
+      channel.disconnect();
+    }
+  }
+
+  private static int waitForExitStatus(ChannelExec channel) throws InterruptedIOException {
+    long deadline = System.currentTimeMillis() + EXIT_STATUS_TIMEOUT;
+    while (!channel.isClosed() && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Listing interrupted");
+      }
+    }
+    return channel.getExitStatus();
+  }
+
+  /**
+   * Builds find command which prints NUL terminated records: type, type of link target, size, modification time and
+   * path relative to listed folder.
+   */
+  static String buildCommand(String path, int maxDepth, Collection<String> prunedNames, boolean pruneHidden) {
+    StringBuilder sb = new StringBuilder("LC_ALL=C find ").append(quote(path)).append(" -mindepth 1");
+    if (maxDepth < Integer.MAX_VALUE) {
+      sb.append(" -maxdepth ").append(maxDepth);
+    }
+    if (!prunedNames.isEmpty() || pruneHidden) {
+      sb.append(" \\( -type d \\(");
+      String separator = " ";
+      for (String name : prunedNames) {
+        sb.append(separator).append("-iname ").append(quote(escapeGlob(name)));
+        separator = " -o ";
+      }
+      if (pruneHidden) {
+        sb.append(separator).append("-name '.*'");
+      }
+      sb.append(" \\) -printf ").append(FORMAT).append(" -prune \\) -o");
+    }
+    return sb.append(" -printf ").append(FORMAT).toString();
+  }
+
+  private static String quote(String text) {
+    return "'" + text.replace("'", "'\\''") + "'";
+  }
+
+  private static String escapeGlob(String name) {
+    return name.replaceAll("([\\\\*?\\[\\]])", "\\\\$1");
+  }
+
+  /**
+   * Parses output of find command. Consecutive entries of the same folder are reported together.
+   *
+   * @return number of parsed entries
+   */
+  static int parse(InputStream in, FileObject root, Listener listener) throws IOException {
+    InputStream input = new BufferedInputStream(in, 64 * 1024);
+    ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    String chunkPath = null;
+    ListingSnapshot.Builder builder = null;
+    int count = 0;
+    int b;
+    while ((b = input.read()) >= 0) {
+      if (b != 0) {
+        record.write(b);
+        continue;
+      }
+      if ((count & 0xff) == 0 && Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Listing interrupted");
+      }
+      String line = new String(record.toByteArray(), UTF8);
+      record.reset();
+      String[] fields = line.split(" ", 5);
+      if (fields.length < 5 || fields[4].length() == 0) {
+        LOGGER.debug("Skipping invalid record: {}", line);
+        continue;
+      }
+      String relativePath = fields[4];
+      int slash = relativePath.lastIndexOf('/');
+      String path = slash < 0 ? "" : relativePath.substring(0, slash);
+      String name = relativePath.substring(slash + 1);
+      if (builder != null && (!path.equals(chunkPath) || builder.size() >= CHUNK_SIZE)) {
+        listener.listed(chunkPath, builder.build());
+        builder = null;
+      }
+      if (builder == null) {
+        chunkPath = path;
+        builder = new ListingSnapshot.Builder(resolveFolder(root, path), 64);
+      }
+      addEntry(builder, name, fields);
+      count++;
+    }
+    if (builder != null) {
+      listener.listed(chunkPath, builder.build());
+    }
+    return count;
+  }
+
+  private static void addEntry(ListingSnapshot.Builder builder, String name, String[] fields) {
+    char type = fields[0].charAt(0);
+    long lastModified = ListingSnapshot.UNKNOWN;
+    long size = ListingSnapshot.UNKNOWN;
+    try {
+      lastModified = (long) (Double.parseDouble(fields[3]) * 1000);
+      size = Long.parseLong(fields[2]);
+    } catch (NumberFormatException e) {
+      LOGGER.debug("Invalid attributes of {}: {}", name, e.getMessage());
+    }
+    boolean hidden = name.startsWith(".");
+    if (type == 'l') {
+      char targetType = fields[1].charAt(0);
+      FileType linkTarget = targetType == 'd' ? FileType.FOLDER : targetType == 'f' ? FileType.FILE : FileType.IMAGINARY;
+      builder.add(name, FileType.IMAGINARY, ListingSnapshot.UNKNOWN, lastModified, hidden, linkTarget);
+    } else if (type == 'd') {
+      builder.add(name, FileType.FOLDER, ListingSnapshot.UNKNOWN, lastModified, hidden, null);
+    } else {
+      builder.add(name, FileType.FILE, size, lastModified, hidden, null);
+    }
+  }
+
+  private static FileObject resolveFolder(FileObject root, String path) throws FileSystemException {
+    if (path.length() == 0) {
+      return root;
+    }
+    FileName name = root.getFileSystem().getFileSystemManager()
+        .resolveName(root.getName(), UriParser.encode(path), NameScope.DESCENDENT);
+    return root.getFileSystem().resolveFile(name);
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.google.common.base.Throwables;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.AbstractFileObject;
+import org.apache.commons.vfs2.provider.UriParser;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystem;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Helpers for SFTP file system which are not exposed by commons-vfs API.
+ * <p/>
+ * Commons-vfs uses attributes returned by <code>ls</code> only for first listing of folder. Later listings (after refresh
+ * or when folder is visited again) resolve children by name and every child is stat-ed separately when type, size or
+ * last modification time is requested. {@link #listChildren(SftpFileObject)} lists folder with one <code>ls</code>
+ * and injects returned attributes (type, size, mtime, permissions and link flag) into children.
+ */
+public final class SftpUtils {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SftpUtils.class);
+
+  private static Method getChannelMethod;
+  private static Method putChannelMethod;
+  private static Method setStatMethod;
+  private static Method injectTypeMethod;
+  private static Field attrsField;
+  private static Field relPathField;
+  private static boolean available;
+
+  static {
+    try {
+      getChannelMethod = SftpFileSystem.class.getDeclaredMethod("getChannel");
+      putChannelMethod = SftpFileSystem.class.getDeclaredMethod("putChannel", ChannelSftp.class);
+      setStatMethod = SftpFileObject.class.getDeclaredMethod("setStat", SftpATTRS.class);
+      injectTypeMethod = AbstractFileObject.class.getDeclaredMethod("injectType", FileType.class);
+      attrsField = SftpFileObject.class.getDeclaredField("attrs");
+      relPathField = SftpFileObject.class.getDeclaredField("relPath");
+      getChannelMethod.setAccessible(true);
+      putChannelMethod.setAccessible(true);
+      setStatMethod.setAccessible(true);
+      injectTypeMethod.setAccessible(true);
+      attrsField.setAccessible(true);
+      relPathField.setAccessible(true);
+      available = true;
+    } catch (Exception e) {
+      LOGGER.warn("SFTP listing with attributes is not available, children will be listed by commons-vfs", e);
+      available = false;
+    }
+  }
+
+  private SftpUtils() {
+    throw new AssertionError("Trying to create a SftpUtils object");
+  }
+
+  public static boolean isAvailable() {
+    return available;
+  }
+
+  /**
+   * Used in tests to simulate runtime where internals of commons-vfs are not accessible.
+   */
+  static void setAvailable(boolean available) {
+    SftpUtils.available = available;
+  }
+
+  /**
+   * Lists children of folder with single <code>ls</code> and injects attributes of entries into returned file objects.
+   * If attributes can't be injected, falls back to {@link FileObject#getChildren()}.
+   *
+   * @param folder SFTP folder
+   * @return children of folder
+   * @throws FileSystemException if folder can't be listed
+   */
+  public static FileObject[] listChildren(SftpFileObject folder) throws FileSystemException {
+    if (!available) {
+      return folder.getChildren();
+    }
+    long ts = System.currentTimeMillis();
+    Vector<?> entries;
+    try {
+      entries = ls(folder);
+    } catch (FileSystemException e) {
+      if (Thread.currentThread().isInterrupted() || Throwables.getRootCause(e) instanceof InterruptedIOException) {
+        throw e;
+      }
+      LOGGER.warn("Can't list " + folder.getName().getFriendlyURI() + " with attributes, falling back to commons-vfs", e);
+      return folder.getChildren();
+    }
+    FileObject[] children = toChildren(folder, entries);
+    LOGGER.debug("Listing {} entries of {} with attributes took {} ms", new Object[]{children.length, folder.getName().getFriendlyURI(), System.currentTimeMillis() - ts});
+    return children;
+  }
+
+  /**
+   * Resolves children of folder from entries returned by <code>ls</code>. Attributes of entries are injected into
+   * children only if commons-vfs internals are accessible.
+   */
+  static FileObject[] toChildren(SftpFileObject folder, Vector<?> entries) throws FileSystemException {
+    List<FileObject> children = new ArrayList<FileObject>(entries.size());
+    for (Object o : entries) {
+      ChannelSftp.LsEntry entry = (ChannelSftp.LsEntry) o;
+      String fileName = entry.getFilename();
+      if (".".equals(fileName) || "..".equals(fileName)) {
+        continue;
+      }
+      FileName childName = folder.getFileSystem().getFileSystemManager().resolveName(folder.getName(), UriParser.encode(fileName), NameScope.CHILD);
+      FileObject child = folder.getFileSystem().resolveFile(childName);
+      if (available && child instanceof SftpFileObject) {
+        injectAttributes((SftpFileObject) child, entry.getAttrs());
+      }
+      children.add(child);
+    }
+    return children.toArray(new FileObject[children.size()]);
+  }
+
+  /**
+   * Returns attributes known to file object without contacting server.
+   *
+   * @return attributes or null if file was not stat-ed yet
+   */
+  public static SftpATTRS getAttributes(SftpFileObject fileObject) {
+    if (!available) {
+      return null;
+    }
+    try {
+      return (SftpATTRS) attrsField.get(fileObject);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Checks if file is symbolic link. Attributes injected by listing are used, server is contacted (lstat) only
+   * if file was not stat-ed yet.
+   */
+  public static boolean isLink(SftpFileObject fileObject) throws FileSystemException {
+    SftpATTRS attrs = getAttributes(fileObject);
+    if (attrs == null) {
+      if (!available) {
+        return false;
+      }
+      attrs = execute(fileObject, new ChannelCommand<SftpATTRS>() {
+        @Override
+        public SftpATTRS execute(ChannelSftp channel, String path) throws Exception {
+          return channel.lstat(path);
+        }
+      });
+    }
+    return attrs.isLink();
+  }
+
+  /**
+   * Resolves type of file which symbolic link points to (stat follows links).
+   *
+   * @return {@link FileType#FOLDER}, {@link FileType#FILE} or {@link FileType#IMAGINARY} if link is broken
+   */
+  public static FileType getTargetType(SftpFileObject link) throws FileSystemException {
+    try {
+      SftpATTRS attrs = execute(link, new ChannelCommand<SftpATTRS>() {
+        @Override
+        public SftpATTRS execute(ChannelSftp channel, String path) throws Exception {
+          return channel.stat(path);
+        }
+      });
+      return attrs.isDir() ? FileType.FOLDER : FileType.FILE;
+    } catch (FileSystemException e) {
+      if (Throwables.getRootCause(e) instanceof SftpException) {
+        LOGGER.debug("Can't stat target of link " + link.getName().getFriendlyURI(), e);
+        return FileType.IMAGINARY;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns connected SSH session of file system of file, session is reconnected if it was closed. Session can be used
+   * to open other channels (i.e. exec) next to SFTP channels of file system.
+   *
+   * @param fileObject SFTP file
+   * @return SSH session
+   * @throws FileSystemException if session can't be accessed or connected
+   */
+  public static Session getSession(SftpFileObject fileObject) throws FileSystemException {
+    return execute(fileObject, new ChannelCommand<Session>() {
+      @Override
+      public Session execute(ChannelSftp channel, String path) throws Exception {
+        //borrowing channel connects session of file system
+        return channel.getSession();
+      }
+    });
+  }
+
+  /**
+   * @return absolute path of file on server or path relative to home folder if user folder is root of file system
+   */
+  public static String getServerPath(SftpFileObject fileObject) throws FileSystemException {
+    String path = fileObject.getName().getPathDecoded();
+    Boolean userDirIsRoot = SftpFileSystemConfigBuilder.getInstance().getUserDirIsRoot(fileObject.getFileSystem().getFileSystemOptions());
+    if (Boolean.TRUE.equals(userDirIsRoot)) {
+      //exec channel starts in home folder
+      return "." + path;
+    }
+    return path;
+  }
+
+  private static Vector<?> ls(SftpFileObject folder) throws FileSystemException {
+    return execute(folder, new ChannelCommand<Vector<?>>() {
+      @Override
+      public Vector<?> execute(ChannelSftp channel, String path) throws Exception {
+        return channel.ls(path);
+      }
+    });
+  }
+
+  private interface ChannelCommand<T> {
+    T execute(ChannelSftp channel, String path) throws Exception;
+  }
+
+  /**
+   * Executes command on channel borrowed from file system of file. Command is aborted when thread is interrupted,
+   * channel of aborted command is closed instead of returning it to file system.
+   */
+  private static <T> T execute(SftpFileObject fileObject, ChannelCommand<T> command) throws FileSystemException {
+    if (!available) {
+      throw new FileSystemException("SFTP channel is not accessible");
+    }
+    try {
+      SftpFileSystem fileSystem = (SftpFileSystem) fileObject.getFileSystem();
+      String relPath = (String) relPathField.get(fileObject);
+      ChannelSftp channel = (ChannelSftp) getChannelMethod.invoke(fileSystem);
+      boolean aborted = false;
+      try {
+        return command.execute(channel, relPath.length() == 0 ? "." : relPath);
+      } catch (Exception e) {
+        aborted = Thread.currentThread().isInterrupted() || Throwables.getRootCause(e) instanceof InterruptedIOException;
+        throw e;
+      } finally {
+        if (aborted) {
+          //interrupted command can leave unread response in channel, it can't be reused
+          LOGGER.debug("Command interrupted, disconnecting channel");
+          channel.disconnect();
+        } else {
+          putChannelMethod.invoke(fileSystem, channel);
+        }
+      }
+    } catch (InvocationTargetException e) {
+      throw new FileSystemException(e.getCause());
+    } catch (FileSystemException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new FileSystemException(e);
+    }
+  }
+
+  private static void injectAttributes(SftpFileObject fileObject, SftpATTRS attrs) {
+    try {
+      setStatMethod.invoke(fileObject, attrs);
+      //type can be cached from previous listing
+      injectTypeMethod.invoke(fileObject, attrs.isDir() ? FileType.FOLDER : FileType.FILE);
+    } catch (Exception e) {
+      LOGGER.debug("Can't inject attributes of " + fileObject.getName().getFriendlyURI(), e);
+    }
+  }
+}
@@ -18,8 +18,10 @@ package pl.otros.vfs.browser.util;
 import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
 import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
 import jcifs.smb.SmbAuthException;
 import net.sf.vfsjfilechooser.utils.VFSURIParser;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -37,6 +39,8 @@ import pl.otros.vfs.browser.Icons;
 import pl.otros.vfs.browser.LinkFileObject;
 import pl.otros.vfs.browser.TaskContext;
 import pl.otros.vfs.browser.auth.*;
+import pl.otros.vfs.browser.cache.BoundedFilesCache;
+import pl.otros.vfs.browser.table.ListingSnapshot;
 
 import javax.swing.*;
 import java.io.File;
@@ -47,6 +51,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -62,9 +69,6 @@ import java.util.regex.Pattern;
  * @version 0.0.5
  */
 public final class VFSUtils {
-  private static final int SYMBOLIC_LINK_MAX_SIZE = 128;
-
-
   // private static members
   private static FileSystemManager fileSystemManager;
   private static FileSystemOptions opts = new FileSystemOptions();
@@ -91,6 +95,15 @@ public final class VFSUtils {
   private static AuthStore persistentAuthStore = new MemoryAuthStore();
   private static AuthStoreUtils authStoreUtils;
   private static boolean authStoreLoaded = false;
+  private static LinkChecker linkChecker;
+  private static ConnectionPool connectionPool;
+  private static IoScheduler ioScheduler;
+  /**
+   * Options of locations resolved with stored credentials by scheme, user, host and port, guarded by itself
+   */
+  private static final Map<String, FileSystemOptions> storedCredentialsOptions = new HashMap<String, FileSystemOptions>();
+  private static final BoundedFilesCache filesCache = new BoundedFilesCache(BoundedFilesCache.DEFAULT_MAX_ENTRIES, BoundedFilesCache.DEFAULT_MAX_BYTES);
+  private static boolean filesCacheConfigured = false;
 
   static {
     schemeIconMap.put("file", Icons.getInstance().getDrive());
@@ -136,6 +149,7 @@ public final class VFSUtils {
         try {
           StandardFileSystemManager fm = new StandardFileSystemManager();
           fm.setCacheStrategy(CacheStrategy.MANUAL);
+          fm.setFilesCache(filesCache);
           fm.init();
           LOGGER.info("Supported schemes: {} ", Joiner.on(", ").join(fm.getSchemes()));
           fileSystemManager = fm;
@@ -150,6 +164,64 @@ public final class VFSUtils {
     }
   }
 
+  /**
+   * @return cache of file objects used by global filesystem manager, see {@link #initFilesCache(Configuration)}
+   */
+  public static BoundedFilesCache getFilesCache() {
+    return filesCache;
+  }
+
+  /**
+   * Sets limits of files cache from configuration, see {@link BoundedFilesCache#configure(Configuration)}. Cache is
+   * shared by all browsers, like connection pool and I/O scheduler it is configured only once.
+   */
+  public static synchronized void initFilesCache(Configuration configuration) {
+    if (!filesCacheConfigured) {
+      filesCache.configure(configuration);
+      filesCacheConfigured = true;
+    }
+  }
+
+  /**
+   * Creates pool of remote connections from configuration, see {@link ConnectionPool#fromConfiguration(Configuration)}.
+   * Pool is shared by all browsers, it is created only once.
+   */
+  public static synchronized void initConnectionPool(Configuration configuration) {
+    if (connectionPool == null) {
+      connectionPool = ConnectionPool.fromConfiguration(configuration);
+    }
+  }
+
+  /**
+   * @return pool of remote connections, pool with default settings is created if it was not initialized
+   */
+  public static synchronized ConnectionPool getConnectionPool() {
+    if (connectionPool == null) {
+      connectionPool = ConnectionPool.withDefaults();
+    }
+    return connectionPool;
+  }
+
+  /**
+   * Creates scheduler of blocking I/O from configuration, see {@link IoScheduler#fromConfiguration(Configuration)}.
+   * Scheduler is shared by all browsers, it is created only once.
+   */
+  public static synchronized void initIoScheduler(Configuration configuration) {
+    if (ioScheduler == null) {
+      ioScheduler = IoScheduler.fromConfiguration(configuration);
+    }
+  }
+
+  /**
+   * @return scheduler of blocking I/O, scheduler with default settings is created if it was not initialized
+   */
+  public static synchronized IoScheduler getIoScheduler() {
+    if (ioScheduler == null) {
+      ioScheduler = IoScheduler.withDefaults();
+    }
+    return ioScheduler;
+  }
+
   // -----------------------------------------------------------------------
 
 
@@ -289,25 +361,102 @@ public final class VFSUtils {
    */
   public static FileObject resolveFileObject(String filePath) throws FileSystemException {
     LOGGER.info("Resolving file: {}", filePath);
+    applySchemeOptions(filePath, opts);
+    UserAuthenticatorFactory factory = new UserAuthenticatorFactory();
+
+    OtrosUserAuthenticator authenticator = factory.getUiUserAuthenticator(persistentAuthStore, sessionAuthStore, filePath, opts);
+
+    if (pathContainsCredentials(filePath)) {
+      authenticator = null;
+    }
+    return resolveFileObject(filePath, opts, authenticator, persistentAuthStore, sessionAuthStore);
+  }
+
+  private static void applySchemeOptions(String filePath, FileSystemOptions options) throws FileSystemException {
     if (filePath.startsWith("sftp://")) {
       SftpFileSystemConfigBuilder builder = SftpFileSystemConfigBuilder.getInstance();
-      builder.setStrictHostKeyChecking(opts, "no");
-      builder.setUserDirIsRoot(opts, false);
-      builder.setCompression(opts, "zlib,none");
+      builder.setStrictHostKeyChecking(options, "no");
+      builder.setUserDirIsRoot(options, false);
+      builder.setCompression(options, "zlib,none");
 
     } else if (filePath.startsWith("smb://")) {
 
     } else if (filePath.startsWith("ftp://")) {
-      FtpFileSystemConfigBuilder.getInstance().setPassiveMode(opts, true);
+      FtpFileSystemConfigBuilder.getInstance().setPassiveMode(options, true);
     }
-    UserAuthenticatorFactory factory = new UserAuthenticatorFactory();
-
-    OtrosUserAuthenticator authenticator = factory.getUiUserAuthenticator(persistentAuthStore, sessionAuthStore, filePath, opts);
+  }
 
+  /**
+   * Resolves file without asking user for credentials. File system is authenticated with credentials contained in URL
+   * or stored in session or persistent auth store. Locations of the same user and host share options with static
+   * authenticator, so they share one file system (and session), which is not affected by authenticators of other
+   * locations and reconnects with the same credentials.
+   *
+   * @param filePath URL of file
+   * @return resolved file or null if credentials for host are not known
+   * @throws FileSystemException if file can't be resolved or authentication failed
+   */
+  public static FileObject resolveFileObjectWithStoredCredentials(String filePath) throws FileSystemException {
+    FileSystemOptions options;
     if (pathContainsCredentials(filePath)) {
-      authenticator = null;
+      options = new FileSystemOptions();
+      applySchemeOptions(filePath, options);
+    } else {
+      UserAuthenticationData authenticationData = findStoredCredentials(filePath);
+      if (authenticationData == null) {
+        LOGGER.debug("Credentials for {} are not stored", getFriendlyName(filePath));
+        return null;
+      }
+      options = storedCredentialsOptions(filePath, authenticationData);
     }
-    return resolveFileObject(filePath, opts, authenticator, persistentAuthStore, sessionAuthStore);
+    FileObject resolveFile = getFileSystemManager().resolveFile(filePath, options);
+    resolveFile.getType();
+    getConnectionPool().touch(resolveFile);
+    return resolveFile;
+  }
+
+  /**
+   * Returns options with static authenticator of credentials. Options are reused for locations with the same scheme,
+   * user, host and port while credentials are the same: authenticator is not comparable, so file system manager
+   * would create new file system for every new options.
+   */
+  static FileSystemOptions storedCredentialsOptions(String filePath, UserAuthenticationData authenticationData)
+      throws FileSystemException {
+    VFSURIParser parser = new VFSURIParser(filePath);
+    char[] user = authenticationData.getData(UserAuthenticationData.USERNAME);
+    String key = (parser.getProtocol().getName() + "://" + (user != null ? new String(user) : "") + "@" + parser.getHostname()
+        + ":" + parser.getPortnumber()).toLowerCase();
+    synchronized (storedCredentialsOptions) {
+      FileSystemOptions options = storedCredentialsOptions.get(key);
+      if (options != null) {
+        UserAuthenticator authenticator = DefaultFileSystemConfigBuilder.getInstance().getUserAuthenticator(options);
+        if (((OtrosStaticUserAuthenticator) authenticator).getUserAuthenticationData() == authenticationData) {
+          return options;
+        }
+      }
+      options = new FileSystemOptions();
+      applySchemeOptions(filePath, options);
+      DefaultFileSystemConfigBuilder.getInstance().setUserAuthenticator(options, new OtrosStaticUserAuthenticator(authenticationData));
+      storedCredentialsOptions.put(key, options);
+      return options;
+    }
+  }
+
+  private static UserAuthenticationData findStoredCredentials(String filePath) {
+    VFSURIParser parser = new VFSURIParser(filePath);
+    if (parser.getProtocol() == null || parser.getHostname() == null) {
+      return null;
+    }
+    for (AuthStore authStore : Arrays.asList(sessionAuthStore, persistentAuthStore)) {
+      Collection<UserAuthenticationDataWrapper> datas = authStore.getUserAuthenticationDatas(parser.getProtocol().getName(), parser.getHostname());
+      for (UserAuthenticationDataWrapper data : datas) {
+        char[] user = data.getData(UserAuthenticationData.USERNAME);
+        if (StringUtils.isBlank(parser.getUsername()) || user != null && parser.getUsername().equals(new String(user))) {
+          return data;
+        }
+      }
+    }
+    return null;
   }
 
   private static boolean pathContainsCredentials(String filePath) {
@@ -344,6 +493,7 @@ public final class VFSUtils {
     try {
       resolveFile = getFileSystemManager().resolveFile(filePath, options);
       resolveFile.getType();
+      getConnectionPool().touch(resolveFile);
     } catch (FileSystemException e) {
       LOGGER.error("Error resolving file " + filePath, e);
       Throwable rootCause = Throwables.getRootCause(e);
@@ -490,34 +640,84 @@ public final class VFSUtils {
   }
 
   public static void checkForSftpLinks(FileObject[] files, TaskContext taskContext) {
-    LOGGER.debug("Checking for SFTP links");
     taskContext.setMax(files.length);
-    long ts = System.currentTimeMillis();
-    for (int i = 0; i < files.length && !taskContext.isStop(); i++) {
-      FileObject fileObject = files[i];
-      try {
-        if (fileObject instanceof SftpFileObject && FileType.FILE.equals(fileObject.getType())) {
-          SftpFileObject sftpFileObject = (SftpFileObject) fileObject;
-          long size = sftpFileObject.getContent().getSize();
-          if (size < SYMBOLIC_LINK_MAX_SIZE && size != 0) {
-            if (!pointToItself(sftpFileObject)) {
-              files[i] = new LinkFileObject(sftpFileObject);
-            }
-          }
+    checkForSftpLinks(files, 0, files.length, taskContext);
+  }
 
-        }
+  /**
+   * Checks for SFTP links only in range of files, progress is reported as number of processed files in whole array.
+   *
+   * @param files       files to check, detected links are replaced with {@link LinkFileObject}
+   * @param from        index of first file to check, inclusive
+   * @param to          index of last file to check, exclusive
+   * @param taskContext task context
+   */
+  public static void checkForSftpLinks(FileObject[] files, int from, int to, TaskContext taskContext) {
+    getLinkChecker().check(files, from, to, taskContext, null);
+  }
 
-      } catch (Exception e) {
-        //ignore
-      } finally {
-        taskContext.setCurrentProgress(i);
+  private static synchronized LinkChecker getLinkChecker() {
+    if (linkChecker == null) {
+      linkChecker = LinkChecker.withDefaults();
+    }
+    return linkChecker;
+  }
+
+  /**
+   * Checks if file is symbolic link using file attributes: lstat data for SFTP (already known after listing)
+   * and {@link Files#isSymbolicLink(Path)} for local files.
+   *
+   * @param fileObject file to check
+   * @return true if file is symbolic link
+   * @throws FileSystemException if attributes can't be read
+   */
+  public static boolean isLink(FileObject fileObject) throws FileSystemException {
+    if (fileObject instanceof LinkFileObject) {
+      return true;
+    } else if (fileObject instanceof SftpFileObject) {
+      return SftpUtils.isLink((SftpFileObject) fileObject);
+    } else if (isLocalFileSystem(fileObject)) {
+      Path path = toPath(fileObject);
+      return path != null && Files.isSymbolicLink(path);
+    }
+    return false;
+  }
+
+  /**
+   * Creates link with resolved type of file which link points to.
+   *
+   * @param fileObject symbolic link, see {@link #isLink(FileObject)}
+   * @return link
+   * @throws FileSystemException if type of target can't be resolved
+   */
+  public static LinkFileObject resolveLink(FileObject fileObject) throws FileSystemException {
+    FileType targetType = null;
+    if (fileObject instanceof SftpFileObject) {
+      targetType = SftpUtils.getTargetType((SftpFileObject) fileObject);
+    } else if (isLocalFileSystem(fileObject)) {
+      Path path = toPath(fileObject);
+      if (path != null) {
+        targetType = !Files.exists(path) ? FileType.IMAGINARY : Files.isDirectory(path) ? FileType.FOLDER : FileType.FILE;
       }
+    }
+    return new LinkFileObject(fileObject, targetType);
+  }
 
+  static Path toPath(FileObject fileObject) {
+    try {
+      return Paths.get(fileObject.getURL().toURI());
+    } catch (Exception e) {
+      LOGGER.debug("Can't convert " + fileObject.getName().getFriendlyURI() + " to path", e);
+      return null;
     }
-    long checkDuration = System.currentTimeMillis() - ts;
-    LOGGER.info("Checking SFTP links took {} ms [{}ms/file]", checkDuration, (float) checkDuration / files.length);
   }
 
+  /**
+   * Old link detection which lists file as folder and checks if it contains only itself.
+   *
+   * @deprecated costs additional round trips and fails for small regular files, use {@link #isLink(FileObject)}
+   */
+  @Deprecated
   public static boolean pointToItself(FileObject fileObject) throws FileSystemException {
     if (!fileObject.getURL().getProtocol().equalsIgnoreCase("file") && FileType.FILE.equals(fileObject.getType())) {
       LOGGER.debug("Checking if {} is pointing to itself", fileObject.getName().getFriendlyURI());
@@ -537,12 +737,15 @@ public final class VFSUtils {
   }
 
   public static FileObject[] getChildren(FileObject fileObject) throws FileSystemException {
+    getConnectionPool().touch(fileObject);
     FileObject[] result;
     if (isHttpProtocol(fileObject)) {
       result = extractHttpFileObjectChildren(fileObject);
     } else if (isLocalFileSystem(fileObject) && isArchive(fileObject)) {
       String extension = fileObject.getName().getExtension();
       result = VFSUtils.resolveFileObject(extension + ":" + fileObject.getURL().toString() + "!/").getChildren();
+    } else if (fileObject instanceof SftpFileObject) {
+      result = SftpUtils.listChildren((SftpFileObject) fileObject);
     } else {
       result = fileObject.getChildren();
     }
@@ -559,7 +762,7 @@ public final class VFSUtils {
   }
 
 
-  private static boolean isLocalFileSystem(FileObject fileObject) {
+  static boolean isLocalFileSystem(FileObject fileObject) {
     return fileObject.getName().getScheme().equalsIgnoreCase("file");
   }
 
@@ -677,10 +880,34 @@ public final class VFSUtils {
     return authStoreLoaded;
   }
 
+  /**
+   * Checks if row of listing can be opened. Decision is made from type and link flag of row and attributes
+   * injected by SFTP listing, server is not contacted, so it can be called on EDT.
+   */
+  public static boolean canGoUrl(ListingSnapshot snapshot, int row) {
+    if (snapshot.isLink(row)) {
+      return !FileType.FILE.equals(snapshot.getResolvedType(row));
+    }
+    if (!snapshot.isFile(row)) {
+      return true;
+    }
+    String scheme = snapshot.getFileName(row).getScheme();
+    if ("sftp".equalsIgnoreCase(scheme)) {
+      //links which were not checked yet are known from ls attributes
+      FileObject fileObject = snapshot.getFileObject(row);
+      SftpATTRS attrs = fileObject instanceof SftpFileObject ? SftpUtils.getAttributes((SftpFileObject) fileObject) : null;
+      return attrs != null && attrs.isLink();
+    }
+    return !"file".equalsIgnoreCase(scheme);
+  }
+
   public static boolean canGoUrl(FileObject fileObject) {
-    //http files
+    if (fileObject instanceof LinkFileObject) {
+      return !FileType.FILE.equals(((LinkFileObject) fileObject).getTargetType());
+    }
+    //SFTP files, unless they are not checked links
     try {
-      if (!fileObject.getURL().getProtocol().startsWith("http") && VFSUtils.pointToItself(fileObject)) {
+      if (fileObject instanceof SftpFileObject && FileType.FILE.equals(fileObject.getType()) && !isLink(fileObject)) {
         return false;
       }
     } catch (FileSystemException e1) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads of Java 21+. Project is compiled for Java 8, so virtual threads are created with
+ * reflection: <code>Thread.ofVirtual().name(prefix, 0).factory()</code>.
+ */
+public final class VirtualThreads {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true if running JVM supports virtual threads (without preview features)
+   */
+  public static boolean isAvailable() {
+    return newThreadFactory("virtual-check-") != null;
+  }
+
+  /**
+   * Creates factory of virtual threads.
+   *
+   * @param prefix prefix of thread names, threads are numbered from 0
+   * @return factory or null if virtual threads are not available
+   */
+  public static ThreadFactory newThreadFactory(String prefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      Method factory = builderClass.getMethod("factory");
+      return (ThreadFactory) factory.invoke(name.invoke(builder, prefix, 0L));
+    } catch (Exception e) {
+      //not available before Java 21, on Java 19 and 20 only with preview features enabled
+      LOGGER.debug("Virtual threads are not available: {}", e.toString());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompositeTaskContextTest {
+
+  @Test
+  public void testAggregatesChildren() {
+    //given
+    TaskContext first = new TaskContext("first", 10);
+    TaskContext second = new TaskContext("second", 5);
+    CompositeTaskContext composite = new CompositeTaskContext("composite", new TaskContext[]{first, second});
+
+    //when
+    first.setCurrentProgress(3);
+    second.setCurrentProgress(4);
+    first.setStop(true);
+
+    //then
+    Assert.assertEquals(composite.getMax(), 15);
+    Assert.assertEquals(composite.getCurrentProgress(), 7);
+    Assert.assertFalse(composite.isStop());
+  }
+
+  @Test
+  public void testPropagatesChanges() {
+    //given
+    TaskContext first = new TaskContext("first", 10);
+    TaskContext second = new TaskContext("second", 5);
+    CompositeTaskContext composite = new CompositeTaskContext("composite", new TaskContext[]{first, second});
+    final AtomicInteger changes = new AtomicInteger();
+    composite.addListener(new TaskContextListener() {
+      @Override
+      public void taskChanged(TaskContext taskContext) {
+        changes.incrementAndGet();
+      }
+    });
+
+    //when
+    first.setCurrentProgress(1);
+    second.setMax(6);
+    composite.setStop(true);
+
+    //then
+    Assert.assertEquals(changes.get(), 4);
+    Assert.assertTrue(first.isStop());
+    Assert.assertTrue(composite.isStop());
+  }
+}
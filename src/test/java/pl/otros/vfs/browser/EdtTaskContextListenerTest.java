@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EdtTaskContextListenerTest {
+
+  @Test(timeOut = 30000)
+  public void testEveryChangedTaskIsHandled() throws Exception {
+    //given
+    final List<TaskContext> handled = new ArrayList<TaskContext>();
+    final CountDownLatch twoHandled = new CountDownLatch(2);
+    EdtTaskContextListener listener = new EdtTaskContextListener() {
+      @Override
+      protected void taskChangedInEdt(TaskContext taskContext) {
+        Assert.assertTrue(SwingUtilities.isEventDispatchThread());
+        handled.add(taskContext);
+        twoHandled.countDown();
+      }
+    };
+    TaskContext first = new TaskContext("first", 10);
+    TaskContext second = new TaskContext("second", 10);
+    first.addListener(listener);
+    second.addListener(listener);
+
+    //when
+    first.setCurrentProgress(1);
+    second.setCurrentProgress(1);
+    first.setCurrentProgress(2);
+
+    //then
+    Assert.assertTrue(twoHandled.await(10, TimeUnit.SECONDS));
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    Assert.assertEquals(new HashSet<TaskContext>(handled), new HashSet<TaskContext>(Arrays.asList(first, second)));
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.actions;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.VfsBrowser;
+
+import javax.swing.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BaseNavigateActionTest {
+
+  @Test(timeOut = 30000)
+  public void testSupersededActionDoesNotUpdateUi() throws Exception {
+    //given
+    VfsBrowser browser = browser();
+    TestAction superseded = new TestAction(browser);
+    TestAction newer = new TestAction(browser);
+    perform(superseded);
+    perform(newer);
+
+    //when
+    superseded.release.countDown();
+    Assert.assertTrue(superseded.performed.await(10, TimeUnit.SECONDS));
+    newer.release.countDown();
+
+    //then
+    Assert.assertTrue(newer.updated.await(10, TimeUnit.SECONDS));
+    flushEdt();
+    Assert.assertEquals(superseded.updates.get(), 0);
+    Assert.assertEquals(newer.updates.get(), 1);
+  }
+
+  @Test(timeOut = 30000)
+  public void testActionOfOtherBrowserDoesNotSupersede() throws Exception {
+    //given
+    TestAction first = new TestAction(browser());
+    TestAction second = new TestAction(browser());
+    perform(first);
+    perform(second);
+
+    //when
+    second.release.countDown();
+    Assert.assertTrue(second.updated.await(10, TimeUnit.SECONDS));
+    first.release.countDown();
+
+    //then
+    Assert.assertTrue(first.updated.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(first.updates.get(), 1);
+    Assert.assertEquals(second.updates.get(), 1);
+  }
+
+  private static VfsBrowser browser() {
+    VfsBrowser browser = mock(VfsBrowser.class);
+    when(browser.getLastNavigateAction()).thenReturn(new AtomicLong());
+    return browser;
+  }
+
+  private static void perform(final TestAction action) throws Exception {
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        action.actionPerformed(null);
+      }
+    });
+  }
+
+  private static void flushEdt() throws Exception {
+    //done() of finished worker is queued on EDT shortly after background operation returns
+    Thread.sleep(200);
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+  }
+
+  private static final class TestAction extends BaseNavigateAction {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch performed = new CountDownLatch(1);
+    private final CountDownLatch updated = new CountDownLatch(1);
+    private final AtomicInteger updates = new AtomicInteger();
+
+    private TestAction(VfsBrowser browser) {
+      super(browser);
+    }
+
+    @Override
+    protected void performLongOperation(CheckBeforeActionResult checkBeforeActionResult) {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      performed.countDown();
+    }
+
+    @Override
+    protected void updateGuiAfter() {
+      updates.incrementAndGet();
+      updated.countDown();
+    }
+
+    @Override
+    protected String getLane() {
+      return "test://navigation";
+    }
+
+    @Override
+    protected boolean canExecuteDefaultAction() {
+      return false;
+    }
+
+    @Override
+    protected boolean canGoUrl() {
+      return true;
+    }
+  }
+}
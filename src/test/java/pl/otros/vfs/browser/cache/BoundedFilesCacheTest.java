@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystem;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BoundedFilesCacheTest {
+
+  private final FileSystem fileSystem = mock(FileSystem.class);
+  private final FileSystem otherFileSystem = mock(FileSystem.class);
+
+  @Test
+  public void testEvictLeastRecentlyUsedByCount() {
+    //given
+    BoundedFilesCache cache = new BoundedFilesCache(2, 0);
+    FileObject a = file(fileSystem, "file:///a");
+    FileObject b = file(fileSystem, "file:///b");
+    FileObject c = file(fileSystem, "file:///c");
+    cache.putFile(a);
+    cache.putFile(b);
+    cache.getFile(fileSystem, a.getName());
+
+    //when
+    cache.putFile(c);
+
+    //then
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertEquals(cache.getEvictions(), 1);
+    Assert.assertEquals(cache.getEvictedSize(), 1);
+    Assert.assertSame(cache.getFile(fileSystem, a.getName()), a);
+    Assert.assertSame(cache.getFile(fileSystem, c.getName()), c);
+    Assert.assertEquals(cache.getHits(), 3);
+    Assert.assertEquals(cache.getMisses(), 0);
+  }
+
+  @Test
+  public void testEvictedFileObjectKeepsIdentityWhileUsed() {
+    //given
+    BoundedFilesCache cache = new BoundedFilesCache(1, 0);
+    FileObject used = file(fileSystem, "sftp://host/used");
+    cache.putFile(used);
+    cache.putFile(file(fileSystem, "sftp://host/other"));
+
+    //when
+    boolean added = cache.putFileIfAbsent(fileWithName(fileSystem, used.getName()));
+    FileObject resolved = cache.getFile(fileSystem, used.getName());
+
+    //then
+    Assert.assertFalse(added);
+    Assert.assertSame(resolved, used);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.getEvictions(), 2);
+  }
+
+  @Test(timeOut = 30000)
+  public void testCollectedFileObjectIsForgotten() throws Exception {
+    //given
+    BoundedFilesCache cache = new BoundedFilesCache(1, 0);
+    FileName name = file(fileSystem, "sftp://host/dropped").getName();
+    cache.putFile(fileWithName(fileSystem, name));
+    cache.putFile(file(fileSystem, "sftp://host/other"));
+
+    //when
+    while (cache.getEvictedSize() > 0) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    //then
+    Assert.assertNull(cache.getFile(fileSystem, name));
+  }
+
+  @Test
+  public void testEvictByEstimatedBytes() {
+    //given
+    FileObject a = file(fileSystem, "file:///a");
+    int weight = BoundedFilesCache.estimateSize(a.getName());
+    BoundedFilesCache cache = new BoundedFilesCache(0, weight * 2);
+    cache.putFile(a);
+    cache.putFile(file(fileSystem, "file:///b"));
+
+    //when
+    cache.putFile(file(fileSystem, "file:///c"));
+    cache.putFile(file(fileSystem, "file:///c"));
+
+    //then
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertEquals(cache.getEstimatedBytes(), weight * 2);
+    Assert.assertEquals(cache.getEvictions(), 2);
+  }
+
+  @Test
+  public void testClearFileSystem() {
+    //given
+    BoundedFilesCache cache = new BoundedFilesCache(10, 0);
+    FileObject a = file(fileSystem, "sftp://host/a");
+    FileObject other = file(otherFileSystem, "sftp://host/a");
+    cache.putFile(a);
+    Assert.assertTrue(cache.putFileIfAbsent(other));
+    Assert.assertFalse(cache.putFileIfAbsent(other));
+
+    //when
+    cache.clear(fileSystem);
+
+    //then
+    Assert.assertNull(cache.getFile(fileSystem, a.getName()));
+    Assert.assertEquals(cache.getEvictedSize(), 0);
+    Assert.assertSame(cache.getFile(otherFileSystem, other.getName()), other);
+    Assert.assertEquals(cache.getEstimatedBytes(), BoundedFilesCache.estimateSize(other.getName()));
+  }
+
+  private static FileObject file(FileSystem fileSystem, String uri) {
+    FileName name = mock(FileName.class);
+    when(name.getURI()).thenReturn(uri);
+    return fileWithName(fileSystem, name);
+  }
+
+  private static FileObject fileWithName(FileSystem fileSystem, FileName name) {
+    FileObject fileObject = mock(FileObject.class);
+    when(fileObject.getFileSystem()).thenReturn(fileSystem);
+    when(fileObject.getName()).thenReturn(name);
+    return fileObject;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+public class LinkCacheTest {
+
+  private static final String URI = "sftp://host/home/user/link";
+
+  @Test
+  public void testGetUnchangedFile() {
+    //given
+    LinkCache linkCache = new LinkCache(10, null);
+    linkCache.put(URI, 20, 1000, true, FileType.FOLDER);
+    linkCache.put(URI + "2", 20, 1000, false, null);
+
+    //when
+    LinkCache.Verdict link = linkCache.get(URI, 20, 1000);
+    LinkCache.Verdict notLink = linkCache.get(URI + "2", 20, 1000);
+
+    //then
+    Assert.assertTrue(link.isLink());
+    Assert.assertEquals(link.getTargetType(), FileType.FOLDER);
+    Assert.assertFalse(notLink.isLink());
+  }
+
+  @Test
+  public void testGetChangedFile() {
+    //given
+    LinkCache linkCache = new LinkCache(10, null);
+    linkCache.put(URI, 20, 1000, true, FileType.FOLDER);
+
+    //when
+    LinkCache.Verdict sizeChanged = linkCache.get(URI, 21, 1000);
+    LinkCache.Verdict modified = linkCache.get(URI, 20, 1001);
+
+    //then
+    Assert.assertNull(sizeChanged);
+    Assert.assertNull(modified);
+  }
+
+  @Test
+  public void testEviction() {
+    //given
+    LinkCache linkCache = new LinkCache(2, null);
+    linkCache.put("a", 1, 1, false, null);
+    linkCache.put("b", 1, 1, false, null);
+    linkCache.get("a", 1, 1);
+
+    //when
+    linkCache.put("c", 1, 1, false, null);
+
+    //then
+    Assert.assertEquals(linkCache.size(), 2);
+    Assert.assertNotNull(linkCache.get("a", 1, 1));
+    Assert.assertNull(linkCache.get("b", 1, 1));
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    //given
+    File file = File.createTempFile("links", ".cache");
+    try {
+      LinkCache linkCache = new LinkCache(10, file);
+      linkCache.put(URI, 20, 1000, true, FileType.FILE);
+      linkCache.put("sftp://host/home/user/file with\ttab", 5, 1000, false, null);
+
+      //when
+      linkCache.save();
+      LinkCache loaded = new LinkCache(10, file);
+      loaded.load();
+
+      //then
+      Assert.assertEquals(loaded.size(), 2);
+      Assert.assertEquals(loaded.get(URI, 20, 1000).getTargetType(), FileType.FILE);
+      Assert.assertFalse(loaded.get("sftp://host/home/user/file with\ttab", 5, 1000).isLink());
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void testSaveMergesRecordsOfOtherCaches() throws Exception {
+    //given
+    File file = File.createTempFile("links", ".cache");
+    try {
+      LinkCache first = new LinkCache(10, file);
+      LinkCache second = new LinkCache(10, file);
+      first.put(URI, 20, 1000, true, FileType.FILE);
+      first.put("sftp://host/a", 1, 1, false, null);
+      second.put(URI, 20, 1000, true, FileType.FOLDER);
+      second.put("sftp://host/b", 2, 2, false, null);
+
+      //when
+      first.save();
+      second.save();
+      LinkCache loaded = new LinkCache(10, file);
+      loaded.load();
+
+      //then
+      Assert.assertEquals(loaded.size(), 3);
+      Assert.assertEquals(loaded.get(URI, 20, 1000).getTargetType(), FileType.FOLDER);
+      Assert.assertNotNull(loaded.get("sftp://host/a", 1, 1));
+      Assert.assertNotNull(loaded.get("sftp://host/b", 2, 2));
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.cache;
+
+import com.google.common.base.Ticker;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ListingCacheTest {
+
+  private static final ListingSnapshot SNAPSHOT = ListingSnapshot.EMPTY;
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws Exception {
+    //given
+    ListingCache cache = new ListingCache(2, 1000, 1000, new ManualTicker());
+    cache.put("a", SNAPSHOT);
+    cache.put("b", SNAPSHOT);
+    cache.get("a");
+
+    //when
+    cache.put("c", SNAPSHOT);
+
+    //then
+    Assert.assertNotNull(cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertNotNull(cache.get("c"));
+  }
+
+  @Test
+  public void testEvictByRows() throws Exception {
+    //given
+    ListingCache cache = new ListingCache(10, 5, 1000, 1000, new ManualTicker());
+    cache.put("a", rows(2));
+    cache.put("b", rows(2));
+
+    //when
+    cache.put("c", rows(3));
+    cache.put("d", rows(8));
+
+    //then
+    Assert.assertNull(cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertNull(cache.get("c"));
+    Assert.assertNotNull(cache.get("d"));
+    Assert.assertEquals(cache.getRows(), 8);
+  }
+
+  @Test
+  public void testStaleWhileRevalidate() throws Exception {
+    //given
+    ManualTicker ticker = new ManualTicker();
+    ListingCache cache = new ListingCache(2, 1000, 5000, ticker);
+    cache.put("a", SNAPSHOT);
+
+    //when
+    ticker.advance(500);
+    boolean staleAfter500ms = cache.isStale(cache.get("a"));
+    ticker.advance(1000);
+    boolean staleAfter1500ms = cache.isStale(cache.get("a"));
+    ticker.advance(5000);
+    CachedListing expired = cache.get("a");
+
+    //then
+    Assert.assertFalse(staleAfter500ms);
+    Assert.assertTrue(staleAfter1500ms);
+    Assert.assertNull(expired);
+    Assert.assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testDisabledCache() throws Exception {
+    //given
+    ListingCache cache = new ListingCache(0, 1000, 1000, new ManualTicker());
+
+    //when
+    cache.put("a", SNAPSHOT);
+
+    //then
+    Assert.assertNull(cache.get("a"));
+  }
+
+  @Test
+  public void testRevalidationStartedOnce() throws Exception {
+    //given
+    ListingCache cache = new ListingCache(2, 1000, 1000, new ManualTicker());
+
+    //when
+    boolean first = cache.startRevalidation("a");
+    boolean second = cache.startRevalidation("a");
+    cache.finishRevalidation("a");
+    boolean afterFinish = cache.startRevalidation("a");
+
+    //then
+    Assert.assertTrue(first);
+    Assert.assertFalse(second);
+    Assert.assertTrue(afterFinish);
+  }
+
+  @DataProvider(name = "keys")
+  public Object[][] keys() {
+    return new Object[][]{
+        {"sftp://user@host/opt/logs/", "sftp://user@host/opt/logs"},
+        {"SFTP://user@host/opt/logs", "sftp://user@host/opt/logs"},
+        {"file:///", "file:///"},
+        {"file:///home/user", "file:///home/user"},
+    };
+  }
+
+  @Test
+  public void testUnsortedListingIsSortedOnRead() throws Exception {
+    //given
+    ListingCache cache = new ListingCache(2, 1000, 1000, new ManualTicker());
+    ListingSnapshot unsorted = new ListingSnapshot.Builder(mock(FileObject.class), 2)
+        .add("b", FileType.FILE, 1, 1, false, null)
+        .add("a", FileType.FILE, 1, 1, false, null)
+        .build();
+
+    //when
+    cache.putUnsorted("a", unsorted);
+    ListingSnapshot snapshot = cache.get("a").getSnapshot();
+
+    //then
+    Assert.assertEquals(snapshot.getName(0), "a");
+    Assert.assertEquals(snapshot.getName(1), "b");
+    Assert.assertSame(cache.get("a").getSnapshot(), snapshot);
+  }
+
+  @Test(dataProvider = "keys")
+  public void testKey(String friendlyUri, String expected) throws Exception {
+    //given
+    FileName fileName = mock(FileName.class);
+    when(fileName.getFriendlyURI()).thenReturn(friendlyUri);
+
+    //when
+    String key = ListingCache.key(fileName);
+
+    //then
+    Assert.assertEquals(key, expected);
+  }
+
+  private static ListingSnapshot rows(int count) {
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(null, count);
+    for (int i = 0; i < count; i++) {
+      builder.add("file" + i, FileType.FILE, 1, 1, false, null);
+    }
+    return builder.build();
+  }
+
+  private static class ManualTicker extends Ticker {
+    private long nanos = 0;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long millis) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.favorit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.util.IoScheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+public class FavoritesPrewarmerTest {
+
+  @Test(timeOut = 30000)
+  public void testStart() throws Exception {
+    //given
+    final FileObject logs = mock(FileObject.class);
+    final Set<String> requested = Collections.synchronizedSet(new TreeSet<String>());
+    final CountDownLatch resolving = new CountDownLatch(3);
+    final CountDownLatch resolved = new CountDownLatch(1);
+    FavoritesPrewarmer prewarmer = new FavoritesPrewarmer(true, false, new IoScheduler(2, 2), new FavoritesPrewarmer.Resolver() {
+      @Override
+      public FileObject resolve(String url) throws FileSystemException {
+        requested.add(url);
+        resolving.countDown();
+        if (url.contains("down")) {
+          throw new FileSystemException("Connection refused");
+        }
+        return url.contains("unknown") ? null : logs;
+      }
+    });
+
+    //when
+    prewarmer.start(Arrays.asList(
+        new Favorite("logs", "sftp://app-01/opt/app/logs", Favorite.Type.USER),
+        new Favorite("no credentials", "smb://unknown/share", Favorite.Type.USER),
+        new Favorite("down", "ftp://down/pub", Favorite.Type.USER),
+        new Favorite("local", "/tmp", Favorite.Type.USER),
+        new Favorite("bookmark", "sftp://bookmark/", Favorite.Type.JVFSFILECHOOSER)
+    ), new FavoritesPrewarmer.Listener() {
+      @Override
+      public void resolved(Favorite favorite, FileObject fileObject) {
+        resolved.countDown();
+      }
+    });
+
+    //then
+    Assert.assertTrue(resolving.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(resolved.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(requested, new TreeSet<String>(Arrays.asList(
+        "sftp://app-01/opt/app/logs", "smb://unknown/share", "ftp://down/pub")));
+    Assert.assertSame(prewarmer.getResolved("sftp://app-01/opt/app/logs"), logs);
+    Assert.assertNull(prewarmer.getResolved("smb://unknown/share"));
+    Assert.assertNull(prewarmer.getResolved("ftp://down/pub"));
+  }
+
+  @Test
+  public void testDisabled() {
+    //given
+    FavoritesPrewarmer prewarmer = new FavoritesPrewarmer(false, false, new IoScheduler(2, 2), new FavoritesPrewarmer.Resolver() {
+      @Override
+      public FileObject resolve(String url) throws FileSystemException {
+        throw new AssertionError("Prewarmer is disabled");
+      }
+    });
+
+    //when
+    prewarmer.start(Arrays.asList(new Favorite("logs", "sftp://app-01/opt/app/logs", Favorite.Type.USER)), null);
+
+    //then
+    Assert.assertNull(prewarmer.getResolved("sftp://app-01/opt/app/logs"));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.history;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+
+public class NavigationHistoryTest {
+
+  @Test
+  public void testBackAndForward() throws Exception {
+    //given
+    NavigationHistory history = new NavigationHistory(10);
+    HistoryEntry a = entry(0);
+    HistoryEntry b = entry(10);
+    HistoryEntry c = entry(20);
+    history.visit(a);
+    history.visit(b);
+
+    //when
+    HistoryEntry back = history.back(c);
+    HistoryEntry forward = history.forward(back);
+
+    //then
+    Assert.assertSame(back, b);
+    Assert.assertSame(forward, c);
+    Assert.assertTrue(history.canGoBack());
+    Assert.assertFalse(history.canGoForward());
+  }
+
+  @Test
+  public void testVisitClearsForward() throws Exception {
+    //given
+    NavigationHistory history = new NavigationHistory(10);
+    history.visit(entry(0));
+    history.back(entry(1));
+    Assert.assertTrue(history.canGoForward());
+
+    //when
+    history.visit(entry(2));
+
+    //then
+    Assert.assertFalse(history.canGoForward());
+    Assert.assertNull(history.forward(entry(3)));
+  }
+
+  @Test
+  public void testOldestEntriesAreDropped() throws Exception {
+    //given
+    NavigationHistory history = new NavigationHistory(2);
+    HistoryEntry b = entry(1);
+    HistoryEntry c = entry(2);
+
+    //when
+    history.visit(entry(0));
+    history.visit(b);
+    history.visit(c);
+
+    //then
+    Assert.assertSame(history.back(null), c);
+    Assert.assertSame(history.back(null), b);
+    Assert.assertFalse(history.canGoBack());
+    Assert.assertNull(history.back(null));
+  }
+
+  @Test
+  public void testHistoryIsBoundedByRows() throws Exception {
+    //given
+    NavigationHistory history = new NavigationHistory(10, 25);
+    HistoryEntry b = entry(1, 10);
+    HistoryEntry c = entry(2, 10);
+
+    //when
+    history.visit(entry(0, 10));
+    history.visit(b);
+    history.visit(c);
+
+    //then
+    Assert.assertEquals(history.getRows(), 20);
+    Assert.assertSame(history.back(null), c);
+    Assert.assertSame(history.back(null), b);
+    Assert.assertFalse(history.canGoBack());
+    Assert.assertEquals(history.getRows(), 0);
+  }
+
+  private HistoryEntry entry(int scrollPosition, int rows) {
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(mock(FileObject.class), rows);
+    for (int i = 0; i < rows; i++) {
+      builder.add("file" + i, FileType.FILE, 1, 1, false, null);
+    }
+    return new HistoryEntry(mock(FileObject.class), builder.build(), scrollPosition, Collections.<String>emptySet());
+  }
+
+  private HistoryEntry entry(int scrollPosition) {
+    return new HistoryEntry(mock(FileObject.class), ListingSnapshot.EMPTY, scrollPosition, Collections.<String>emptySet());
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.search;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+import pl.otros.vfs.browser.util.FolderLister;
+import pl.otros.vfs.browser.util.IoScheduler;
+import pl.otros.vfs.browser.util.LocalFolderLister;
+import pl.otros.vfs.browser.util.VFSUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RecursiveSearchTest {
+
+  private Path directory;
+  private FileObject root;
+
+  @BeforeClass
+  public void createFiles() throws Exception {
+    directory = Files.createTempDirectory("recursiveSearch");
+    Files.write(directory.resolve("a.txt"), new byte[10]);
+    Files.write(directory.resolve("big.txt"), new byte[2000]);
+    Path sub = Files.createDirectory(directory.resolve("sub"));
+    Files.write(sub.resolve("b.log"), new byte[10]);
+    Path deep = Files.createDirectory(sub.resolve("deep"));
+    Files.write(deep.resolve("c.txt"), new byte[10]);
+    Path git = Files.createDirectory(directory.resolve(".git"));
+    Files.write(git.resolve("d.txt"), new byte[10]);
+    Path pruned = Files.createDirectory(directory.resolve("target"));
+    Files.write(pruned.resolve("e.txt"), new byte[10]);
+    root = VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString());
+  }
+
+  @AfterClass
+  public void deleteFiles() throws Exception {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test(timeOut = 30000)
+  public void testSearchByName() throws Exception {
+    //when
+    Set<String> hits = search(new SearchCriteria.Builder().name("*.txt").prune(Arrays.asList("Target")).build());
+
+    //then
+    Assert.assertEquals(hits, new TreeSet<String>(Arrays.asList("a.txt", "big.txt", "sub/deep/c.txt")));
+  }
+
+  @Test(timeOut = 30000)
+  public void testSearchHiddenFoldersAndFolders() throws Exception {
+    //when
+    Set<String> hits = search(new SearchCriteria.Builder().includeHidden(true).maxDepth(1).build());
+
+    //then
+    Assert.assertEquals(hits, new TreeSet<String>(Arrays.asList(".git", "a.txt", "big.txt", "sub", "target")));
+  }
+
+  @Test(timeOut = 30000)
+  public void testSearchWithDepthSizeAndTime() throws Exception {
+    //when
+    Set<String> bySize = search(new SearchCriteria.Builder().size(1000, Long.MAX_VALUE).build());
+    Set<String> byDepth = search(new SearchCriteria.Builder().name("c").includeFolders(false).maxDepth(2).build());
+    Set<String> byTime = search(new SearchCriteria.Builder().name("b.log").modified(0, 1000).build());
+
+    //then
+    Assert.assertEquals(bySize, new TreeSet<String>(Arrays.asList("big.txt")));
+    Assert.assertTrue(byDepth.isEmpty(), byDepth.toString());
+    Assert.assertTrue(byTime.isEmpty(), byTime.toString());
+  }
+
+  @Test(timeOut = 30000)
+  public void testCancel() throws Exception {
+    //given
+    RecursiveSearch recursiveSearch = new RecursiveSearch(new FolderLister(new LocalFolderLister(true, 1, 1000)), new IoScheduler(2, 1));
+    final CountDownLatch finished = new CountDownLatch(1);
+
+    //when
+    RecursiveSearch.Search search = recursiveSearch.start(root, new SearchCriteria.Builder().build(), new RecursiveSearch.Listener() {
+      @Override
+      public void found(String path, ListingSnapshot hits) {
+      }
+
+      @Override
+      public void finished(RecursiveSearch.Search search) {
+        finished.countDown();
+      }
+    });
+    search.cancel();
+
+    //then
+    Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(search.isFinished());
+    Assert.assertTrue(search.isCancelled());
+  }
+
+  private Set<String> search(SearchCriteria criteria) throws InterruptedException {
+    RecursiveSearch recursiveSearch = new RecursiveSearch(new FolderLister(new LocalFolderLister(true, 1, 1000)), new IoScheduler(4, 2));
+    final Set<String> hits = new TreeSet<String>();
+    final CountDownLatch finished = new CountDownLatch(1);
+    RecursiveSearch.Search search = recursiveSearch.start(root, criteria, new RecursiveSearch.Listener() {
+      @Override
+      public void found(String path, ListingSnapshot snapshot) {
+        synchronized (hits) {
+          for (int row = 0; row < snapshot.size(); row++) {
+            hits.add(path.length() == 0 ? snapshot.getName(row) : path + "/" + snapshot.getName(row));
+          }
+        }
+      }
+
+      @Override
+      public void finished(RecursiveSearch.Search search) {
+        finished.countDown();
+      }
+    });
+    finished.await();
+    Assert.assertFalse(search.isCancelled());
+    Assert.assertEquals(search.getFailedFolders(), 0);
+    synchronized (hits) {
+      return hits;
+    }
+  }
+}
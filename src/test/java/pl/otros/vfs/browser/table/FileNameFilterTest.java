@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.ParentFileObject;
+
+import java.util.BitSet;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class FileNameFilterTest {
+
+  @DataProvider(name = "acceptDataProvider")
+  public Object[][] acceptDataProvider() {
+    return new Object[][]{
+        {"File Name", "name", true},
+        {"file name", "names", false},
+        {"file name", "file", true},
+        {"File Name", "file", true},
+        {"fi", "file", false},
+        {"file 011", "fi*", true},
+        {"file 011", "f*1", true},
+        {"file 011", "f*0", false},
+        {"file 011", "fi?e?011", true},
+        {"file 011", "f?le*", true},
+        {"file 011", "[a-f]ile 011", true},
+        {"file011", "/\\w+011", true},
+        {"file011", "/\\w{4}011", true},
+        {"file 011", "/\\w{4}\\s011", true},
+        {"file 011", "/\\w{4}\\s\\d+", true},
+        {"file 011", "/\\w{4}\\s\\d", false},
+        {"file 011", "/(unclosed", true},
+        {"file 011", "", true},
+        {"VfsBrowser.java", "~vbj", true},
+        {"VfsBrowser.java", "~jb", false},
+    };
+  }
+
+  @Test(dataProvider = "acceptDataProvider")
+  public void testAccept(String baseName, String filterText, boolean expected) throws Exception {
+    //given
+    FileNameFilter filter = FileNameFilter.compile(filterText);
+
+    //when
+    boolean result = filter.accept(baseName);
+
+    //then
+    Assert.assertEquals(result, expected);
+  }
+
+  @Test
+  public void testAcceptSnapshot() throws Exception {
+    //given
+    ListingSnapshot snapshot = ListingSnapshot.create(
+        mockFileObject(ParentFileObject.PARENT_NAME, FileType.FOLDER, ListingSnapshot.UNKNOWN, 1),
+        mockFileObject("a.log", FileType.FILE, 1, 1),
+        mockFileObject("b.txt", FileType.FILE, 1, 1),
+        mockFileObject("c.LOG", FileType.FILE, 1, 1));
+
+    //when
+    BitSet accepted = FileNameFilter.compile(".log").accept(snapshot);
+
+    //then
+    Assert.assertEquals(accepted.toString(), "{0, 1, 3}");
+  }
+
+  @Test
+  public void testEquals() throws Exception {
+    Assert.assertEquals(FileNameFilter.compile("a*"), FileNameFilter.compile("a*"));
+    Assert.assertEquals(FileNameFilter.compile(""), FileNameFilter.ACCEPT_ALL);
+    Assert.assertFalse(FileNameFilter.compile("a*").equals(FileNameFilter.compile("b*")));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.ParentFileObject;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class FileNameIndexTest {
+
+  private FileNameIndex index;
+
+  @BeforeMethod
+  public void createIndex() {
+    index = new FileNameIndex();
+    index.add(ParentFileObject.PARENT_NAME, true);
+    index.add("VfsBrowser.java", false);
+    index.add("README.md", false);
+    index.add("vfs.log", false);
+    index.add("a", false);
+  }
+
+  @Test
+  public void testFindPrefix() throws Exception {
+    Assert.assertEquals(index.findPrefix("vfs"), new int[]{1, 3});
+    Assert.assertEquals(index.findPrefix("V"), new int[]{1, 3});
+    Assert.assertEquals(index.findPrefix("vfsb"), new int[]{1});
+    Assert.assertEquals(index.findPrefix("a"), new int[]{4});
+    Assert.assertEquals(index.findPrefix("fs"), new int[0]);
+  }
+
+  @Test
+  public void testFindSubstring() throws Exception {
+    Assert.assertEquals(index.findSubstring("fs"), new int[]{1, 3});
+    Assert.assertEquals(index.findSubstring(".JAVA"), new int[]{1});
+    Assert.assertEquals(index.findSubstring("m"), new int[]{2});
+    Assert.assertEquals(index.findSubstring("xyz"), new int[0]);
+  }
+
+  @Test
+  public void testFindSubsequence() throws Exception {
+    Assert.assertEquals(index.findSubsequence("vbj"), new int[]{1});
+    Assert.assertEquals(index.findSubsequence("rdm"), new int[]{2});
+    Assert.assertEquals(index.findSubsequence("jb"), new int[0]);
+    Assert.assertEquals(index.getParentRows(), new int[]{0});
+  }
+
+  @Test(timeOut = 30000)
+  public void testIndexerAddsStreamedRows() throws Exception {
+    //given
+    final VfsTableModel model = new VfsTableModel();
+    final FileNameIndexer indexer = inEdt(new Callable<FileNameIndexer>() {
+      @Override
+      public FileNameIndexer call() throws Exception {
+        FileNameIndexer indexer = new FileNameIndexer(model, 2);
+        model.setContent(ListingSnapshot.create(
+            mockFileObject("a.txt", FileType.FILE, 1, 1),
+            mockFileObject("b.txt", FileType.FILE, 1, 1)));
+        return indexer;
+      }
+    });
+    while (inEdt(new Callable<FileNameIndex>() {
+      @Override
+      public FileNameIndex call() throws Exception {
+        return indexer.getIndex();
+      }
+    }) == null) {
+      Thread.sleep(10);
+    }
+
+    //when
+    FileNameIndex index = inEdt(new Callable<FileNameIndex>() {
+      @Override
+      public FileNameIndex call() throws Exception {
+        model.addContent(ListingSnapshot.create(mockFileObject("c.txt", FileType.FILE, 1, 1)));
+        return indexer.getIndex();
+      }
+    });
+
+    //then
+    Assert.assertEquals(index.size(), 3);
+    Assert.assertEquals(index.findPrefix("c"), new int[]{2});
+  }
+
+  private <T> T inEdt(Callable<T> callable) throws Exception {
+    FutureTask<T> task = new FutureTask<T>(callable);
+    SwingUtilities.invokeAndWait(task);
+    return task.get();
+  }
+}
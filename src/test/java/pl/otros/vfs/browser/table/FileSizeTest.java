@@ -117,4 +117,21 @@ public class FileSizeTest {
   public void testCompareTo(long size1, long size2, int result) throws Exception {
     Assert.assertEquals(new FileSize(size1).compareTo(new FileSize(size2)), result);
   }
+
+  @Test
+  public void testFolderSize() throws Exception {
+    //given
+    FileSize partial = new FileSize(1536, 3, true);
+    FileSize total = new FileSize(2048, 4, false);
+
+    //then
+    Assert.assertEquals(partial.toString(), "1.5 KB\u2026");
+    Assert.assertEquals(partial.getFiles(), 3);
+    Assert.assertEquals(total.toString(), "2 KB");
+    Assert.assertFalse(total.isPartial());
+    Assert.assertFalse(total.isIncomplete());
+    Assert.assertEquals(new FileSize(2048, 4, false, true).toString(), "2 KB+");
+    Assert.assertEquals(new FileSize(0, 0, false).toString(), "0 B");
+    Assert.assertEquals(new FileSize(10).getFiles(), -1);
+  }
 }
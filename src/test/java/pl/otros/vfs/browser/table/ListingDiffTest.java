@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.ParentFileObject;
+
+import java.util.Collections;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class ListingDiffTest {
+
+  @Test
+  public void testCompute() throws Exception {
+    //given
+    ListingSnapshot current = ListingSnapshot.create(
+        mockFileObject(ParentFileObject.PARENT_NAME, FileType.FOLDER, 0, 1),
+        mockFileObject("same.log", FileType.FILE, 10, 1),
+        mockFileObject("growing.log", FileType.FILE, 10, 1),
+        mockFileObject("touched.log", FileType.FILE, 10, 1),
+        mockFileObject("removed.log", FileType.FILE, 10, 1));
+    ListingSnapshot fresh = ListingSnapshot.create(
+        mockFileObject(ParentFileObject.PARENT_NAME, FileType.FOLDER, 0, 2),
+        mockFileObject("same.log", FileType.FILE, 10, 1),
+        mockFileObject("growing.log", FileType.FILE, 20, 1),
+        mockFileObject("touched.log", FileType.FILE, 10, 2),
+        mockFileObject("new.log", FileType.FILE, 1, 1));
+
+    //when
+    ListingDiff diff = ListingDiff.compute(current, fresh);
+
+    //then
+    Assert.assertFalse(diff.isEmpty());
+    Assert.assertEquals(diff.getChangedRows().size(), 3);
+    Assert.assertEquals(diff.getChangedRows().getName(0), "growing.log");
+    Assert.assertEquals(diff.getChangedRows().getName(1), "touched.log");
+    Assert.assertEquals(diff.getChangedRows().getName(2), "new.log");
+    Assert.assertEquals(diff.getRemovedNames(), Collections.singleton("removed.log"));
+  }
+
+  @Test
+  public void testComputeWithoutChanges() throws Exception {
+    //given
+    ListingSnapshot current = ListingSnapshot.create(mockFileObject("a", FileType.FILE, 10, 1));
+    ListingSnapshot fresh = ListingSnapshot.create(mockFileObject("a", FileType.FILE, 10, 1));
+
+    //when
+    ListingDiff diff = ListingDiff.compute(current, fresh);
+
+    //then
+    Assert.assertTrue(diff.isEmpty());
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class ListingRowSorterTest {
+
+  @Test
+  public void testSortByName() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    ListingRowSorter sorter = new ListingRowSorter(model, 1000, 1000);
+    model.setContent(listing());
+    sorter.allRowsChanged();
+
+    //when
+    sorter.toggleSortOrder(VfsTableModel.COLUMN_NAME);
+
+    //then
+    assertOrder(sorter, model, "dir", "a.txt", "B.txt", "c.txt");
+
+    //when
+    sorter.toggleSortOrder(VfsTableModel.COLUMN_NAME);
+
+    //then
+    assertOrder(sorter, model, "dir", "c.txt", "B.txt", "a.txt");
+  }
+
+  @Test
+  public void testSortBySize() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    ListingRowSorter sorter = new ListingRowSorter(model, 1000, 1000);
+    model.setContent(listing());
+    sorter.allRowsChanged();
+
+    //when
+    sorter.toggleSortOrder(VfsTableModel.COLUMN_SIZE);
+
+    //then
+    assertOrder(sorter, model, "dir", "B.txt", "a.txt", "c.txt");
+  }
+
+  @Test
+  public void testSortByCalculatedFolderSize() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    ListingRowSorter sorter = new ListingRowSorter(model, 1000, 1000);
+    model.setContent(listing());
+    sorter.allRowsChanged();
+    sorter.setSortsOnUpdates(true);
+    sorter.toggleSortOrder(VfsTableModel.COLUMN_SIZE);
+
+    //when
+    model.putFolderSize(2, "dir", new FileSize(25, 3, false));
+    sorter.rowsUpdated(2, 2);
+
+    //then
+    assertOrder(sorter, model, "B.txt", "a.txt", "dir", "c.txt");
+  }
+
+  @Test
+  public void testParallelSortOfLargeListing() {
+    //given
+    ListingSnapshot.Builder builder = new ListingSnapshot.Builder(null, 50000);
+    Random random = new Random(1);
+    for (int i = 0; i < 50000; i++) {
+      builder.add("file" + random.nextInt(20000), FileType.FILE, random.nextInt(1000), i, false, null);
+    }
+    ListingSortKeys keys = ListingSortKeys.of(builder.build());
+    List<RowSorter.SortKey> sortKeys = Collections.singletonList(new RowSorter.SortKey(VfsTableModel.COLUMN_SIZE,
+        SortOrder.DESCENDING));
+
+    //when
+    int[] parallel = keys.sort(sortKeys, true);
+    int[] sequential = keys.sort(sortKeys, false);
+
+    //then
+    Assert.assertEquals(parallel, sequential);
+    RowSorter.SortKey[] keysArray = sortKeys.toArray(new RowSorter.SortKey[1]);
+    for (int i = 1; i < parallel.length; i++) {
+      Assert.assertTrue(keys.compareRows(parallel[i - 1], parallel[i], keysArray) < 0);
+    }
+  }
+
+  @Test(timeOut = 30000)
+  public void testSortInBackground() throws Exception {
+    //given
+    final VfsTableModel model = new VfsTableModel();
+    final ListingRowSorter sorter = inEdt(new Callable<ListingRowSorter>() {
+      @Override
+      public ListingRowSorter call() throws Exception {
+        ListingRowSorter sorter = new ListingRowSorter(model, 1, 1);
+        model.setContent(listing());
+        sorter.allRowsChanged();
+        return sorter;
+      }
+    });
+
+    //when
+    inEdt(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        sorter.toggleSortOrder(VfsTableModel.COLUMN_NAME);
+        sorter.toggleSortOrder(VfsTableModel.COLUMN_NAME);
+        return null;
+      }
+    });
+    while (!inEdt(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return sorter.isSorted();
+      }
+    })) {
+      Thread.sleep(10);
+    }
+
+    //then
+    assertOrder(sorter, model, "dir", "c.txt", "B.txt", "a.txt");
+  }
+
+  @Test
+  public void testFilterAndInsertedRows() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    ListingRowSorter sorter = new ListingRowSorter(model, 1000, 1000);
+    model.setContent(listing());
+    sorter.allRowsChanged();
+    sorter.toggleSortOrder(VfsTableModel.COLUMN_NAME);
+    sorter.setRowFilter(new RowFilter<VfsTableModel, Integer>() {
+      @Override
+      public boolean include(Entry<? extends VfsTableModel, ? extends Integer> entry) {
+        return !entry.getModel().getSnapshot().getName(entry.getIdentifier()).startsWith("B");
+      }
+    });
+
+    //when
+    model.addContent(ListingSnapshot.create(mockFileObject("0.txt", FileType.FILE, 1, 1)));
+    sorter.rowsInserted(4, 4);
+
+    //then
+    assertOrder(sorter, model, "dir", "0.txt", "a.txt", "c.txt");
+    Assert.assertEquals(sorter.convertRowIndexToView(3), -1);
+  }
+
+  @Test(timeOut = 30000)
+  public void testNameFilterInBackground() throws Exception {
+    //given
+    final VfsTableModel model = new VfsTableModel();
+    final ListingRowSorter sorter = inEdt(new Callable<ListingRowSorter>() {
+      @Override
+      public ListingRowSorter call() throws Exception {
+        ListingRowSorter sorter = new ListingRowSorter(model, 1, 1);
+        model.setContent(listing());
+        sorter.allRowsChanged();
+        return sorter;
+      }
+    });
+
+    //when
+    inEdt(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        sorter.setNameFilter(FileNameFilter.compile("a*"));
+        sorter.setNameFilter(FileNameFilter.compile("*.txt"));
+        return null;
+      }
+    });
+    while (inEdt(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return sorter.isFiltering();
+      }
+    })) {
+      Thread.sleep(10);
+    }
+
+    //then
+    Assert.assertEquals(sorter.getViewRowCount(), 3);
+    Assert.assertEquals(sorter.convertRowIndexToView(2), -1);
+  }
+
+  private ListingSnapshot listing() throws Exception {
+    return ListingSnapshot.create(
+        mockFileObject("c.txt", FileType.FILE, 30, 1),
+        mockFileObject("a.txt", FileType.FILE, 20, 2),
+        mockFileObject("dir", FileType.FOLDER, ListingSnapshot.UNKNOWN, 3),
+        mockFileObject("B.txt", FileType.FILE, 10, 4));
+  }
+
+  private void assertOrder(ListingRowSorter sorter, VfsTableModel model, String... names) {
+    Assert.assertEquals(sorter.getViewRowCount(), names.length);
+    for (int i = 0; i < names.length; i++) {
+      int modelRow = sorter.convertRowIndexToModel(i);
+      Assert.assertEquals(model.getSnapshot().getName(modelRow), names[i]);
+      Assert.assertEquals(sorter.convertRowIndexToView(modelRow), i);
+    }
+  }
+
+  private <T> T inEdt(Callable<T> callable) throws Exception {
+    FutureTask<T> task = new FutureTask<T>(callable);
+    SwingUtilities.invokeAndWait(task);
+    return task.get();
+  }
+}
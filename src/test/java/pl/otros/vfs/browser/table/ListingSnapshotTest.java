@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.ParentFileObject;
+
+import java.net.URL;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ListingSnapshotTest {
+
+  @Test
+  public void testCreate() throws Exception {
+    //given
+    FileObject file = mockFileObject("a.log", FileType.FILE, 100, 2000);
+    FileObject hidden = mockFileObject(".hidden", FileType.FILE, 5, 1000);
+    FileObject folder = mockFileObject("dir", FileType.FOLDER, 0, 3000);
+
+    //when
+    ListingSnapshot snapshot = ListingSnapshot.create(file, hidden, folder);
+
+    //then
+    Assert.assertEquals(snapshot.size(), 3);
+    Assert.assertEquals(snapshot.getName(0), "a.log");
+    Assert.assertEquals(snapshot.getType(0), FileType.FILE);
+    Assert.assertEquals(snapshot.getSize(0), 100);
+    Assert.assertEquals(snapshot.getLastModified(0), 2000);
+    Assert.assertFalse(snapshot.isHidden(0));
+    Assert.assertTrue(snapshot.isHidden(1));
+    Assert.assertTrue(snapshot.isFolder(2));
+    Assert.assertEquals(snapshot.getSize(2), ListingSnapshot.UNKNOWN);
+  }
+
+  @Test
+  public void testSortedByName() throws Exception {
+    //given
+    ListingSnapshot snapshot = ListingSnapshot.create(
+        mockFileObject("b.log", FileType.FILE, 1, 1),
+        mockFileObject("z", FileType.FOLDER, 0, 1),
+        mockFileObject("a.log", FileType.FILE, 1, 1),
+        mockFileObject(ParentFileObject.PARENT_NAME, FileType.FOLDER, 0, 1),
+        mockFileObject("c", FileType.FOLDER, 0, 1));
+
+    //when
+    ListingSnapshot sorted = snapshot.sortedByName();
+
+    //then
+    String[] expected = {ParentFileObject.PARENT_NAME, "c", "z", "a.log", "b.log"};
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(sorted.getName(i), expected[i]);
+    }
+    Assert.assertTrue(sorted.isParent(0));
+  }
+
+  @Test
+  public void testAppend() throws Exception {
+    //given
+    ListingSnapshot first = ListingSnapshot.create(mockFileObject("a", FileType.FILE, 1, 1));
+    ListingSnapshot second = ListingSnapshot.create(mockFileObject("b", FileType.FOLDER, 0, 2));
+
+    //when
+    ListingSnapshot result = first.append(second);
+
+    //then
+    Assert.assertEquals(result.size(), 2);
+    Assert.assertEquals(result.getName(1), "b");
+    Assert.assertTrue(result.isFolder(1));
+    Assert.assertEquals(first.size(), 1);
+  }
+
+  @Test
+  public void testReplace() throws Exception {
+    //given
+    FileObject file = mockFileObject("a", FileType.FILE, 1, 1);
+    FileObject link = mockFileObject("a", FileType.IMAGINARY, 0, 1);
+    ListingSnapshot snapshot = ListingSnapshot.create(mockFileObject("b", FileType.FOLDER, 0, 1), file);
+
+    //when
+    ListingSnapshot result = snapshot.replace(new FileObject[]{file}, ListingSnapshot.create(link));
+
+    //then
+    Assert.assertSame(result.getFileObject(1), link);
+    Assert.assertEquals(result.getType(1), FileType.IMAGINARY);
+    Assert.assertSame(snapshot.getFileObject(1), file);
+    Assert.assertSame(result.getFileObject(0), snapshot.getFileObject(0));
+  }
+
+  static FileObject mockFileObject(String baseName, FileType fileType, long size, long lastModified) throws Exception {
+    FileObject fileObject = mock(FileObject.class);
+    FileName fileName = mock(FileName.class);
+    FileContent content = mock(FileContent.class);
+    when(fileObject.getName()).thenReturn(fileName);
+    when(fileName.getBaseName()).thenReturn(baseName);
+    when(fileObject.getType()).thenReturn(fileType);
+    when(fileObject.getContent()).thenReturn(content);
+    when(fileObject.getURL()).thenReturn(new URL("file:///tmp/" + baseName));
+    when(content.getSize()).thenReturn(size);
+    when(content.getLastModifiedTime()).thenReturn(lastModified);
+    return fileObject;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class StreamingTableUpdaterTest {
+
+  @Test(timeOut = 30000)
+  public void testRowsAddedInOneFrame() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+    final AtomicInteger firstBatch = new AtomicInteger();
+    final StreamingTableUpdater updater = new StreamingTableUpdater(model, new Runnable() {
+      @Override
+      public void run() {
+        firstBatch.incrementAndGet();
+      }
+    });
+    final CountDownLatch finished = new CountDownLatch(1);
+    updater.add(ListingSnapshot.create(mockFileObject("a", FileType.FILE, 1, 1)));
+    updater.add(ListingSnapshot.create(mockFileObject("b", FileType.FILE, 1, 1)));
+    updater.finish(new Runnable() {
+      @Override
+      public void run() {
+        finished.countDown();
+      }
+    });
+
+    //when
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        updater.start();
+      }
+    });
+
+    //then
+    Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(updater.isFinished());
+    Assert.assertEquals(model.getRowCount(), 2);
+    Assert.assertEquals(model.getSnapshot().getName(1), "b");
+    Assert.assertEquals(firstBatch.get(), 1);
+    Assert.assertEquals(events.size(), 1);
+    Assert.assertEquals(events.get(0).getType(), TableModelEvent.INSERT);
+  }
+
+  @Test(timeOut = 30000)
+  public void testReplacementsSwappedInOneEvent() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    final StreamingTableUpdater updater = new StreamingTableUpdater(model, null);
+    FileObject a = mockFileObject("a", FileType.FILE, 1, 1);
+    FileObject b = mockFileObject("b", FileType.FILE, 1, 1);
+    FileObject c = mockFileObject("c", FileType.FILE, 1, 1);
+    model.setContent(ListingSnapshot.create(a, b, c));
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+    FileObject linkA = mockFileObject("a", FileType.FOLDER, 0, 2);
+    FileObject linkC = mockFileObject("c", FileType.FOLDER, 0, 3);
+    updater.replace(c, ListingSnapshot.create(linkC));
+    updater.replace(a, ListingSnapshot.create(linkA));
+    final CountDownLatch finished = new CountDownLatch(1);
+    updater.finish(new Runnable() {
+      @Override
+      public void run() {
+        finished.countDown();
+      }
+    });
+
+    //when
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        updater.start();
+      }
+    });
+
+    //then
+    Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(events.size(), 1);
+    Assert.assertEquals(events.get(0).getType(), TableModelEvent.UPDATE);
+    Assert.assertEquals(events.get(0).getFirstRow(), 0);
+    Assert.assertEquals(events.get(0).getLastRow(), 2);
+    Assert.assertSame(model.getSnapshot().getFileObject(0), linkA);
+    Assert.assertSame(model.getSnapshot().getFileObject(1), b);
+    Assert.assertSame(model.getSnapshot().getFileObject(2), linkC);
+    Assert.assertTrue(model.getSnapshot().isFolder(2));
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    StreamingTableUpdater updater = new StreamingTableUpdater(model, null);
+
+    //when
+    updater.cancel();
+    updater.add(ListingSnapshot.create(mockFileObject("a", FileType.FILE, 1, 1)));
+
+    //then
+    Assert.assertTrue(updater.isCancelled());
+    Assert.assertTrue(updater.isFinished());
+    Assert.assertEquals(model.getRowCount(), 0);
+  }
+}
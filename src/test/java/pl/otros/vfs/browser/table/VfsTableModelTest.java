@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.table;
+
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static pl.otros.vfs.browser.table.ListingSnapshotTest.mockFileObject;
+
+public class VfsTableModelTest {
+
+  @Test
+  public void testUpdateFiresRowEvents() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    model.setContent(ListingSnapshot.create(
+        mockFileObject("a", FileType.FILE, 1, 1),
+        mockFileObject("b", FileType.FILE, 1, 1),
+        mockFileObject("c", FileType.FILE, 1, 1),
+        mockFileObject("d", FileType.FILE, 1, 1)));
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+    ListingSnapshot changed = ListingSnapshot.create(
+        mockFileObject("c", FileType.FILE, 100, 2),
+        mockFileObject("e", FileType.FILE, 5, 3));
+
+    //when
+    boolean incremental = model.update(changed, Arrays.asList("b", "d", "x"));
+
+    //then
+    Assert.assertTrue(incremental);
+    Assert.assertEquals(model.getRowCount(), 3);
+    Assert.assertEquals(model.getSnapshot().getName(0), "a");
+    Assert.assertEquals(model.getSnapshot().getName(1), "c");
+    Assert.assertEquals(model.getSnapshot().getSize(1), 100);
+    Assert.assertEquals(model.getSnapshot().getName(2), "e");
+    Assert.assertEquals(events.size(), 4);
+    assertEvent(events.get(0), TableModelEvent.UPDATE, 2, 2);
+    assertEvent(events.get(1), TableModelEvent.DELETE, 3, 3);
+    assertEvent(events.get(2), TableModelEvent.DELETE, 1, 1);
+    assertEvent(events.get(3), TableModelEvent.INSERT, 2, 2);
+  }
+
+  @Test
+  public void testUpdateWithoutChanges() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel();
+    ListingSnapshot snapshot = ListingSnapshot.create(mockFileObject("a", FileType.FILE, 1, 1));
+    model.setContent(snapshot);
+
+    //when
+    boolean incremental = model.update(ListingSnapshot.EMPTY, Collections.<String>emptySet());
+
+    //then
+    Assert.assertTrue(incremental);
+    Assert.assertSame(model.getSnapshot(), snapshot);
+  }
+
+  @Test
+  public void testPutAttributesOfLazyRows() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel(1);
+    model.setContent(new ListingSnapshot.Builder(null, 2)
+        .add("a", null, ListingSnapshot.UNKNOWN, ListingSnapshot.UNKNOWN, false, null)
+        .add("b", null, ListingSnapshot.UNKNOWN, ListingSnapshot.UNKNOWN, false, null)
+        .build());
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+
+    //when
+    model.putAttributes(new int[]{1}, ListingSnapshot.create(mockFileObject("b", FileType.FILE, 10, 20)));
+
+    //then
+    Assert.assertTrue(model.isLazy());
+    Assert.assertTrue(model.needsAttributes(0));
+    Assert.assertFalse(model.needsAttributes(1));
+    Assert.assertNull(model.getType(0));
+    Assert.assertEquals(model.getType(1), FileType.FILE);
+    Assert.assertEquals(model.getSize(1), 10);
+    Assert.assertEquals(model.getLastModified(1), 20);
+    Assert.assertEquals(events.size(), 1);
+    assertEvent(events.get(0), TableModelEvent.UPDATE, 1, 1);
+  }
+
+  @Test
+  public void testLoadedAttributesAreEvicted() throws Exception {
+    //given
+    VfsTableModel model = new VfsTableModel(1);
+    model.setContent(new ListingSnapshot.Builder(null, 2)
+        .add("a", null, ListingSnapshot.UNKNOWN, ListingSnapshot.UNKNOWN, false, null)
+        .add("b", null, ListingSnapshot.UNKNOWN, ListingSnapshot.UNKNOWN, false, null)
+        .build());
+    model.putAttributes(new int[]{0}, ListingSnapshot.create(mockFileObject("a", FileType.FILE, 1, 1)));
+
+    //when
+    model.putAttributes(new int[]{0, 1}, ListingSnapshot.create(
+        mockFileObject("x", FileType.FILE, 1, 1),
+        mockFileObject("b", FileType.FOLDER, ListingSnapshot.UNKNOWN, 1)));
+
+    //then
+    Assert.assertTrue(model.needsAttributes(0));
+    Assert.assertEquals(model.getType(1), FileType.FOLDER);
+  }
+
+  private void assertEvent(TableModelEvent event, int type, int firstRow, int lastRow) {
+    Assert.assertEquals(event.getType(), type);
+    Assert.assertEquals(event.getFirstRow(), firstRow);
+    Assert.assertEquals(event.getLastRow(), lastRow);
+  }
+}
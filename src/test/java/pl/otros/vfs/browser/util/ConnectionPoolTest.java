@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.provider.AbstractFileSystem;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+  @Test(timeOut = 30000)
+  public void testCloseIdle() throws Exception {
+    //given
+    IoScheduler scheduler = new IoScheduler(4, 4);
+    ConnectionPool pool = new ConnectionPool(scheduler, 0, 1000, 10);
+    AbstractFileSystem idle = fileSystem(true);
+    AbstractFileSystem used = fileSystem(true);
+    AbstractFileSystem reading = fileSystem(false);
+    pool.touch("sftp://user@a:22", idle, 0);
+    pool.touch("sftp://user@b:22", used, 0);
+    pool.touch("sftp://user@c:22", reading, 0);
+    pool.touch("sftp://user@b:22", used, 1500);
+
+    //when
+    pool.closeIdle(2000);
+    awaitIdle(scheduler);
+
+    //then
+    verify(idle).closeCommunicationLink();
+    verify(used, never()).closeCommunicationLink();
+    verify(reading, never()).closeCommunicationLink();
+    Assert.assertEquals(pool.getOpenSessions(), 2);
+  }
+
+  @Test(timeOut = 30000)
+  public void testMaxSessions() throws Exception {
+    //given
+    IoScheduler scheduler = new IoScheduler(4, 4);
+    ConnectionPool pool = new ConnectionPool(scheduler, 0, 0, 2);
+    AbstractFileSystem first = fileSystem(true);
+    AbstractFileSystem second = fileSystem(true);
+    AbstractFileSystem third = fileSystem(true);
+    pool.touch("sftp://user@a:22", first, 0);
+    pool.touch("sftp://user@b:22", second, 1);
+    pool.touch("sftp://user@a:22", first, 2);
+
+    //when
+    pool.touch("smb://user@c:445", third, 3);
+    awaitIdle(scheduler);
+
+    //then
+    verify(second).closeCommunicationLink();
+    verify(first, never()).closeCommunicationLink();
+    Assert.assertEquals(pool.getOpenSessions(), 2);
+  }
+
+  @Test(timeOut = 30000)
+  public void testSessionWithOpenStreamIsNotEvicted() throws Exception {
+    //given
+    IoScheduler scheduler = new IoScheduler(4, 4);
+    ConnectionPool pool = new ConnectionPool(scheduler, 0, 0, 1);
+    FileObject file = VFSUtils.getFileSystemManager().resolveFile("ram:///connectionPool/a.txt");
+    FileObject local = VFSUtils.getFileSystemManager().resolveFile(System.getProperty("java.io.tmpdir"));
+    AbstractFileSystem ram = (AbstractFileSystem) file.getFileSystem();
+    pool.touch("sftp://user@a:22", ram, 0);
+    OutputStream out = file.getContent().getOutputStream();
+
+    //when
+    pool.touch("sftp://user@b:22", local.getFileSystem(), 1);
+    awaitIdle(scheduler);
+
+    //then
+    Assert.assertFalse(ram.isReleaseable());
+    Assert.assertEquals(pool.getOpenSessions(), 2);
+
+    //when
+    out.close();
+    pool.touch("sftp://user@b:22", local.getFileSystem(), 2);
+    awaitIdle(scheduler);
+
+    //then
+    Assert.assertEquals(pool.getOpenSessions(), 1);
+    file.delete();
+  }
+
+  @Test(timeOut = 30000)
+  public void testSessionUsedAgainIsNotClosed() throws Exception {
+    //given
+    IoScheduler scheduler = new IoScheduler(2, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    IoScheduler.Task hung = scheduler.submit("sftp://a", IoScheduler.Priority.NAVIGATION, block(release));
+    ConnectionPool pool = new ConnectionPool(scheduler, 0, 1000, 10);
+    AbstractFileSystem fileSystem = fileSystem(true);
+    pool.touch("sftp://user@a:22", fileSystem, 0);
+    pool.closeIdle(2000);
+
+    //when
+    pool.touch("sftp://user@a:22", fileSystem, 2500);
+    release.countDown();
+    Assert.assertTrue(hung.await(10, TimeUnit.SECONDS));
+    awaitIdle(scheduler);
+
+    //then
+    verify(fileSystem, never()).closeCommunicationLink();
+    Assert.assertEquals(pool.getOpenSessions(), 1);
+  }
+
+  private static void awaitIdle(IoScheduler scheduler) throws InterruptedException {
+    while (scheduler.getQueueDepth() > 0 || scheduler.getRunning() > 0) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static Runnable block(final CountDownLatch release) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private static AbstractFileSystem fileSystem(boolean closeable) {
+    AbstractFileSystem fileSystem = mock(AbstractFileSystem.class);
+    when(fileSystem.isOpen()).thenReturn(!closeable);
+    return fileSystem;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FolderPollerTest {
+
+  @Test
+  public void testIntervalBacksOffUntilChange() throws Exception {
+    //given
+    FolderPoller poller = new FolderPoller(new IoScheduler(2, 1), true, 100, 1000);
+
+    //when
+    long interval = 100;
+    interval = poller.nextInterval(interval, false);
+    Assert.assertEquals(interval, 200);
+    interval = poller.nextInterval(interval, false);
+    interval = poller.nextInterval(interval, false);
+    interval = poller.nextInterval(interval, false);
+
+    //then
+    Assert.assertEquals(interval, 1000);
+    Assert.assertEquals(poller.nextInterval(interval, true), 100);
+  }
+
+  @Test(timeOut = 10000)
+  public void testRemoteFolderIsPolled() throws Exception {
+    //given
+    FolderPoller poller = new FolderPoller(new IoScheduler(2, 1), true, 10, 20);
+    final CountDownLatch polls = new CountDownLatch(3);
+
+    //when
+    poller.poll(mockFolder("sftp"), new FolderPoller.Task() {
+      @Override
+      public boolean poll(FileObject folder) throws Exception {
+        polls.countDown();
+        return false;
+      }
+    });
+
+    //then
+    Assert.assertTrue(polls.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(poller.getCurrentInterval(), 20);
+    poller.stop();
+    Assert.assertEquals(poller.getCurrentInterval(), -1);
+  }
+
+  @Test
+  public void testLocalFolderIsNotPolled() throws Exception {
+    //given
+    FolderPoller poller = new FolderPoller(new IoScheduler(2, 1), true, 10, 20);
+
+    //when
+    poller.poll(mockFolder("file"), null);
+
+    //then
+    Assert.assertEquals(poller.getCurrentInterval(), -1);
+  }
+
+  private FileObject mockFolder(String scheme) {
+    FileObject folder = mock(FileObject.class);
+    FileName fileName = mock(FileName.class);
+    when(folder.getName()).thenReturn(fileName);
+    when(fileName.getScheme()).thenReturn(scheme);
+    when(fileName.getFriendlyURI()).thenReturn(scheme + "://host/folder");
+    return folder;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.TaskContext;
+import pl.otros.vfs.browser.table.FileSize;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FolderSizeCalculatorTest {
+
+  private Path directory;
+  private ListingSnapshot listing;
+
+  @BeforeClass
+  public void createFiles() throws Exception {
+    directory = Files.createTempDirectory("folderSize");
+    Files.write(directory.resolve("a.txt"), new byte[10]);
+    Path sub = Files.createDirectory(directory.resolve("sub"));
+    Files.write(sub.resolve("b.txt"), new byte[100]);
+    Path deep = Files.createDirectory(sub.resolve("deep"));
+    Files.write(deep.resolve("c.txt"), new byte[1000]);
+    Files.write(deep.resolve(".hidden"), new byte[1]);
+    Files.createDirectory(directory.resolve("empty"));
+    FileObject root = VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString());
+    listing = new LocalFolderLister(true, 1, Integer.MAX_VALUE).list(root);
+  }
+
+  @AfterClass
+  public void deleteFiles() throws Exception {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test(timeOut = 30000)
+  public void testCalculateAndCache() throws Exception {
+    //given
+    FolderSizeCalculator calculator = new FolderSizeCalculator(new IoScheduler(2, 2),
+        new FolderLister(new LocalFolderLister(true, 1, Integer.MAX_VALUE)), new SftpTreeLister(false), true, 10);
+    final Map<String, FileSize> sizes = new HashMap<String, FileSize>();
+    FolderSizeCalculator.Listener listener = new FolderSizeCalculator.Listener() {
+      @Override
+      public void sizeCalculated(int row, String name, FileSize size) {
+        synchronized (sizes) {
+          if (!size.isPartial()) {
+            sizes.put(name, size);
+          }
+        }
+      }
+    };
+
+    //when
+    TaskContext context = calculator.calculate(listing, listener);
+    while (!context.isStop()) {
+      Thread.sleep(10);
+    }
+    Map<String, FileSize> calculated;
+    synchronized (sizes) {
+      calculated = new HashMap<String, FileSize>(sizes);
+      sizes.clear();
+    }
+    TaskContext cachedContext = calculator.calculate(listing, listener);
+
+    //then
+    Assert.assertEquals(context.getMax(), 2);
+    Assert.assertEquals(context.getCurrentProgress(), 2);
+    Assert.assertEquals(calculated.size(), 2);
+    Assert.assertEquals(calculated.get("sub").getBytes(), 1101);
+    Assert.assertEquals(calculated.get("sub").getFiles(), 3);
+    Assert.assertEquals(calculated.get("empty").getBytes(), 0);
+    Assert.assertEquals(calculated.get("empty").getFiles(), 0);
+    Assert.assertTrue(cachedContext.isStop());
+    Assert.assertEquals(cachedContext.getMax(), 0);
+    synchronized (sizes) {
+      Assert.assertEquals(sizes, calculated);
+    }
+  }
+
+  @Test(timeOut = 30000)
+  public void testUnreadableFolderMakesSizeIncomplete() throws Exception {
+    //given
+    FolderLister folderLister = new FolderLister(new LocalFolderLister(true, 1, Integer.MAX_VALUE)) {
+      @Override
+      public ListingSnapshot list(FileObject folder) throws FileSystemException {
+        if (folder.getName().getBaseName().equals("deep")) {
+          throw new FileSystemException("Permission denied");
+        }
+        return super.list(folder);
+      }
+    };
+    FolderSizeCalculator calculator = new FolderSizeCalculator(
+        new IoScheduler(2, 2), folderLister, new SftpTreeLister(false), true, 10);
+    final Map<String, FileSize> sizes = new HashMap<String, FileSize>();
+    FolderSizeCalculator.Listener listener = new FolderSizeCalculator.Listener() {
+      @Override
+      public void sizeCalculated(int row, String name, FileSize size) {
+        synchronized (sizes) {
+          sizes.put(name, size);
+        }
+      }
+    };
+
+    //when
+    TaskContext context = calculator.calculate(listing, listener);
+    while (!context.isStop()) {
+      Thread.sleep(10);
+    }
+    TaskContext secondContext = calculator.calculate(listing, listener);
+
+    //then
+    synchronized (sizes) {
+      Assert.assertEquals(sizes.get("sub").getBytes(), 100);
+      Assert.assertFalse(sizes.get("sub").isPartial());
+      Assert.assertTrue(sizes.get("sub").isIncomplete());
+      Assert.assertFalse(sizes.get("empty").isIncomplete());
+    }
+    Assert.assertEquals(secondContext.getMax(), 1);
+    calculator.cancel();
+  }
+}
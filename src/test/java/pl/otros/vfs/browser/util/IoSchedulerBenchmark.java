@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares {@link IoScheduler} on platform threads and on virtual threads. Blocking provider calls are simulated
+ * with sleep, many hosts are browsed at once. Run with <code>gradle benchmarkIoScheduler</code> or directly with
+ * arguments: hosts, tasks per host, latency of task in ms, max tasks per host, platform threads.
+ * <p/>
+ * Sleep does not pin virtual thread to carrier, real JSch calls may pin it inside synchronized blocks (Java 21-23).
+ */
+public class IoSchedulerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int hosts = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+    int tasksPerHost = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+    int latency = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    int maxPerHost = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    int platformThreads = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+    System.out.printf("Java %s, %d hosts, %d tasks per host, %d ms latency, %d tasks per host at once%n",
+        System.getProperty("java.version"), hosts, tasksPerHost, latency, maxPerHost);
+
+    IoScheduler virtual = IoScheduler.withVirtualThreads(maxPerHost);
+    //warm up
+    run("warm up", new IoScheduler(platformThreads, maxPerHost), 4, 10, 1, false);
+    if (virtual != null) {
+      run("warm up", virtual, 4, 10, 1, false);
+    }
+
+    run("platform, " + platformThreads + " threads", new IoScheduler(platformThreads, maxPerHost),
+        hosts, tasksPerHost, latency, true);
+    int saturating = hosts * maxPerHost;
+    run("platform, " + saturating + " threads", new IoScheduler(saturating, maxPerHost),
+        hosts, tasksPerHost, latency, true);
+    if (virtual != null) {
+      run("virtual", virtual, hosts, tasksPerHost, latency, true);
+    } else {
+      System.out.println("virtual: not available, Java 21+ is required");
+    }
+  }
+
+  private static void run(String name, IoScheduler scheduler, int hosts, int tasksPerHost, final int latency,
+                          boolean print) throws InterruptedException {
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger peakConcurrent = new AtomicInteger();
+    List<IoScheduler.Task> tasks = new ArrayList<IoScheduler.Task>(hosts * tasksPerHost);
+    int peakThreads = 0;
+    long ts = System.nanoTime();
+    for (int i = 0; i < tasksPerHost; i++) {
+      for (int host = 0; host < hosts; host++) {
+        tasks.add(scheduler.submit("sftp://host-" + host, IoScheduler.Priority.values()[i % 4], new Runnable() {
+          @Override
+          public void run() {
+            int now = concurrent.incrementAndGet();
+            int peak;
+            while ((peak = peakConcurrent.get()) < now && !peakConcurrent.compareAndSet(peak, now)) {
+              //retry
+            }
+            try {
+              Thread.sleep(latency);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            } finally {
+              concurrent.decrementAndGet();
+            }
+          }
+        }));
+      }
+      peakThreads = Math.max(peakThreads, scheduler.getThreads());
+    }
+    for (IoScheduler.Task task : tasks) {
+      while (!task.await(10, TimeUnit.MILLISECONDS)) {
+        peakThreads = Math.max(peakThreads, scheduler.getThreads());
+      }
+    }
+    long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ts);
+    if (print) {
+      System.out.printf("%-25s %6d ms %8.0f tasks/s, %4d tasks at once, %4d threads at peak%n",
+          name + ":", took, tasks.size() * 1000.0 / Math.max(1, took), peakConcurrent.get(), peakThreads);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.VfsComponentContext;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystem;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.LinkFileObject;
+import pl.otros.vfs.browser.TaskContext;
+import pl.otros.vfs.browser.cache.LinkCache;
+
+import java.util.Vector;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LinkCheckerTest {
+
+  private SftpFileSystem fileSystem;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    //file system without session, every round trip fails
+    GenericFileName rootName = new GenericFileName("sftp", "link-host", 22, 22, "user", null, "/", FileType.FOLDER) {
+    };
+    fileSystem = new SftpFileSystem(rootName, null, new FileSystemOptions()) {
+    };
+    VfsComponentContext context = mock(VfsComponentContext.class);
+    when(context.getFileSystemManager()).thenReturn(VFSUtils.getFileSystemManager());
+    fileSystem.setContext(context);
+    fileSystem.init();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    VFSUtils.getFileSystemManager().getFilesCache().clear(fileSystem);
+  }
+
+  @Test(timeOut = 30000)
+  public void testCachedLinkIsNotCheckedAgain() throws Exception {
+    //given
+    LinkCache linkCache = LinkCache.inMemory();
+    LinkChecker linkChecker = new LinkChecker(new IoScheduler(2, 2), 2, linkCache);
+    FileObject[] files = links();
+    linkCache.put(files[0].getName().getFriendlyURI(), 7, 1380000000, true, FileType.FOLDER);
+
+    //when
+    linkChecker.check(files, 0, files.length, new TaskContext("links", files.length), null);
+
+    //then
+    Assert.assertTrue(files[0] instanceof LinkFileObject);
+    Assert.assertEquals(((LinkFileObject) files[0]).getTargetType(), FileType.FOLDER);
+  }
+
+  @Test(timeOut = 30000)
+  public void testCacheIsBypassedOnRefresh() throws Exception {
+    //given
+    LinkCache linkCache = LinkCache.inMemory();
+    LinkChecker linkChecker = new LinkChecker(new IoScheduler(2, 2), 2, linkCache);
+    FileObject[] files = links();
+    linkCache.put(files[0].getName().getFriendlyURI(), 7, 1380000000, true, FileType.FOLDER);
+
+    //when
+    linkChecker.check(files, 0, files.length, new TaskContext("links", files.length), null, false);
+
+    //then
+    Assert.assertTrue(files[0] instanceof SftpFileObject, "Link should be checked on server");
+  }
+
+  private FileObject[] links() throws Exception {
+    SftpFileObject folder = (SftpFileObject) fileSystem.resolveFile("/home/user");
+    Vector<Object> entries = new Vector<Object>();
+    entries.add(SftpUtilsTest.lsEntry("current", SftpUtilsTest.S_IFLNK | 0777, 7, 1380000000));
+    return SftpUtils.toChildren(folder, entries);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.LinkFileObject;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LocalFolderListerTest {
+
+  private Path directory;
+  private FileObject folder;
+
+  @BeforeClass
+  public void createFiles() throws Exception {
+    directory = Files.createTempDirectory("localLister");
+    Path subfolder = Files.createDirectory(directory.resolve("folder"));
+    Path file = Files.write(directory.resolve("file.txt"), new byte[]{1, 2, 3});
+    Files.createFile(directory.resolve(".hidden"));
+    Files.createSymbolicLink(directory.resolve("linkToFolder"), subfolder);
+    Files.createSymbolicLink(directory.resolve("linkToFile"), file);
+    folder = VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString());
+  }
+
+  @AfterClass
+  public void deleteFiles() throws Exception {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testList() throws Exception {
+    //given
+    LocalFolderLister lister = new LocalFolderLister(true, 1, 1000);
+
+    //when
+    ListingSnapshot snapshot = lister.list(folder).sortedByName();
+
+    //then
+    String[] expected = {"folder", ".hidden", "file.txt", "linkToFile", "linkToFolder"};
+    Assert.assertEquals(snapshot.size(), expected.length);
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(snapshot.getName(i), expected[i]);
+    }
+    Assert.assertTrue(snapshot.isFolder(0));
+    Assert.assertTrue(snapshot.isHidden(1));
+    Assert.assertEquals(snapshot.getSize(2), 3);
+    Assert.assertTrue(snapshot.isLink(3));
+    Assert.assertEquals(snapshot.getResolvedType(3), FileType.FILE);
+    Assert.assertEquals(snapshot.getResolvedType(4), FileType.FOLDER);
+    Assert.assertEquals(snapshot.getFileName(2).getBaseName(), "file.txt");
+  }
+
+  @Test
+  public void testFileObjectIsResolvedOnRequest() throws Exception {
+    //given
+    ListingSnapshot snapshot = new LocalFolderLister(true, 1, 1000).list(folder).sortedByName();
+
+    //when
+    FileObject file = snapshot.getFileObject(2);
+    FileObject link = snapshot.getFileObject(4);
+
+    //then
+    Assert.assertEquals(file.getName().getBaseName(), "file.txt");
+    Assert.assertEquals(file.getType(), FileType.FILE);
+    Assert.assertSame(snapshot.getFileObject(2), file);
+    Assert.assertTrue(link instanceof LinkFileObject);
+    Assert.assertEquals(((LinkFileObject) link).getTargetType(), FileType.FOLDER);
+  }
+
+  @Test
+  public void testListInParallel() throws Exception {
+    //given
+    LocalFolderLister lister = new LocalFolderLister(true, 3, 1);
+
+    //when
+    ListingSnapshot snapshot = lister.list(folder).sortedByName();
+
+    //then
+    Assert.assertEquals(snapshot.size(), 5);
+    Assert.assertEquals(snapshot.getName(0), "folder");
+    Assert.assertEquals(snapshot.getFileObject(2).getName().getBaseName(), "file.txt");
+  }
+
+  @Test
+  public void testListOnlyNamesOfLargeFolder() throws Exception {
+    //given
+    LocalFolderLister lister = new LocalFolderLister(true, 1, 1000, 5);
+
+    //when
+    ListingSnapshot snapshot = lister.list(folder).sortedByName();
+
+    //then
+    Assert.assertEquals(snapshot.size(), 5);
+    Assert.assertEquals(snapshot.getName(0), ".hidden");
+    Assert.assertTrue(snapshot.isHidden(0));
+    Assert.assertEquals(snapshot.getTypeCode(1), ListingSnapshot.TYPE_UNKNOWN);
+    Assert.assertEquals(snapshot.getSize(1), ListingSnapshot.UNKNOWN);
+    Assert.assertEquals(snapshot.getFileObject(1).getType(), FileType.FILE);
+  }
+
+  @Test
+  public void testStreamInBatches() throws Exception {
+    //given
+    Path large = Files.createTempDirectory("localListerStream");
+    try {
+      for (int i = 0; i < 600; i++) {
+        Files.createFile(large.resolve("file" + i));
+      }
+      FileObject largeFolder = VFSUtils.getFileSystemManager().resolveFile(large.toUri().toString());
+      LocalFolderLister lister = new LocalFolderLister(true, 1, 1000, 300);
+      final List<ListingSnapshot> batches = new ArrayList<ListingSnapshot>();
+
+      //when
+      ListingSnapshot snapshot = lister.list(largeFolder, new LocalFolderLister.Listener() {
+        @Override
+        public void listed(ListingSnapshot entries) {
+          batches.add(entries);
+        }
+      });
+
+      //then
+      Assert.assertEquals(snapshot.size(), 600);
+      Assert.assertEquals(batches.size(), 3);
+      Assert.assertEquals(batches.get(0).size(), 256);
+      Assert.assertEquals(batches.get(1).size(), 256);
+      Assert.assertEquals(batches.get(2).size(), 88);
+      Assert.assertEquals(batches.get(1).getType(0), FileType.FILE);
+      Assert.assertEquals(batches.get(2).getTypeCode(0), ListingSnapshot.TYPE_UNKNOWN);
+    } finally {
+      FileUtils.deleteQuietly(large.toFile());
+    }
+  }
+
+  @Test
+  public void testReadNamedEntries() throws Exception {
+    //given
+    LocalFolderLister lister = new LocalFolderLister(true, 1, 1000);
+
+    //when
+    ListingSnapshot snapshot = lister.readNamedEntries(folder, Arrays.asList("file.txt", "missing", "folder"));
+
+    //then
+    Assert.assertEquals(snapshot.size(), 2);
+    Assert.assertEquals(snapshot.getName(0), "file.txt");
+    Assert.assertEquals(snapshot.getSize(0), 3);
+    Assert.assertEquals(snapshot.getName(1), "folder");
+    Assert.assertTrue(snapshot.isFolder(1));
+  }
+
+  @Test
+  public void testCanList() throws Exception {
+    Assert.assertTrue(new LocalFolderLister(true, 1, 1).canList(folder));
+    Assert.assertFalse(new LocalFolderLister(false, 1, 1).canList(folder));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class LocalFolderWatcherTest {
+
+  private Path directory;
+  private LocalFolderWatcher watcher;
+
+  @BeforeMethod
+  public void createFolder() throws Exception {
+    directory = Files.createTempDirectory("watcher");
+    Files.createFile(directory.resolve("old.log"));
+    watcher = new LocalFolderWatcher(new LocalFolderLister(true, 1, 1000), true);
+  }
+
+  @AfterMethod
+  public void deleteFolder() throws Exception {
+    watcher.stop();
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test(timeOut = 30000)
+  public void testChangesAreReported() throws Exception {
+    //given
+    final BlockingQueue<ListingSnapshot> changes = new LinkedBlockingQueue<ListingSnapshot>();
+    final Set<String> removed = Collections.synchronizedSet(new HashSet<String>());
+    FileObject folder = VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString());
+    watcher.watch(folder, new LocalFolderWatcher.Listener() {
+      @Override
+      public void folderChanged(FileObject folder, ListingSnapshot changedFiles, Set<String> removedNames) {
+        removed.addAll(removedNames);
+        changes.add(changedFiles);
+      }
+
+      @Override
+      public void folderInvalidated(FileObject folder) {
+      }
+    });
+
+    //when
+    Files.write(directory.resolve("new.log"), new byte[]{1, 2});
+    Files.delete(directory.resolve("old.log"));
+
+    //then
+    Set<String> changedNames = new HashSet<String>();
+    while (!changedNames.contains("new.log") || !removed.contains("old.log")) {
+      ListingSnapshot snapshot = changes.poll(10, TimeUnit.SECONDS);
+      Assert.assertNotNull(snapshot, "Changes were not reported");
+      for (int row = 0; row < snapshot.size(); row++) {
+        changedNames.add(snapshot.getName(row));
+      }
+    }
+    Assert.assertFalse(changedNames.contains("old.log"));
+  }
+
+  @Test(timeOut = 30000)
+  public void testChangesOfFolderWatchedWhileCoalescingAreReported() throws Exception {
+    //given
+    final BlockingQueue<String> changed = new LinkedBlockingQueue<String>();
+    LocalFolderWatcher.Listener listener = new LocalFolderWatcher.Listener() {
+      @Override
+      public void folderChanged(FileObject folder, ListingSnapshot changedFiles, Set<String> removedNames) {
+        for (int row = 0; row < changedFiles.size(); row++) {
+          changed.add(changedFiles.getName(row));
+        }
+      }
+
+      @Override
+      public void folderInvalidated(FileObject folder) {
+      }
+    };
+    Path other = Files.createDirectory(directory.resolve("other"));
+    watcher.watch(VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString()), listener);
+    Files.createFile(directory.resolve("first.log"));
+
+    //when
+    watcher.watch(VFSUtils.getFileSystemManager().resolveFile(other.toUri().toString()), listener);
+    Files.createFile(other.resolve("second.log"));
+
+    //then
+    String name;
+    do {
+      name = changed.poll(10, TimeUnit.SECONDS);
+      Assert.assertNotNull(name, "Changes of second folder were not reported");
+    } while (!name.equals("second.log"));
+  }
+
+  @Test(timeOut = 30000)
+  public void testDeletedFolderIsInvalidated() throws Exception {
+    //given
+    final BlockingQueue<FileObject> invalidated = new LinkedBlockingQueue<FileObject>();
+    FileObject folder = VFSUtils.getFileSystemManager().resolveFile(directory.toUri().toString());
+    watcher.watch(folder, new LocalFolderWatcher.Listener() {
+      @Override
+      public void folderChanged(FileObject folder, ListingSnapshot changedFiles, Set<String> removedNames) {
+      }
+
+      @Override
+      public void folderInvalidated(FileObject folder) {
+        invalidated.add(folder);
+      }
+    });
+
+    //when
+    FileUtils.deleteDirectory(directory.toFile());
+
+    //then
+    Assert.assertEquals(invalidated.poll(10, TimeUnit.SECONDS), folder);
+  }
+}
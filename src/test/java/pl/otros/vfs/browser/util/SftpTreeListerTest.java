@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SftpTreeListerTest {
+
+  @Test
+  public void testBuildCommand() {
+    //when
+    String all = SftpTreeLister.buildCommand("/home/user's", Integer.MAX_VALUE, Collections.<String>emptyList(), false);
+    String pruned = SftpTreeLister.buildCommand("/tmp", 3, Arrays.asList(".git", "a*"), true);
+
+    //then
+    Assert.assertEquals(all, "LC_ALL=C find '/home/user'\\''s' -mindepth 1 -printf '%y %Y %s %T@ %P\\0'");
+    Assert.assertEquals(pruned, "LC_ALL=C find '/tmp' -mindepth 1 -maxdepth 3"
+        + " \\( -type d \\( -iname '.git' -o -iname 'a\\*' -o -name '.*' \\) -printf '%y %Y %s %T@ %P\\0' -prune \\)"
+        + " -o -printf '%y %Y %s %T@ %P\\0'");
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    //given
+    FileObject root = VFSUtils.getFileSystemManager().resolveFile(System.getProperty("java.io.tmpdir"));
+    String output = "d d 4096 1380000000.5000000000 dir\0"
+        + "f f 10 1380000001.0000000000 dir/a.txt\0"
+        + "l d 7 1380000002.0000000000 dir/link\0"
+        + "f f 20 1380000003.0000000000 dir/sub dir/b c.txt\0"
+        + "f f 30 1380000004.0000000000 .hidden\0";
+    final List<String> paths = new ArrayList<String>();
+    final List<ListingSnapshot> chunks = new ArrayList<ListingSnapshot>();
+
+    //when
+    int count = SftpTreeLister.parse(new ByteArrayInputStream(output.getBytes("UTF-8")), root, new SftpTreeLister.Listener() {
+      @Override
+      public void listed(String path, ListingSnapshot entries) {
+        paths.add(path);
+        chunks.add(entries);
+      }
+    });
+
+    //then
+    Assert.assertEquals(count, 5);
+    Assert.assertEquals(paths, Arrays.asList("", "dir", "dir/sub dir", ""));
+    Assert.assertTrue(chunks.get(0).isFolder(0));
+    Assert.assertEquals(chunks.get(0).getLastModified(0), 1380000000500L);
+    Assert.assertEquals(chunks.get(1).size(), 2);
+    Assert.assertEquals(chunks.get(1).getSize(0), 10);
+    Assert.assertTrue(chunks.get(1).isLink(1));
+    Assert.assertEquals(chunks.get(1).getResolvedType(1), FileType.FOLDER);
+    Assert.assertEquals(chunks.get(2).getName(0), "b c.txt");
+    Assert.assertEquals(chunks.get(2).getFileName(0).getParent().getBaseName(), "sub dir");
+    Assert.assertTrue(chunks.get(3).isHidden(0));
+  }
+}
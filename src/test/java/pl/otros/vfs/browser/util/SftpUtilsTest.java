@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.VfsComponentContext;
+import org.apache.commons.vfs2.provider.sftp.SftpFileObject;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystem;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Vector;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SftpUtilsTest {
+
+  static final int S_IFDIR = 0040000;
+  static final int S_IFREG = 0100000;
+  static final int S_IFLNK = 0120000;
+
+  private SftpFileSystem fileSystem;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    //file system without session, server is never contacted while attributes are injected
+    GenericFileName rootName = new GenericFileName("sftp", "test-host", 22, 22, "user", null, "/", FileType.FOLDER) {
+    };
+    fileSystem = new SftpFileSystem(rootName, null, new FileSystemOptions()) {
+    };
+    VfsComponentContext context = mock(VfsComponentContext.class);
+    when(context.getFileSystemManager()).thenReturn(VFSUtils.getFileSystemManager());
+    fileSystem.setContext(context);
+    fileSystem.init();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    SftpUtils.setAvailable(true);
+    VFSUtils.getFileSystemManager().getFilesCache().clear(fileSystem);
+  }
+
+  @Test
+  public void testAttributesInjectedIntoSnapshot() throws Exception {
+    //given
+    Assert.assertTrue(SftpUtils.isAvailable());
+    SftpFileObject folder = (SftpFileObject) fileSystem.resolveFile("/home/user");
+    Vector<Object> entries = new Vector<Object>();
+    entries.add(lsEntry(".", S_IFDIR | 0755, 4096, 1380000000));
+    entries.add(lsEntry("..", S_IFDIR | 0755, 4096, 1380000000));
+    entries.add(lsEntry("logs", S_IFDIR | 0755, 4096, 1380000001));
+    entries.add(lsEntry("app.log", S_IFREG | 0644, 1234, 1380000002));
+    entries.add(lsEntry("current", S_IFLNK | 0777, 7, 1380000003));
+
+    //when
+    FileObject[] children = SftpUtils.toChildren(folder, entries);
+    ListingSnapshot snapshot = ListingSnapshot.create(children);
+
+    //then
+    Assert.assertEquals(snapshot.size(), 3);
+    Assert.assertEquals(snapshot.getName(0), "logs");
+    Assert.assertTrue(snapshot.isFolder(0));
+    Assert.assertEquals(snapshot.getLastModified(0), 1380000001000L);
+    Assert.assertEquals(snapshot.getName(1), "app.log");
+    Assert.assertEquals(snapshot.getType(1), FileType.FILE);
+    Assert.assertEquals(snapshot.getSize(1), 1234);
+    Assert.assertEquals(snapshot.getLastModified(1), 1380000002000L);
+    Assert.assertEquals(snapshot.getType(2), FileType.FILE);
+    Assert.assertEquals(SftpUtils.getAttributes((SftpFileObject) children[1]).getSize(), 1234);
+    Assert.assertFalse(SftpUtils.isLink((SftpFileObject) children[1]));
+    Assert.assertTrue(SftpUtils.isLink((SftpFileObject) children[2]));
+  }
+
+  @Test
+  public void testFallbackWhenReflectionIsNotAvailable() throws Exception {
+    //given
+    SftpUtils.setAvailable(false);
+    SftpFileObject folder = (SftpFileObject) fileSystem.resolveFile("/tmp");
+    Vector<Object> entries = new Vector<Object>();
+    entries.add(lsEntry("a.txt", S_IFREG | 0644, 10, 1380000000));
+    entries.add(lsEntry("link", S_IFLNK | 0777, 7, 1380000000));
+
+    //when
+    FileObject[] children = SftpUtils.toChildren(folder, entries);
+
+    //then
+    Assert.assertEquals(children.length, 2);
+    Assert.assertEquals(children[0].getName().getBaseName(), "a.txt");
+    Assert.assertNull(SftpUtils.getAttributes((SftpFileObject) children[0]));
+    Assert.assertFalse(SftpUtils.isLink((SftpFileObject) children[1]));
+    try {
+      SftpUtils.getSession(folder);
+      Assert.fail("Channel should not be accessible");
+    } catch (FileSystemException e) {
+      //expected
+    }
+  }
+
+  static ChannelSftp.LsEntry lsEntry(String name, int permissions, long size, int mtime) throws Exception {
+    //JSch creates attributes and entries only from server responses
+    Constructor<SftpATTRS> attrsConstructor = SftpATTRS.class.getDeclaredConstructor();
+    attrsConstructor.setAccessible(true);
+    SftpATTRS attrs = attrsConstructor.newInstance();
+    attrs.setPERMISSIONS(permissions);
+    //setter keeps only permission bits, file type bits are set directly
+    Field permissionsField = SftpATTRS.class.getDeclaredField("permissions");
+    permissionsField.setAccessible(true);
+    permissionsField.setInt(attrs, permissions);
+    attrs.setSIZE(size);
+    attrs.setACMODTIME(mtime, mtime);
+    Constructor<ChannelSftp.LsEntry> entryConstructor = ChannelSftp.LsEntry.class.getDeclaredConstructor(
+        ChannelSftp.class, String.class, String.class, SftpATTRS.class);
+    entryConstructor.setAccessible(true);
+    return entryConstructor.newInstance(null, name, name, attrs);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Krzysztof Otrebski (otros.systems@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.otros.vfs.browser.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.UserAuthenticationData;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pl.otros.vfs.browser.LinkFileObject;
+import pl.otros.vfs.browser.auth.UserAuthenticationDataWrapper;
+import pl.otros.vfs.browser.table.ListingSnapshot;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class VFSUtilsTest {
+
+  private Path directory;
+
+  @BeforeClass
+  public void createFiles() throws Exception {
+    directory = Files.createTempDirectory("vfsutils");
+    Path folder = Files.createDirectory(directory.resolve("folder"));
+    Path file = Files.createFile(directory.resolve("file.txt"));
+    Files.createSymbolicLink(directory.resolve("linkToFolder"), folder);
+    Files.createSymbolicLink(directory.resolve("linkToFile"), file);
+    Files.createSymbolicLink(directory.resolve("brokenLink"), directory.resolve("missing"));
+  }
+
+  @AfterClass
+  public void deleteFiles() throws Exception {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testIsLink() throws Exception {
+    Assert.assertFalse(VFSUtils.isLink(resolve("folder")));
+    Assert.assertFalse(VFSUtils.isLink(resolve("file.txt")));
+    Assert.assertTrue(VFSUtils.isLink(resolve("linkToFolder")));
+    Assert.assertTrue(VFSUtils.isLink(resolve("linkToFile")));
+    Assert.assertTrue(VFSUtils.isLink(resolve("brokenLink")));
+  }
+
+  @Test
+  public void testResolveLink() throws Exception {
+    Assert.assertEquals(VFSUtils.resolveLink(resolve("linkToFolder")).getTargetType(), FileType.FOLDER);
+    Assert.assertEquals(VFSUtils.resolveLink(resolve("linkToFile")).getTargetType(), FileType.FILE);
+    Assert.assertEquals(VFSUtils.resolveLink(resolve("brokenLink")).getTargetType(), FileType.IMAGINARY);
+  }
+
+  @Test
+  public void testCanGoUrl() throws Exception {
+    Assert.assertTrue(VFSUtils.canGoUrl(new LinkFileObject(resolve("linkToFolder"), FileType.FOLDER)));
+    Assert.assertFalse(VFSUtils.canGoUrl(new LinkFileObject(resolve("linkToFile"), FileType.FILE)));
+  }
+
+  @Test
+  public void testCanGoUrlFromSnapshot() throws Exception {
+    //given
+    ListingSnapshot snapshot = ListingSnapshot.create(resolve("folder"), resolve("file.txt"),
+        new LinkFileObject(resolve("linkToFolder"), FileType.FOLDER), new LinkFileObject(resolve("linkToFile"), FileType.FILE));
+
+    //then
+    Assert.assertTrue(VFSUtils.canGoUrl(snapshot, 0));
+    Assert.assertFalse(VFSUtils.canGoUrl(snapshot, 1));
+    Assert.assertTrue(VFSUtils.canGoUrl(snapshot, 2));
+    Assert.assertFalse(VFSUtils.canGoUrl(snapshot, 3));
+  }
+
+  private FileObject resolve(String name) throws Exception {
+    return VFSUtils.getFileSystemManager().resolveFile(new File(directory.toFile(), name).toURI().toString());
+  }
+
+  @Test
+  public void testFavoritesOnOneHostShareOptions() throws Exception {
+    //given
+    UserAuthenticationDataWrapper credentials = new UserAuthenticationDataWrapper();
+    credentials.setData(UserAuthenticationData.USERNAME, "app".toCharArray());
+    credentials.setData(UserAuthenticationData.PASSWORD, "secret".toCharArray());
+    UserAuthenticationDataWrapper changed = credentials.copy();
+
+    //when
+    FileSystemOptions logs = VFSUtils.storedCredentialsOptions("sftp://prod-app-01/opt/app/logs", credentials);
+    FileSystemOptions varLog = VFSUtils.storedCredentialsOptions("sftp://prod-app-01/var/log", credentials);
+    FileSystemOptions otherHost = VFSUtils.storedCredentialsOptions("sftp://prod-app-02/var/log", credentials);
+    FileSystemOptions changedCredentials = VFSUtils.storedCredentialsOptions("sftp://prod-app-01/var/log", changed);
+
+    //then
+    Assert.assertSame(varLog, logs);
+    Assert.assertEquals(varLog.compareTo(logs), 0);
+    Assert.assertNotSame(otherHost, logs);
+    Assert.assertNotSame(changedCredentials, logs);
+  }
+}